@@ -7,12 +7,12 @@ import com.liskovsoft.appupdatechecker2.core.AppDownloader;
 import com.liskovsoft.appupdatechecker2.core.AppDownloaderListener;
 import com.liskovsoft.appupdatechecker2.core.AppVersionChecker;
 import com.liskovsoft.appupdatechecker2.core.AppVersionCheckerListener;
+import com.liskovsoft.appupdatechecker2.other.MirrorStats;
 import com.liskovsoft.appupdatechecker2.other.SettingsManager;
 import com.liskovsoft.sharedutils.helpers.FileHelpers;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
 
-import java.util.Arrays;
 import java.util.List;
 
 public class AppUpdateChecker implements AppVersionCheckerListener, AppDownloaderListener {
@@ -117,7 +117,7 @@ public class AppUpdateChecker implements AppVersionCheckerListener, AppDownloade
                         checkApk(mSettingsManager.getApkPath())) {
                     mListener.onUpdateFound(latestVersionName, changelog, mSettingsManager.getApkPath());
                 } else {
-                    mDownloader.download(downloadUris);
+                    mDownloader.download(downloadUris, mVersionChecker.getApkChecksum());
                 }
             }
         } else {
@@ -157,20 +157,12 @@ public class AppUpdateChecker implements AppVersionCheckerListener, AppDownloade
         mListener.onUpdateError(e);
     }
 
+    /**
+     * Fastest and most reliable mirrors first. Preferred host wins among mirrors without stats.
+     */
     @Override
     public void processDownloadUrls(Uri[] downloadUrls) {
-        String preferredHost = getPreferredHost();
-
-        if (preferredHost == null) {
-            return;
-        }
-
-        Arrays.sort(downloadUrls, ((o1, o2) -> {
-            boolean firstMatch = o1 != null && Helpers.equals(preferredHost, o1.getHost());
-            boolean secondMatch = o2 != null && Helpers.equals(preferredHost, o2.getHost());
-
-            return firstMatch == secondMatch ? 0 : firstMatch ? -1 : 1;
-        }));
+        MirrorStats.instance(mContext).sort(downloadUrls, getPreferredHost());
     }
 
     public void installUpdate() {
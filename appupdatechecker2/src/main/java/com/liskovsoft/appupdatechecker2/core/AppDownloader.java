@@ -26,6 +26,7 @@ public class AppDownloader {
     private final AppDownloaderListener mListener;
     private final int mMinApkSizeBytes;
     private AppDownloadTask mDownloadTask;
+    private String mChecksum;
 
     public AppDownloader(Context context, AppDownloaderListener listener, int minApkSizeBytes) {
         mContext = context;
@@ -37,7 +38,17 @@ public class AppDownloader {
      * Uses first available url in the list.
      */
     public void download(Uri[] downloadUris) {
+        download(downloadUris, null);
+    }
+
+    /**
+     * Uses first available url in the list.<br/>
+     * Downloaded file is verified against the checksum (if not null).
+     */
+    public void download(Uri[] downloadUris, String checksum) {
         if (!mInProgress) {
+            mChecksum = checksum;
+
             if (mDownloadTask == null) {
                 mDownloadTask = new AppDownloadTask();
                 mDownloadTask.execute(downloadUris);
@@ -93,6 +104,7 @@ public class AppDownloader {
                 DownloadManager manager = new DownloadManager(mContext);
                 MyRequest request = new MyRequest(Uri.parse(uri));
                 request.setDestinationUri(Uri.fromFile(outputFile));
+                request.setChecksum(mChecksum);
                 try {
                     long id = manager.enqueue(request);
                     int size = manager.getSizeForDownloadedFile(id);
@@ -6,25 +6,29 @@ import android.content.pm.PackageManager.NameNotFoundException;
 import android.net.Uri;
 import android.os.AsyncTask;
 
+import com.liskovsoft.appupdatechecker2.other.MirrorStats;
+import com.liskovsoft.appupdatechecker2.other.SettingsManager;
 import com.liskovsoft.appupdatechecker2.other.downloadmanager.DownloadManager;
 import com.liskovsoft.appupdatechecker2.other.downloadmanager.DownloadManager.MyRequest;
 import com.liskovsoft.sharedutils.helpers.DeviceHelpers;
+import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.locale.LocaleUtility;
 import com.liskovsoft.sharedutils.mylogger.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TreeMap;
-
-import com.liskovsoft.appupdatechecker2.utils.StreamUtils;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A fairly simple non-Market app update checker. Give it a URL pointing to a JSON file
@@ -39,7 +43,8 @@ import com.liskovsoft.appupdatechecker2.utils.StreamUtils;
  * <pre>
  * {
  * "package": {
- * "downloadUrl": "http://locast.mit.edu/connects/lcc.apk"
+ * "downloadUrl": "http://locast.mit.edu/connects/lcc.apk",
+ * "checksum": "sha-256 of the apk (optional)"
  * },
  *
  * "1.4.3": {
@@ -58,9 +63,12 @@ import com.liskovsoft.appupdatechecker2.utils.StreamUtils;
  */
 public class AppVersionChecker {
     private final static String TAG = AppVersionChecker.class.getSimpleName();
+    private static final long HEDGE_DELAY_MS = 1_000; // start next mirror if previous one is slow
     private int mCurrentAppVersion;
-    private JSONObject mVersionInfo;
+    private Uri mDownloadUrl;
+    private String mApkChecksum;
     private final Context mContext;
+    private final SettingsManager mSettingsManager;
     private boolean mInProgress;
     private final AppVersionCheckerListener mListener;
 
@@ -68,6 +76,7 @@ public class AppVersionChecker {
     public AppVersionChecker(Context context, AppVersionCheckerListener listener) {
         mContext = context;
         mListener = listener;
+        mSettingsManager = new SettingsManager(context);
 
         try {
             mCurrentAppVersion = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionCode;
@@ -81,7 +90,7 @@ public class AppVersionChecker {
     /**
      * Checks for updates regardless of when the last check happened or if checking for updates is enabled.<br/>
      * URL pointing to a JSON file with the update list <br/>
-     * @param versionListUrls url array, tests url by access, first worked is used
+     * @param versionListUrls url array, mirrors are raced with a small delay, first valid json is used
      */
     public void checkForUpdates(Uri[] versionListUrls) {
         Log.d(TAG, "Checking for updates...");
@@ -105,51 +114,20 @@ public class AppVersionChecker {
         }
     }
 
-    // why oh why is the JSON API so poorly integrated into java?
-    @SuppressWarnings("unchecked")
-    private void triggerFromJson(JSONObject jo) throws JSONException {
-
-        final ArrayList<String> changelog = new ArrayList<String>();
-
-        // keep a sorted map of versionCode to the version information objects.
-        // Most recent is at the top.
-        final TreeMap<Integer, JSONObject> versionMap = new TreeMap<Integer, JSONObject>(new Comparator<Integer>() {
-            public int compare(Integer object1, Integer object2) {
-                return object2.compareTo(object1);
-            }
-        });
-
-        for (final Iterator<String> i = jo.keys(); i.hasNext(); ) {
-            final String versionName = i.next();
-            if (versionName.equals("package")) {
-                mVersionInfo = jo.getJSONObject(versionName);
-                continue;
-            }
-            final JSONObject versionInfo = jo.getJSONObject(versionName);
-            versionInfo.put("versionName", versionName);
+    private void triggerFromSummary(ManifestSummary summary) {
+        final int latestVersionNumber = summary.getLatestVersionNumber();
+        final String latestVersionName = summary.getLatestVersionName();
+        final Uri[] downloadUrls = new Uri[summary.getDownloadUrls().size()];
 
-            final int versionCode = versionInfo.getInt("versionCode");
-            versionMap.put(versionCode, versionInfo);
+        for (int i = 0; i < downloadUrls.length; i++) {
+            downloadUrls[i] = Uri.parse(summary.getDownloadUrls().get(i));
         }
-        final int latestVersionNumber = versionMap.firstKey();
-        final String latestVersionName = versionMap.get(latestVersionNumber).getString("versionName");
 
-        final Uri[] downloadUrls;
+        mDownloadUrl = downloadUrls.length > 0 ? downloadUrls[0] : null;
 
-        if (mVersionInfo.has("downloadUrlList_" + DeviceHelpers.getPrimaryAbi())) {
-            JSONArray urls = mVersionInfo.getJSONArray("downloadUrlList_" + DeviceHelpers.getPrimaryAbi());
-            downloadUrls = parse(urls);
-        } else if (mVersionInfo.has("downloadUrlList")) {
-            JSONArray urls = mVersionInfo.getJSONArray("downloadUrlList");
-            downloadUrls = parse(urls);
-        } else {
-            String url = mVersionInfo.getString("downloadUrl");
-            downloadUrls = new Uri[]{Uri.parse(url)};
-        }
+        mListener.processDownloadUrls(downloadUrls);
 
-        if (downloadUrls != null) {
-            mListener.processDownloadUrls(downloadUrls);
-        }
+        mApkChecksum = summary.getChecksum();
 
         if (mCurrentAppVersion > latestVersionNumber) {
             Log.d(TAG, "We're newer than the latest published version (" + latestVersionName + "). Living in the future...");
@@ -163,41 +141,8 @@ public class AppVersionChecker {
             return;
         }
 
-        // construct the changelog. Newest entries are at the top.
-        for (final Entry<Integer, JSONObject> version : versionMap.headMap(mCurrentAppVersion).entrySet()) {
-            final JSONObject versionInfo = version.getValue();
-
-            JSONArray versionChangelog = versionInfo.optJSONArray("changelog_" + LocaleUtility.getCurrentLanguage(mContext));
-
-            if (versionChangelog == null) {
-                versionChangelog = versionInfo.optJSONArray("changelog");
-            }
-
-            if (versionChangelog != null) {
-                final int len = versionChangelog.length();
-                for (int i = 0; i < len; i++) {
-                    changelog.add(versionChangelog.getString(i));
-                }
-            }
-        }
-
-        mListener.onChangelogReceived(false, latestVersionName, latestVersionNumber, changelog, downloadUrls);
-    }
-
-    private Uri[] parse(JSONArray urls) {
-        List<Uri> res = new ArrayList<>();
-        for (int i = 0; i < urls.length(); i++) {
-            String url = null;
-            try {
-                url = urls.getString(i);
-            } catch (JSONException e) {
-                e.printStackTrace();
-            }
-
-            if (url != null)
-                res.add(Uri.parse(url));
-        }
-        return res.toArray(new Uri[] {});
+        // Newest entries are at the top.
+        mListener.onChangelogReceived(false, latestVersionName, latestVersionNumber, summary.getChangelog(mCurrentAppVersion), downloadUrls);
     }
 
     private class VersionCheckException extends Exception {
@@ -212,18 +157,33 @@ public class AppVersionChecker {
      * Send off an intent to start the download of the app.
      */
     public void startUpgrade() {
-        try {
-            final Uri downloadUri = Uri.parse(mVersionInfo.getString("downloadUrl"));
-            mContext.startActivity(new Intent(Intent.ACTION_VIEW, downloadUri));
-        } catch (final JSONException e) {
-            e.printStackTrace();
+        if (mDownloadUrl != null) {
+            mContext.startActivity(new Intent(Intent.ACTION_VIEW, mDownloadUrl));
         }
     }
 
     private GetVersionJsonTask mJsonUpdateTask;
 
-    private class GetVersionJsonTask extends AsyncTask<Uri[], Integer, JSONObject> {
-        private Exception mLastException;
+    /**
+     * Single mirror request of the hedged fetch
+     */
+    private static class Attempt {
+        final Uri url;
+        final DownloadManager manager;
+        final long startTimeMs = System.currentTimeMillis();
+        Future<ManifestSummary> future;
+        boolean done;
+
+        Attempt(Uri url, DownloadManager manager) {
+            this.url = url;
+            this.manager = manager;
+        }
+    }
+
+    private class GetVersionJsonTask extends AsyncTask<Uri[], Integer, ManifestSummary> {
+        private volatile Exception mLastException;
+        private ManifestSummary mCachedSummary;
+        private Map<String, String> mValidators;
 
         @Override
         protected void onProgressUpdate(Integer... values) {
@@ -232,55 +192,183 @@ public class AppVersionChecker {
         }
 
         @Override
-        protected JSONObject doInBackground(Uri[]... params) {
+        protected ManifestSummary doInBackground(Uri[]... params) {
             mInProgress = true;
             publishProgress(0);
 
             final Uri[] urls = params[0];
-            JSONObject jo = null;
+
+            restoreCache();
 
             publishProgress(50);
 
-            for (Uri url : urls) {
-                jo = getJSON(url);
-                if (jo != null)
-                    break;
+            ManifestSummary summary = getJSONHedged(urls);
+
+            publishProgress(100);
+
+            return summary;
+        }
+
+        /**
+         * Summary is valid only if the manifest has been parsed for the same language and abi
+         */
+        private void restoreCache() {
+            ManifestSummary summary = ManifestSummary.fromString(mSettingsManager.getManifestSummary());
+
+            if (summary != null && summary.isCompatible(LocaleUtility.getCurrentLanguage(mContext), DeviceHelpers.getPrimaryAbi())) {
+                mCachedSummary = summary;
+                mValidators = Helpers.parseMap(mSettingsManager.getManifestValidators(), Helpers::parseStr, Helpers::parseStr);
+            } else {
+                mCachedSummary = null;
+                mValidators = new HashMap<>();
+            }
+        }
+
+        private synchronized void saveCache(Uri url, ManifestSummary summary, String etag, String lastModified) {
+            mValidators.put(url.toString(), Helpers.mergeObj(etag, lastModified));
+            mSettingsManager.setManifestValidators(Helpers.mergeMap(mValidators));
+            mSettingsManager.setManifestSummary(summary.toString());
+        }
+
+        /**
+         * Races the mirrors: next mirror starts after a small delay or right after a failure.<br/>
+         * First valid json wins, the rest are cancelled.
+         */
+        private ManifestSummary getJSONHedged(Uri[] urls) {
+            ExecutorService executor = Executors.newCachedThreadPool();
+            CompletionService<ManifestSummary> completionService = new ExecutorCompletionService<>(executor);
+            List<Attempt> attempts = new ArrayList<>();
+            MirrorStats stats = MirrorStats.instance(mContext);
+            ManifestSummary result = null;
+
+            try {
+                while (result == null) {
+                    boolean hasMore = attempts.size() < urls.length;
+                    boolean hasRunning = false;
+
+                    for (Attempt attempt : attempts) {
+                        hasRunning |= !attempt.done;
+                    }
+
+                    if (!hasRunning) {
+                        if (!hasMore) {
+                            break;
+                        }
+
+                        startAttempt(urls[attempts.size()], completionService, attempts);
+                        continue;
+                    }
+
+                    Future<ManifestSummary> future = hasMore ?
+                            completionService.poll(HEDGE_DELAY_MS, TimeUnit.MILLISECONDS) : completionService.take();
+
+                    if (future == null) { // still waiting, hedge with the next mirror
+                        startAttempt(urls[attempts.size()], completionService, attempts);
+                        continue;
+                    }
+
+                    Attempt attempt = findAttempt(attempts, future);
+                    attempt.done = true;
+                    result = future.get();
+
+                    if (result != null) {
+                        stats.onSuccess(attempt.url, System.currentTimeMillis() - attempt.startTimeMs);
+                    } else {
+                        stats.onFailure(attempt.url);
+
+                        if (attempts.size() < urls.length) { // don't wait, the mirror is dead
+                            startAttempt(urls[attempts.size()], completionService, attempts);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                mLastException = e;
+            } finally {
+                for (Attempt attempt : attempts) {
+                    if (!attempt.done) {
+                        stats.onSlow(attempt.url, System.currentTimeMillis() - attempt.startTimeMs);
+                        attempt.manager.remove(0); // NOTE: id is ignored, cancels own calls
+                        attempt.future.cancel(true);
+                    }
+                }
+
+                executor.shutdownNow();
+            }
+
+            return result;
+        }
+
+        private void startAttempt(Uri url, CompletionService<ManifestSummary> completionService, List<Attempt> attempts) {
+            Log.d(TAG, "Fetching update manifest from %s...", url);
+
+            Attempt attempt = new Attempt(url, new DownloadManager(mContext));
+            attempt.future = completionService.submit(() -> getJSON(attempt.manager, url));
+            attempts.add(attempt);
+        }
+
+        private Attempt findAttempt(List<Attempt> attempts, Future<ManifestSummary> future) {
+            for (Attempt attempt : attempts) {
+                if (attempt.future == future) {
+                    return attempt;
+                }
             }
 
-            return jo;
+            throw new IllegalStateException("Unknown future");
         }
 
-        private JSONObject getJSON(Uri urlStr) {
-            JSONObject jo = null;
+        /**
+         * Conditional request: unchanged manifest costs one small response and no parsing
+         */
+        private ManifestSummary getJSON(DownloadManager manager, Uri urlStr) {
+            ManifestSummary summary = null;
             try {
-                DownloadManager manager = new DownloadManager(mContext);
                 MyRequest request = new MyRequest(urlStr);
+                String[] validators = getValidators(urlStr);
+                String etag = Helpers.parseStr(validators, 0);
+                String lastModified = Helpers.parseStr(validators, 1);
+
+                if (etag != null) {
+                    request.addHeader("If-None-Match", etag);
+                }
+
+                if (lastModified != null) {
+                    request.addHeader("If-Modified-Since", lastModified);
+                }
+
                 long reqId = manager.enqueue(request);
 
                 InputStream content = manager.getStreamForDownloadedFile(reqId);
-                jo = new JSONObject(StreamUtils.inputStreamToString(content));
+
+                if (manager.getResponseCode(reqId) == HttpURLConnection.HTTP_NOT_MODIFIED && mCachedSummary != null) {
+                    Log.d(TAG, "Manifest isn't modified: %s", urlStr);
+                    content.close();
+                    return mCachedSummary;
+                }
+
+                summary = ManifestSummary.parse(new InputStreamReader(content, "UTF-8"), mCurrentAppVersion,
+                        LocaleUtility.getCurrentLanguage(mContext), DeviceHelpers.getPrimaryAbi());
+
+                saveCache(urlStr, summary, manager.getResponseHeader(reqId, "ETag"), manager.getResponseHeader(reqId, "Last-Modified"));
             } catch (final Exception ex) {
-                // IllegalStateException | IllegalArgumentException | JSONException | SocketTimeoutException |
+                // IllegalStateException | IllegalArgumentException | IOException (malformed manifest) | SocketTimeoutException |
                 // SocketException | StreamResetException | SSLException | ProtocolException
                 Log.e(TAG, ex.getMessage(), ex);
                 mLastException = ex;
-            } finally {
-                publishProgress(100);
             }
 
-            return jo;
+            return summary;
+        }
+
+        private synchronized String[] getValidators(Uri url) {
+            return mCachedSummary != null ? Helpers.splitObj(mValidators.get(url.toString())) : null;
         }
 
         @Override
-        protected void onPostExecute(JSONObject result) {
+        protected void onPostExecute(ManifestSummary result) {
             if (result != null) {
-                try {
-                    triggerFromJson(result);
-                } catch (final JSONException e) {
-                    String msg = "Error in JSON version file.";
-                    Log.e(TAG, msg, e);
-                    mListener.onCheckError(new IllegalStateException(msg));
-                }
+                triggerFromSummary(result);
             } else {
                 mListener.onCheckError(mLastException != null ? mLastException : new Exception("Unknown error. JSON content is null"));
             }
@@ -293,4 +381,11 @@ public class AppVersionChecker {
     public boolean isInProgress() {
         return mInProgress;
     }
+
+    /**
+     * Hex md5, sha-1 or sha-256 of the latest apk or null if the manifest doesn't have one
+     */
+    public String getApkChecksum() {
+        return mApkChecksum;
+    }
 }
@@ -0,0 +1,281 @@
+package com.liskovsoft.appupdatechecker2.core;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import androidx.annotation.Nullable;
+import com.liskovsoft.sharedutils.helpers.Helpers;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the checker needs from the update manifest: the latest version, download urls
+ * and changelog of the versions newer than the installed one.<br/>
+ * Parsed with a pull parser (no json tree), persisted between checks.
+ */
+final class ManifestSummary {
+    private static final String FIELD_PACKAGE = "package";
+    private static final String FIELD_VERSION_CODE = "versionCode";
+    private static final String FIELD_CHANGELOG = "changelog";
+    private static final String FIELD_DOWNLOAD_URL = "downloadUrl";
+    private static final String FIELD_DOWNLOAD_URL_LIST = "downloadUrlList";
+    private static final String FIELD_CHECKSUM = "checksum";
+    private String mLatestVersionName;
+    private int mLatestVersionNumber;
+    private List<String> mDownloadUrls = new ArrayList<>();
+    private String mChecksum;
+    private final List<ChangelogEntry> mChangelog = new ArrayList<>();
+    private String mLanguage;
+    private String mAbi;
+
+    private static class ChangelogEntry {
+        final int versionCode;
+        final List<String> lines;
+
+        ChangelogEntry(int versionCode, List<String> lines) {
+            this.versionCode = versionCode;
+            this.lines = lines;
+        }
+    }
+
+    private ManifestSummary() {
+    }
+
+    /**
+     * Keeps changelog only for versions newer than the current one
+     */
+    public static ManifestSummary parse(Reader in, int currentVersion, String language, String abi) throws IOException {
+        ManifestSummary result = new ManifestSummary();
+        result.mLanguage = language;
+        result.mAbi = abi;
+
+        try (JsonReader reader = new JsonReader(in)) {
+            reader.beginObject();
+
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+
+                if (FIELD_PACKAGE.equals(name)) {
+                    result.readPackage(reader);
+                } else if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                    result.readVersion(reader, name, currentVersion);
+                } else {
+                    reader.skipValue();
+                }
+            }
+
+            reader.endObject();
+        }
+
+        if (result.mLatestVersionName == null || result.mDownloadUrls.isEmpty()) {
+            throw new IOException("Manifest doesn't contain versions or download urls");
+        }
+
+        // Newest entries are at the top
+        Collections.sort(result.mChangelog, (o1, o2) -> Integer.compare(o2.versionCode, o1.versionCode));
+
+        return result;
+    }
+
+    private void readPackage(JsonReader reader) throws IOException {
+        String downloadUrl = null;
+        List<String> downloadUrls = null;
+        List<String> abiDownloadUrls = null;
+        String checksum = null;
+        String abiChecksum = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+
+            if (FIELD_DOWNLOAD_URL.equals(name)) {
+                downloadUrl = readString(reader);
+            } else if (FIELD_DOWNLOAD_URL_LIST.equals(name)) {
+                downloadUrls = readStrings(reader);
+            } else if ((FIELD_DOWNLOAD_URL_LIST + "_" + mAbi).equals(name)) {
+                abiDownloadUrls = readStrings(reader);
+            } else if (FIELD_CHECKSUM.equals(name)) {
+                checksum = readString(reader);
+            } else if ((FIELD_CHECKSUM + "_" + mAbi).equals(name)) {
+                abiChecksum = readString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        if (abiDownloadUrls != null) {
+            mDownloadUrls = abiDownloadUrls;
+        } else if (downloadUrls != null) {
+            mDownloadUrls = downloadUrls;
+        } else if (downloadUrl != null) {
+            mDownloadUrls = Collections.singletonList(downloadUrl);
+        }
+
+        mChecksum = abiChecksum != null ? abiChecksum : checksum;
+    }
+
+    private void readVersion(JsonReader reader, String versionName, int currentVersion) throws IOException {
+        int versionCode = -1;
+        List<String> changelog = null;
+        List<String> localizedChangelog = null;
+
+        reader.beginObject();
+
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+
+            if (FIELD_VERSION_CODE.equals(name)) {
+                versionCode = reader.nextInt();
+            } else if (FIELD_CHANGELOG.equals(name)) {
+                changelog = readStrings(reader);
+            } else if ((FIELD_CHANGELOG + "_" + mLanguage).equals(name)) {
+                localizedChangelog = readStrings(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        reader.endObject();
+
+        if (versionCode == -1) {
+            return;
+        }
+
+        if (versionCode > mLatestVersionNumber || mLatestVersionName == null) {
+            mLatestVersionNumber = versionCode;
+            mLatestVersionName = versionName;
+        }
+
+        if (versionCode > currentVersion) {
+            List<String> lines = localizedChangelog != null ? localizedChangelog : changelog;
+            mChangelog.add(new ChangelogEntry(versionCode, lines != null ? lines : new ArrayList<>()));
+        }
+    }
+
+    private static String readString(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.STRING) {
+            reader.skipValue();
+            return null;
+        }
+
+        return reader.nextString();
+    }
+
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+
+        List<String> result = new ArrayList<>();
+
+        reader.beginArray();
+
+        while (reader.hasNext()) {
+            String value = readString(reader);
+
+            if (value != null) {
+                result.add(value);
+            }
+        }
+
+        reader.endArray();
+
+        return result;
+    }
+
+    public String getLatestVersionName() {
+        return mLatestVersionName;
+    }
+
+    public int getLatestVersionNumber() {
+        return mLatestVersionNumber;
+    }
+
+    public List<String> getDownloadUrls() {
+        return mDownloadUrls;
+    }
+
+    public String getChecksum() {
+        return mChecksum;
+    }
+
+    /**
+     * Newest entries are at the top
+     */
+    public List<String> getChangelog(int currentVersion) {
+        List<String> result = new ArrayList<>();
+
+        for (ChangelogEntry entry : mChangelog) {
+            if (entry.versionCode > currentVersion) {
+                result.addAll(entry.lines);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Summary is built for the specific language and abi
+     */
+    public boolean isCompatible(String language, String abi) {
+        return Helpers.equals(mLanguage, language) && Helpers.equals(mAbi, abi);
+    }
+
+    @Nullable
+    public static ManifestSummary fromString(String spec) {
+        String[] split = Helpers.splitData(spec);
+
+        if (split == null || split.length < 5) {
+            return null;
+        }
+
+        ManifestSummary result = new ManifestSummary();
+        result.mLatestVersionName = Helpers.parseStr(split, 0);
+        result.mLatestVersionNumber = Helpers.parseInt(split, 1);
+        result.mDownloadUrls = Helpers.parseStrList(split, 2);
+        result.mChecksum = Helpers.parseStr(split, 3);
+        result.mLanguage = Helpers.parseStr(split, 5);
+        result.mAbi = Helpers.parseStr(split, 6);
+
+        ChangelogEntry entry = null;
+
+        // Flat list of (versionCode, line) pairs
+        for (String item : Helpers.parseStrList(split, 4)) {
+            String[] pair = Helpers.splitObj(item);
+            int versionCode = Helpers.parseInt(pair, 0);
+
+            if (entry == null || entry.versionCode != versionCode) {
+                entry = new ChangelogEntry(versionCode, new ArrayList<>());
+                result.mChangelog.add(entry);
+            }
+
+            String line = Helpers.parseStr(pair, 1);
+
+            if (line != null) {
+                entry.lines.add(line);
+            }
+        }
+
+        return result.mLatestVersionName != null && !result.mDownloadUrls.isEmpty() ? result : null;
+    }
+
+    @Override
+    public String toString() {
+        List<String> changelog = new ArrayList<>();
+
+        for (ChangelogEntry entry : mChangelog) {
+            for (String line : entry.lines) {
+                changelog.add(Helpers.mergeObj(entry.versionCode, line));
+            }
+        }
+
+        return Helpers.mergeData(mLatestVersionName, mLatestVersionNumber, mDownloadUrls, mChecksum, changelog, mLanguage, mAbi);
+    }
+}
@@ -0,0 +1,165 @@
+package com.liskovsoft.appupdatechecker2.other;
+
+import android.content.Context;
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.liskovsoft.sharedutils.helpers.Helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers latency and failure rate of every mirror (by host).<br/>
+ * Used to try the fastest and the most reliable mirror first.
+ */
+public class MirrorStats {
+    private static final float ALPHA = 0.3f; // weight of the newest sample
+    private static final long FAILURE_PENALTY_MS = 20_000; // roughly the time wasted on a dead mirror
+    private static final long UNKNOWN_LATENCY_MS = 3_000;
+    private static final int MAX_HOSTS = 20;
+    private static MirrorStats sInstance;
+    private final SettingsManager mSettingsManager;
+    private final Map<String, Stat> mStats = new HashMap<>();
+
+    private static class Stat {
+        float latencyMs;
+        float failureRate;
+
+        Stat(float latencyMs, float failureRate) {
+            this.latencyMs = latencyMs;
+            this.failureRate = failureRate;
+        }
+
+        long getScore() {
+            return (long) (latencyMs + failureRate * FAILURE_PENALTY_MS);
+        }
+    }
+
+    private MirrorStats(Context context) {
+        mSettingsManager = new SettingsManager(context);
+        restore();
+    }
+
+    public static MirrorStats instance(Context context) {
+        if (sInstance == null) {
+            sInstance = new MirrorStats(context.getApplicationContext());
+        }
+
+        return sInstance;
+    }
+
+    public synchronized void onSuccess(Uri uri, long latencyMs) {
+        Stat stat = getOrCreate(uri, latencyMs);
+
+        if (stat == null) {
+            return;
+        }
+
+        stat.latencyMs += ALPHA * (latencyMs - stat.latencyMs);
+        stat.failureRate += ALPHA * (0 - stat.failureRate);
+        persist();
+    }
+
+    public synchronized void onFailure(Uri uri) {
+        Stat stat = getOrCreate(uri, UNKNOWN_LATENCY_MS);
+
+        if (stat == null) {
+            return;
+        }
+
+        stat.failureRate += ALPHA * (1 - stat.failureRate);
+        persist();
+    }
+
+    /**
+     * Mirror didn't respond before another one won the race.<br/>
+     * Elapsed time is the lower bound of its latency.
+     */
+    public synchronized void onSlow(Uri uri, long elapsedMs) {
+        Stat stat = getOrCreate(uri, elapsedMs);
+
+        if (stat == null || elapsedMs <= stat.latencyMs) {
+            return;
+        }
+
+        stat.latencyMs += ALPHA * (elapsedMs - stat.latencyMs);
+        persist();
+    }
+
+    /**
+     * Best mirrors first. Mirrors without stats keep their order (preferred host goes first).
+     */
+    public synchronized void sort(Uri[] uris, @Nullable String preferredHost) {
+        // NOTE: stable sort
+        Arrays.sort(uris, (o1, o2) -> {
+            int result = Long.compare(getScore(o1), getScore(o2));
+
+            if (result == 0 && preferredHost != null) {
+                boolean firstMatch = o1 != null && Helpers.equals(preferredHost, o1.getHost());
+                boolean secondMatch = o2 != null && Helpers.equals(preferredHost, o2.getHost());
+
+                result = firstMatch == secondMatch ? 0 : firstMatch ? -1 : 1;
+            }
+
+            return result;
+        });
+    }
+
+    private long getScore(Uri uri) {
+        Stat stat = uri != null ? mStats.get(uri.getHost()) : null;
+
+        return stat != null ? stat.getScore() : UNKNOWN_LATENCY_MS;
+    }
+
+    private Stat getOrCreate(Uri uri, long initialLatencyMs) {
+        String host = uri != null ? uri.getHost() : null;
+
+        if (host == null) {
+            return null;
+        }
+
+        Stat stat = mStats.get(host);
+
+        if (stat == null) {
+            if (mStats.size() >= MAX_HOSTS) {
+                mStats.clear(); // mirror list has changed completely
+            }
+
+            stat = new Stat(initialLatencyMs, 0);
+            mStats.put(host, stat);
+        }
+
+        return stat;
+    }
+
+    private void restore() {
+        String data = mSettingsManager.getMirrorStats();
+        String[] items = Helpers.splitArray(data);
+
+        if (items == null) {
+            return;
+        }
+
+        for (String item : items) {
+            String[] split = Helpers.splitObj(item);
+            String host = Helpers.parseStr(split, 0);
+
+            if (host != null) {
+                mStats.put(host, new Stat(Helpers.parseFloat(split, 1), Helpers.parseFloat(split, 2)));
+            }
+        }
+    }
+
+    private void persist() {
+        List<String> items = new ArrayList<>();
+
+        for (Map.Entry<String, Stat> entry : mStats.entrySet()) {
+            items.add(Helpers.mergeObj(entry.getKey(), entry.getValue().latencyMs, entry.getValue().failureRate));
+        }
+
+        mSettingsManager.setMirrorStats(Helpers.mergeList(items));
+    }
+}
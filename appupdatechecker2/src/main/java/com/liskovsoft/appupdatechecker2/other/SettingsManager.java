@@ -14,6 +14,9 @@ public class SettingsManager {
     private static final String PREF_LATEST_VERSION_NAME = "latest_version_name";
     private static final String PREF_LATEST_VERSION_NUMBER = "latest_version_number";
     private static final String PREF_MAIN_HOST = "main_host";
+    private static final String PREF_MIRROR_STATS = "mirror_stats";
+    private static final String PREF_MANIFEST_VALIDATORS = "manifest_validators";
+    private static final String PREF_MANIFEST_SUMMARY = "manifest_summary";
     private final Context mContext;
     private final SharedPreferences mPrefs;
 
@@ -77,4 +80,34 @@ public class SettingsManager {
     public String getPreferredHost() {
         return mPrefs.getString(PREF_MAIN_HOST, null);
     }
+
+    public void setMirrorStats(String stats) {
+        mPrefs.edit().putString(PREF_MIRROR_STATS, stats).apply();
+    }
+
+    public String getMirrorStats() {
+        return mPrefs.getString(PREF_MIRROR_STATS, null);
+    }
+
+    /**
+     * ETag and Last-Modified of every manifest url
+     */
+    public void setManifestValidators(String validators) {
+        mPrefs.edit().putString(PREF_MANIFEST_VALIDATORS, validators).apply();
+    }
+
+    public String getManifestValidators() {
+        return mPrefs.getString(PREF_MANIFEST_VALIDATORS, null);
+    }
+
+    /**
+     * Result of the last manifest parsing (used when the manifest isn't modified)
+     */
+    public void setManifestSummary(String summary) {
+        mPrefs.edit().putString(PREF_MANIFEST_SUMMARY, summary).apply();
+    }
+
+    public String getManifestSummary() {
+        return mPrefs.getString(PREF_MANIFEST_SUMMARY, null);
+    }
 }
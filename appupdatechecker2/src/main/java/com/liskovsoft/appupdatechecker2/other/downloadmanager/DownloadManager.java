@@ -7,11 +7,14 @@ import android.net.Uri;
 import com.liskovsoft.sharedutils.helpers.FileHelpers;
 import com.liskovsoft.sharedutils.helpers.MessageHelpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.okhttp.OkHttpClientRegistry;
 import com.liskovsoft.sharedutils.okhttp.OkHttpManager;
+import com.liskovsoft.sharedutils.okhttp.RangeDownloader;
+import okhttp3.Call;
+import okhttp3.Headers;
 import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
-import okhttp3.OkHttpClient.Builder;
 import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
@@ -21,10 +24,8 @@ import okio.ForwardingSource;
 import okio.Okio;
 import okio.Source;
 
-import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.SocketTimeoutException;
@@ -52,20 +53,37 @@ public final class DownloadManager {
     private static final String TAG = DownloadManager.class.getSimpleName();
     private static final int NUM_TRIES = 10;
     private final Context mContext;
-    private final OkHttpClient mClient;
     private MyRequest mRequest;
     private long mRequestId;
     private InputStream mResponseStream;
+    private BufferedSource mResponseSource;
     private int mTotalLen = 0;
+    private int mResponseCode;
+    private Headers mResponseHeaders;
     private Uri mFileUri;
-    private static final long MAX_DOWN_TIME_MS = 60 * 1_000; // 1 minute
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/91.0.4472.114 Safari/537.36";
     private static final String ACCEPT_CONTENT = "*/*";
+    /**
+     * Progress listener is passed through the request tag
+     */
+    private static final Interceptor PROGRESS_INTERCEPTOR = new Interceptor() {
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Response originalResponse = chain.proceed(chain.request());
+            ProgressListener progressListener = chain.request().tag(ProgressListener.class);
+
+            if (progressListener == null) {
+                return originalResponse;
+            }
+
+            return originalResponse.newBuilder().body(new ProgressResponseBody(originalResponse.body(), progressListener)).build();
+        }
+    };
     private final Map<String, String> mHeaders = new HashMap<>();
+    private RangeDownloader mRangeDownloader;
 
     public DownloadManager(Context context) {
         mContext = context;
-        mClient = createOkHttpClient();
         mHeaders.put("User-Agent", USER_AGENT);
         mHeaders.put("Accept", ACCEPT_CONTENT);
     }
@@ -79,18 +97,55 @@ public final class DownloadManager {
 
         Log.d(TAG, "Starting download %s...", url);
 
-        Response response = OkHttpManager.instance().doRequest(url, mClient, mHeaders);
+        Map<String, String> headers = new HashMap<>(mHeaders);
+        headers.putAll(mRequest.mHeaders);
+
+        if (mRequest.mDestinationUri != null) {
+            downloadToFile(new Request.Builder()
+                    .url(url)
+                    .headers(Headers.of(headers))
+                    .tag(DownloadManager.class, this)
+                    .build());
+            return;
+        }
+
+        Request request = new Request.Builder()
+                .url(url)
+                .headers(Headers.of(headers))
+                .tag(DownloadManager.class, this)
+                .tag(ProgressListener.class, mRequest.mProgressListener)
+                .build();
+
+        Response response = OkHttpManager.instance().doRequest(getClient(), request);
 
         if (response == null || response.body() == null) {
             throw new IllegalStateException("Error: bad response");
         }
 
-        mResponseStream = new BufferedInputStream(response.body().byteStream());
+        mResponseCode = response.code();
+        mResponseHeaders = response.headers();
 
-        if (mRequest.mDestinationUri != null) {
-            // NOTE: actual downloading is happen when reading the stream to file
-            mFileUri = streamToFile(mResponseStream, getDestination());
+        // NOTE: okio source is already buffered
+        mResponseSource = response.body().source();
+        mResponseStream = mResponseSource.inputStream();
+    }
+
+    /**
+     * Segmented download with resume support. Progress is reported by the downloader itself (not per segment).
+     */
+    private void downloadToFile(Request request) {
+        File destination = new File(mRequest.mDestinationUri.getPath());
+        ProgressListener listener = mRequest.mProgressListener;
+        mRangeDownloader = new RangeDownloader(getClient());
+
+        try {
+            mRangeDownloader.download(request, destination, mRequest.mChecksum, listener != null ? listener::update : null);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
         }
+
+        mFileUri = Uri.fromFile(destination);
+        mTotalLen = (int) destination.length();
     }
 
     //private void doDownload() {
@@ -127,7 +182,7 @@ public final class DownloadManager {
 
         for (int tries = NUM_TRIES; tries > 0; tries--) {
             try {
-                Response response = mClient.newCall(request).execute();
+                Response response = getClient().newCall(request).execute();
                 if (!response.isSuccessful()) throw new IllegalStateException("Unexpected code " + response);
 
                 // NOTE: actual downloading is going here (while reading a stream)
@@ -143,60 +198,36 @@ public final class DownloadManager {
 
     }
 
-    private OkHttpClient createOkHttpClient() {
-        Interceptor intercept = new Interceptor() {
-            @Override
-            public Response intercept(Chain chain) throws IOException {
-                Response originalResponse = chain.proceed(chain.request());
-                return originalResponse.newBuilder().body(new ProgressResponseBody(originalResponse.body(), mRequest.mProgressListener)).build();
-            }
-        };
-
+    /**
+     * NOTE: the client is shared between all managers (progress listener is in the request tag).
+     * Not cached here: registry returns the same client until its pool is reset.
+     */
+    private static OkHttpClient getClient() {
         //Builder builder = new OkHttpClient.Builder()
         //        .addNetworkInterceptor(intercept);
         //
         //OkHttpCommons.setupBuilder(builder);
 
-        Builder builder = OkHttpManager.instance().getClient().newBuilder()
-                .addNetworkInterceptor(intercept);
-
-        return builder.build();
+        return OkHttpClientRegistry.instance().getClient(OkHttpClientRegistry.CLIENT_DOWNLOAD,
+                builder -> builder.addNetworkInterceptor(PROGRESS_INTERCEPTOR));
     }
 
-    private Uri streamToFile(InputStream is, Uri destination) {
+    /**
+     * Moves okio segments straight to the file, without intermediate byte arrays
+     */
+    private Uri streamToFile(BufferedSource source, Uri destination) {
         if (destination == null) {
             return null;
         }
 
-        FileOutputStream fos = null;
-
-        try {
-            long downStartTimeMs = System.currentTimeMillis();
-
-            fos = new FileOutputStream(destination.getPath());
+        long totalLen = FileHelpers.streamToFile(source, new File(destination.getPath()));
 
-            byte[] buffer = new byte[1024];
-            int len1;
-            int totalLen = 0;
-            while ((len1 = is.read(buffer)) != -1) {
-                totalLen += len1;
-                fos.write(buffer, 0, len1);
-
-                if (System.currentTimeMillis() - downStartTimeMs > MAX_DOWN_TIME_MS) {
-                    // Oops. Downloading is taken too much time. Cancelling...
-                    totalLen = 0;
-                    break;
-                }
-            }
-
-            mTotalLen = totalLen;
-        } catch (IOException ex) {
-            throw new IllegalStateException(ex);
-        } finally {
-            FileHelpers.closeStream(fos);
-            FileHelpers.closeStream(is);
+        if (totalLen == -1) {
+            throw new IllegalStateException("Unable to save the file: " + destination);
         }
 
+        mTotalLen = (int) totalLen;
+
         return destination;
     }
 
@@ -269,12 +300,21 @@ public final class DownloadManager {
     //}
 
     public void remove(long downloadId) {
-        mClient.dispatcher().cancelAll();
+        if (mRangeDownloader != null) {
+            mRangeDownloader.cancel();
+        }
+
+        // NOTE: dispatcher is shared. Cancel only own calls.
+        for (Call call : getClient().dispatcher().runningCalls()) {
+            if (call.request().tag(DownloadManager.class) == this) {
+                call.cancel();
+            }
+        }
     }
 
     public Uri getUriForDownloadedFile(long requestId) {
         if (mFileUri == null) {
-            mFileUri = streamToFile(mResponseStream, getDestination());
+            mFileUri = streamToFile(mResponseSource, getDestination());
         }
 
         return mFileUri;
@@ -293,6 +333,17 @@ public final class DownloadManager {
         return mResponseStream;
     }
 
+    /**
+     * Http status of the stream request (e.g. 304 for conditional requests)
+     */
+    public int getResponseCode(long requestId) {
+        return mResponseCode;
+    }
+
+    public String getResponseHeader(long requestId, String name) {
+        return mResponseHeaders != null ? mResponseHeaders.get(name) : null;
+    }
+
     private boolean isNetworkAvailable() {
         ConnectivityManager connectivityManager
                 = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
@@ -358,6 +409,8 @@ public final class DownloadManager {
         private final Uri mDownloadUri;
         private Uri mDestinationUri;
         private ProgressListener mProgressListener;
+        private String mChecksum;
+        private final Map<String, String> mHeaders = new HashMap<>();
 
         public MyRequest(Uri uri) {
             mDownloadUri = uri;
@@ -370,5 +423,19 @@ public final class DownloadManager {
         public void setProgressListener(ProgressListener listener) {
             mProgressListener = listener;
         }
+
+        /**
+         * Extra request header (e.g. If-None-Match)
+         */
+        public void addHeader(String name, String value) {
+            mHeaders.put(name, value);
+        }
+
+        /**
+         * Hex md5, sha-1 or sha-256 of the file. Applies only when destination is set.
+         */
+        public void setChecksum(String checksum) {
+            mChecksum = checksum;
+        }
     }
 }
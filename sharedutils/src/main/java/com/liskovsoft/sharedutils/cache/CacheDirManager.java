@@ -0,0 +1,608 @@
+package com.liskovsoft.sharedutils.cache;
+
+import androidx.annotation.NonNull;
+import com.liskovsoft.sharedutils.helpers.DirWalker;
+import com.liskovsoft.sharedutils.helpers.DirWalker.SimpleVisitor;
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import okio.Okio;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the plain files of the cache dir within the byte budget
+ * (DiskLruCache entries are handled by {@link com.liskovsoft.sharedutils.helpers.CacheHelpers}).<br/>
+ * Sizes and access order are kept in memory and in the journal file, so no tree walk is needed on start.
+ * The dir is scanned only when the journal is missing or broken.<br/>
+ * Least recently used files are deleted on the background thread when the budget is exceeded.<br/>
+ * NOTE: files written to the dir directly should be registered with {@link #commit(String)}.<br/>
+ * NOTE: the library's own cache files aren't managed: the downloaded apk must outlive the install,
+ * config indexes are pruned by the app version. Use a sub dir for the managed files.
+ */
+public class CacheDirManager {
+    private static final String TAG = CacheDirManager.class.getSimpleName();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String JOURNAL_FILE = ".journal";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final String MAGIC = "CacheDirManager 1";
+    private static final String CLEAN = "CLEAN";
+    private static final String REMOVE = "REMOVE";
+    private static final String READ = "READ";
+    private static final int MIN_COMPACT_OPS = 2_000;
+    private static final Clock SYSTEM_CLOCK = System::currentTimeMillis;
+    private static final Map<String, CacheDirManager> sInstances = new HashMap<>();
+    private static final AtomicLong sTmpCounter = new AtomicLong();
+    private static ExecutorService sExecutor;
+    private final File mDir;
+    private final File mJournalFile;
+    private final long mMaxBytes;
+    private final Clock mClock;
+    private final Executor mExecutor;
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicBoolean mTrimScheduled = new AtomicBoolean();
+    private boolean mLoaded;
+    private Writer mJournal;
+    private int mJournalOps;
+    private long mSize;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+    private long mEvictedBytes;
+
+    interface Clock {
+        long nowMs();
+    }
+
+    private static final class Entry {
+        final long size;
+        long accessTimeMs;
+
+        Entry(long size, long accessTimeMs) {
+            this.size = size;
+            this.accessTimeMs = accessTimeMs;
+        }
+    }
+
+    CacheDirManager(File dir, long maxBytes, Clock clock, Executor executor) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("Max bytes should be positive: " + maxBytes);
+        }
+
+        mDir = dir;
+        mJournalFile = new File(dir, JOURNAL_FILE);
+        mMaxBytes = maxBytes;
+        mClock = clock;
+        mExecutor = executor;
+    }
+
+    /**
+     * One manager per dir. Budget of the first call is used.
+     */
+    public static CacheDirManager instance(File dir, long maxBytes) {
+        synchronized (sInstances) {
+            String path = dir.getAbsolutePath();
+            CacheDirManager manager = sInstances.get(path);
+
+            if (manager == null) {
+                manager = new CacheDirManager(dir, maxBytes, SYSTEM_CLOCK, getExecutor());
+                sInstances.put(path, manager);
+            }
+
+            return manager;
+        }
+    }
+
+    /**
+     * Drops the index of the managers inside the dir after its content was deleted (see {@link FileHelpers#deleteCache}).
+     */
+    public static void invalidate(File dir) {
+        if (dir == null) {
+            return;
+        }
+
+        String path = dir.getAbsolutePath();
+        List<CacheDirManager> managers = new ArrayList<>();
+
+        synchronized (sInstances) {
+            for (Map.Entry<String, CacheDirManager> entry : sInstances.entrySet()) {
+                if (entry.getKey().equals(path) || entry.getKey().startsWith(path + File.separator)) {
+                    managers.add(entry.getValue());
+                }
+            }
+        }
+
+        for (CacheDirManager manager : managers) {
+            manager.reset();
+        }
+    }
+
+    public File getDir() {
+        return mDir;
+    }
+
+    /**
+     * Location of the entry. Doesn't change the index.
+     */
+    public File getFile(String name) {
+        checkName(name);
+        return new File(mDir, name);
+    }
+
+    /**
+     * Existing file of the entry or null. Marks the entry as recently used.
+     */
+    public synchronized File get(String name) {
+        ensureLoaded();
+
+        Entry entry = mEntries.get(name);
+        File file = getFile(name);
+
+        if (entry == null || !file.isFile()) {
+            if (entry != null) { // deleted by someone else
+                removeEntry(name, entry);
+            }
+
+            mMissCount++;
+            return null;
+        }
+
+        mHitCount++;
+        entry.accessTimeMs = mClock.nowMs();
+        writeJournal(READ + ' ' + entry.accessTimeMs + ' ' + name, false);
+
+        return file;
+    }
+
+    public InputStream getStream(String name) {
+        File file = get(name);
+
+        try {
+            return file != null ? new FileInputStream(file) : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Copies the data into the cache. The source stream is consumed and closed.<br/>
+     * Readers never see partially written file. Nothing is saved if the source fails while reading.
+     */
+    public boolean put(String name, InputStream data) {
+        File file = getFile(name);
+        File tmpFile = new File(file.getPath() + '.' + sTmpCounter.incrementAndGet() + TMP_SUFFIX); // concurrent puts of the same name
+
+        long written = data != null ? FileHelpers.streamToFile(Okio.buffer(Okio.source(data)), tmpFile) : -1;
+
+        synchronized (this) {
+            if (written == -1 || !tmpFile.renameTo(file)) {
+                Log.e(TAG, "Can't save %s", file);
+                tmpFile.delete();
+                return false;
+            }
+
+            commit(name);
+        }
+
+        return true;
+    }
+
+    /**
+     * Registers the file written to {@link #getFile(String)} (or its new size).
+     */
+    public synchronized void commit(String name) {
+        ensureLoaded();
+
+        File file = getFile(name);
+        Entry previous = mEntries.get(name);
+
+        if (!file.isFile()) {
+            if (previous != null) {
+                removeEntry(name, previous);
+            }
+
+            return;
+        }
+
+        Entry entry = new Entry(file.length(), mClock.nowMs());
+        mEntries.put(name, entry);
+        mSize += entry.size - (previous != null ? previous.size : 0);
+        writeJournal(CLEAN + ' ' + entry.size + ' ' + entry.accessTimeMs + ' ' + name, true);
+
+        if (mSize > mMaxBytes) {
+            scheduleTrim();
+        }
+    }
+
+    public synchronized boolean remove(String name) {
+        ensureLoaded();
+
+        Entry entry = mEntries.get(name);
+
+        if (entry != null) {
+            removeEntry(name, entry);
+        }
+
+        File file = getFile(name);
+        return !file.exists() || file.delete();
+    }
+
+    /**
+     * Deletes all the entries. Untracked files are kept.
+     */
+    public synchronized void clear() {
+        ensureLoaded();
+
+        for (String name : new ArrayList<>(mEntries.keySet())) {
+            getFile(name).delete();
+        }
+
+        mEntries.clear();
+        mSize = 0;
+        rebuildJournal();
+    }
+
+    /**
+     * Rebuilds the index from the files of the dir (e.g. after the dir was changed by someone else).
+     */
+    public synchronized void rescan() {
+        mEntries.clear();
+        mSize = 0;
+
+        List<File> files = new ArrayList<>();
+        String dirPath = mDir.getAbsolutePath();
+        boolean isStartup = !mLoaded;
+
+        DirWalker.walk(mDir, new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                if (file.getName().endsWith(TMP_SUFFIX)) {
+                    if (isStartup) {
+                        file.delete(); // interrupted put
+                    }
+                } else if (!file.equals(mJournalFile) && !file.getName().startsWith(JOURNAL_FILE)) {
+                    files.add(file);
+                }
+
+                return true;
+            }
+        });
+
+        // Modification time is the best guess for the access order
+        List<long[]> times = new ArrayList<>(files.size());
+
+        for (int i = 0; i < files.size(); i++) {
+            times.add(new long[] {files.get(i).lastModified(), i});
+        }
+
+        Collections.sort(times, (first, second) -> Long.compare(first[0], second[0]));
+
+        for (long[] time : times) {
+            File file = files.get((int) time[1]);
+            String name = file.getAbsolutePath().substring(dirPath.length() + 1).replace(File.separatorChar, '/');
+
+            if (name.indexOf('\n') == -1) {
+                Entry entry = new Entry(file.length(), time[0]);
+                mEntries.put(name, entry);
+                mSize += entry.size;
+            }
+        }
+
+        mLoaded = true;
+        rebuildJournal();
+
+        if (mSize > mMaxBytes) {
+            scheduleTrim();
+        }
+    }
+
+    /**
+     * Deletes least recently used files until the size fits the budget. Called on the background thread automatically.
+     */
+    public synchronized void trimToSize() {
+        ensureLoaded();
+
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+
+        while (mSize > mMaxBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            String name = eldest.getKey();
+            File file = getFile(name);
+
+            if (file.exists() && !file.delete()) {
+                Log.e(TAG, "Can't evict %s", file);
+                continue; // try the next one
+            }
+
+            iterator.remove();
+            mSize -= eldest.getValue().size;
+            mEvictionCount++;
+            mEvictedBytes += eldest.getValue().size;
+            writeJournal(REMOVE + ' ' + name, true);
+        }
+    }
+
+    /**
+     * Writes buffered access order to the journal (e.g. when the app goes to background)
+     */
+    public synchronized void flush() {
+        if (mJournal == null) {
+            return;
+        }
+
+        try {
+            mJournal.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized long getSize() {
+        ensureLoaded();
+        return mSize;
+    }
+
+    public long getMaxSize() {
+        return mMaxBytes;
+    }
+
+    public synchronized int getFileCount() {
+        ensureLoaded();
+        return mEntries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized long getEvictedBytes() {
+        return mEvictedBytes;
+    }
+
+    /**
+     * Access time of the least recently used file or 0
+     */
+    public synchronized long getOldestAccessTimeMs() {
+        ensureLoaded();
+
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        return iterator.hasNext() ? iterator.next().accessTimeMs : 0;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format("%s{dir=%s, size=%s/%s, files=%s, hits=%s, misses=%s, evictions=%s (%s bytes)}",
+                TAG, mDir, mSize, mMaxBytes, mEntries.size(), mHitCount, mMissCount, mEvictionCount, mEvictedBytes);
+    }
+
+    int getJournalOps() {
+        return mJournalOps;
+    }
+
+    private synchronized void reset() {
+        FileHelpers.closeStream(mJournal);
+        mJournal = null;
+        mEntries.clear();
+        mSize = 0;
+        mJournalOps = 0;
+        mLoaded = false;
+    }
+
+    private void removeEntry(String name, Entry entry) {
+        mEntries.remove(name);
+        mSize -= entry.size;
+        writeJournal(REMOVE + ' ' + name, true);
+    }
+
+    private void scheduleTrim() {
+        if (mTrimScheduled.compareAndSet(false, true)) {
+            mExecutor.execute(() -> {
+                mTrimScheduled.set(false);
+                trimToSize();
+            });
+        }
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+
+        if (!readJournal()) {
+            rescan();
+        }
+
+        mLoaded = true;
+    }
+
+    /**
+     * Replays the journal. Unknown or torn lines are skipped.
+     */
+    private boolean readJournal() {
+        if (!mJournalFile.isFile()) {
+            return false;
+        }
+
+        int ops = 0;
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(mJournalFile), UTF_8), 64 * 1024)) {
+            if (!MAGIC.equals(reader.readLine())) {
+                Log.e(TAG, "Unknown journal format: %s", mJournalFile);
+                return false;
+            }
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                ops++;
+
+                try {
+                    readJournalLine(line);
+                } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                    Log.w(TAG, "Skipping journal line: %s", line);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.e(TAG, "Can't read %s: %s", mJournalFile, e.getMessage());
+            return false;
+        }
+
+        mJournalOps = ops;
+        return true;
+    }
+
+    private void readJournalLine(String line) {
+        int first = line.indexOf(' ');
+        String op = line.substring(0, first);
+
+        if (REMOVE.equals(op)) {
+            Entry entry = mEntries.remove(line.substring(first + 1));
+
+            if (entry != null) {
+                mSize -= entry.size;
+            }
+        } else if (READ.equals(op)) {
+            int second = line.indexOf(' ', first + 1);
+            Entry entry = mEntries.get(line.substring(second + 1)); // moves to the end
+
+            if (entry != null) {
+                entry.accessTimeMs = Long.parseLong(line.substring(first + 1, second));
+            }
+        } else if (CLEAN.equals(op)) {
+            int second = line.indexOf(' ', first + 1);
+            int third = line.indexOf(' ', second + 1);
+            Entry entry = new Entry(Long.parseLong(line.substring(first + 1, second)), Long.parseLong(line.substring(second + 1, third)));
+            Entry previous = mEntries.put(line.substring(third + 1), entry);
+            mSize += entry.size - (previous != null ? previous.size : 0);
+        }
+    }
+
+    /**
+     * @param flush false for the lines that are fine to lose (access order)
+     */
+    private void writeJournal(String line, boolean flush) {
+        try {
+            if (mJournal == null) {
+                mDir.mkdirs();
+                boolean isNew = !mJournalFile.isFile();
+                mJournal = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(mJournalFile, true), UTF_8));
+
+                if (isNew) {
+                    mJournal.write(MAGIC + '\n');
+                }
+            }
+
+            mJournal.write(line);
+            mJournal.write('\n');
+
+            if (flush) {
+                mJournal.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.e(TAG, "Can't write %s: %s", mJournalFile, e.getMessage());
+            FileHelpers.closeStream(mJournal);
+            mJournal = null;
+            return;
+        }
+
+        mJournalOps++;
+
+        if (mJournalOps > MIN_COMPACT_OPS && mJournalOps > mEntries.size() * 2) {
+            rebuildJournal();
+        }
+    }
+
+    /**
+     * Only the current entries in the access order (temp file + rename)
+     */
+    private void rebuildJournal() {
+        FileHelpers.closeStream(mJournal);
+        mJournal = null;
+        mDir.mkdirs();
+
+        File tmpFile = new File(mJournalFile.getPath() + TMP_SUFFIX);
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), UTF_8), 64 * 1024)) {
+            writer.write(MAGIC + '\n');
+
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                writer.write(CLEAN + ' ' + entry.getValue().size + ' ' + entry.getValue().accessTimeMs + ' ' + entry.getKey() + '\n');
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.e(TAG, "Can't write %s: %s", tmpFile, e.getMessage());
+            tmpFile.delete();
+            return;
+        }
+
+        if (!tmpFile.renameTo(mJournalFile)) {
+            Log.e(TAG, "Can't replace %s", mJournalFile);
+            tmpFile.delete();
+            return;
+        }
+
+        mJournalOps = mEntries.size();
+    }
+
+    /**
+     * Relative path inside the dir. Absolute paths and "." or ".." segments could point outside of it.
+     */
+    private static void checkName(String name) {
+        if (name == null || name.isEmpty() || name.indexOf('\n') != -1 || name.indexOf('\\') != -1 ||
+                name.startsWith(JOURNAL_FILE) || name.endsWith(TMP_SUFFIX)) {
+            throw new IllegalArgumentException("Invalid cache file name: " + name);
+        }
+
+        for (String segment : name.split("/", -1)) {
+            if (segment.isEmpty() || segment.equals(".") || segment.equals("..")) {
+                throw new IllegalArgumentException("Invalid cache file name: " + name);
+            }
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+        }
+
+        return sExecutor;
+    }
+}
@@ -0,0 +1,304 @@
+package com.liskovsoft.sharedutils.cache;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thread-safe bounded cache. Replacement for synchronized {@link com.liskovsoft.sharedutils.helpers.Helpers#createLRUMap(int)}.<br/>
+ * Keys are spread over independently locked LRU segments, so threads rarely wait for each other.
+ * Eviction order is LRU within a segment.<br/>
+ * Limits: total weight (entry count by default) and optional time to live.
+ */
+public class ConcurrentLruCache<K, V> {
+    private static final int MAX_SEGMENTS = 16;
+    private static final int MIN_SEGMENT_WEIGHT = 16;
+    private static final Weigher<Object, Object> SINGLETON_WEIGHER = (key, value) -> 1;
+    private static final Clock SYSTEM_CLOCK = () -> System.nanoTime() / 1_000_000;
+    private final Segment<K, V>[] mSegments;
+    private final int mSegmentMask;
+    private final long mTtlMs;
+    private final Weigher<? super K, ? super V> mWeigher;
+    private final Clock mClock;
+
+    public interface Weigher<K, V> {
+        /**
+         * Cost of the entry in the units of max weight. Must not change while the entry is cached.
+         */
+        int weigh(K key, V value);
+    }
+
+    public interface Loader<K, V> {
+        V load(K key);
+    }
+
+    interface Clock {
+        long nowMs();
+    }
+
+    private static final class Node<V> {
+        final V value;
+        final int weight;
+        final long expireTimeMs;
+
+        Node(V value, int weight, long expireTimeMs) {
+            this.value = value;
+            this.weight = weight;
+            this.expireTimeMs = expireTimeMs;
+        }
+    }
+
+    /**
+     * Counters are updated under the segment lock, no extra contention
+     */
+    private static final class Segment<K, V> {
+        final LinkedHashMap<K, Node<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+        final long maxWeight;
+        long weight;
+        volatile long hitCount;
+        volatile long missCount;
+        volatile long evictionCount;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+    }
+
+    public ConcurrentLruCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * @param ttlMs 0 - entries don't expire
+     */
+    public ConcurrentLruCache(int maxSize, long ttlMs) {
+        this(maxSize, ttlMs, null, maxSize / MIN_SEGMENT_WEIGHT);
+    }
+
+    /**
+     * Every segment holds maxWeight / concurrencyLevel. Entry heavier than that isn't cached.
+     * @param concurrencyLevel expected number of threads, 1 - single LRU order
+     */
+    public ConcurrentLruCache(long maxWeight, long ttlMs, Weigher<? super K, ? super V> weigher, int concurrencyLevel) {
+        this(maxWeight, ttlMs, weigher, concurrencyLevel, SYSTEM_CLOCK);
+    }
+
+    @SuppressWarnings("unchecked")
+    ConcurrentLruCache(long maxWeight, long ttlMs, Weigher<? super K, ? super V> weigher, int concurrencyLevel, Clock clock) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("Max weight should be positive: " + maxWeight);
+        }
+
+        int segmentCount = 1;
+
+        while (segmentCount * 2 <= Math.min(concurrencyLevel, MAX_SEGMENTS)) {
+            segmentCount *= 2;
+        }
+
+        mSegments = new Segment[segmentCount];
+
+        for (int i = 0; i < segmentCount; i++) {
+            // Remainder goes to the first segments, the total is exactly max weight
+            mSegments[i] = new Segment<>(maxWeight / segmentCount + (i < maxWeight % segmentCount ? 1 : 0));
+        }
+
+        mSegmentMask = segmentCount - 1;
+        mTtlMs = ttlMs;
+        mWeigher = weigher != null ? weigher : SINGLETON_WEIGHER;
+        mClock = clock;
+    }
+
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            Node<V> node = getNode(segment, key);
+
+            if (node == null) {
+                segment.missCount++;
+                return null;
+            }
+
+            segment.hitCount++;
+            return node.value;
+        }
+    }
+
+    /**
+     * Atomic get or create. Loader is called under the segment lock, so it should be fast.
+     */
+    public V get(K key, Loader<? super K, ? extends V> loader) {
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            Node<V> node = getNode(segment, key);
+
+            if (node != null) {
+                segment.hitCount++;
+                return node.value;
+            }
+
+            segment.missCount++;
+            V value = loader.load(key);
+
+            if (value != null) {
+                putNode(segment, key, value, mTtlMs);
+            }
+
+            return value;
+        }
+    }
+
+    public void put(K key, V value) {
+        put(key, value, mTtlMs);
+    }
+
+    /**
+     * @param ttlMs overrides cache ttl for this entry, 0 - doesn't expire
+     */
+    public void put(K key, V value, long ttlMs) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Null keys and values aren't supported");
+        }
+
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            putNode(segment, key, value, ttlMs);
+        }
+    }
+
+    public V remove(K key) {
+        Segment<K, V> segment = segmentFor(key);
+
+        synchronized (segment) {
+            Node<V> node = segment.map.remove(key);
+
+            if (node == null) {
+                return null;
+            }
+
+            segment.weight -= node.weight;
+            return node.value;
+        }
+    }
+
+    public void clear() {
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                segment.map.clear();
+                segment.weight = 0;
+            }
+        }
+    }
+
+    /**
+     * Expired entries that weren't accessed yet are counted too
+     */
+    public int size() {
+        int size = 0;
+
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                size += segment.map.size();
+            }
+        }
+
+        return size;
+    }
+
+    public long getWeight() {
+        long weight = 0;
+
+        for (Segment<K, V> segment : mSegments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+
+        return weight;
+    }
+
+    public long getHitCount() {
+        long count = 0;
+
+        for (Segment<K, V> segment : mSegments) {
+            count += segment.hitCount;
+        }
+
+        return count;
+    }
+
+    public long getMissCount() {
+        long count = 0;
+
+        for (Segment<K, V> segment : mSegments) {
+            count += segment.missCount;
+        }
+
+        return count;
+    }
+
+    /**
+     * Entries removed by size or ttl
+     */
+    public long getEvictionCount() {
+        long count = 0;
+
+        for (Segment<K, V> segment : mSegments) {
+            count += segment.evictionCount;
+        }
+
+        return count;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format("%s{size=%s, hits=%s, misses=%s, evictions=%s}",
+                ConcurrentLruCache.class.getSimpleName(), size(), getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    private Node<V> getNode(Segment<K, V> segment, K key) {
+        Node<V> node = segment.map.get(key);
+
+        if (node != null && node.expireTimeMs != 0 && mClock.nowMs() >= node.expireTimeMs) {
+            segment.map.remove(key);
+            segment.weight -= node.weight;
+            segment.evictionCount++;
+            return null;
+        }
+
+        return node;
+    }
+
+    private void putNode(Segment<K, V> segment, K key, V value, long ttlMs) {
+        int weight = mWeigher.weigh(key, value);
+
+        if (weight < 0) {
+            throw new IllegalArgumentException("Negative weight: " + weight);
+        }
+
+        Node<V> node = new Node<>(value, weight, ttlMs > 0 ? mClock.nowMs() + ttlMs : 0);
+        Node<V> previous = segment.map.put(key, node);
+        segment.weight += weight - (previous != null ? previous.weight : 0);
+
+        // Eldest first. Entry heavier than the segment evicts itself too.
+        Iterator<Map.Entry<K, Node<V>>> iterator = segment.map.entrySet().iterator();
+
+        while (segment.weight > segment.maxWeight && iterator.hasNext()) {
+            Node<V> eldest = iterator.next().getValue();
+            iterator.remove();
+            segment.weight -= eldest.weight;
+            segment.evictionCount++;
+        }
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        // Top bits of the scrambled hash. Low bits are used by the segment's own table.
+        int hash = key.hashCode() * 0x9E3779B9;
+        return mSegments[(hash >>> 24) & mSegmentMask];
+    }
+}
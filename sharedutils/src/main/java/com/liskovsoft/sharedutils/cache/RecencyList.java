@@ -0,0 +1,65 @@
+package com.liskovsoft.sharedutils.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Thread-safe bounded list of unique items, newest last. Replacement for
+ * {@link com.liskovsoft.sharedutils.helpers.Helpers#createSafeLRUList(int)}.<br/>
+ * Add, remove and contains are O(1) (no array copy, no linear search).
+ */
+public class RecencyList<T> {
+    private final LinkedHashSet<T> mItems = new LinkedHashSet<>();
+    private final int mMaxSize;
+
+    public RecencyList(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Max size should be positive: " + maxSize);
+        }
+
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Existing item is moved to the end. The oldest item is dropped when the list is full.
+     */
+    public synchronized void add(T item) {
+        mItems.remove(item);
+        mItems.add(item);
+
+        if (mItems.size() > mMaxSize) {
+            Iterator<T> iterator = mItems.iterator();
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    public synchronized boolean remove(T item) {
+        return mItems.remove(item);
+    }
+
+    public synchronized boolean contains(T item) {
+        return mItems.contains(item);
+    }
+
+    public synchronized int size() {
+        return mItems.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return mItems.isEmpty();
+    }
+
+    public synchronized void clear() {
+        mItems.clear();
+    }
+
+    /**
+     * Copy, oldest first
+     */
+    public synchronized List<T> toList() {
+        return new ArrayList<>(mItems);
+    }
+}
@@ -1,55 +1,95 @@
 package com.liskovsoft.sharedutils.configparser;
 
 import android.content.Context;
+import com.liskovsoft.sharedutils.helpers.AppInfoHelpers;
 import com.liskovsoft.sharedutils.helpers.AssetHelper;
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Properties;
-import java.util.Set;
 
 public class AssetPropertyParser2 implements ConfigParser {
     private static final String TAG = AssetPropertyParser2.class.getSimpleName();
-    private static final String ARRAY_DELIM_REGEX = " +";
+    private static final String INDEX_DIR = "config_index";
     private final Context mContext;
-    private final InputStream mAssetStream;
-    private Properties mProperties;
+    private final ConfigIndex mIndex;
 
+    /**
+     * Parsed assets are kept in the cache dir (binary index) until the app update (version code or install time change)
+     */
     public AssetPropertyParser2(Context context, String... assetName) {
-        this(context, AssetHelper.getAssetMerged(context, Arrays.asList(assetName)));
+        mContext = context;
+        mIndex = loadIndex(context, assetName);
     }
 
     public AssetPropertyParser2(Context context, InputStream assetStream) {
         mContext = context;
-        mAssetStream = assetStream;
+        mIndex = parseIndex(assetStream);
+    }
+
+    private static ConfigIndex loadIndex(Context context, String... assetName) {
+        File cacheDir = FileHelpers.getCacheDir(context);
+        String prefix = digest(assetName) + "_";
+        File indexFile = cacheDir != null ? new File(new File(cacheDir, INDEX_DIR),
+                prefix + AppInfoHelpers.getAppVersionCode(context) + "_" + AppInfoHelpers.getAppLastUpdateTime(context)) : null;
+        ConfigIndex index = indexFile != null ? ConfigIndex.read(indexFile) : null;
+
+        if (index == null) {
+            index = parseIndex(AssetHelper.getAssetMerged(context, Arrays.asList(assetName)));
+
+            if (indexFile != null) {
+                FileHelpers.deleteByPrefix(indexFile.getParentFile(), prefix); // previous app versions
+                index.write(indexFile);
+            }
+        }
 
-        initProperties();
+        return index;
     }
 
-    private void initProperties() {
-        if (mProperties != null) {
-            return;
+    /**
+     * Hex sha-1 of the asset names
+     */
+    private static String digest(String... assetName) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+
+            for (String name : assetName) {
+                digest.update(String.valueOf(name).getBytes(Charset.forName("UTF-8")));
+                digest.update((byte) 0); // names can't contain it
+            }
+
+            StringBuilder result = new StringBuilder();
+
+            for (byte b : digest.digest()) {
+                result.append(String.format("%02x", b));
+            }
+
+            return result.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // always available
         }
+    }
+
+    private static ConfigIndex parseIndex(InputStream assetStream) {
         try {
-            mProperties = new Properties();
-            mProperties.load(mAssetStream);
+            return ConfigIndex.parse(assetStream);
         } catch (IOException ex) {
             Log.e(TAG, ex.getMessage());
             throw new RuntimeException(ex);
+        } finally {
+            FileHelpers.closeStream(assetStream);
         }
     }
 
     @Override
     public String get(String key) {
-        if (mProperties == null) {
-            return null;
-        }
-
-        String val = mProperties.getProperty(key);
+        String val = mIndex.get(key);
 
         if (val == null) {
             Log.e(TAG, key + " not found");
@@ -64,34 +104,17 @@ public class AssetPropertyParser2 implements ConfigParser {
         return val != null && Boolean.parseBoolean(val);
     }
 
+    /**
+     * Values of the key.* keys (key.2 before key.10) or the key value delimited by spaces
+     */
     @Override
     public String[] getArray(String key) {
-        if (mProperties == null) {
-            return null;
-        }
-
-        Set<String> names = mProperties.stringPropertyNames();
-
-        List<String> valArr = new ArrayList<>();
-
-        for (String name : names) {
-            if (name.startsWith(key) &&
-                !name.equals(key)) { // only partial match for arrays
-                valArr.add(mProperties.getProperty(name));
-            }
-        }
-
-        if (valArr.size() != 0) {
-            return valArr.toArray(new String[]{});
-        }
-
-        String arrProp = mProperties.getProperty(key);
+        String[] result = mIndex.getArray(key);
 
-        if (arrProp == null) {
+        if (result == null) {
             Log.e(TAG, key + " not found");
-            return null;
         }
 
-        return arrProp.split(ARRAY_DELIM_REGEX);
+        return result;
     }
 }
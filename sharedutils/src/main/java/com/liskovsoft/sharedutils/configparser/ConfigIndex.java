@@ -0,0 +1,342 @@
+package com.liskovsoft.sharedutils.configparser;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Immutable key-value config built once at load.<br/>
+ * Keys are kept sorted: exact and prefix lookups are binary searches, no locks (unlike {@link Properties}).<br/>
+ * Parsed arrays are cached. Index could be saved in the binary form and loaded without the text parsing.
+ */
+public final class ConfigIndex {
+    private static final String TAG = ConfigIndex.class.getSimpleName();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x43464731; // CFG1
+    private static final String[] EMPTY = new String[0];
+    private final String[] mKeys;
+    private final String[] mValues;
+    private final Map<String, String[]> mArrays = new ConcurrentHashMap<>();
+
+    private ConfigIndex(String[] keys, String[] values) {
+        mKeys = keys;
+        mValues = values;
+    }
+
+    /**
+     * Text in the {@link Properties} format
+     */
+    public static ConfigIndex parse(InputStream in) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+
+        Set<String> names = properties.stringPropertyNames();
+        String[] keys = names.toArray(new String[0]);
+        Arrays.sort(keys);
+        String[] values = new String[keys.length];
+
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = properties.getProperty(keys[i]);
+        }
+
+        return new ConfigIndex(keys, values);
+    }
+
+    /**
+     * Binary form saved by {@link #write(File)}. Null if the file is missing or damaged.
+     */
+    public static ConfigIndex read(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] data = new byte[(int) file.length()];
+            in.readFully(data);
+
+            if (data.length < 12 || readInt(data, 0) != MAGIC) {
+                return null;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length - 4);
+
+            if (readInt(data, data.length - 4) != (int) crc.getValue()) {
+                Log.e(TAG, "Damaged index %s", file);
+                return null;
+            }
+
+            int count = readInt(data, 4);
+            String[] keys = new String[count];
+            String[] values = new String[count];
+            int[] position = {8};
+
+            for (int i = 0; i < count; i++) {
+                keys[i] = readString(data, position);
+                values[i] = readString(data, position);
+            }
+
+            return new ConfigIndex(keys, values);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Can't read index %s: %s", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Saves the binary form (temp file + rename)
+     */
+    public boolean write(File file) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(mKeys.length * 64 + 12);
+
+        try {
+            DataOutputStream out = new DataOutputStream(data);
+            out.writeInt(MAGIC);
+            out.writeInt(mKeys.length);
+
+            for (int i = 0; i < mKeys.length; i++) {
+                writeString(out, mKeys[i]);
+                writeString(out, mValues[i]);
+            }
+
+            CRC32 crc = new CRC32();
+            byte[] body = data.toByteArray();
+            crc.update(body, 0, body.length);
+            out.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams don't throw
+        }
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            data.writeTo(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Can't write index %s: %s", file, e.getMessage());
+            tmpFile.delete();
+            return false;
+        }
+
+        if (!tmpFile.renameTo(file)) {
+            Log.e(TAG, "Can't replace index %s", file);
+            tmpFile.delete();
+            return false;
+        }
+
+        return true;
+    }
+
+    public String get(String key) {
+        int index = Arrays.binarySearch(mKeys, key);
+        return index >= 0 ? mValues[index] : null;
+    }
+
+    public int size() {
+        return mKeys.length;
+    }
+
+    /**
+     * Values of the keys that start with the prefix (the prefix itself excluded).<br/>
+     * Numbers in the keys are compared by value: key.2 goes before key.10
+     */
+    public String[] getByPrefix(String prefix) {
+        int index = Arrays.binarySearch(mKeys, prefix);
+        int start = index >= 0 ? index + 1 : -index - 1;
+        int end = start;
+
+        while (end < mKeys.length && mKeys[end].startsWith(prefix)) {
+            end++;
+        }
+
+        if (end == start) {
+            return EMPTY;
+        }
+
+        Integer[] order = new Integer[end - start];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = start + i;
+        }
+
+        Arrays.sort(order, (first, second) -> compareNatural(mKeys[first], mKeys[second]));
+        String[] result = new String[order.length];
+
+        for (int i = 0; i < order.length; i++) {
+            result[i] = mValues[order[i]];
+        }
+
+        return result;
+    }
+
+    /**
+     * Keys like key.0, key.1 or a single value delimited by spaces. Null if not found.<br/>
+     * NOTE: returns a copy of the cached array
+     */
+    public String[] getArray(String key) {
+        String[] result = mArrays.get(key);
+
+        if (result == null) {
+            result = getByPrefix(key);
+
+            if (result.length == 0) {
+                String value = get(key);
+
+                if (value == null) {
+                    return null;
+                }
+
+                result = splitSpaces(value);
+            }
+
+            mArrays.put(key, result);
+        }
+
+        return result.clone();
+    }
+
+    /**
+     * Same as split(" +") without regex
+     */
+    static String[] splitSpaces(String value) {
+        List<String> result = new ArrayList<>();
+        int length = value.length();
+        int start = 0;
+        int nonEmptyCount = 0;
+        boolean found = false;
+
+        for (int i = 0; i <= length; i++) {
+            if (i == length || value.charAt(i) == ' ') {
+                if (i == length && !found) {
+                    return new String[] {value}; // no delimiter
+                }
+
+                result.add(value.substring(start, i));
+
+                if (i > start) {
+                    nonEmptyCount = result.size();
+                }
+
+                found = true;
+
+                while (i + 1 < length && value.charAt(i + 1) == ' ') {
+                    i++;
+                }
+
+                start = i + 1;
+            }
+        }
+
+        return result.subList(0, nonEmptyCount).toArray(EMPTY);
+    }
+
+    /**
+     * Like {@link String#compareTo} but digit runs are compared as numbers (any length)
+     */
+    static int compareNatural(String first, String second) {
+        int i = 0;
+        int j = 0;
+
+        while (i < first.length() && j < second.length()) {
+            char c1 = first.charAt(i);
+            char c2 = second.charAt(j);
+
+            if (!isDigit(c1) || !isDigit(c2)) {
+                if (c1 != c2) {
+                    return c1 - c2;
+                }
+
+                i++;
+                j++;
+                continue;
+            }
+
+            int end1 = skipDigits(first, i);
+            int end2 = skipDigits(second, j);
+            int start1 = skipZeros(first, i, end1);
+            int start2 = skipZeros(second, j, end2);
+
+            if (end1 - start1 != end2 - start2) {
+                return (end1 - start1) - (end2 - start2); // shorter number is smaller
+            }
+
+            for (int k = 0; k < end1 - start1; k++) {
+                int diff = first.charAt(start1 + k) - second.charAt(start2 + k);
+
+                if (diff != 0) {
+                    return diff;
+                }
+            }
+
+            if (end1 - i != end2 - j) {
+                return (end1 - i) - (end2 - j); // same value, fewer leading zeros first
+            }
+
+            i = end1;
+            j = end2;
+        }
+
+        return (first.length() - i) - (second.length() - j);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int skipDigits(String value, int start) {
+        while (start < value.length() && isDigit(value.charAt(start))) {
+            start++;
+        }
+
+        return start;
+    }
+
+    private static int skipZeros(String value, int start, int end) {
+        while (start < end - 1 && value.charAt(start) == '0') {
+            start++;
+        }
+
+        return start;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(byte[] data, int[] position) throws IOException {
+        int offset = position[0] + 4;
+        int length = readInt(data, position[0]);
+
+        if (length < 0 || offset + length > data.length - 4) {
+            throw new IOException("Bad string length: " + length);
+        }
+
+        position[0] = offset + length;
+        return new String(data, offset, length, UTF_8);
+    }
+
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24 | (data[offset + 1] & 0xFF) << 16 | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+}
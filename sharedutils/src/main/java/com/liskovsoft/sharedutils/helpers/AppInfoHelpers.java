@@ -46,6 +46,18 @@ public class AppInfoHelpers {
         return -1;
     }
 
+    /**
+     * Time of the last install or update of the app, ms. 0 if unknown.
+     */
+    public static long getAppLastUpdateTime(Context context) {
+        PackageInfo packageInfo = getPackageInfo(context);
+        if (packageInfo != null) {
+            return packageInfo.lastUpdateTime;
+        }
+
+        return 0;
+    }
+
     public static String getAppVersionName(Context context) {
         PackageInfo packageInfo = getPackageInfo(context);
         if (packageInfo != null) {
@@ -0,0 +1,149 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Merged asset files (js, css, configs).<br/>
+ * Asset listings are cached (assets don't change until the app update). Files are streamed back to back
+ * through the flat {@link MultiInputStream}, one file is open at a time.
+ */
+public final class AssetBundle {
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final String[] EMPTY = new String[0];
+    private static final Map<String, String[]> sListings = new ConcurrentHashMap<>();
+
+    interface Source {
+        String[] list(String path) throws IOException;
+
+        InputStream open(String path) throws IOException;
+    }
+
+    private static final class AssetSource implements Source {
+        private final AssetManager mAssets;
+
+        AssetSource(AssetManager assets) {
+            mAssets = assets;
+        }
+
+        @Override
+        public String[] list(String path) throws IOException {
+            return mAssets.list(path);
+        }
+
+        @Override
+        public InputStream open(String path) throws IOException {
+            return mAssets.open(path);
+        }
+    }
+
+    private AssetBundle() {
+    }
+
+    /**
+     * Files of the dir and its sub dirs, in the listing order.
+     * @param endsWith file name filter, null - all files
+     */
+    public static List<String> listFiles(Context context, String dir, String endsWith) {
+        return listFiles(new AssetSource(context.getAssets()), dir, endsWith);
+    }
+
+    /**
+     * Direct children of the dir (cached)
+     */
+    public static String[] list(Context context, String path) {
+        try {
+            return list(new AssetSource(context.getAssets()), path);
+        } catch (IOException e) {
+            return EMPTY;
+        }
+    }
+
+    /**
+     * Merged files with the new line after each one. Missing file gives just the new line.
+     */
+    public static InputStream open(Context context, List<String> paths) {
+        return open(new AssetSource(context.getAssets()), paths, NEW_LINE);
+    }
+
+    static List<String> listFiles(Source source, String dir, String endsWith) {
+        List<String> result = new ArrayList<>();
+
+        try {
+            // Depth first, same order as the recursive listing
+            ArrayDeque<String> stack = new ArrayDeque<>();
+            pushChildren(stack, dir, list(source, dir));
+
+            while (!stack.isEmpty()) {
+                String path = stack.pop();
+                String[] children = list(source, path);
+
+                if (children.length > 0) { // folder
+                    pushChildren(stack, path, children);
+                } else if (endsWith == null || path.endsWith(endsWith)) {
+                    result.add(path);
+                }
+            }
+        } catch (IOException e) {
+            return Collections.emptyList();
+        }
+
+        return result;
+    }
+
+    static InputStream open(Source source, List<String> paths, byte[] separator) {
+        if (paths == null) {
+            return null;
+        }
+
+        MultiInputStream.Opener[] openers = new MultiInputStream.Opener[paths.size()];
+
+        for (int i = 0; i < openers.length; i++) {
+            String path = paths.get(i);
+            openers[i] = () -> {
+                try {
+                    return source.open(path);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            };
+        }
+
+        return new MultiInputStream(openers, separator);
+    }
+
+    static void clearListings() {
+        sListings.clear();
+    }
+
+    private static String[] list(Source source, String path) throws IOException {
+        String[] result = sListings.get(path);
+
+        if (result == null) {
+            result = source.list(path);
+
+            if (result == null) {
+                result = EMPTY;
+            }
+
+            sListings.put(path, result);
+        }
+
+        return result;
+    }
+
+    private static void pushChildren(ArrayDeque<String> stack, String dir, String[] children) {
+        for (int i = children.length - 1; i >= 0; i--) {
+            stack.push(dir + "/" + children[i]);
+        }
+    }
+}
@@ -5,12 +5,16 @@ import com.jakewharton.disklrucache.DiskLruCache.Editor;
 import com.jakewharton.disklrucache.DiskLruCache.Snapshot;
 import com.liskovsoft.sharedutils.mylogger.Log;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 
 import static android.content.ContentValues.TAG;
 
 public class CacheHelpers {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
     public static boolean exists(DiskLruCache cache, String key) {
         try {
             return cache.get(key) != null;
@@ -21,22 +25,65 @@ public class CacheHelpers {
         return false;
     }
 
+    /**
+     * Returns the data, copying it into the cache while it's being read (no in-memory copy).<br/>
+     * The entry is committed once the stream is read to the end. Closing it earlier discards the entry.<br/>
+     * NOTE: if the data can't be cached, the source stream is returned as is.
+     */
     public static InputStream saveToCache(DiskLruCache cache, InputStream data, String key) {
         if (data == null) {
             return null;
         }
 
-        String value = Helpers.toString(data);
+        Editor editor = null;
+
+        try {
+            editor = cache.edit(key);
+
+            if (editor != null) { // null: another edit is in progress
+                return new CachingInputStream(data, editor, editor.newOutputStream(0));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            abortQuietly(editor);
+        }
+
+        Log.e(TAG, "Can't cache %s. Using the source stream.", key);
+
+        return data;
+    }
+
+    /**
+     * Streams bytes straight to the cache editor (no intermediate String)
+     */
+    public static boolean writeToCache(DiskLruCache cache, InputStream data, String key) {
+        if (data == null) {
+            return false;
+        }
+
+        Editor editor = null;
 
         try {
-            Editor editor = cache.edit(key);
-            editor.set(0, value);
+            editor = cache.edit(key);
+
+            if (editor == null) { // another edit is in progress
+                return false;
+            }
+
+            try (OutputStream out = editor.newOutputStream(0)) {
+                copyStream(data, out);
+            }
+
             editor.commit();
+            return true;
         } catch (IOException e) {
             e.printStackTrace();
+            abortQuietly(editor);
+        } finally {
+            FileHelpers.closeStream(data);
         }
 
-        return Helpers.toStream(value);
+        return false;
     }
 
     public static InputStream returnFromCache(DiskLruCache cache, String key) {
@@ -52,6 +99,135 @@ public class CacheHelpers {
         return null;
     }
 
+    private static void copyStream(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+    }
+
+    private static void abortQuietly(Editor editor) {
+        if (editor == null) {
+            return;
+        }
+
+        try {
+            editor.abort();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tees the data into the cache editor. Caching errors don't break the reader, the entry is just dropped.
+     */
+    private static class CachingInputStream extends FilterInputStream {
+        private Editor mEditor;
+        private final OutputStream mOut;
+
+        CachingInputStream(InputStream in, Editor editor, OutputStream out) {
+            super(in);
+            mEditor = editor;
+            mOut = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+
+            try {
+                b = super.read();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+
+            commitAtEnd(b);
+
+            if (b != -1 && mEditor != null) {
+                try {
+                    mOut.write(b);
+                } catch (IOException e) {
+                    abort();
+                }
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n;
+
+            try {
+                n = super.read(b, off, len);
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+
+            commitAtEnd(n);
+
+            if (n > 0 && mEditor != null) {
+                try {
+                    mOut.write(b, off, n);
+                } catch (IOException e) {
+                    abort();
+                }
+            }
+
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+
+            // Skipped bytes must reach the cache too
+            byte[] buffer = new byte[(int) Math.min(n, BUFFER_SIZE)];
+            return Math.max(read(buffer, 0, buffer.length), 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                abort(); // no-op when already committed
+            }
+        }
+
+        private void commitAtEnd(int result) {
+            if (result == -1 && mEditor != null) {
+                try {
+                    mOut.close();
+                    mEditor.commit();
+                    mEditor = null;
+                } catch (IOException e) {
+                    abort();
+                }
+            }
+        }
+
+        private void abort() {
+            if (mEditor == null) {
+                return;
+            }
+
+            FileHelpers.closeStream(mOut);
+            abortQuietly(mEditor);
+            mEditor = null;
+        }
+    }
+
     /**
      * Could cause too much troubles
      * @param cache obj
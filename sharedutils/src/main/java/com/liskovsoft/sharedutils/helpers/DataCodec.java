@@ -0,0 +1,252 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scanner for the {@link Helpers#mergeArray(Object...)} / {@link Helpers#mergeData(Object...)} format.<br/>
+ * Numbers are parsed in place (no regex, no substrings, no boxing). Output is the same as of the Helpers methods:
+ * trailing empty items are dropped, invalid numbers become -1, blank string is an empty array.
+ */
+public final class DataCodec {
+    private static final String ARRAY_DELIM = "%AR%";
+    private static final int[] EMPTY_INT_ARRAY = new int[0];
+    private static final long[] EMPTY_LONG_ARRAY = new long[0];
+    private static final int INVALID = -1;
+
+    private DataCodec() {
+    }
+
+    @NonNull
+    public static int[] parseIntArray(String data) {
+        int count = countItems(data, ARRAY_DELIM);
+
+        if (count == 0) {
+            return EMPTY_INT_ARRAY;
+        }
+
+        int[] result = new int[count];
+        int start = 0;
+
+        for (int i = 0; i < count; i++) {
+            int end = getItemEnd(data, ARRAY_DELIM, start);
+            long value = parseLong(data, start, end);
+            result[i] = value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (int) value : INVALID;
+            start = end + ARRAY_DELIM.length();
+        }
+
+        return result;
+    }
+
+    @NonNull
+    public static long[] parseLongArray(String data) {
+        int count = countItems(data, ARRAY_DELIM);
+
+        if (count == 0) {
+            return EMPTY_LONG_ARRAY;
+        }
+
+        long[] result = new long[count];
+        int start = 0;
+
+        for (int i = 0; i < count; i++) {
+            int end = getItemEnd(data, ARRAY_DELIM, start);
+            result[i] = parseLong(data, start, end);
+            start = end + ARRAY_DELIM.length();
+        }
+
+        return result;
+    }
+
+    public static String mergeIntArray(int[] values) {
+        if (values == null) {
+            return null;
+        }
+
+        return appendIntArray(new StringBuilder(values.length * 6), values).toString();
+    }
+
+    public static String mergeLongArray(long[] values) {
+        if (values == null) {
+            return null;
+        }
+
+        return appendLongArray(new StringBuilder(values.length * 10), values).toString();
+    }
+
+    /**
+     * For the reusable builder
+     */
+    public static StringBuilder appendIntArray(StringBuilder builder, int[] values) {
+        if (values.length == 0) {
+            return builder.append(' '); // NOTE: empty array/object represented by space
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                builder.append(ARRAY_DELIM);
+            }
+
+            builder.append(values[i]);
+        }
+
+        return builder;
+    }
+
+    public static StringBuilder appendLongArray(StringBuilder builder, long[] values) {
+        if (values.length == 0) {
+            return builder.append(' ');
+        }
+
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                builder.append(ARRAY_DELIM);
+            }
+
+            builder.append(values[i]);
+        }
+
+        return builder;
+    }
+
+    /**
+     * Same result as {@link String#split(String)} with the quoted delimiter
+     */
+    public static String[] split(String data, String delim) {
+        if (data == null) {
+            return null;
+        }
+
+        if (delim.isEmpty()) {
+            return isBlank(data) ? new String[]{} : data.split(""); // per char
+        }
+
+        int count = countItems(data, delim);
+
+        if (count == 0) {
+            return new String[]{};
+        }
+
+        String[] result = new String[count];
+        int start = 0;
+
+        for (int i = 0; i < count; i++) {
+            int end = getItemEnd(data, delim, start);
+            result[i] = data.substring(start, end);
+            start = end + delim.length();
+        }
+
+        return result;
+    }
+
+    /**
+     * Items to the last non-empty one. Blank string has no items.
+     */
+    static int countItems(String data, String delim) {
+        if (data == null || isBlank(data)) {
+            return 0;
+        }
+
+        int count = 0;
+        int nonEmptyCount = 0;
+        int start = 0;
+
+        while (true) {
+            int end = getItemEnd(data, delim, start);
+            count++;
+
+            if (end > start) {
+                nonEmptyCount = count;
+            }
+
+            if (end == data.length()) {
+                break;
+            }
+
+            start = end + delim.length();
+        }
+
+        return nonEmptyCount;
+    }
+
+    private static int getItemEnd(String data, String delim, int start) {
+        int end = data.indexOf(delim, start);
+        return end != -1 ? end : data.length();
+    }
+
+    /**
+     * Same as {@link Helpers#isInteger(String)} + {@link Long#parseLong(String)}. Invalid or too big number is -1.
+     */
+    static long parseLong(CharSequence data, int start, int end) {
+        if (start >= end) {
+            return INVALID;
+        }
+
+        char first = data.charAt(start);
+        boolean negative = first == '-';
+
+        if (first == '-' || first == '+') {
+            start++;
+
+            if (start == end) {
+                return INVALID;
+            }
+        }
+
+        // Accumulate negatively to fit Long.MIN_VALUE
+        long result = 0;
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+
+        for (int i = start; i < end; i++) {
+            int digit = data.charAt(i) - '0';
+
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                return INVALID;
+            }
+
+            result *= 10;
+
+            if (result < limit + digit) {
+                return INVALID;
+            }
+
+            result -= digit;
+        }
+
+        return negative ? result : -result;
+    }
+
+    private static boolean isBlank(String data) {
+        // Same as trim().isEmpty()
+        for (int i = 0; i < data.length(); i++) {
+            if (data.charAt(i) > ' ') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static List<Integer> toList(int[] values) {
+        List<Integer> result = new ArrayList<>(values.length);
+
+        for (int value : values) {
+            result.add(value);
+        }
+
+        return result;
+    }
+
+    static List<Long> toList(long[] values) {
+        List<Long> result = new ArrayList<>(values.length);
+
+        for (long value : values) {
+            result.add(value);
+        }
+
+        return result;
+    }
+}
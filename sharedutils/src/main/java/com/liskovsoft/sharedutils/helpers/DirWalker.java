@@ -0,0 +1,247 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Directory tree walker without recursion (no depth limit, no stack overflow on old Androids).<br/>
+ * Entries are streamed to the {@link Visitor}, nothing is collected.<br/>
+ * Parallel mode lists directories on several threads (for the big cache trees).<br/>
+ * Symlinked dirs aren't followed (visited as files): a link loop would never end and delete would reach outside the tree.<br/>
+ * NOTE: java.nio.file isn't available before api 26, so the walk is built on {@link File#list()}
+ * and links are detected by the canonical path.
+ */
+public final class DirWalker {
+    private static final String[] EMPTY = new String[0];
+
+    public interface Visitor {
+        /**
+         * @return false to skip the dir content
+         */
+        boolean preVisitDir(File dir);
+
+        /**
+         * @return false to stop the walk
+         */
+        boolean visitFile(File file);
+
+        /**
+         * Called after the dir content. Children are always visited before the parent.
+         */
+        void postVisitDir(File dir);
+    }
+
+    public static abstract class SimpleVisitor implements Visitor {
+        @Override
+        public boolean preVisitDir(File dir) {
+            return true;
+        }
+
+        @Override
+        public boolean visitFile(File file) {
+            return true;
+        }
+
+        @Override
+        public void postVisitDir(File dir) {
+        }
+    }
+
+    private static final class Frame {
+        final File dir;
+        final File canonicalDir;
+        final String[] children;
+        int index;
+
+        Frame(File dir, String[] children) {
+            this.dir = dir;
+            this.canonicalDir = getCanonical(dir);
+            this.children = children;
+        }
+    }
+
+    private DirWalker() {
+    }
+
+    /**
+     * Depth first. Root file is visited as a file, root dir as a dir.
+     */
+    public static void walk(File root, Visitor visitor) {
+        if (root == null) {
+            return;
+        }
+
+        if (!root.isDirectory()) {
+            if (root.isFile()) {
+                visitor.visitFile(root);
+            }
+            return;
+        }
+
+        if (!visitor.preVisitDir(root)) {
+            return;
+        }
+
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(root, list(root)));
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+
+            if (frame.index == frame.children.length) {
+                stack.pop();
+                visitor.postVisitDir(frame.dir);
+                continue;
+            }
+
+            String name = frame.children[frame.index++];
+            File child = new File(frame.dir, name);
+
+            if (child.isDirectory() && !isLink(frame.canonicalDir, name)) {
+                if (visitor.preVisitDir(child)) {
+                    stack.push(new Frame(child, list(child)));
+                }
+            } else if (!visitor.visitFile(child)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Same as {@link #walk(File, Visitor)} but directories are listed on the several threads.<br/>
+     * {@link Visitor#preVisitDir(File)} and {@link Visitor#visitFile(File)} should be thread-safe.<br/>
+     * {@link Visitor#postVisitDir(File)} is called on the caller thread at the end, deepest dirs first.<br/>
+     * The first exception of the visitor stops the walk and is rethrown on the caller thread.
+     */
+    public static void walkParallel(File root, Visitor visitor, int threadCount) {
+        if (root == null || !root.isDirectory() || threadCount <= 1) {
+            walk(root, visitor);
+            return;
+        }
+
+        if (!visitor.preVisitDir(root)) {
+            return;
+        }
+
+        LinkedBlockingQueue<File> queue = new LinkedBlockingQueue<>();
+        List<File> dirs = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicBoolean stopped = new AtomicBoolean();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+
+        dirs.add(root);
+        queue.add(root);
+
+        for (int i = 0; i < threadCount; i++) {
+            executor.execute(() -> {
+                while (pending.get() > 0) {
+                    File dir;
+
+                    try {
+                        dir = queue.poll(10, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    if (dir == null) {
+                        continue;
+                    }
+
+                    try {
+                        File canonicalDir = getCanonical(dir);
+
+                        for (String name : stopped.get() ? EMPTY : list(dir)) {
+                            if (stopped.get()) {
+                                break;
+                            }
+
+                            File child = new File(dir, name);
+
+                            if (child.isDirectory() && !isLink(canonicalDir, name)) {
+                                if (visitor.preVisitDir(child)) {
+                                    dirs.add(child); // after the parent, so reversed order is children first
+                                    pending.incrementAndGet();
+                                    queue.add(child);
+                                }
+                            } else if (!visitor.visitFile(child)) {
+                                stopped.set(true);
+                            }
+                        }
+                    } catch (RuntimeException | Error e) {
+                        error.compareAndSet(null, e);
+                        stopped.set(true);
+                    } finally {
+                        pending.decrementAndGet(); // otherwise the other threads wait forever
+                    }
+                }
+            });
+        }
+
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        Throwable failure = error.get();
+
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+
+        if (stopped.get()) {
+            return;
+        }
+
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            visitor.postVisitDir(dirs.get(i));
+        }
+    }
+
+    /**
+     * Child path differs from its resolved path. Unknown (can't resolve) counts as a link, so it isn't followed.
+     */
+    private static boolean isLink(File canonicalDir, String name) {
+        if (canonicalDir == null) {
+            return true;
+        }
+
+        File file = new File(canonicalDir, name);
+        File canonicalFile = getCanonical(file);
+
+        return canonicalFile == null || !canonicalFile.equals(file.getAbsoluteFile());
+    }
+
+    private static File getCanonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String[] list(File dir) {
+        String[] children = dir.list();
+        return children != null ? children : EMPTY; // no permissions or not a dir anymore
+    }
+}
@@ -9,9 +9,15 @@ import android.text.TextUtils;
 
 import androidx.annotation.Nullable;
 import androidx.core.content.FileProvider;
+import com.liskovsoft.sharedutils.cache.CacheDirManager;
+import com.liskovsoft.sharedutils.helpers.DirWalker.SimpleVisitor;
+import com.liskovsoft.sharedutils.helpers.DirWalker.Visitor;
 import com.liskovsoft.sharedutils.mylogger.Log;
-import org.apache.commons.io.IOUtils;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Sink;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
 import java.io.File;
@@ -20,16 +26,26 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.SequenceInputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class FileHelpers {
     private static final String TAG = FileHelpers.class.getSimpleName();
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    // NOTE: ThreadLocal.withInitial requires api 26
+    private static final ThreadLocal<byte[]> sCopyBuffer = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[COPY_BUFFER_SIZE];
+        }
+    };
 
     public static File getDownloadDir(Context context) {
         return Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
@@ -171,32 +187,44 @@ public class FileHelpers {
      * NOTE: App should have permission to access device storage
      */
     public static boolean isEmpty(File dir) {
-        return dir == null || listFileTree(dir).isEmpty();
+        if (dir == null) {
+            return true;
+        }
+
+        boolean[] isEmpty = {true};
+
+        DirWalker.walk(dir, new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                isEmpty[0] = false;
+                return false; // stop at the first file
+            }
+        });
+
+        return isEmpty[0];
     }
 
     /**
-     * NOTE: App should have permission to access device storage
+     * NOTE: App should have permission to access device storage<br/>
+     * Use {@link DirWalker} to not collect the whole tree
      */
     public static Collection<File> listFileTree(File dir) {
-        Set<File> fileTree = new HashSet<>();
+        List<File> fileTree = new ArrayList<>();
 
-        if (dir == null) {
+        if (dir == null || !dir.isDirectory()) {
             return fileTree;
         }
 
-        File[] files = dir.listFiles();
-
-        if (files == null) {
-            return fileTree;
-        }
+        DirWalker.walk(dir, new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                if (file.isFile()) {
+                    fileTree.add(file);
+                }
 
-        for (File entry : files) {
-            if (entry.isFile()) {
-                fileTree.add(entry);
-            } else {
-                fileTree.addAll(listFileTree(entry));
+                return true;
             }
-        }
+        });
 
         return fileTree;
     }
@@ -205,8 +233,10 @@ public class FileHelpers {
      * Deletes cache of the app
      */
     public static void deleteCache(Context context) {
-        deleteContent(getCacheDir(context));
-        deleteContent(getExternalCacheDir(context));
+        deleteContent(getCacheDir(context), true);
+        deleteContent(getExternalCacheDir(context), true);
+        CacheDirManager.invalidate(getCacheDir(context));
+        CacheDirManager.invalidate(getExternalCacheDir(context));
     }
 
     public static boolean delete(String filePath) {
@@ -214,37 +244,55 @@ public class FileHelpers {
     }
 
     public static boolean delete(File sourceLocation) {
-        return deleteRecursive(sourceLocation, true);
+        return deleteRecursive(sourceLocation, true, false);
     }
 
     public static boolean deleteContent(File sourceLocation) {
-        return deleteRecursive(sourceLocation, false);
+        return deleteContent(sourceLocation, false);
     }
 
-    private static boolean deleteRecursive(File sourceLocation, boolean deleteRoot) {
-        return deleteRecursive(sourceLocation, deleteRoot, 0);
+    /**
+     * @param parallel use several threads (big cache dirs)
+     */
+    public static boolean deleteContent(File sourceLocation, boolean parallel) {
+        return deleteRecursive(sourceLocation, false, parallel);
     }
 
     /**
-     * Use level to prevent StackOverflowError
+     * Iterative, no depth limit. Deletes as much as possible, returns false if something is left.
      */
-    private static boolean deleteRecursive(File sourceLocation, boolean deleteRoot, int level) {
-        if (sourceLocation != null && sourceLocation.isDirectory()) {
-            String[] children = sourceLocation.list();
-            if (children != null && level < 10) { // Android 4.4 fix, prevent stack overflow
-                for (String child : children) {
-                    boolean success = deleteRecursive(new File(sourceLocation, child), true, level + 1);
-                    if (!success) {
-                        return false;
-                    }
+    private static boolean deleteRecursive(File sourceLocation, boolean deleteRoot, boolean parallel) {
+        if (sourceLocation == null || (!sourceLocation.isDirectory() && !sourceLocation.isFile())) {
+            return false;
+        }
+
+        AtomicBoolean success = new AtomicBoolean(true);
+
+        Visitor visitor = new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                if (!deleteSafe(file)) {
+                    success.set(false);
+                }
+
+                return true;
+            }
+
+            @Override
+            public void postVisitDir(File dir) {
+                if ((deleteRoot || !dir.equals(sourceLocation)) && !deleteSafe(dir)) {
+                    success.set(false);
                 }
             }
-            return !deleteRoot || deleteSafe(sourceLocation);
-        } else if (sourceLocation != null && sourceLocation.isFile()) {
-            return deleteSafe(sourceLocation);
+        };
+
+        if (parallel) {
+            DirWalker.walkParallel(sourceLocation, visitor, getWalkerThreadCount());
         } else {
-            return false;
+            DirWalker.walk(sourceLocation, visitor);
         }
+
+        return success.get();
     }
 
     private static boolean deleteSafe(File file) {
@@ -256,23 +304,20 @@ public class FileHelpers {
     }
 
     public static void deleteByPrefix(File directory, String prefix) {
-        if (directory == null) {
+        if (directory == null || !directory.isDirectory()) {
             return;
         }
 
-        File[] files = directory.listFiles();
-
-        if (files == null) {
-            return;
-        }
+        DirWalker.walk(directory, new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                if (file.getName().startsWith(prefix) && file.isFile()) {
+                    file.delete();
+                }
 
-        for (File file : files) {
-            if (file != null && file.isDirectory()) {
-                deleteByPrefix(file, prefix);
-            } else if (file != null && file.isFile() && file.getName().startsWith(prefix)) {
-                file.delete();
+                return true;
             }
-        }
+        });
     }
 
     public interface CopyFiler {
@@ -283,29 +328,35 @@ public class FileHelpers {
         copy(sourceLocation, targetLocation, null, null);
     }
 
+    /**
+     * NOTE: when dirFiler is set, files of the root dir aren't copied
+     */
     public static void copy(File sourceLocation, File targetLocation, CopyFiler fileFiler, CopyFiler dirFiler) {
-        copyRecursive(sourceLocation, targetLocation, fileFiler, dirFiler, sourceLocation);
-    }
-
-    private static void copyRecursive(File sourceLocation, File targetLocation, CopyFiler fileFiler, CopyFiler dirFiler, File rootLocation) {
-        boolean isRoot = false;
-
-        if (rootLocation.isDirectory()) {
-            isRoot = Helpers.equals(sourceLocation.isDirectory() ? sourceLocation : sourceLocation.getParentFile(), rootLocation);
-        }
-
-        if (sourceLocation.isDirectory()) {
-            if (isRoot || dirFiler == null || dirFiler.filter(sourceLocation)) {
-                copyDirectory(sourceLocation, targetLocation, fileFiler, dirFiler, rootLocation);
-            }
-        } else {
-            try {
-                if ((dirFiler == null || !isRoot) && (fileFiler == null || fileFiler.filter(sourceLocation))) {
-                    copyFile(sourceLocation, targetLocation);
+        boolean isRootDir = sourceLocation.isDirectory();
+        // Iterative: source and target are pushed in pairs
+        ArrayDeque<File> stack = new ArrayDeque<>();
+        stack.push(targetLocation);
+        stack.push(sourceLocation);
+
+        while (!stack.isEmpty()) {
+            File source = stack.pop();
+            File target = stack.pop();
+            boolean isRoot = isRootDir && source == sourceLocation;
+            boolean isRootChild = isRootDir && !isRoot && Helpers.equals(source.getParentFile(), sourceLocation);
+
+            if (source.isDirectory()) {
+                if (isRoot || dirFiler == null || dirFiler.filter(source)) {
+                    copyDirectory(source, target, stack);
+                }
+            } else {
+                try {
+                    if ((dirFiler == null || !isRootChild) && (fileFiler == null || fileFiler.filter(source))) {
+                        copyFile(source, target);
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "Unable to copy: " + e.getMessage());
+                    e.printStackTrace();
                 }
-            } catch (IOException e) {
-                Log.e(TAG, "Unable to copy: " + e.getMessage());
-                e.printStackTrace();
             }
         }
     }
@@ -315,14 +366,14 @@ public class FileHelpers {
             destination.getParentFile().mkdirs();
         }
 
-        try {
-            IOUtils.copy(source, new FileOutputStream(destination));
+        try (FileOutputStream fos = new FileOutputStream(destination)) {
+            writeStream(source, fos);
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private static void copyDirectory(File source, File target, CopyFiler fileFiler, CopyFiler dirFiler, File rootLocation) {
+    private static void copyDirectory(File source, File target, ArrayDeque<File> stack) {
         if (!target.exists()) {
             target.mkdirs();
         }
@@ -335,20 +386,53 @@ public class FileHelpers {
         }
 
         for (String f : list) {
-            copyRecursive(new File(source, f), new File(target, f), fileFiler, dirFiler, rootLocation);
+            stack.push(new File(target, f));
+            stack.push(new File(source, f));
         }
     }
 
     private static void copyFile(File source, File target) throws IOException {
         try (
-                InputStream in = new FileInputStream(source);
-                OutputStream out = new FileOutputStream(target)
+                FileInputStream in = new FileInputStream(source);
+                FileOutputStream out = new FileOutputStream(target)
         ) {
-            byte[] buf = new byte[1024];
-            int length;
-            while ((length = in.read(buf)) > 0) {
-                out.write(buf, 0, length);
+            transfer(in.getChannel(), out.getChannel());
+        }
+    }
+
+    /**
+     * Kernel does the copying (no java buffers involved)
+     */
+    private static void transfer(FileChannel in, FileChannel out) throws IOException {
+        long position = in.position();
+        long size = in.size();
+
+        while (position < size) {
+            long count = in.transferTo(position, size - position, out);
+
+            if (count <= 0) { // file is truncated while copying
+                break;
             }
+
+            position += count;
+        }
+
+        in.position(position);
+    }
+
+    /**
+     * Doesn't close the streams
+     */
+    private static void writeStream(InputStream is, FileOutputStream fos) throws IOException {
+        if (is instanceof FileInputStream) {
+            transfer(((FileInputStream) is).getChannel(), fos.getChannel());
+            return;
+        }
+
+        byte[] buffer = sCopyBuffer.get();
+        int count;
+        while ((count = is.read(buffer)) != -1) {
+            fos.write(buffer, 0, count);
         }
     }
 
@@ -367,11 +451,7 @@ public class FileHelpers {
 
             fos = new FileOutputStream(destination);
 
-            byte[] buffer = new byte[1024];
-            int len1;
-            while ((len1 = is.read(buffer)) != -1) {
-                fos.write(buffer, 0, len1);
-            }
+            writeStream(is, fos);
         } catch (FileNotFoundException ex) {
             Log.e(TAG, "Open file failed: Seemed EACCES (Permission denied): %s", ex.getMessage());
         } catch (IOException ex) {
@@ -383,23 +463,51 @@ public class FileHelpers {
         }
     }
 
+    /**
+     * Moves okio segments straight to the file (e.g. okhttp response body).<br/>
+     * Returns number of bytes written or -1 on error.
+     */
+    public static long streamToFile(BufferedSource source, File destination) {
+        if (source == null || destination == null) {
+            return -1;
+        }
+
+        long result = -1;
+
+        if (destination.getParentFile() != null) {
+            destination.getParentFile().mkdirs(); // create dirs tree
+        }
+
+        // NOTE: one write syscall per 64 KB instead of per okio segment (8 KB)
+        try (Sink sink = Okio.sink(new BufferedOutputStream(new FileOutputStream(destination), COPY_BUFFER_SIZE))) {
+            result = source.readAll(sink);
+        } catch (FileNotFoundException ex) {
+            Log.e(TAG, "Open file failed: Seemed EACCES (Permission denied): %s", ex.getMessage());
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            Log.e(TAG, ex.getMessage());
+        } finally {
+            closeStream(source);
+        }
+
+        return result;
+    }
+
     public static void stringToFile(String is, File destination) {
         streamToFile(toStream(is), destination);
     }
 
     public static String toString(InputStream in) {
-        try {
-            int bufsize = 8196;
-            char[] cbuf = new char[bufsize];
-            StringBuilder buf = new StringBuilder(bufsize);
-            InputStreamReader reader = new InputStreamReader(in, "UTF-8");
-
-            int readBytes;
-            while ((readBytes = reader.read(cbuf, 0, bufsize)) != -1) {
-                buf.append(cbuf, 0, readBytes);
-            }
+        return toString(in, -1);
+    }
 
-            return buf.toString();
+    /**
+     * UTF-8 text. See {@link TextDecoder} for the CharSequence/Reader views.
+     * @param contentLength expected size in bytes, -1 if unknown
+     */
+    public static String toString(InputStream in, long contentLength) {
+        try {
+            return TextDecoder.toString(in, contentLength);
         } catch (IOException e) {
             e.printStackTrace();
             Log.e(TAG, e.getMessage());
@@ -645,10 +753,12 @@ public class FileHelpers {
         }
 
         String result = null;
-        try {
-            result = toString(new FileInputStream(source));
+        try (InputStream in = new FileInputStream(source)) {
+            result = toString(in, source.length());
         } catch (FileNotFoundException e) {
             Log.e(TAG, "File not found: %s", source.getAbsolutePath());
+        } catch (IOException e) {
+            e.printStackTrace(); // close error
         }
         return result;
     }
@@ -657,24 +767,38 @@ public class FileHelpers {
      * Gets size in bytes!
      */
     public static long getDirSize(File dir) {
-        if (dir == null) {
-            return 0;
-        }
-
-        File[] files = dir.listFiles();
+        return getDirSize(dir, false);
+    }
 
-        if (files == null) {
+    /**
+     * Gets size in bytes!
+     * @param parallel use several threads (big cache dirs)
+     */
+    public static long getDirSize(File dir, boolean parallel) {
+        if (dir == null || !dir.isDirectory()) {
             return 0;
         }
 
-        long size = 0;
-        for (File file : files) {
-            if (file != null && file.isDirectory()) {
-                size += getDirSize(file);
-            } else if (file != null && file.isFile()) {
-                size += file.length();
+        AtomicLong size = new AtomicLong();
+
+        Visitor visitor = new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                size.addAndGet(file.length()); // 0 for special and missing files
+                return true;
             }
+        };
+
+        if (parallel) {
+            DirWalker.walkParallel(dir, visitor, getWalkerThreadCount());
+        } else {
+            DirWalker.walk(dir, visitor);
         }
-        return size;
+
+        return size.get();
+    }
+
+    private static int getWalkerThreadCount() {
+        return Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
     }
 }
@@ -445,7 +445,26 @@ public final class Helpers {
     }
 
     public static boolean isInteger(String s) {
-        return s != null && s.matches("^[-+]?\\d+$");
+        // Same as s.matches("^[-+]?\\d+$")
+        if (s == null || s.isEmpty()) {
+            return false;
+        }
+
+        int start = s.charAt(0) == '-' || s.charAt(0) == '+' ? 1 : 0;
+
+        if (start == s.length()) {
+            return false;
+        }
+
+        for (int i = start; i < s.length(); i++) {
+            char c = s.charAt(i);
+
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     public static boolean hasWords(String s) {
@@ -1380,12 +1399,28 @@ public final class Helpers {
 
     @NonNull
     public static List<Integer> parseIntList(String[] arr, int index) {
-        return parseList(arr, index, Helpers::parseInt);
+        return DataCodec.toList(parseIntArray(arr, index));
     }
 
     @NonNull
     public static List<Long> parseLongList(String[] arr, int index) {
-        return parseList(arr, index, Helpers::parseLong);
+        return DataCodec.toList(parseLongArray(arr, index));
+    }
+
+    /**
+     * Unboxed {@link #parseIntList(String[], int)}
+     */
+    @NonNull
+    public static int[] parseIntArray(String[] arr, int index) {
+        return DataCodec.parseIntArray(parseStr(arr, index));
+    }
+
+    /**
+     * Unboxed {@link #parseLongList(String[], int)}
+     */
+    @NonNull
+    public static long[] parseLongArray(String[] arr, int index) {
+        return DataCodec.parseLongArray(parseStr(arr, index));
     }
 
     @NonNull
@@ -1510,16 +1545,8 @@ public final class Helpers {
     }
 
     public static String[] split(String data, String delim) {
-        if (data == null) {
-            return null;
-        }
-
         // NOTE: empty array/object represented by space
-        if (data.trim().isEmpty()) {
-            return new String[]{};
-        }
-
-        return data.split(Pattern.quote(delim));
+        return DataCodec.split(data, delim);
     }
 
     public static String merge(String delim, Object... params) {
@@ -2207,7 +2234,8 @@ public final class Helpers {
 
     /**
      * NOTE: proper item order not guaranteed!!!<br/>
-     * Limit the maximum size of a Map by removing oldest entries when limit reached
+     * Limit the maximum size of a Map by removing oldest entries when limit reached<br/>
+     * Not thread-safe. Use {@link com.liskovsoft.sharedutils.cache.ConcurrentLruCache} for the shared caches.
      */
     public static <K, V> Map<K, V> createLRUMap(final int maxEntries) {
         return new LinkedHashMap<K, V>(maxEntries + 1, 0.75f, true) {
@@ -2239,7 +2267,8 @@ public final class Helpers {
     }
 
     /**
-     * Trim playlist if one exceeds max size
+     * Trim playlist if one exceeds max size<br/>
+     * Every add is O(n). See {@link com.liskovsoft.sharedutils.cache.RecencyList}.
      */
     public static <T> List<T> createSafeLRUList(final int maxEntries) {
         return new CopyOnWriteArrayList<T>() {
@@ -0,0 +1,106 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Streams back to back, with optional separator after each one.<br/>
+ * Flat replacement for the nested {@link java.io.SequenceInputStream} chain: every read goes straight to the current stream.<br/>
+ * Streams are opened lazily and closed as soon as they end, so only one is open at a time.
+ */
+public class MultiInputStream extends InputStream {
+    private final Opener[] mOpeners;
+    private final byte[] mSeparator;
+    private final byte[] mSingleByte = new byte[1];
+    private int mIndex;
+    private InputStream mCurrent;
+    private int mSeparatorPos = -1;
+
+    public interface Opener {
+        /**
+         * @return null to skip the stream (separator is still added)
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * @param separator null - no separator
+     */
+    public MultiInputStream(Opener[] openers, byte[] separator) {
+        mOpeners = openers;
+        mSeparator = separator != null ? separator : new byte[0];
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(mSingleByte, 0, 1) == -1 ? -1 : mSingleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        while (true) {
+            if (mSeparatorPos >= 0) {
+                int count = Math.min(len, mSeparator.length - mSeparatorPos);
+                System.arraycopy(mSeparator, mSeparatorPos, b, off, count);
+                mSeparatorPos += count;
+
+                if (mSeparatorPos == mSeparator.length) {
+                    mSeparatorPos = -1;
+                }
+
+                return count;
+            }
+
+            if (mCurrent == null) {
+                if (mIndex == mOpeners.length) {
+                    return -1;
+                }
+
+                mCurrent = mOpeners[mIndex++].open();
+
+                if (mCurrent == null) {
+                    startSeparator();
+                    continue;
+                }
+            }
+
+            int count = mCurrent.read(b, off, len);
+
+            if (count != -1) {
+                return count;
+            }
+
+            mCurrent.close();
+            mCurrent = null;
+            startSeparator();
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        if (mSeparatorPos >= 0) {
+            return mSeparator.length - mSeparatorPos;
+        }
+
+        return mCurrent != null ? mCurrent.available() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIndex = mOpeners.length;
+        mSeparatorPos = -1;
+
+        if (mCurrent != null) {
+            mCurrent.close();
+            mCurrent = null;
+        }
+    }
+
+    private void startSeparator() {
+        mSeparatorPos = mSeparator.length > 0 ? 0 : -1;
+    }
+}
@@ -0,0 +1,149 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * UTF-8 stream to text without the intermediate copies.<br/>
+ * Bytes are read into the per-thread buffer sized from the content length (or {@link InputStream#available()}),
+ * then decoded once: straight into the String or into the per-thread {@link CharBuffer} for the {@link CharSequence} view.<br/>
+ * Malformed input is replaced with U+FFFD, same as {@link InputStreamReader}.
+ */
+public final class TextDecoder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MIN_BUFFER_SIZE = 8 * 1024;
+    // Bigger buffers aren't kept by the thread
+    private static final int MAX_POOLED_SIZE = 1024 * 1024;
+    // NOTE: ThreadLocal.withInitial requires api 26
+    private static final ThreadLocal<Pool> sPool = new ThreadLocal<Pool>() {
+        @Override
+        protected Pool initialValue() {
+            return new Pool();
+        }
+    };
+
+    private static final class Pool {
+        final CharsetDecoder decoder = newDecoder();
+        byte[] bytes = new byte[MIN_BUFFER_SIZE];
+        char[] chars = new char[MIN_BUFFER_SIZE];
+    }
+
+    private TextDecoder() {
+    }
+
+    public static String toString(InputStream in) throws IOException {
+        return toString(in, -1);
+    }
+
+    /**
+     * @param contentLength expected size in bytes (e.g. file length or http Content-Length), -1 if unknown
+     */
+    public static String toString(InputStream in, long contentLength) throws IOException {
+        if (in == null) {
+            return null;
+        }
+
+        Pool pool = sPool.get();
+        ByteBuffer bytes = readFully(pool, in, contentLength);
+
+        return new String(bytes.array(), 0, bytes.limit(), UTF_8); // decodes into the String's own storage
+    }
+
+    /**
+     * Decoded text without the String copy.<br/>
+     * NOTE: the result is a per-thread buffer. It's valid until the next call on the same thread, don't keep it.
+     */
+    public static CharSequence toCharSequence(InputStream in) throws IOException {
+        return toCharSequence(in, -1);
+    }
+
+    /**
+     * @see #toCharSequence(InputStream)
+     */
+    public static CharSequence toCharSequence(InputStream in, long contentLength) throws IOException {
+        if (in == null) {
+            return null;
+        }
+
+        Pool pool = sPool.get();
+        ByteBuffer bytes = readFully(pool, in, contentLength);
+
+        // UTF-8 never gives more chars than bytes
+        char[] chars = pool.chars;
+
+        if (chars.length < bytes.limit()) {
+            chars = new char[bytes.limit()];
+
+            if (chars.length <= MAX_POOLED_SIZE) {
+                pool.chars = chars;
+            }
+        }
+
+        CharBuffer result = CharBuffer.wrap(chars);
+        CharsetDecoder decoder = pool.decoder.reset();
+        decoder.decode(bytes, result, true); // can't overflow, errors are replaced
+        decoder.flush(result);
+        result.flip();
+
+        return result;
+    }
+
+    /**
+     * Streaming view for the parsers, nothing is buffered in full
+     */
+    public static Reader toReader(InputStream in) {
+        if (in == null) {
+            return null;
+        }
+
+        return new InputStreamReader(in, newDecoder());
+    }
+
+    /**
+     * Reads the stream to the end. Result wraps the per-thread buffer or the new array if the data doesn't fit the pool.
+     */
+    private static ByteBuffer readFully(Pool pool, InputStream in, long contentLength) throws IOException {
+        long expected = contentLength >= 0 ? contentLength : in.available();
+        // One byte more, so the end of the stream is found without growing the buffer.
+        // Declared length isn't trusted above the pooled size (bogus Content-Length): bigger buffer grows as the data arrives.
+        int capacity = (int) Math.min(Math.max(expected + 1, MIN_BUFFER_SIZE), MAX_POOLED_SIZE);
+        byte[] buffer = pool.bytes.length >= capacity ? pool.bytes : new byte[capacity];
+        int length = 0;
+
+        while (true) {
+            if (length == buffer.length) {
+                // Towards the declared length, but never more than doubled
+                long grown = expected > length ? Math.min(expected + 1, length * 2L) : length * 2L;
+                buffer = Arrays.copyOf(buffer, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+            }
+
+            int count = in.read(buffer, length, buffer.length - length);
+
+            if (count == -1) {
+                break;
+            }
+
+            length += count;
+        }
+
+        if (buffer.length <= MAX_POOLED_SIZE) {
+            pool.bytes = buffer;
+        }
+
+        return ByteBuffer.wrap(buffer, 0, length);
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+}
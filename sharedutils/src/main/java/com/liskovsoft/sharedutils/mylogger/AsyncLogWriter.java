@@ -0,0 +1,361 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log records to the file on the background thread.<br/>
+ * Callers only put records into the lock-free ring buffer. Writer thread takes them in batches,
+ * encodes them (text or {@link BinaryLogOutput}), flushes periodically or when enough data is pending, rotates the file by size.<br/>
+ * Binary output isn't flushed periodically (every flush closes the compressed block). Its blocks are written when full,
+ * on {@link #flush} and on {@link #close()}.
+ */
+class AsyncLogWriter implements Runnable {
+    private static final int PENDING_FLUSH_SIZE = 64 * 1024;
+    private final File mFile;
+    private final boolean mBinary;
+    private final RingBuffer<LogRecord> mBuffer;
+    private final ConcurrentLinkedQueue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private final AtomicLong mWrittenCount = new AtomicLong();
+    private final Thread mThread;
+    private final int mWakeUpSize;
+    private final List<LogRecord> mBatch;
+    private volatile DropPolicy mDropPolicy = DropPolicy.DROP_NEWEST;
+    private volatile long mFlushIntervalMs = 1_000;
+    private volatile long mMaxFileSize = 5 * 1024 * 1024;
+    private volatile int mMaxBackupCount = 1;
+    private volatile boolean mClosed;
+    private volatile Callback mCallback;
+    private LogOutput mOutput;
+    private boolean mWasOpened;
+    private long mFlushedSize;
+
+    public enum DropPolicy {
+        /**
+         * New lines are discarded while the buffer is full
+         */
+        DROP_NEWEST,
+        /**
+         * Oldest lines are discarded to make room for the new ones
+         */
+        DROP_OLDEST
+    }
+
+    public interface Callback {
+        /**
+         * Called on the writer thread. Return false to skip opening (e.g. no write permissions).
+         */
+        boolean canOpen();
+
+        /**
+         * Called once, when the file is created
+         */
+        void onOpen(File file);
+    }
+
+    public AsyncLogWriter(File file, int capacity) {
+        this(file, capacity, false);
+    }
+
+    /**
+     * @param binary use compact encoding, see {@link BinaryLogReader}
+     */
+    public AsyncLogWriter(File file, int capacity, boolean binary) {
+        mFile = file;
+        mBinary = binary;
+        mBuffer = new RingBuffer<>(capacity);
+        mWakeUpSize = mBuffer.getCapacity() / 2;
+        mBatch = new ArrayList<>(mWakeUpSize);
+        mThread = new Thread(this, AsyncLogWriter.class.getSimpleName());
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    /**
+     * Lock-free. Never blocks the caller. Message is encoded on the writer thread.
+     */
+    public void append(int level, String tag, String message) {
+        if (message == null || mClosed) {
+            return;
+        }
+
+        append(new LogRecord(System.currentTimeMillis(), level, tag, message));
+    }
+
+    /**
+     * Line without level and tag
+     */
+    public void append(String line) {
+        if (line == null || mClosed) {
+            return;
+        }
+
+        append(LogRecord.raw(line));
+    }
+
+    private void append(LogRecord record) {
+        if (mDropPolicy == DropPolicy.DROP_OLDEST) {
+            while (!mBuffer.offer(record)) {
+                if (mBuffer.poll() != null) {
+                    mDroppedCount.incrementAndGet();
+                }
+            }
+        } else if (!mBuffer.offer(record)) {
+            mDroppedCount.incrementAndGet();
+        }
+
+        if (mBuffer.size() >= mWakeUpSize) {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    /**
+     * Writes all buffered records and waits till they reach the disk
+     * @param beforeFlush runs on the writer thread, may call {@link #writeLine(String)}
+     */
+    public void flush(Runnable beforeFlush, long timeoutMs) {
+        if (mClosed) {
+            return;
+        }
+
+        CountDownLatch done = new CountDownLatch(1);
+
+        mTasks.add(() -> {
+            while (drainBuffer() > 0) {
+                // write everything that was added before the flush
+            }
+
+            if (beforeFlush != null) {
+                beforeFlush.run();
+            }
+
+            flushOutput();
+            done.countDown();
+        });
+
+        LockSupport.unpark(mThread);
+
+        try {
+            done.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes remaining records, closes the file and stops the thread
+     */
+    public void close() {
+        mClosed = true;
+        LockSupport.unpark(mThread);
+    }
+
+    /**
+     * Direct write. Only for tasks that run on the writer thread.
+     */
+    public void writeLine(String line) {
+        write(LogRecord.raw(line));
+    }
+
+    private void write(LogRecord record) {
+        if (!ensureOpen()) {
+            mDroppedCount.incrementAndGet();
+            return;
+        }
+
+        try {
+            mOutput.write(record);
+            mWrittenCount.incrementAndGet();
+
+            if (mOutput.getSize() >= mMaxFileSize) {
+                rotate();
+            }
+        } catch (IOException e) {
+            mDroppedCount.incrementAndGet();
+            closeOutput();
+        }
+    }
+
+    @Override
+    public void run() {
+        long lastFlushMs = System.currentTimeMillis();
+
+        while (true) {
+            boolean closed = mClosed;
+
+            int count = drainBuffer();
+
+            Runnable task;
+            while ((task = mTasks.poll()) != null) {
+                task.run();
+            }
+
+            long nowMs = System.currentTimeMillis();
+
+            long pendingSize = getPendingSize();
+
+            if (!mBinary && (pendingSize >= PENDING_FLUSH_SIZE || (pendingSize > 0 && nowMs - lastFlushMs >= mFlushIntervalMs))) {
+                flushOutput();
+                lastFlushMs = nowMs;
+            }
+
+            if (closed && mBuffer.isEmpty() && mTasks.isEmpty()) {
+                flushOutput();
+                closeOutput();
+                break;
+            }
+
+            if (count == 0) {
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(mFlushIntervalMs));
+            }
+        }
+    }
+
+    private int drainBuffer() {
+        mBatch.clear();
+        mBuffer.drainTo(mBatch, mWakeUpSize);
+
+        for (LogRecord record : mBatch) {
+            write(record);
+        }
+
+        return mBatch.size();
+    }
+
+    private boolean ensureOpen() {
+        if (mOutput != null) {
+            return true;
+        }
+
+        if (mCallback != null && !mCallback.canOpen()) {
+            return false;
+        }
+
+        try {
+            File parent = mFile.getParentFile();
+
+            if (parent != null && !parent.exists()) {
+                parent.mkdirs();
+            }
+
+            // Previous session is overwritten. Reopen after rotation or error appends.
+            mOutput = mBinary ? new BinaryLogOutput(mFile, mWasOpened) : new TextLogOutput(mFile, mWasOpened);
+            mFlushedSize = mOutput.getSize();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+
+        if (!mWasOpened && mCallback != null) {
+            mCallback.onOpen(mFile);
+        }
+
+        mWasOpened = true;
+
+        return true;
+    }
+
+    private long getPendingSize() {
+        return mOutput != null ? mOutput.getSize() - mFlushedSize : 0;
+    }
+
+    private void flushOutput() {
+        if (mOutput == null) {
+            return;
+        }
+
+        try {
+            mOutput.flush();
+            mFlushedSize = mOutput.getSize();
+        } catch (IOException e) {
+            e.printStackTrace();
+            closeOutput();
+        }
+    }
+
+    private void closeOutput() {
+        if (mOutput == null) {
+            return;
+        }
+
+        try {
+            mOutput.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        mOutput = null;
+    }
+
+    /**
+     * log.txt -> log.1.txt -> log.2.txt ...
+     */
+    private void rotate() {
+        closeOutput();
+
+        for (int i = mMaxBackupCount; i > 0; i--) {
+            File source = i == 1 ? mFile : getBackupFile(i - 1);
+            File target = getBackupFile(i);
+
+            if (source.exists() && (!target.exists() || target.delete())) {
+                source.renameTo(target);
+            }
+        }
+
+        if (mMaxBackupCount == 0) {
+            mFile.delete();
+        }
+    }
+
+    public File getBackupFile(int index) {
+        String name = mFile.getName();
+        int dotIndex = name.lastIndexOf('.');
+        String backupName = dotIndex != -1 ?
+                String.format("%s.%s%s", name.substring(0, dotIndex), index, name.substring(dotIndex)) : String.format("%s.%s", name, index);
+
+        return new File(mFile.getParentFile(), backupName);
+    }
+
+    public void setCallback(Callback callback) {
+        mCallback = callback;
+    }
+
+    public void setDropPolicy(DropPolicy dropPolicy) {
+        mDropPolicy = dropPolicy;
+    }
+
+    /**
+     * Text output only
+     */
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        mFlushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * File is rotated after reaching the size (approximate)
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        mMaxFileSize = maxFileSize;
+    }
+
+    public void setMaxBackupCount(int maxBackupCount) {
+        mMaxBackupCount = maxBackupCount;
+    }
+
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return mWrittenCount.get();
+    }
+}
@@ -0,0 +1,218 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * Compact log encoding. Read with {@link BinaryLogReader}.<br/>
+ * File: magic, version, then deflate compressed blocks. Every block is self-contained (own tag table),
+ * so the reader can skip blocks by time without inflating them and a cut off block is simply ignored.<br/>
+ * Block header: raw size, compressed size, record count, base time, min time, max time.<br/>
+ * Record: varint length, zigzag varint time delta, level byte, varint tag id (new id is followed by the tag), message.
+ */
+class BinaryLogOutput implements LogOutput {
+    static final byte[] MAGIC = {'M', 'L', 'O', 'G'};
+    static final int VERSION = 1;
+    static final int BLOCK_HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8;
+    static final int NO_TAG = 0;
+    static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private final OutputStream mOut;
+    private final Deflater mDeflater = new Deflater(Deflater.BEST_SPEED);
+    private final Map<String, Integer> mTagIds = new HashMap<>();
+    private final ByteArray mBlock = new ByteArray(BLOCK_SIZE + 1024);
+    private final ByteArray mRecord = new ByteArray(256);
+    private final byte[] mHeader = new byte[BLOCK_HEADER_SIZE];
+    private byte[] mCompressed = new byte[BLOCK_SIZE];
+    private int mCount;
+    private long mBaseTimeMs;
+    private long mMinTimeMs;
+    private long mMaxTimeMs;
+    private long mSize;
+
+    /**
+     * Growable byte array with varint helpers
+     */
+    static final class ByteArray {
+        byte[] data;
+        int size;
+
+        ByteArray(int capacity) {
+            data = new byte[capacity];
+        }
+
+        void ensureCapacity(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        void writeByte(int value) {
+            ensureCapacity(1);
+            data[size++] = (byte) value;
+        }
+
+        void writeVarLong(long value) {
+            ensureCapacity(10);
+
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+
+            data[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes, int offset, int length) {
+            ensureCapacity(length);
+            System.arraycopy(bytes, offset, data, size, length);
+            size += length;
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(UTF_8);
+            writeVarLong(bytes.length);
+            writeBytes(bytes, 0, bytes.length);
+        }
+    }
+
+    public BinaryLogOutput(File file, boolean append) throws IOException {
+        boolean writeHeader = !append || file.length() == 0;
+        mOut = new FileOutputStream(file, append);
+
+        if (writeHeader) {
+            mOut.write(MAGIC);
+            mOut.write(VERSION);
+            mSize = MAGIC.length + 1;
+        } else {
+            mSize = file.length();
+        }
+    }
+
+    @Override
+    public void write(LogRecord record) throws IOException {
+        long timeMs = record.getTimeMs();
+
+        if (mCount == 0) {
+            mBaseTimeMs = mMinTimeMs = mMaxTimeMs = timeMs;
+        } else {
+            mMinTimeMs = Math.min(mMinTimeMs, timeMs);
+            mMaxTimeMs = Math.max(mMaxTimeMs, timeMs);
+        }
+
+        long delta = timeMs - mBaseTimeMs;
+
+        mRecord.size = 0;
+        mRecord.writeVarLong((delta << 1) ^ (delta >> 63)); // zigzag: entries from different threads may be out of order
+        mRecord.writeByte(record.getLevel());
+
+        String tag = record.getTag();
+
+        if (tag == null) {
+            mRecord.writeVarLong(NO_TAG);
+        } else {
+            Integer tagId = mTagIds.get(tag);
+
+            if (tagId != null) {
+                mRecord.writeVarLong(tagId);
+            } else {
+                tagId = mTagIds.size() + 1;
+                mTagIds.put(tag, tagId);
+                mRecord.writeVarLong(tagId);
+                mRecord.writeString(tag);
+            }
+        }
+
+        mRecord.writeString(record.getMessage() != null ? record.getMessage() : "");
+
+        mBlock.writeVarLong(mRecord.size);
+        mBlock.writeBytes(mRecord.data, 0, mRecord.size);
+        mCount++;
+
+        if (mBlock.size >= BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (mCount == 0) {
+            return;
+        }
+
+        mDeflater.reset();
+        mDeflater.setInput(mBlock.data, 0, mBlock.size);
+        mDeflater.finish();
+
+        int compressedSize = 0;
+
+        while (!mDeflater.finished()) {
+            if (compressedSize == mCompressed.length) {
+                mCompressed = Arrays.copyOf(mCompressed, mCompressed.length * 2);
+            }
+
+            compressedSize += mDeflater.deflate(mCompressed, compressedSize, mCompressed.length - compressedSize);
+        }
+
+        int offset = writeInt(mHeader, 0, mBlock.size);
+        offset = writeInt(mHeader, offset, compressedSize);
+        offset = writeInt(mHeader, offset, mCount);
+        offset = writeLong(mHeader, offset, mBaseTimeMs);
+        offset = writeLong(mHeader, offset, mMinTimeMs);
+        writeLong(mHeader, offset, mMaxTimeMs);
+
+        mOut.write(mHeader);
+        mOut.write(mCompressed, 0, compressedSize);
+
+        mSize += BLOCK_HEADER_SIZE + compressedSize;
+        mBlock.size = 0;
+        mCount = 0;
+        mTagIds.clear();
+    }
+
+    private static int writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+        return offset + 4;
+    }
+
+    private static int writeLong(byte[] target, int offset, long value) {
+        writeInt(target, offset, (int) (value >>> 32));
+        return writeInt(target, offset + 4, (int) value);
+    }
+
+    /**
+     * Not compressed data is counted as is
+     */
+    @Override
+    public long getSize() {
+        return mSize + mBlock.size;
+    }
+
+    /**
+     * Current block is closed. Frequent flushes make compression worse.
+     */
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            mDeflater.end();
+            mOut.close();
+        }
+    }
+}
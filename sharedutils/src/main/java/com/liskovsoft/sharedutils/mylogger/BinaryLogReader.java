@@ -0,0 +1,250 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Streaming reader of the {@link BinaryLogOutput} files. Only one block is held in memory.<br/>
+ * Blocks outside of the time range are skipped without decompression.<br/>
+ * Incomplete last block (app killed while writing) is treated as the end of the file.
+ */
+public class BinaryLogReader implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final DataInputStream mIn;
+    private final Inflater mInflater = new Inflater();
+    private final List<String> mTags = new ArrayList<>();
+    private byte[] mCompressed = new byte[BUFFER_SIZE];
+    private byte[] mBlock = new byte[BUFFER_SIZE];
+    private int mBlockSize;
+    private int mPosition;
+    private long mBaseTimeMs;
+    private long mFromMs = Long.MIN_VALUE;
+    private long mToMs = Long.MAX_VALUE;
+    private Set<String> mTagFilter;
+    private boolean mEnd;
+
+    public BinaryLogReader(File file) throws IOException {
+        this(new FileInputStream(file));
+    }
+
+    public BinaryLogReader(InputStream in) throws IOException {
+        mIn = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+
+        try {
+            byte[] magic = new byte[BinaryLogOutput.MAGIC.length];
+            mIn.readFully(magic);
+            int version = mIn.read();
+
+            if (!Arrays.equals(magic, BinaryLogOutput.MAGIC) || version != BinaryLogOutput.VERSION) {
+                throw new IOException("Not a binary log or unsupported version");
+            }
+        } catch (IOException e) {
+            mIn.close();
+            throw e instanceof EOFException ? new IOException("Not a binary log", e) : e;
+        }
+    }
+
+    /**
+     * Inclusive range in ms
+     */
+    public void setTimeRange(long fromMs, long toMs) {
+        mFromMs = fromMs;
+        mToMs = toMs;
+    }
+
+    /**
+     * Only records with these tags will be returned. Null to disable.
+     */
+    public void setTags(Collection<String> tags) {
+        mTagFilter = tags != null ? new HashSet<>(tags) : null;
+    }
+
+    /**
+     * Next matching record or null at the end
+     */
+    public LogRecord next() throws IOException {
+        while (!mEnd) {
+            if (mPosition >= mBlockSize) {
+                if (!readBlock()) {
+                    mEnd = true;
+                    break;
+                }
+
+                continue;
+            }
+
+            int length = (int) readVarLong();
+            int recordEnd = mPosition + length;
+
+            long zigzag = readVarLong();
+            long timeMs = mBaseTimeMs + ((zigzag >>> 1) ^ -(zigzag & 1));
+            int level = mBlock[mPosition++];
+            int tagId = (int) readVarLong();
+            String tag = null;
+
+            if (tagId != BinaryLogOutput.NO_TAG) {
+                if (tagId > mTags.size()) {
+                    mTags.add(readString());
+                }
+
+                tag = mTags.get(tagId - 1);
+            }
+
+            if (timeMs < mFromMs || timeMs > mToMs || (mTagFilter != null && !mTagFilter.contains(tag))) {
+                mPosition = recordEnd;
+                continue;
+            }
+
+            String message = readString();
+            mPosition = recordEnd;
+
+            return new LogRecord(timeMs, level, tag, message);
+        }
+
+        return null;
+    }
+
+    /**
+     * Writes matching records as text lines: "2024-01-31 12:00:00.000 DEBUG: tag: message"
+     * @return records count
+     */
+    public int export(Writer writer) throws IOException {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+        Date date = new Date();
+        int count = 0;
+        LogRecord record;
+
+        while ((record = next()) != null) {
+            date.setTime(record.getTimeMs());
+            writer.write(format.format(date));
+            writer.write(' ');
+            writer.write(record.toString());
+            writer.write('\n');
+            count++;
+        }
+
+        writer.flush();
+
+        return count;
+    }
+
+    private boolean readBlock() throws IOException {
+        try {
+            while (true) {
+                int rawSize = mIn.readInt();
+                int compressedSize = mIn.readInt();
+                mIn.readInt(); // record count
+                mBaseTimeMs = mIn.readLong();
+                long minTimeMs = mIn.readLong();
+                long maxTimeMs = mIn.readLong();
+
+                if (rawSize < 0 || compressedSize < 0) {
+                    return false;
+                }
+
+                if (maxTimeMs < mFromMs || minTimeMs > mToMs) {
+                    skipFully(compressedSize);
+                    continue;
+                }
+
+                if (mCompressed.length < compressedSize) {
+                    mCompressed = new byte[compressedSize];
+                }
+
+                if (mBlock.length < rawSize) {
+                    mBlock = new byte[rawSize];
+                }
+
+                mIn.readFully(mCompressed, 0, compressedSize);
+
+                mInflater.reset();
+                mInflater.setInput(mCompressed, 0, compressedSize);
+
+                int size = 0;
+
+                while (size < rawSize && !mInflater.finished()) {
+                    int count = mInflater.inflate(mBlock, size, rawSize - size);
+
+                    if (count == 0 && (mInflater.needsInput() || mInflater.needsDictionary())) {
+                        return false;
+                    }
+
+                    size += count;
+                }
+
+                if (size != rawSize) {
+                    return false;
+                }
+
+                mBlockSize = rawSize;
+                mPosition = 0;
+                mTags.clear();
+
+                return true;
+            }
+        } catch (EOFException e) {
+            return false;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted block", e);
+        }
+    }
+
+    private void skipFully(int count) throws IOException {
+        while (count > 0) {
+            int skipped = (int) mIn.skip(count);
+
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+
+            count -= skipped;
+        }
+    }
+
+    private long readVarLong() {
+        long result = 0;
+        int shift = 0;
+
+        while (true) {
+            byte b = mBlock[mPosition++];
+            result |= (long) (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+
+            shift += 7;
+        }
+    }
+
+    private String readString() {
+        int length = (int) readVarLong();
+        String result = new String(mBlock, mPosition, length, BinaryLogOutput.UTF_8);
+        mPosition += length;
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mInflater.end();
+        mIn.close();
+    }
+}
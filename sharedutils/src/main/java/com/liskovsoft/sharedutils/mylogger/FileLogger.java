@@ -1,34 +1,38 @@
 package com.liskovsoft.sharedutils.mylogger;
 
 import android.content.Context;
-import android.os.Handler;
-import android.util.DisplayMetrics;
 import com.liskovsoft.sharedutils.R;
 import com.liskovsoft.sharedutils.helpers.AppInfoHelpers;
 import com.liskovsoft.sharedutils.helpers.FileHelpers;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.helpers.MessageHelpers;
 import com.liskovsoft.sharedutils.helpers.PermissionHelpers;
+import com.liskovsoft.sharedutils.mylogger.AsyncLogWriter.DropPolicy;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.Locale;
 
-class FileLogger extends MyLogger {
+/**
+ * Entries are written to the file on the background thread (see {@link AsyncLogWriter})<br/>
+ * Binary mode writes compact "log.bin", use {@link BinaryLogReader} to convert it to text.
+ */
+class FileLogger extends MyLogger implements AsyncLogWriter.Callback {
+    private static final int BUFFER_CAPACITY = 4096;
+    private static final long FLUSH_TIMEOUT_MS = 5_000;
     private final Context mContext;
     private final String mCustomLabel;
     private final MyLogger mFallbackLogger;
-    private BufferedWriter mWriter;
-    private Handler mHandler;
-    private static final long FLUSH_TIME_MS = 1_000;
+    private final AsyncLogWriter mWriter;
+    private final boolean mBinary;
 
     public FileLogger(Context context, String customLabel) {
+        this(context, customLabel, false);
+    }
+
+    public FileLogger(Context context, String customLabel, boolean binary) {
         mContext = context;
+        mBinary = binary;
         mCustomLabel = customLabel;
         mFallbackLogger = new SystemLogger();
 
@@ -36,70 +40,53 @@ class FileLogger extends MyLogger {
 
         MessageHelpers.showLongMessage(
                 mContext,
-                mContext.getString(R.string.log_stored_in_path, getLogPath(mContext)));
+                mContext.getString(R.string.log_stored_in_path, getLogFile(mContext, binary).toString()));
+
+        mWriter = new AsyncLogWriter(getLogFile(mContext, binary), BUFFER_CAPACITY, binary);
+        mWriter.setCallback(this);
+        writeLogHeader();
     }
 
     @Override
     public void d(String tag, String msg) {
-        append(String.format("DEBUG: %s: %s", tag, msg));
+        mWriter.append(Log.LEVEL_DEBUG, tag, msg);
         mFallbackLogger.d(tag, msg);
     }
 
     @Override
     public void i(String tag, String msg) {
-        append(String.format("INFO: %s: %s", tag, msg));
+        mWriter.append(Log.LEVEL_INFO, tag, msg);
         mFallbackLogger.i(tag, msg);
     }
 
     @Override
     public void w(String tag, String msg) {
-        append(String.format("WARN: %s: %s", tag, msg));
+        mWriter.append(Log.LEVEL_WARN, tag, msg);
         mFallbackLogger.w(tag, msg);
     }
 
     @Override
     public void e(String tag, String msg) {
-        append(String.format("ERROR: %s: %s", tag, msg));
+        mWriter.append(Log.LEVEL_ERROR, tag, msg);
         mFallbackLogger.e(tag, msg);
     }
 
     private void append(String text) {
-        try {
-            BufferedWriter buf = getWriter();
-            buf.append(text);
-            buf.newLine();
-        } catch (Exception e) {
-            //MessageHelpers.showMessage(mContext, "Can't initialize log file " + e.getMessage());
-            e.printStackTrace();
-        }
+        mWriter.append(text);
     }
 
-    private BufferedWriter getWriter() throws IOException {
-        if (mWriter == null) {
-            if (!PermissionHelpers.hasStoragePermissions(mContext)) {
-                throw new IOException("No write permissions");
-            }
-
-            File logFile = getLogFile(mContext);
-
-            FileHelpers.ensureFileExists(logFile);
-
-            //BufferedWriter for performance, true to set append to file flag
-            mWriter = new BufferedWriter(new FileWriter(logFile, false));
-            writeLogHeader();
-
-            MessageHelpers.showLongMessage(mContext, mContext.getString(R.string.log_to_file_started, getLogPath(mContext)));
-        }
-
-        return mWriter;
+    @Override
+    public boolean canOpen() {
+        return PermissionHelpers.hasStoragePermissions(mContext);
     }
 
-    private static String getLogPath(Context context) {
-        return getLogFile(context).toString();
+    @Override
+    public void onOpen(File file) {
+        MessageHelpers.showLongMessage(mContext, mContext.getString(R.string.log_to_file_started, file.toString()));
     }
 
-    private static File getLogFile(Context context) {
-        return new File(FileHelpers.getBackupDir(context), "log.txt");
+    private static File getLogFile(Context context, boolean binary) {
+        return new File(FileHelpers.getBackupDir(context), binary ? "log.bin" : "log.txt");
     }
 
     private void writeLogHeader() {
@@ -116,17 +103,20 @@ class FileLogger extends MyLogger {
     }
 
     private void writeLogcatHeader() {
-        append("---------------------------------------");
-        append("------- STARTING LOGCAT DUMP ----------");
-        append("---------------------------------------");
+        mWriter.writeLine("---------------------------------------");
+        mWriter.writeLine("------- STARTING LOGCAT DUMP ----------");
+        mWriter.writeLine("---------------------------------------");
     }
 
     private void writeLogcatFooter() {
-        append("---------------------------------------");
-        append("-------- ENDING LOGCAT DUMP -----------");
-        append("---------------------------------------");
+        mWriter.writeLine("---------------------------------------");
+        mWriter.writeLine("-------- ENDING LOGCAT DUMP -----------");
+        mWriter.writeLine("---------------------------------------");
     }
 
+    /**
+     * Runs on the writer thread. Lines go directly to the file (may not fit into the buffer).
+     */
     private void dumpLogcat() {
         writeLogcatHeader();
 
@@ -135,7 +125,7 @@ class FileLogger extends MyLogger {
 
             String line;
             while ((line = bufferedReader.readLine()) != null){
-                append(line);
+                mWriter.writeLine(line);
             }
 
             Helpers.exec("logcat", "-c"); // clear logcat
@@ -148,26 +138,28 @@ class FileLogger extends MyLogger {
 
     @Override
     public void flush() {
-        if (mWriter != null) {
-            try {
-                dumpLogcat();
-                mWriter.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
+        mWriter.flush(this::dumpLogcat, FLUSH_TIMEOUT_MS);
+    }
+
+    @Override
+    public void close() {
+        mWriter.close();
     }
 
     @Override
     public String getLogType() {
-        return Log.LOG_TYPE_FILE;
+        return mBinary ? Log.LOG_TYPE_FILE_BINARY : Log.LOG_TYPE_FILE;
     }
 
-    private void startWatchDog() {
-        if (mHandler == null) {
-            mHandler = new Handler();
-        }
+    public void setDropPolicy(DropPolicy dropPolicy) {
+        mWriter.setDropPolicy(dropPolicy);
+    }
+
+    public long getDroppedCount() {
+        return mWriter.getDroppedCount();
+    }
 
-        mHandler.postDelayed(() -> {this.flush(); startWatchDog();}, FLUSH_TIME_MS);
+    public long getWrittenCount() {
+        return mWriter.getWrittenCount();
     }
 }
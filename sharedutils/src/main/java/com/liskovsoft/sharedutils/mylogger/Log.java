@@ -2,44 +2,120 @@ package com.liskovsoft.sharedutils.mylogger;
 
 import android.content.Context;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class Log {
     public static final String LOG_TYPE_FILE = "log_type_file";
+    /**
+     * Compact file, see {@link BinaryLogReader}
+     */
+    public static final String LOG_TYPE_FILE_BINARY = "log_type_file_binary";
     public static final String LOG_TYPE_SYSTEM = "log_type_system";
+    // Same values as android.util.Log
+    public static final int LEVEL_DEBUG = 3;
+    public static final int LEVEL_INFO = 4;
+    public static final int LEVEL_WARN = 5;
+    public static final int LEVEL_ERROR = 6;
+    public static final int LEVEL_NONE = Integer.MAX_VALUE;
+    private static final int MAX_BUILDER_CAPACITY = 8 * 1024;
 
     private static MyLogger sLogger = new SystemLogger();
+    private static volatile int sMinLevel = LEVEL_DEBUG;
+    private static final Map<String, Integer> sTagLevels = new ConcurrentHashMap<>();
+    private static volatile boolean sHasTagLevels;
+    private static final ThreadLocal<StringBuilder> sBuilder = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(256);
+        }
+    };
 
     public static void d(String tag, Object msg, Object... formatArgs) {
-        sLogger.d(tag, formatMsg(msg, formatArgs));
+        if (isLoggable(LEVEL_DEBUG, tag)) {
+            sLogger.d(tag, formatMsg(msg, formatArgs));
+        }
     }
 
     public static void i(String tag, Object msg, Object... formatArgs) {
-        sLogger.i(tag, formatMsg(msg, formatArgs));
+        if (isLoggable(LEVEL_INFO, tag)) {
+            sLogger.i(tag, formatMsg(msg, formatArgs));
+        }
     }
 
     public static void w(String tag, Object msg, Object... formatArgs) {
-        sLogger.w(tag, formatMsg(msg, formatArgs));
+        if (isLoggable(LEVEL_WARN, tag)) {
+            sLogger.w(tag, formatMsg(msg, formatArgs));
+        }
     }
 
     public static void e(String tag, Object msg, Object... formatArgs) {
-        sLogger.e(tag, formatMsg(msg, formatArgs));
+        if (isLoggable(LEVEL_ERROR, tag)) {
+            sLogger.e(tag, formatMsg(msg, formatArgs));
+        }
     }
 
     public static void i(String tag, Object msg, Throwable ex) {
-        i(tag, msg + " " + ex.getMessage());
+        if (isLoggable(LEVEL_INFO, tag)) {
+            i(tag, msg + " " + ex.getMessage());
+        }
     }
 
     public static void e(String tag, Object msg, Throwable ex) {
-        if (msg != null && ex != null) {
+        if (msg != null && ex != null && isLoggable(LEVEL_ERROR, tag)) {
             e(tag, msg + " " + ex.getMessage());
         }
     }
 
     public static void d(String tag, Object msg, Throwable ex) {
-        d(tag, msg + " " + ex.getMessage());
+        if (isLoggable(LEVEL_DEBUG, tag)) {
+            d(tag, msg + " " + ex.getMessage());
+        }
     }
 
     public static void w(String tag, Object msg, Throwable ex) {
-        w(tag, msg + " " + ex.getMessage());
+        if (isLoggable(LEVEL_WARN, tag)) {
+            w(tag, msg + " " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Checked before the message is formatted. Per-tag level wins over the global one.
+     */
+    public static boolean isLoggable(int level, String tag) {
+        if (sHasTagLevels && tag != null) {
+            Integer tagLevel = sTagLevels.get(tag);
+
+            if (tagLevel != null) {
+                return level >= tagLevel;
+            }
+        }
+
+        return level >= sMinLevel;
+    }
+
+    /**
+     * E.g. {@link #LEVEL_INFO} on production builds to skip debug messages
+     */
+    public static void setMinLevel(int level) {
+        sMinLevel = level;
+    }
+
+    public static int getMinLevel() {
+        return sMinLevel;
+    }
+
+    /**
+     * Overrides the global level for the tag. Pass null to remove the override.
+     */
+    public static void setTagLevel(String tag, Integer level) {
+        if (level != null) {
+            sTagLevels.put(tag, level);
+        } else {
+            sTagLevels.remove(tag);
+        }
+
+        sHasTagLevels = !sTagLevels.isEmpty();
     }
 
     /**
@@ -54,14 +130,23 @@ public class Log {
             return;
         }
 
+        MyLogger previous = sLogger;
+
         switch (logType) {
             case LOG_TYPE_FILE:
                 sLogger = new FileLogger(context, customLabel);
                 break;
+            case LOG_TYPE_FILE_BINARY:
+                sLogger = new FileLogger(context, customLabel, true);
+                break;
             case LOG_TYPE_SYSTEM:
                 sLogger = new SystemLogger();
                 break;
         }
+
+        if (previous != sLogger) {
+            previous.close();
+        }
     }
 
     public static String getLogType() {
@@ -72,15 +157,45 @@ public class Log {
         return LOG_TYPE_SYSTEM;
     }
 
-    private static String formatMsg(Object msg, Object... formatArgs) {
+    /**
+     * Supports "{}" placeholders (no String.format) and legacy printf-like patterns.<br/>
+     * Any '%' means printf-like pattern, so literal "{}" (e.g. json) in the legacy patterns is kept as is.
+     */
+    static String formatMsg(Object msg, Object... formatArgs) {
         String result = null;
 
         if (msg != null && formatArgs != null && formatArgs.length > 0) {
-            result = String.format(msg.toString(), formatArgs);
+            String pattern = msg.toString();
+            result = pattern.indexOf('%') == -1 && pattern.contains("{}") ? formatBraces(pattern, formatArgs) : String.format(pattern, formatArgs);
         } else if (msg != null) {
             result = msg.toString();
         }
 
         return result;
     }
+
+    private static String formatBraces(String pattern, Object[] formatArgs) {
+        StringBuilder builder = sBuilder.get();
+        builder.setLength(0);
+
+        int start = 0;
+        int argIndex = 0;
+        int index;
+
+        while (argIndex < formatArgs.length && (index = pattern.indexOf("{}", start)) != -1) {
+            builder.append(pattern, start, index);
+            builder.append(formatArgs[argIndex++]);
+            start = index + 2;
+        }
+
+        builder.append(pattern, start, pattern.length());
+
+        String result = builder.toString();
+
+        if (builder.capacity() > MAX_BUILDER_CAPACITY) {
+            sBuilder.remove(); // don't hold huge buffers
+        }
+
+        return result;
+    }
 }
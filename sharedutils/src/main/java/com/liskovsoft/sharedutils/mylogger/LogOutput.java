@@ -0,0 +1,17 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Log file encoding. Used only from the writer thread.
+ */
+interface LogOutput extends Closeable, Flushable {
+    void write(LogRecord record) throws IOException;
+
+    /**
+     * Approximate file size, including not flushed data
+     */
+    long getSize();
+}
@@ -0,0 +1,65 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Single log entry. Raw records (header lines, logcat dump) have no level and tag.
+ */
+public class LogRecord {
+    public static final int LEVEL_RAW = 0;
+    private final long mTimeMs;
+    private final int mLevel;
+    private final String mTag;
+    private final String mMessage;
+
+    public LogRecord(long timeMs, int level, String tag, String message) {
+        mTimeMs = timeMs;
+        mLevel = level;
+        mTag = tag;
+        mMessage = message;
+    }
+
+    public static LogRecord raw(String message) {
+        return new LogRecord(System.currentTimeMillis(), LEVEL_RAW, null, message);
+    }
+
+    public long getTimeMs() {
+        return mTimeMs;
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public String getTag() {
+        return mTag;
+    }
+
+    public String getMessage() {
+        return mMessage;
+    }
+
+    public static String getLevelName(int level) {
+        switch (level) {
+            case Log.LEVEL_DEBUG:
+                return "DEBUG";
+            case Log.LEVEL_INFO:
+                return "INFO";
+            case Log.LEVEL_WARN:
+                return "WARN";
+            case Log.LEVEL_ERROR:
+                return "ERROR";
+        }
+
+        return String.valueOf(level);
+    }
+
+    /**
+     * Same as text log line: "DEBUG: tag: message"
+     */
+    @NonNull
+    @Override
+    public String toString() {
+        return mLevel == LEVEL_RAW ? String.valueOf(mMessage) : getLevelName(mLevel) + ": " + mTag + ": " + mMessage;
+    }
+}
@@ -6,6 +6,7 @@ abstract class MyLogger {
     public void w(String tag, String msg) {}
     public void e(String tag, String msg) {}
     public void flush() {}
+    public void close() {}
 
     public abstract String getLogType();
 }
@@ -0,0 +1,113 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue (many producers, many consumers).<br/>
+ * Every slot has a sequence number that tells whether the slot is ready to be written or read.
+ */
+final class RingBuffer<T> {
+    private final AtomicReferenceArray<T> mItems;
+    private final AtomicLongArray mSequences;
+    private final int mMask;
+    private final AtomicLong mHead = new AtomicLong(); // next read position
+    private final AtomicLong mTail = new AtomicLong(); // next write position
+
+    /**
+     * Capacity is rounded up to the power of two
+     */
+    public RingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+        mItems = new AtomicReferenceArray<>(size);
+        mSequences = new AtomicLongArray(size);
+        mMask = size - 1;
+
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false if the buffer is full
+     */
+    public boolean offer(T item) {
+        long position = mTail.get();
+
+        while (true) {
+            int index = (int) (position & mMask);
+            long diff = mSequences.get(index) - position;
+
+            if (diff == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    mItems.set(index, item);
+                    mSequences.set(index, position + 1); // publish
+                    return true;
+                }
+
+                position = mTail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = mTail.get(); // taken by another producer
+            }
+        }
+    }
+
+    /**
+     * @return null if the buffer is empty
+     */
+    public T poll() {
+        long position = mHead.get();
+
+        while (true) {
+            int index = (int) (position & mMask);
+            long diff = mSequences.get(index) - (position + 1);
+
+            if (diff == 0) {
+                if (mHead.compareAndSet(position, position + 1)) {
+                    T item = mItems.get(index);
+                    mItems.set(index, null);
+                    mSequences.set(index, position + mMask + 1); // free for the next round
+                    return item;
+                }
+
+                position = mHead.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                position = mHead.get(); // taken by another consumer
+            }
+        }
+    }
+
+    public int drainTo(List<T> result, int maxItems) {
+        int count = 0;
+        T item;
+
+        while (count < maxItems && (item = poll()) != null) {
+            result.add(item);
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Approximate when called concurrently
+     */
+    public int size() {
+        return (int) Math.max(0, mTail.get() - mHead.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int getCapacity() {
+        return mMask + 1;
+    }
+}
@@ -0,0 +1,46 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+/**
+ * Plain text lines: "DEBUG: tag: message"
+ */
+class TextLogOutput implements LogOutput {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private final BufferedWriter mWriter;
+    private long mSize;
+
+    public TextLogOutput(File file, boolean append) throws IOException {
+        mWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, append), UTF_8), BUFFER_SIZE);
+        mSize = append ? file.length() : 0;
+    }
+
+    @Override
+    public void write(LogRecord record) throws IOException {
+        String line = record.toString();
+        mWriter.write(line);
+        mWriter.newLine();
+        mSize += line.length() + 1;
+    }
+
+    @Override
+    public long getSize() {
+        return mSize;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mWriter.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mWriter.close();
+    }
+}
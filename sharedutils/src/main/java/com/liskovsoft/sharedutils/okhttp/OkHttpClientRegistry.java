@@ -0,0 +1,183 @@
+package com.liskovsoft.sharedutils.okhttp;
+
+import androidx.annotation.Nullable;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out named clients that share one {@link ConnectionPool}, {@link Dispatcher} and {@link okhttp3.Dns}.<br/>
+ * Every client is derived from the same base client, so TLS sessions and idle connections
+ * are reused across components (e.g. the update checker and the main app talking to the same hosts).<br/>
+ * NOTE: {@link OkHttpManager} replaces the dispatcher with its own, so its request limits don't throttle the other clients.
+ * The base client has no profiler (see {@link OkHttpCommons#setupProfiler}).
+ */
+public final class OkHttpClientRegistry {
+    private static final String TAG = OkHttpClientRegistry.class.getSimpleName();
+    public static final String CLIENT_DEFAULT = "default";
+    public static final String CLIENT_DOWNLOAD = "download";
+    private static final int MAX_IDLE_CONNECTIONS = 20;
+    private static final long KEEP_ALIVE_DURATION_MS = 5 * 60 * 1_000; // 5 minutes
+    private static OkHttpClientRegistry sInstance;
+    private final ConnectionPool mConnectionPool;
+    private final Dispatcher mDispatcher;
+    private final Map<String, OkHttpClient> mClients = new HashMap<>();
+    private final AtomicLong mAcquiredConnections = new AtomicLong();
+    private final AtomicLong mNewConnections = new AtomicLong();
+    private OkHttpClient mBaseClient;
+
+    public interface ClientCustomizer {
+        void customize(OkHttpClient.Builder builder);
+    }
+
+    private OkHttpClientRegistry(int maxIdleConnections, long keepAliveDurationMs) {
+        mConnectionPool = new ConnectionPool(maxIdleConnections, keepAliveDurationMs, TimeUnit.MILLISECONDS);
+        mDispatcher = new Dispatcher();
+    }
+
+    public static OkHttpClientRegistry instance() {
+        if (sInstance == null) {
+            sInstance = new OkHttpClientRegistry(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_DURATION_MS);
+        }
+
+        return sInstance;
+    }
+
+    /**
+     * Sets pool sizing. Should be called before any client is obtained.<br/>
+     * Running registry will be shut down.
+     */
+    public static void setupPool(int maxIdleConnections, long keepAliveDurationMs) {
+        if (sInstance != null) {
+            sInstance.shutdown();
+        }
+
+        sInstance = new OkHttpClientRegistry(maxIdleConnections, keepAliveDurationMs);
+    }
+
+    /**
+     * Shared client with all common settings applied (see {@link OkHttpCommons#setupBuilder})
+     */
+    public synchronized OkHttpClient getClient() {
+        if (mBaseClient == null) {
+            mBaseClient = OkHttpCommons.setupBuilder(new OkHttpClient.Builder())
+                    .connectionPool(mConnectionPool)
+                    .dispatcher(mDispatcher)
+                    .eventListenerFactory(call -> new PoolEventListener())
+                    .build();
+        }
+
+        return mBaseClient;
+    }
+
+    public OkHttpClient getClient(String name) {
+        return getClient(name, null);
+    }
+
+    /**
+     * Named client derived from the shared one. Customizer is applied only once, when the client is created.
+     */
+    public synchronized OkHttpClient getClient(String name, @Nullable ClientCustomizer customizer) {
+        if (CLIENT_DEFAULT.equals(name)) {
+            return getClient();
+        }
+
+        OkHttpClient client = mClients.get(name);
+
+        if (client == null) {
+            // NOTE: newBuilder() keeps the pool, the dispatcher and the dns of the base client
+            OkHttpClient.Builder builder = getClient().newBuilder();
+
+            if (customizer != null) {
+                customizer.customize(builder);
+            }
+
+            client = builder.build();
+            mClients.put(name, client);
+        }
+
+        return client;
+    }
+
+    public Dispatcher getDispatcher() {
+        return mDispatcher;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return mConnectionPool;
+    }
+
+    /**
+     * Forget the named client. Shared resources stay untouched.
+     */
+    public synchronized void evict(String name) {
+        mClients.remove(name);
+    }
+
+    /**
+     * Close idle connections. Useful on low memory or network change.
+     */
+    public void evictConnections() {
+        mConnectionPool.evictAll();
+    }
+
+    /**
+     * Cancel running calls, close idle connections and forget all clients.
+     */
+    public synchronized void shutdown() {
+        Log.d(TAG, "Shutting down. Pool hits: %s, new connections: %s", getPoolHitCount(), getNewConnectionCount());
+
+        mDispatcher.cancelAll();
+        mConnectionPool.evictAll();
+        mClients.clear();
+        mBaseClient = null;
+
+        if (sInstance == this) {
+            sInstance = null;
+        }
+    }
+
+    /**
+     * Number of calls that reused a pooled connection
+     */
+    public long getPoolHitCount() {
+        return Math.max(mAcquiredConnections.get() - mNewConnections.get(), 0);
+    }
+
+    /**
+     * Number of calls that had to open a new connection (incl. TLS handshake)
+     */
+    public long getNewConnectionCount() {
+        return mNewConnections.get();
+    }
+
+    public void resetCounters() {
+        mAcquiredConnections.set(0);
+        mNewConnections.set(0);
+    }
+
+    private class PoolEventListener extends EventListener {
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, @Nullable Protocol protocol) {
+            mNewConnections.incrementAndGet();
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            mAcquiredConnections.incrementAndGet();
+        }
+    }
+}
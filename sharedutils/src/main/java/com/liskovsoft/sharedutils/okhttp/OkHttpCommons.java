@@ -4,11 +4,13 @@ import android.os.Build.VERSION;
 import com.liskovsoft.sharedutils.BuildConfig;
 import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
+import com.liskovsoft.sharedutils.okhttp.interceptors.CacheInterceptor;
 import com.liskovsoft.sharedutils.okhttp.interceptors.RateLimitInterceptor;
 import com.liskovsoft.sharedutils.okhttp.interceptors.UnzippingInterceptor;
 import com.liskovsoft.sharedutils.prefs.GlobalPreferences;
 import com.localebro.okhttpprofiler.OkHttpProfilerInterceptor;
 
+import okhttp3.Cache;
 import okhttp3.CipherSuite;
 import okhttp3.ConnectionPool;
 import okhttp3.ConnectionSpec;
@@ -24,6 +26,7 @@ import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.TrustManagerFactory;
 import javax.net.ssl.X509TrustManager;
+import java.io.File;
 import java.net.Authenticator;
 import java.net.Inet4Address;
 import java.net.InetAddress;
@@ -43,7 +46,11 @@ final class OkHttpCommons {
     public static final long CONNECT_TIMEOUT_MS = 20_000;
     public static final long READ_TIMEOUT_MS = 20_000;
     public static final long WRITE_TIMEOUT_MS = 20_000;
-    public static boolean enableProfiler = true;
+    public static final long CACHE_SIZE_BYTES = 50 * 1024 * 1024; // 50 MB
+    public static File cacheDir;
+    public static long cacheSizeBytes = CACHE_SIZE_BYTES;
+    private static Cache sCache;
+    private static CacheInterceptor sCacheInterceptor;
 
     private OkHttpCommons() {
 
@@ -101,7 +108,8 @@ final class OkHttpCommons {
         // NOTE: SocketTimeoutException fix: setup connection pool with 0 (!) idle connections!
         //okBuilder.connectionPool(new ConnectionPool(0, READ_TIMEOUT_MS, TimeUnit.MILLISECONDS));
         //okBuilder.connectionPool(new ConnectionPool(10, 24, TimeUnit.HOURS)); // Video unavailable fix???
-        okBuilder.connectionPool(new ConnectionPool(20, 5, TimeUnit.MINUTES)); // fix npe on pool dispose???
+        //okBuilder.connectionPool(new ConnectionPool(20, 5, TimeUnit.MINUTES)); // fix npe on pool dispose???
+        // NOTE: the pool is shared between all clients. See OkHttpClientRegistry.
     }
 
     /**
@@ -293,6 +301,7 @@ final class OkHttpCommons {
         //enableRateLimiter(okBuilder)
 
         //disableCache(okBuilder);
+        enableCache(okBuilder);
         debugSetup(okBuilder);
 
         return okBuilder;
@@ -304,6 +313,31 @@ final class OkHttpCommons {
         okBuilder.cache(null);
     }
 
+    /**
+     * Disk cache with ETag/Last-Modified revalidation. Enabled only when {@link #cacheDir} is set.
+     */
+    private static void enableCache(OkHttpClient.Builder okBuilder) {
+        if (cacheDir == null) {
+            return;
+        }
+
+        // NOTE: only one Cache instance per directory is allowed
+        if (sCache == null) {
+            sCache = new Cache(cacheDir, cacheSizeBytes);
+        }
+
+        okBuilder.cache(sCache);
+        okBuilder.addInterceptor(getCacheInterceptor());
+    }
+
+    public static CacheInterceptor getCacheInterceptor() {
+        if (sCacheInterceptor == null) {
+            sCacheInterceptor = new CacheInterceptor();
+        }
+
+        return sCacheInterceptor;
+    }
+
     /**
      * Checks that response is compressed and do uncompress if needed.
      */
@@ -318,19 +352,23 @@ final class OkHttpCommons {
     }
 
     private static void debugSetup(OkHttpClient.Builder okBuilder) {
+        if (BuildConfig.DEBUG) {
+            addLogger(okBuilder);
+        }
+    }
+
+    /**
+     * Debug builds only. Not a part of {@link #setupBuilder}: the base client is shared, so the profiler is opt-in per client.
+     */
+    public static OkHttpClient.Builder setupProfiler(OkHttpClient.Builder okBuilder) {
         if (BuildConfig.DEBUG) {
             // Profiler could cause OutOfMemoryError when testing.
             // Also outputs to logcat tons of info.
             // If you enable it to all requests - expect slowdowns.
-            if (enableProfiler) {
-                addProfiler(okBuilder);
-            }
-            addLogger(okBuilder);
+            okBuilder.addInterceptor(new OkHttpProfilerInterceptor());
         }
-    }
 
-    private static void addProfiler(OkHttpClient.Builder okBuilder) {
-        okBuilder.addInterceptor(new OkHttpProfilerInterceptor());
+        return okBuilder;
     }
 
     private static void addLogger(OkHttpClient.Builder okBuilder) {
@@ -355,7 +393,7 @@ final class OkHttpCommons {
     }
 
     private static void forceGoogleDns(OkHttpClient.Builder okBuilder) {
-        okBuilder.dns(PublicDnsResolver.google());
+        okBuilder.dns(PublicDnsResolver.googleCached());
     }
 
     /**
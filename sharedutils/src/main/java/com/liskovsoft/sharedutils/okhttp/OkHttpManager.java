@@ -3,6 +3,10 @@ package com.liskovsoft.sharedutils.okhttp;
 import androidx.annotation.Nullable;
 
 import com.liskovsoft.sharedutils.mylogger.Log;
+import io.reactivex.Single;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
 import okhttp3.Headers;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -10,18 +14,25 @@ import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
 public class OkHttpManager {
     private static final String TAG = OkHttpManager.class.getSimpleName();
+    private static final int DEFAULT_MAX_REQUESTS = 64;
+    private static final int DEFAULT_MAX_REQUESTS_PER_HOST = 5;
     private static OkHttpManager sInstance;
     private OkHttpClient mClient;
+    private OkHttpClientRegistry mRegistry;
     private final boolean mEnableProfiler;
+    private final Dispatcher mDispatcher;
 
     private OkHttpManager(boolean enableProfiler) {
         mEnableProfiler = enableProfiler;
+        mDispatcher = new Dispatcher();
+        setMaxRequests(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
     }
 
     public static OkHttpManager instance() {
@@ -36,6 +47,9 @@ public class OkHttpManager {
         return sInstance;
     }
 
+    /**
+     * NOTE: shared connection pool stays alive. Use {@link OkHttpClientRegistry#shutdown()} to release them.
+     */
     public static void unhold() {
         sInstance = null;
     }
@@ -69,6 +83,55 @@ public class OkHttpManager {
         return doHeadRequest(url, getClient());
     }
 
+    /**
+     * Non-blocking variant. The callback is invoked on the dispatcher's thread.<br/>
+     * Use returned {@link Call} to cancel the request.
+     */
+    public Call doGetRequestAsync(String url, @Nullable Map<String, String> headers, Callback callback) {
+        return doGetRequestAsync(url, getClient(), headers, callback);
+    }
+
+    public Call doGetRequestAsync(String url, OkHttpClient client, @Nullable Map<String, String> headers, Callback callback) {
+        return doRequestAsync(client, createGetRequest(url, headers), callback);
+    }
+
+    public Call doPostRequestAsync(String url, @Nullable Map<String, String> headers, String postBody, @Nullable String contentType, Callback callback) {
+        return doRequestAsync(getClient(), createPostRequest(url, headers, postBody, contentType), callback);
+    }
+
+    public Call doHeadRequestAsync(String url, Callback callback) {
+        return doRequestAsync(getClient(), createHeadRequest(url), callback);
+    }
+
+    /**
+     * Non-blocking variant. Disposing the subscription cancels the underlying call.
+     */
+    public Single<Response> doGetRequestSingle(String url, @Nullable Map<String, String> headers) {
+        return doGetRequestSingle(url, getClient(), headers);
+    }
+
+    public Single<Response> doGetRequestSingle(String url, OkHttpClient client, @Nullable Map<String, String> headers) {
+        return doRequestSingle(client, createGetRequest(url, headers));
+    }
+
+    public Single<Response> doPostRequestSingle(String url, @Nullable Map<String, String> headers, String postBody, @Nullable String contentType) {
+        return doRequestSingle(getClient(), createPostRequest(url, headers, postBody, contentType));
+    }
+
+    public Single<Response> doHeadRequestSingle(String url) {
+        return doRequestSingle(getClient(), createHeadRequest(url));
+    }
+
+    /**
+     * Limits the number of in-flight async requests (globally and per host).<br/>
+     * Excess calls are queued by the {@link Dispatcher} instead of parking extra threads.<br/>
+     * NOTE: the dispatcher is own (the only part not shared with the registry). Other registry clients aren't affected.
+     */
+    public void setMaxRequests(int maxRequests, int maxRequestsPerHost) {
+        mDispatcher.setMaxRequests(maxRequests);
+        mDispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+    }
+
     /**
      * NOTE: default method is GET
      */
@@ -97,63 +160,142 @@ public class OkHttpManager {
     }
 
     private Response doPostRequest(String url, OkHttpClient client, Map<String, String> headers, String body, @Nullable String contentType) {
+        return doRequest(client, createPostRequest(url, headers, body, contentType));
+    }
+
+    private Response doGetRequest(String url, OkHttpClient client, Map<String, String> headers) {
+        return doRequest(client, createGetRequest(url, headers));
+    }
+
+    private Response doGetRequest(String url, OkHttpClient client) {
+        return doRequest(client, createGetRequest(url, null));
+    }
+
+    private Response doHeadRequest(String url, OkHttpClient client) {
+        return doRequest(client, createHeadRequest(url));
+    }
+
+    public Response doRequest(OkHttpClient client, Request okHttpRequest) {
+        try {
+            return client.newCall(okHttpRequest).execute();
+        } catch (IOException ex) {
+            Log.e(TAG, ex.getMessage()); // network error
+            throw new IllegalStateException("Interrupted OkHttp request to " + okHttpRequest.url(), ex);
+        }
+    }
+
+    private Call doRequestAsync(OkHttpClient client, Request okHttpRequest, Callback callback) {
+        Call call = client.newCall(okHttpRequest);
+        call.enqueue(callback);
+        return call;
+    }
+
+    private Single<Response> doRequestSingle(OkHttpClient client, Request okHttpRequest) {
+        return Single.create(emitter -> {
+            Call call = client.newCall(okHttpRequest);
+            emitter.setCancellable(call::cancel);
+
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException ex) {
+                    if (!call.isCanceled()) {
+                        Log.e(TAG, ex.getMessage()); // network error
+                    }
+                    emitter.tryOnError(new IllegalStateException("Interrupted OkHttp request to " + okHttpRequest.url(), ex));
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    if (emitter.isDisposed()) {
+                        response.close();
+                        return;
+                    }
+
+                    emitter.onSuccess(response);
+                }
+            });
+        });
+    }
+
+    private static Request createGetRequest(String url, @Nullable Map<String, String> headers) {
+        Request.Builder builder = new Request.Builder()
+                .url(url)
+                .get();
+
+        if (headers != null) {
+            builder.headers(Headers.of(headers));
+        }
+
+        return builder.build();
+    }
+
+    private static Request createPostRequest(String url, @Nullable Map<String, String> headers, String body, @Nullable String contentType) {
         if (headers == null) {
             headers = new HashMap<>();
         }
 
-        Request okHttpRequest = new Request.Builder()
+        return new Request.Builder()
                 .url(url)
                 .headers(Headers.of(headers))
                 .post(RequestBody.create(contentType != null ? MediaType.parse(contentType) : null, body))
                 .build();
-
-        return doRequest(client, okHttpRequest);
     }
 
-    private Response doGetRequest(String url, OkHttpClient client, Map<String, String> headers) {
-        Request okHttpRequest = new Request.Builder()
+    private static Request createHeadRequest(String url) {
+        return new Request.Builder()
                 .url(url)
-                .headers(Headers.of(headers))
-                .get()
+                .head()
                 .build();
-
-        return doRequest(client, okHttpRequest);
     }
 
-    private Response doGetRequest(String url, OkHttpClient client) {
-        Request okHttpRequest = new Request.Builder()
-                .url(url)
-                .get()
-                .build();
+    /**
+     * Derived from the registry client (shared pool and dns). Rebuilt after the registry is reset.<br/>
+     * The profiler is added here (debug builds only), so the flag works no matter who built the registry client first.
+     */
+    public synchronized OkHttpClient getClient() {
+        OkHttpClientRegistry registry = OkHttpClientRegistry.instance();
 
-        return doRequest(client, okHttpRequest);
+        if (mClient == null || mRegistry != registry) {
+            mRegistry = registry;
+            OkHttpClient.Builder builder = registry.getClient().newBuilder()
+                    .dispatcher(mDispatcher);
+
+            if (mEnableProfiler) {
+                OkHttpCommons.setupProfiler(builder);
+            }
+
+            mClient = builder.build();
+        }
+
+        return mClient;
     }
 
-    private Response doHeadRequest(String url, OkHttpClient client) {
-        Request okHttpRequest = new Request.Builder()
-                .url(url)
-                .head()
-                .build();
+    /**
+     * Enables disk response cache. Should be called before the client is created.
+     */
+    public static void enableCache(File cacheDir, long maxSizeBytes) {
+        OkHttpCommons.cacheDir = cacheDir;
+        OkHttpCommons.cacheSizeBytes = maxSizeBytes;
+    }
 
-        return doRequest(client, okHttpRequest);
+    /**
+     * Serve cached responses up to specified staleness (e.g. when offline).
+     * {@link com.liskovsoft.sharedutils.okhttp.interceptors.CacheInterceptor#MAX_STALE_DISABLED} - regular caching.
+     */
+    public static void setCacheMaxStale(int maxStaleSec) {
+        OkHttpCommons.getCacheInterceptor().setMaxStale(maxStaleSec);
     }
 
-    private Response doRequest(OkHttpClient client, Request okHttpRequest) {
-        try {
-            return client.newCall(okHttpRequest).execute();
-        } catch (IOException ex) {
-            Log.e(TAG, ex.getMessage()); // network error
-            throw new IllegalStateException("Interrupted OkHttp request to " + okHttpRequest.url(), ex);
-        }
+    public static long getCacheHitCount() {
+        return OkHttpCommons.getCacheInterceptor().getHitCount();
     }
 
-    public OkHttpClient getClient() {
-        if (mClient == null) {
-            OkHttpCommons.enableProfiler = mEnableProfiler;
-            mClient = OkHttpCommons.setupBuilder(new OkHttpClient.Builder()).build();
-        }
+    public static long getCacheMissCount() {
+        return OkHttpCommons.getCacheInterceptor().getMissCount();
+    }
 
-        return mClient;
+    public static long getCacheRevalidationCount() {
+        return OkHttpCommons.getCacheInterceptor().getRevalidationCount();
     }
 
     public static long getConnectTimeoutMs() {
@@ -2,6 +2,8 @@ package com.liskovsoft.sharedutils.okhttp;
 
 import androidx.annotation.NonNull;
 
+import com.liskovsoft.sharedutils.cache.ConcurrentLruCache;
+import com.liskovsoft.sharedutils.mylogger.Log;
 import okhttp3.Dns;
 import org.xbill.DNS.ARecord;
 import org.xbill.DNS.AAAARecord;
@@ -12,37 +14,108 @@ import org.xbill.DNS.SimpleResolver;
 import org.xbill.DNS.Type;
 
 import java.io.IOException;
+import java.net.Inet6Address;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Queries AAAA first, then A — avoids redirect loops on some CDNs
+ * Queries AAAA first, then A — avoids redirect loops on some CDNs<br/>
+ * Cached mode: queries AAAA and A in parallel, keeps answers for their TTL (failures are cached too),
+ * serves stale answers while refreshing in background (a failed refresh keeps the stale answer) and interleaves address families (Happy Eyeballs)
+ * instead of probing reachability.
  */
 public class PublicDnsResolver implements Dns {
+    private static final String TAG = PublicDnsResolver.class.getSimpleName();
+    private static final int MAX_CACHE_SIZE = 256;
+    private static final long MIN_TTL_MS = 10_000;
+    private static final long MAX_TTL_MS = 60 * 60 * 1_000; // 1 hour
+    private static final long NEGATIVE_TTL_MS = 30_000;
+    private static final long MAX_STALE_MS = 60 * 60 * 1_000; // 1 hour
+    private static final long IPV6_CHECK_INTERVAL_MS = 30_000;
+    private static final Clock SYSTEM_CLOCK = System::currentTimeMillis;
+    private static ExecutorService sExecutor;
     private final Resolver primaryResolver;
     private final Resolver fallbackResolver;
+    private final boolean mCacheEnabled;
+    private final Clock mClock;
+    private final ConcurrentLruCache<String, CacheEntry> mCache = new ConcurrentLruCache<>(MAX_CACHE_SIZE); // own expiration, stale answers are served
+    private volatile boolean mHasIPv6;
+    private volatile long mIPv6CheckTimeMs;
+
+    interface Clock {
+        long nowMs();
+    }
+
+    private static class Answer {
+        final List<InetAddress> addresses;
+        final long ttlMs;
+
+        Answer(List<InetAddress> addresses, long ttlMs) {
+            this.addresses = addresses;
+            this.ttlMs = ttlMs;
+        }
+    }
+
+    private static class CacheEntry {
+        final List<InetAddress> addresses; // empty list - negative entry
+        final long expireTimeMs;
+        final AtomicBoolean refreshing = new AtomicBoolean();
+
+        CacheEntry(List<InetAddress> addresses, long expireTimeMs) {
+            this.addresses = addresses;
+            this.expireTimeMs = expireTimeMs;
+        }
+
+        boolean isNegative() {
+            return addresses.isEmpty();
+        }
+    }
 
     private PublicDnsResolver(String primaryDns, String fallbackDns, int timeoutSec) {
+        this(primaryDns, fallbackDns, SimpleResolver.DEFAULT_PORT, timeoutSec, false);
+    }
+
+    PublicDnsResolver(String primaryDns, String fallbackDns, int port, int timeoutSec, boolean cacheEnabled) {
+        this(primaryDns, fallbackDns, port, timeoutSec, cacheEnabled, SYSTEM_CLOCK);
+    }
+
+    PublicDnsResolver(String primaryDns, String fallbackDns, int port, int timeoutSec, boolean cacheEnabled, Clock clock) {
         try {
             primaryResolver = new SimpleResolver(primaryDns);
+            primaryResolver.setPort(port);
             primaryResolver.setTimeout(timeoutSec);
 
             fallbackResolver = new SimpleResolver(fallbackDns);
+            fallbackResolver.setPort(port);
             fallbackResolver.setTimeout(timeoutSec);
         } catch (UnknownHostException e) {
             throw new RuntimeException("Cannot create DNS resolvers", e);
         }
+
+        mCacheEnabled = cacheEnabled;
+        mClock = clock;
     }
 
     @NonNull
     @Override
     public List<InetAddress> lookup(@NonNull String hostname) throws UnknownHostException {
+        if (mCacheEnabled) {
+            return lookupCached(hostname);
+        }
+
         List<InetAddress> result = new ArrayList<>();
 
-        List<InetAddress> ipv6Addresses = queryWithFallback(hostname, Type.AAAA);
-        List<InetAddress> ipv4Addresses = queryWithFallback(hostname, Type.A);
+        List<InetAddress> ipv6Addresses = queryWithFallback(hostname, Type.AAAA).addresses;
+        List<InetAddress> ipv4Addresses = queryWithFallback(hostname, Type.A).addresses;
 
         // IPv6 first (an essential part)
         if (isReachable(ipv6Addresses)) {
@@ -61,6 +134,155 @@ public class PublicDnsResolver implements Dns {
         return result;
     }
 
+    private List<InetAddress> lookupCached(String hostname) throws UnknownHostException {
+        hasIPv6(); // drops the answers ordered for the previous network
+        CacheEntry entry = mCache.get(hostname);
+        long nowMs = mClock.nowMs();
+
+        if (entry != null && nowMs < entry.expireTimeMs) {
+            if (entry.isNegative()) {
+                throw new UnknownHostException("Unable to resolve host " + hostname + " (cached)");
+            }
+
+            return entry.addresses;
+        }
+
+        if (entry != null && !entry.isNegative() && nowMs < entry.expireTimeMs + MAX_STALE_MS) {
+            // Serve stale, refresh in background
+            if (entry.refreshing.compareAndSet(false, true)) {
+                getExecutor().execute(() -> {
+                    try {
+                        refresh(hostname);
+                    } catch (UnknownHostException e) {
+                        Log.e(TAG, "Refresh failed: %s", e.getMessage());
+                    } finally {
+                        entry.refreshing.set(false);
+                    }
+                });
+            }
+
+            return entry.addresses;
+        }
+
+        return resolve(hostname);
+    }
+
+    private List<InetAddress> resolve(String hostname) throws UnknownHostException {
+        try {
+            return refresh(hostname);
+        } catch (UnknownHostException e) {
+            mCache.put(hostname, new CacheEntry(Collections.emptyList(), mClock.nowMs() + NEGATIVE_TTL_MS));
+            throw e;
+        }
+    }
+
+    /**
+     * Caches the answer only on success. So the failed background refresh doesn't replace the stale answer.
+     */
+    List<InetAddress> refresh(String hostname) throws UnknownHostException {
+        Answer ipv6Answer;
+        Answer ipv4Answer;
+
+        Future<Answer> ipv6Future = getExecutor().submit(() -> queryWithFallback(hostname, Type.AAAA));
+        ipv4Answer = queryWithFallback(hostname, Type.A);
+
+        try {
+            ipv6Answer = ipv6Future.get();
+        } catch (Exception e) {
+            ipv6Answer = new Answer(new ArrayList<>(), MAX_TTL_MS);
+        }
+
+        List<InetAddress> result = interleave(ipv6Answer.addresses, ipv4Answer.addresses);
+        long ttlMs = Math.min(ipv6Answer.ttlMs, ipv4Answer.ttlMs);
+
+        if (result.isEmpty()) {
+            // Fallback to system DNS only if nothing was resolved
+            result = Dns.SYSTEM.lookup(hostname);
+            ttlMs = MIN_TTL_MS;
+        }
+
+        ttlMs = Math.max(MIN_TTL_MS, Math.min(ttlMs, MAX_TTL_MS));
+        result = Collections.unmodifiableList(result);
+        mCache.put(hostname, new CacheEntry(result, mClock.nowMs() + ttlMs));
+
+        return result;
+    }
+
+    /**
+     * Happy Eyeballs (RFC 8305) ordering: alternate address families, starting with the preferred one.<br/>
+     * NOTE: OkHttp tries the addresses one by one, each with the full connect timeout.
+     * So a broken preferred family still delays the connection by one timeout (not by one per its address).
+     * IPv6 goes first only when the device has a global IPv6 address, otherwise (or when unknown) IPv4 goes first.
+     */
+    private List<InetAddress> interleave(List<InetAddress> ipv6Addresses, List<InetAddress> ipv4Addresses) {
+        List<InetAddress> first = hasIPv6() ? ipv6Addresses : ipv4Addresses;
+        List<InetAddress> second = first == ipv6Addresses ? ipv4Addresses : ipv6Addresses;
+        List<InetAddress> result = new ArrayList<>(first.size() + second.size());
+
+        for (int i = 0; i < Math.max(first.size(), second.size()); i++) {
+            if (i < first.size()) {
+                result.add(first.get(i));
+            }
+            if (i < second.size()) {
+                result.add(second.get(i));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Device has a global IPv6 address (no network calls).<br/>
+     * Re-checked periodically, because the network could change. Cached answers are dropped when the result changes
+     * (their order depends on it).
+     */
+    private boolean hasIPv6() {
+        long nowMs = mClock.nowMs();
+
+        if (nowMs - mIPv6CheckTimeMs > IPV6_CHECK_INTERVAL_MS) {
+            mIPv6CheckTimeMs = nowMs;
+            boolean hasIPv6 = checkIPv6();
+
+            if (hasIPv6 != mHasIPv6) {
+                mHasIPv6 = hasIPv6;
+                mCache.clear();
+            }
+        }
+
+        return mHasIPv6;
+    }
+
+    private static boolean checkIPv6() {
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                Enumeration<InetAddress> addresses = interfaces.nextElement().getInetAddresses();
+
+                while (addresses.hasMoreElements()) {
+                    InetAddress address = addresses.nextElement();
+
+                    if (address instanceof Inet6Address && !address.isLoopbackAddress() &&
+                            !address.isLinkLocalAddress() && !address.isSiteLocalAddress()) {
+                        return true;
+                    }
+                }
+            }
+        } catch (Exception e) { // SocketException, NPE on some devices
+            Log.e(TAG, "Can't check IPv6 support: %s", e.getMessage());
+        }
+
+        return false; // unknown - IPv4 first
+    }
+
+    /**
+     * Drop all cached answers (e.g. on network change)
+     */
+    public void clearCache() {
+        mCache.clear();
+        mIPv6CheckTimeMs = 0;
+    }
+
     private boolean isReachable(List<InetAddress> addresses) {
         for (InetAddress address : addresses) {
             try {
@@ -86,21 +308,26 @@ public class PublicDnsResolver implements Dns {
         return reachable;
     }
 
-    private List<InetAddress> queryWithFallback(String hostname, int type) {
-        List<InetAddress> addresses = query(hostname, type, primaryResolver);
-        if (addresses.isEmpty()) {
-            addresses = query(hostname, type, fallbackResolver);
+    private Answer queryWithFallback(String hostname, int type) {
+        Answer answer = query(hostname, type, primaryResolver);
+        if (answer.addresses.isEmpty()) {
+            answer = query(hostname, type, fallbackResolver);
         }
-        return addresses;
+        return answer;
     }
 
-    private List<InetAddress> query(String hostname, int type, Resolver resolver) {
+    private Answer query(String hostname, int type, Resolver resolver) {
         try {
             Lookup lookup = new Lookup(hostname, type);
             lookup.setResolver(resolver);
 
+            if (mCacheEnabled) {
+                lookup.setCache(null); // we have own cache that honors TTL
+            }
+
             Record[] records = lookup.run();
             List<InetAddress> addresses = new ArrayList<>();
+            long ttlMs = MAX_TTL_MS;
 
             if (records != null) {
                 for (Record record : records) {
@@ -108,15 +335,31 @@ public class PublicDnsResolver implements Dns {
                         addresses.add(((ARecord) record).getAddress());
                     } else if (record instanceof AAAARecord && type == Type.AAAA) {
                         addresses.add(((AAAARecord) record).getAddress());
+                    } else {
+                        continue;
                     }
+
+                    ttlMs = Math.min(ttlMs, record.getTTL() * 1_000);
                 }
             }
 
-            return addresses;
+            return new Answer(addresses, ttlMs);
         } catch (Throwable ignored) {
             // ExceptionInInitializerError
-            return new ArrayList<>();
+            return new Answer(new ArrayList<>(), MAX_TTL_MS);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (sExecutor == null) {
+            sExecutor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
         }
+
+        return sExecutor;
     }
 
     public static Dns google() {
@@ -126,5 +369,12 @@ public class PublicDnsResolver implements Dns {
     public static Dns cloudflare() {
         return new PublicDnsResolver("1.1.1.1", "1.0.0.1", 5);
     }
-}
 
+    public static Dns googleCached() {
+        return new PublicDnsResolver("8.8.8.8", "8.8.4.4", SimpleResolver.DEFAULT_PORT, 5, true);
+    }
+
+    public static Dns cloudflareCached() {
+        return new PublicDnsResolver("1.1.1.1", "1.0.0.1", SimpleResolver.DEFAULT_PORT, 5, true);
+    }
+}
@@ -0,0 +1,682 @@
+package com.liskovsoft.sharedutils.okhttp;
+
+import androidx.annotation.Nullable;
+
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a file with http Range requests.<br/>
+ * Large files are split into parallel segments written at their offsets through one {@link FileChannel}.<br/>
+ * Broken segments are resumed from the last written byte. If the whole download fails,
+ * progress is kept in a small state file next to the destination and the next call continues from there.<br/>
+ * Servers without Range support (or without the total length in Content-Range) are downloaded with a single request.<br/>
+ * Server errors, 408 and 429 are retried. Other unexpected response codes fail the download.
+ */
+public class RangeDownloader {
+    private static final String TAG = RangeDownloader.class.getSimpleName();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_SEGMENT_COUNT = 4;
+    private static final long DEFAULT_MIN_SEGMENT_SIZE_BYTES = 1024 * 1024;
+    private static final int DEFAULT_MAX_RETRIES = 5;
+    private static final long RETRY_DELAY_MS = 1_000;
+    private static final long STATE_SAVE_INTERVAL_BYTES = 1024 * 1024;
+    private static final String STATE_SUFFIX = ".state";
+    private static final Pattern CONTENT_RANGE = Pattern.compile("bytes \\d+-\\d+/(\\d+)");
+    private static final String EMPTY_CONTENT_RANGE = "bytes */0";
+    private static final int HTTP_REQUEST_TIMEOUT = 408;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private final OkHttpClient mClient;
+    private final List<Call> mCalls = Collections.synchronizedList(new ArrayList<>());
+    private int mSegmentCount = DEFAULT_SEGMENT_COUNT;
+    private long mMinSegmentSizeBytes = DEFAULT_MIN_SEGMENT_SIZE_BYTES;
+    private int mMaxRetries = DEFAULT_MAX_RETRIES;
+    private long mRetryDelayMs = RETRY_DELAY_MS;
+    private volatile boolean mCancelled;
+
+    public interface ProgressListener {
+        /**
+         * NOTE: called from different threads (calls are serialized)
+         */
+        void update(long bytesRead, long contentLength, boolean done);
+    }
+
+    private static class Segment {
+        final long start;
+        final long end; // inclusive
+        volatile long position;
+
+        Segment(long start, long end, long position) {
+            this.start = start;
+            this.end = end;
+            this.position = position;
+        }
+
+        boolean isDone() {
+            return position > end;
+        }
+    }
+
+    /**
+     * Everything needed to resume the download
+     */
+    private static class State {
+        final String validator;
+        final long contentLength;
+        final List<Segment> segments;
+
+        State(String validator, long contentLength, List<Segment> segments) {
+            this.validator = validator;
+            this.contentLength = contentLength;
+            this.segments = segments;
+        }
+    }
+
+    private class Job {
+        final Request request;
+        final FileChannel channel;
+        final File stateFile;
+        final State state;
+        final ProgressListener listener;
+        final AtomicLong downloaded = new AtomicLong();
+        long lastSavedBytes;
+
+        Job(Request request, FileChannel channel, File stateFile, State state, ProgressListener listener) {
+            this.request = request;
+            this.channel = channel;
+            this.stateFile = stateFile;
+            this.state = state;
+            this.listener = listener;
+
+            for (Segment segment : state.segments) {
+                downloaded.addAndGet(segment.position - segment.start);
+            }
+        }
+
+        void onBytesWritten(int count) {
+            long total = downloaded.addAndGet(count);
+
+            if (total - lastSavedBytes > STATE_SAVE_INTERVAL_BYTES) {
+                lastSavedBytes = total;
+                saveState();
+            }
+
+            notifyProgress(false);
+        }
+
+        /**
+         * Positions are taken before the data is forced to disk, so the state never points past the written bytes
+         */
+        void saveState() {
+            if (stateFile == null) {
+                return;
+            }
+
+            synchronized (state) {
+                String data = serializeState(state);
+
+                try {
+                    channel.force(false);
+                } catch (IOException e) {
+                    Log.e(TAG, "Can't sync download: %s", e.getMessage());
+                    return;
+                }
+
+                writeState(stateFile, data);
+            }
+        }
+
+        void notifyProgress(boolean done) {
+            if (listener != null) {
+                synchronized (listener) {
+                    listener.update(downloaded.get(), state.contentLength, done);
+                }
+            }
+        }
+    }
+
+    public RangeDownloader(OkHttpClient client) {
+        mClient = client;
+    }
+
+    /**
+     * Max number of parallel requests per file
+     */
+    public void setSegmentCount(int segmentCount) {
+        mSegmentCount = Math.max(1, segmentCount);
+    }
+
+    /**
+     * Smaller files are downloaded with a single request
+     */
+    public void setMinSegmentSize(long minSegmentSizeBytes) {
+        mMinSegmentSizeBytes = Math.max(1, minSegmentSizeBytes);
+    }
+
+    /**
+     * Retries per segment. Every retry continues from the last written byte.
+     */
+    public void setMaxRetries(int maxRetries) {
+        mMaxRetries = Math.max(0, maxRetries);
+    }
+
+    public void setRetryDelayMs(long retryDelayMs) {
+        mRetryDelayMs = Math.max(0, retryDelayMs);
+    }
+
+    /**
+     * Stop the running download. The progress is kept, so it could be resumed later.
+     */
+    public void cancel() {
+        mCancelled = true;
+
+        synchronized (mCalls) {
+            for (Call call : mCalls) {
+                call.cancel();
+            }
+        }
+    }
+
+    /**
+     * @param request base request (headers and tags are copied to every segment request)
+     * @param destination target file
+     * @param checksum optional hex md5, sha-1 or sha-256 (detected by length)
+     * @param listener optional progress listener
+     */
+    public void download(Request request, File destination, @Nullable String checksum, @Nullable ProgressListener listener) throws IOException {
+        mCancelled = false;
+        File stateFile = new File(destination.getPath() + STATE_SUFFIX);
+
+        // Probe: content length, validator and Range support
+        Response probe = execute(request.newBuilder().header("Range", "bytes=0-0").build());
+
+        try {
+            if (probe.code() == 200) {
+                Log.d(TAG, "Range isn't supported. Downloading with a single request: %s", request.url());
+                FileHelpers.delete(stateFile);
+                downloadWhole(request, probe, destination, listener);
+                probe = null;
+            } else if (probe.code() == HTTP_RANGE_NOT_SATISFIABLE && EMPTY_CONTENT_RANGE.equals(probe.header("Content-Range"))) {
+                Log.d(TAG, "Empty file: %s", request.url());
+                FileHelpers.delete(stateFile);
+                saveEmpty(destination, listener);
+            } else if (probe.code() != 206) {
+                throw new IOException("Unexpected response code " + probe.code() + " for " + request.url());
+            } else if (parseContentLength(probe.header("Content-Range")) < 0) {
+                // E.g. bytes 0-0/* (generated content)
+                Log.d(TAG, "Unknown length: %s. Downloading with a single request: %s", probe.header("Content-Range"), request.url());
+                probe.close();
+                probe = null;
+                FileHelpers.delete(stateFile);
+                downloadWhole(request, null, destination, listener);
+            } else {
+                long contentLength = parseContentLength(probe.header("Content-Range"));
+                String validator = getValidator(probe);
+
+                probe.close();
+                probe = null;
+
+                State state = restoreState(stateFile, destination, contentLength, validator);
+
+                if (state == null) {
+                    state = new State(validator, contentLength, createSegments(contentLength));
+                }
+
+                downloadSegments(request, destination, stateFile, state, listener);
+            }
+        } finally {
+            if (probe != null) {
+                probe.close();
+            }
+        }
+
+        if (checksum != null && !checksum.isEmpty()) {
+            verifyChecksum(destination, checksum);
+        }
+    }
+
+    private void downloadSegments(Request request, File destination, File stateFile, State state, ProgressListener listener) throws IOException {
+        Log.d(TAG, "Downloading %s bytes in %s segments: %s", state.contentLength, state.segments.size(), request.url());
+
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            file.setLength(state.contentLength);
+            Job job = new Job(request, file.getChannel(), stateFile, state, listener);
+            job.notifyProgress(false);
+
+            List<Segment> pending = new ArrayList<>();
+
+            for (Segment segment : state.segments) {
+                if (!segment.isDone()) {
+                    pending.add(segment);
+                }
+            }
+
+            try {
+                if (pending.size() == 1) {
+                    downloadSegment(job, pending.get(0));
+                } else if (!pending.isEmpty()) {
+                    runParallel(job, pending);
+                }
+            } catch (IOException | RuntimeException e) {
+                job.saveState();
+                throw e;
+            }
+
+            file.getChannel().force(false);
+            FileHelpers.delete(stateFile);
+            job.notifyProgress(true);
+        }
+    }
+
+    private static void saveEmpty(File destination, ProgressListener listener) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            file.setLength(0);
+        }
+
+        if (listener != null) {
+            listener.update(0, 0, true);
+        }
+    }
+
+    private void runParallel(Job job, List<Segment> segments) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(segments.size());
+        List<Future<Void>> futures = new ArrayList<>();
+
+        try {
+            for (Segment segment : segments) {
+                futures.add(executor.submit(() -> {
+                    downloadSegment(job, segment);
+                    return null;
+                }));
+            }
+
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            cancel(); // stop other segments
+
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void downloadSegment(Job job, Segment segment) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                Request.Builder builder = job.request.newBuilder()
+                        .header("Range", "bytes=" + segment.position + "-" + segment.end);
+
+                if (job.state.validator != null) {
+                    builder.header("If-Range", job.state.validator);
+                }
+
+                try (Response response = execute(builder.build())) {
+                    if (response.code() != 206) {
+                        // NOTE: 200 means the file has changed on the server
+                        throwUnexpectedCode(response);
+                    }
+
+                    writeBody(job, response.body(), segment);
+                }
+
+                return;
+            } catch (IOException e) {
+                if (mCancelled || attempt >= mMaxRetries) {
+                    throw e;
+                }
+
+                Log.e(TAG, "Segment %s-%s failed at %s: %s. Resuming...", segment.start, segment.end, segment.position, e.getMessage());
+                sleep(mRetryDelayMs);
+            }
+        }
+    }
+
+    private void writeBody(Job job, ResponseBody body, Segment segment) throws IOException {
+        if (body == null) {
+            throw new IOException("Empty body");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        BufferedSource source = body.source();
+
+        while (!segment.isDone()) {
+            buffer.clear();
+            buffer.limit((int) Math.min(BUFFER_SIZE, segment.end - segment.position + 1));
+            boolean exhausted = fill(source, buffer);
+            int count = write(job.channel, buffer, segment.position);
+            segment.position += count;
+
+            if (count > 0) {
+                job.onBytesWritten(count);
+            }
+
+            if (exhausted && !segment.isDone()) {
+                throw new IOException("Unexpected end of stream at " + segment.position);
+            }
+        }
+    }
+
+    /**
+     * No Range support: restart from zero on every failure
+     * @param response successful response to start with or null
+     */
+    private void downloadWhole(Request request, @Nullable Response response, File destination, ProgressListener listener) throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            try {
+                if (response == null) {
+                    response = execute(request);
+
+                    if (!response.isSuccessful()) {
+                        response.close();
+                        throwUnexpectedCode(response);
+                    }
+                }
+
+                writeResponse(request, response, destination, listener);
+
+                return;
+            } catch (IOException e) {
+                if (mCancelled || attempt >= mMaxRetries) {
+                    throw e;
+                }
+
+                Log.e(TAG, "Download failed: %s. Restarting...", e.getMessage());
+                sleep(mRetryDelayMs);
+                response = null;
+            }
+        }
+    }
+
+    private void writeResponse(Request request, Response response, File destination, ProgressListener listener) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            file.setLength(0);
+            ResponseBody body = response.body();
+            long contentLength = body != null ? body.contentLength() : -1;
+            State state = new State(null, contentLength, Collections.singletonList(new Segment(0, Long.MAX_VALUE - 1, 0)));
+            Job job = new Job(request, file.getChannel(), null, state, listener);
+
+            try {
+                writeWhole(job, body);
+            } finally {
+                response.close();
+            }
+
+            if (contentLength != -1 && job.downloaded.get() != contentLength) {
+                throw new IOException("Unexpected end of stream at " + job.downloaded.get());
+            }
+
+            job.notifyProgress(true);
+        }
+    }
+
+    private void writeWhole(Job job, ResponseBody body) throws IOException {
+        if (body == null) {
+            throw new IOException("Empty body");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        BufferedSource source = body.source();
+        long position = 0;
+        boolean exhausted = false;
+
+        while (!exhausted) {
+            buffer.clear();
+            exhausted = fill(source, buffer);
+            int count = write(job.channel, buffer, position);
+            position += count;
+
+            if (count > 0) {
+                job.downloaded.addAndGet(count);
+                job.notifyProgress(false);
+            }
+        }
+    }
+
+    /**
+     * Fills the whole buffer before writing: one syscall per {@link #BUFFER_SIZE} instead of per okio segment.<br/>
+     * Returns true if the source is exhausted.
+     */
+    private static boolean fill(BufferedSource source, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (source.read(buffer) == -1) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static int write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.flip();
+        int count = buffer.remaining();
+
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+
+        return count;
+    }
+
+    /**
+     * Temporary errors are thrown as {@link IOException}, so they are retried
+     */
+    private static void throwUnexpectedCode(Response response) throws IOException {
+        int code = response.code();
+        String message = "Unexpected response code " + code + " for " + response.request().url();
+
+        if (code >= 500 || code == HTTP_REQUEST_TIMEOUT || code == HTTP_TOO_MANY_REQUESTS) {
+            throw new IOException(message);
+        }
+
+        throw new IllegalStateException(message);
+    }
+
+    private Response execute(Request request) throws IOException {
+        if (mCancelled) {
+            throw new IOException("Canceled");
+        }
+
+        Call call = mClient.newCall(request);
+        mCalls.add(call);
+
+        try {
+            return call.execute();
+        } finally {
+            mCalls.remove(call);
+        }
+    }
+
+    private List<Segment> createSegments(long contentLength) {
+        int count = (int) Math.max(1, Math.min(mSegmentCount, contentLength / mMinSegmentSizeBytes));
+        long segmentSize = contentLength / count;
+        List<Segment> segments = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            long start = i * segmentSize;
+            long end = i == count - 1 ? contentLength - 1 : start + segmentSize - 1;
+            segments.add(new Segment(start, end, start));
+        }
+
+        return segments;
+    }
+
+    private static long parseContentLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+
+        Matcher matcher = CONTENT_RANGE.matcher(contentRange.trim());
+
+        return matcher.matches() ? Helpers.parseLong(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Strong ETag or Last-Modified. Weak ETags can't be used with If-Range.
+     */
+    private static String getValidator(Response response) {
+        String etag = response.header("ETag");
+
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+
+        return response.header("Last-Modified");
+    }
+
+    private static State restoreState(File stateFile, File destination, long contentLength, String validator) {
+        if (!stateFile.exists() || !destination.exists() || destination.length() != contentLength) {
+            return null;
+        }
+
+        String[] lines = Helpers.splitArray(FileHelpers.getFileContents(stateFile));
+
+        // validator, content length, segments...
+        if (lines == null || lines.length < 3 ||
+                !Helpers.equals(validator, Helpers.parseStr(lines, 0)) || Helpers.parseLong(lines, 1) != contentLength) {
+            return null;
+        }
+
+        List<Segment> segments = new ArrayList<>();
+
+        for (int i = 2; i < lines.length; i++) {
+            String[] segment = Helpers.splitObj(lines[i]);
+            segments.add(new Segment(Helpers.parseLong(segment, 0), Helpers.parseLong(segment, 1), Helpers.parseLong(segment, 2)));
+        }
+
+        Log.d(TAG, "Resuming download of %s", destination);
+
+        return new State(validator, contentLength, segments);
+    }
+
+    private static String serializeState(State state) {
+        List<Object> lines = new ArrayList<>();
+        lines.add(state.validator);
+        lines.add(state.contentLength);
+
+        for (Segment segment : state.segments) {
+            lines.add(Helpers.mergeObj(segment.start, segment.end, segment.position));
+        }
+
+        return Helpers.mergeList(lines);
+    }
+
+    /**
+     * Temp file + rename: a crash in the middle of the write keeps the previous state
+     */
+    private static void writeState(File stateFile, String data) {
+        File tmpFile = new File(stateFile.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmpFile)) {
+            fos.write(data.getBytes("UTF-8"));
+            fos.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Can't save download state: %s", e.getMessage());
+            FileHelpers.delete(tmpFile);
+            return;
+        }
+
+        if (!tmpFile.renameTo(stateFile)) {
+            Log.e(TAG, "Can't save download state: %s", stateFile);
+            FileHelpers.delete(tmpFile);
+        }
+    }
+
+    private static void verifyChecksum(File file, String checksum) throws IOException {
+        String algorithm;
+
+        switch (checksum.length()) {
+            case 32:
+                algorithm = "MD5";
+                break;
+            case 40:
+                algorithm = "SHA-1";
+                break;
+            case 64:
+                algorithm = "SHA-256";
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown checksum type: " + checksum);
+        }
+
+        String actual = toHex(digest(file, algorithm));
+
+        if (!actual.equalsIgnoreCase(checksum)) {
+            FileHelpers.delete(file);
+            throw new IOException(String.format("%s mismatch: expected %s, actual %s", algorithm, checksum, actual));
+        }
+    }
+
+    private static byte[] digest(File file, String algorithm) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MessageDigest digest = MessageDigest.getInstance(algorithm);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length * 2);
+
+        for (byte b : bytes) {
+            result.append(String.format("%02x", b));
+        }
+
+        return result.toString();
+    }
+
+    private void sleep(long delayMs) throws InterruptedIOException {
+        try {
+            Thread.sleep(delayMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Download interrupted");
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.liskovsoft.sharedutils.okhttp.interceptors;
+
+import androidx.annotation.NonNull;
+
+import com.liskovsoft.sharedutils.mylogger.Log;
+import okhttp3.CacheControl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Works on top of {@link okhttp3.Cache}: counts cache usage and allows to serve stale responses (offline mode).<br/>
+ * NOTE: ETag/Last-Modified revalidation is done by the {@link okhttp3.Cache} itself.
+ */
+public class CacheInterceptor implements Interceptor {
+    private static final String TAG = CacheInterceptor.class.getSimpleName();
+    public static final int MAX_STALE_DISABLED = -1;
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mRevalidationCount = new AtomicLong();
+    private volatile int mMaxStaleSec = MAX_STALE_DISABLED;
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+
+        if (!"GET".equals(request.method())) {
+            return chain.proceed(request);
+        }
+
+        int maxStaleSec = mMaxStaleSec;
+
+        if (maxStaleSec != MAX_STALE_DISABLED && !request.cacheControl().noCache()) {
+            request = request.newBuilder()
+                    .cacheControl(new CacheControl.Builder().maxStale(maxStaleSec, TimeUnit.SECONDS).build())
+                    .build();
+        }
+
+        Response response;
+
+        try {
+            response = chain.proceed(request);
+        } catch (IOException e) {
+            response = proceedFromCache(chain, request);
+
+            if (response == null) {
+                throw e;
+            }
+        }
+
+        countResponse(response);
+
+        return response;
+    }
+
+    /**
+     * Network is unavailable. Try to use any cached response.
+     */
+    private Response proceedFromCache(Chain chain, Request request) throws IOException {
+        if (mMaxStaleSec == MAX_STALE_DISABLED) {
+            return null;
+        }
+
+        Response response = chain.proceed(request.newBuilder().cacheControl(CacheControl.FORCE_CACHE).build());
+
+        if (response.code() == HttpURLConnection.HTTP_GATEWAY_TIMEOUT) { // not in the cache
+            response.close();
+            return null;
+        }
+
+        Log.d(TAG, "Offline. Using cached response for %s", request.url());
+
+        return response;
+    }
+
+    private void countResponse(Response response) {
+        if (response.cacheResponse() == null) {
+            mMissCount.incrementAndGet();
+        } else if (response.networkResponse() == null) {
+            mHitCount.incrementAndGet();
+        } else if (response.networkResponse().code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            mRevalidationCount.incrementAndGet();
+        } else {
+            mMissCount.incrementAndGet(); // cached copy is outdated
+        }
+    }
+
+    /**
+     * Serve cached responses that are stale no more than specified time. Also used when network is unavailable.<br/>
+     * Pass {@link #MAX_STALE_DISABLED} to revert to the regular http caching.
+     */
+    public void setMaxStale(int maxStaleSec) {
+        mMaxStaleSec = maxStaleSec;
+    }
+
+    /**
+     * Served from the cache without network
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * Downloaded from network
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Served from the cache after the server confirmed the copy (304)
+     */
+    public long getRevalidationCount() {
+        return mRevalidationCount.get();
+    }
+
+    public void resetCounters() {
+        mHitCount.set(0);
+        mMissCount.set(0);
+        mRevalidationCount.set(0);
+    }
+}
@@ -0,0 +1,312 @@
+package com.liskovsoft.sharedutils.okhttp.interceptors;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Source;
+import okio.Timeout;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Gzip/deflate source that borrows {@link Inflater} and its buffers from a small pool.<br/>
+ * Inflater goes back to the pool as soon as the stream is exhausted (not on close).<br/>
+ * NOTE: the pool is shared (not per thread) because response bodies often are closed on a different thread.<br/>
+ * Based on okio's GzipSource and InflaterSource.
+ */
+final class PooledInflaterSource implements Source {
+    public static final int TYPE_GZIP = 0;
+    public static final int TYPE_DEFLATE = 1;
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_POOL_SIZE = 4;
+    private static final Queue<PooledInflater> sRawPool = new ConcurrentLinkedQueue<>();
+    private static final Queue<PooledInflater> sZlibPool = new ConcurrentLinkedQueue<>();
+    private static final byte FHCRC = 1;
+    private static final byte FEXTRA = 2;
+    private static final byte FNAME = 3;
+    private static final byte FCOMMENT = 4;
+    private static final int STATE_HEADER = 0;
+    private static final int STATE_BODY = 1;
+    private static final int STATE_TRAILER = 2;
+    private static final int STATE_DONE = 3;
+    private final BufferedSource mSource;
+    private final int mType;
+    private final CRC32 mCrc = new CRC32();
+    private PooledInflater mInflater;
+    private int mBytesHeld;
+    private int mState = STATE_HEADER;
+    private boolean mClosed;
+
+    private static final class PooledInflater {
+        final Inflater inflater;
+        final boolean nowrap;
+        final byte[] input = new byte[BUFFER_SIZE];
+        final byte[] output = new byte[BUFFER_SIZE];
+        final InputWriter inputWriter = new InputWriter(input);
+
+        PooledInflater(boolean nowrap) {
+            this.inflater = new Inflater(nowrap);
+            this.nowrap = nowrap;
+        }
+    }
+
+    /**
+     * Copies bytes from okio {@link Buffer} without consuming them
+     */
+    private static final class InputWriter extends OutputStream {
+        private final byte[] mTarget;
+        private int mPos;
+
+        InputWriter(byte[] target) {
+            mTarget = target;
+        }
+
+        @Override
+        public void write(int b) {
+            mTarget[mPos++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            System.arraycopy(b, off, mTarget, mPos, len);
+            mPos += len;
+        }
+    }
+
+    PooledInflaterSource(BufferedSource source, int type) {
+        mSource = source;
+        mType = type;
+    }
+
+    @Override
+    public long read(Buffer sink, long byteCount) throws IOException {
+        if (byteCount < 0) {
+            throw new IllegalArgumentException("byteCount < 0: " + byteCount);
+        }
+        if (mClosed) {
+            throw new IllegalStateException("closed");
+        }
+        if (byteCount == 0) {
+            return 0;
+        }
+
+        if (mState == STATE_HEADER) {
+            if (mType == TYPE_GZIP) {
+                consumeHeader();
+                mInflater = acquire(true);
+            } else {
+                mInflater = acquire(!isZlibHeader());
+            }
+            mState = STATE_BODY;
+        }
+
+        if (mState == STATE_BODY) {
+            long result = inflate(sink, byteCount);
+
+            if (result != -1) {
+                return result;
+            }
+
+            mState = STATE_TRAILER;
+        }
+
+        if (mState == STATE_TRAILER) {
+            if (mType == TYPE_GZIP) {
+                consumeTrailer();
+            }
+
+            release();
+            mState = STATE_DONE;
+
+            if (mType == TYPE_GZIP && !mSource.exhausted()) {
+                throw new IOException("gzip finished without exhausting source");
+            }
+        }
+
+        return -1;
+    }
+
+    private long inflate(Buffer sink, long byteCount) throws IOException {
+        Inflater inflater = mInflater.inflater;
+
+        while (true) {
+            boolean sourceExhausted = refill();
+
+            try {
+                int bytesInflated = inflater.inflate(mInflater.output, 0, (int) Math.min(byteCount, BUFFER_SIZE));
+
+                if (bytesInflated > 0) {
+                    if (mType == TYPE_GZIP) {
+                        mCrc.update(mInflater.output, 0, bytesInflated);
+                    }
+                    sink.write(mInflater.output, 0, bytesInflated);
+                    return bytesInflated;
+                }
+
+                if (inflater.finished() || inflater.needsDictionary()) {
+                    releaseInflatedBytes();
+                    return -1;
+                }
+
+                if (sourceExhausted) {
+                    throw new EOFException("source exhausted prematurely");
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    /**
+     * Refills the inflater with compressed data if it needs input.
+     * Returns true if the source is exhausted.
+     */
+    private boolean refill() throws IOException {
+        Inflater inflater = mInflater.inflater;
+
+        if (!inflater.needsInput()) {
+            return false;
+        }
+
+        releaseInflatedBytes();
+
+        if (inflater.getRemaining() != 0) {
+            throw new IllegalStateException("?");
+        }
+
+        if (mSource.exhausted()) {
+            return true;
+        }
+
+        Buffer buffer = mSource.buffer();
+        mBytesHeld = (int) Math.min(buffer.size(), BUFFER_SIZE);
+        mInflater.inputWriter.mPos = 0;
+        buffer.copyTo(mInflater.inputWriter, 0, mBytesHeld);
+        inflater.setInput(mInflater.input, 0, mBytesHeld);
+
+        return false;
+    }
+
+    /**
+     * When the inflater has processed compressed data, remove it from the buffer
+     */
+    private void releaseInflatedBytes() throws IOException {
+        if (mBytesHeld == 0) {
+            return;
+        }
+
+        int toRelease = mBytesHeld - mInflater.inflater.getRemaining();
+        mBytesHeld -= toRelease;
+        mSource.skip(toRelease);
+    }
+
+    private boolean isZlibHeader() throws IOException {
+        if (!mSource.request(2)) {
+            return false;
+        }
+
+        int cmf = mSource.buffer().getByte(0) & 0xff;
+        int flg = mSource.buffer().getByte(1) & 0xff;
+
+        return (cmf & 0x0f) == 8 && ((cmf << 8) | flg) % 31 == 0;
+    }
+
+    private void consumeHeader() throws IOException {
+        // +---+---+---+---+---+---+---+---+---+---+
+        // |ID1|ID2|CM |FLG|     MTIME     |XFL|OS |
+        // +---+---+---+---+---+---+---+---+---+---+
+        mSource.require(10);
+        byte flags = mSource.buffer().getByte(3);
+        checkEqual("ID1ID2", 0x1f8b, mSource.readShort());
+        mSource.skip(8);
+
+        if (((flags >> FEXTRA) & 1) == 1) {
+            mSource.require(2);
+            int xlen = mSource.buffer().readShortLe() & 0xffff;
+            mSource.require(xlen);
+            mSource.skip(xlen);
+        }
+
+        if (((flags >> FNAME) & 1) == 1) {
+            skipZeroTerminated();
+        }
+
+        if (((flags >> FCOMMENT) & 1) == 1) {
+            skipZeroTerminated();
+        }
+
+        if (((flags >> FHCRC) & 1) == 1) {
+            mSource.require(2);
+            mSource.skip(2);
+        }
+    }
+
+    private void skipZeroTerminated() throws IOException {
+        long index = mSource.indexOf((byte) 0);
+        if (index == -1) {
+            throw new EOFException();
+        }
+        mSource.skip(index + 1);
+    }
+
+    private void consumeTrailer() throws IOException {
+        checkEqual("CRC", (int) mCrc.getValue(), mSource.readIntLe());
+        checkEqual("ISIZE", (int) mInflater.inflater.getBytesWritten(), mSource.readIntLe());
+    }
+
+    private static void checkEqual(String name, int expected, int actual) throws IOException {
+        if (actual != expected) {
+            throw new IOException(String.format("%s: actual 0x%08x != expected 0x%08x", name, actual, expected));
+        }
+    }
+
+    @Override
+    public Timeout timeout() {
+        return mSource.timeout();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+
+        mClosed = true;
+        release();
+        mSource.close();
+    }
+
+    private void release() {
+        if (mInflater == null) {
+            return;
+        }
+
+        PooledInflater inflater = mInflater;
+        mInflater = null;
+        mBytesHeld = 0;
+        Queue<PooledInflater> pool = inflater.nowrap ? sRawPool : sZlibPool;
+
+        if (pool.size() < MAX_POOL_SIZE) {
+            inflater.inflater.reset();
+            pool.offer(inflater);
+        } else {
+            inflater.inflater.end(); // free native memory now, don't wait for gc
+        }
+    }
+
+    private static PooledInflater acquire(boolean nowrap) {
+        PooledInflater inflater = (nowrap ? sRawPool : sZlibPool).poll();
+
+        return inflater != null ? inflater : new PooledInflater(nowrap);
+    }
+
+    static int getPoolSize() {
+        return sRawPool.size() + sZlibPool.size();
+    }
+}
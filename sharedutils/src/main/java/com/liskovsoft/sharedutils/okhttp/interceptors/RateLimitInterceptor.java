@@ -1,31 +1,270 @@
 package com.liskovsoft.sharedutils.okhttp.interceptors;
 
+import androidx.annotation.NonNull;
+
+import com.liskovsoft.sharedutils.cache.ConcurrentLruCache;
+import com.liskovsoft.sharedutils.helpers.Helpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
 import okhttp3.Interceptor;
+import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.internal.http.HttpDate;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Per-host token bucket limiter.<br/>
+ * Requests are shaped ahead of time (burst, then steady rate), so server limits are rarely hit.<br/>
+ * On 429 the host rate is halved and slowly restored on success (AIMD), Retry-After is honored
+ * and idempotent requests are retried with jittered exponential backoff.
+ */
 public class RateLimitInterceptor implements Interceptor {
     private static final String TAG = RateLimitInterceptor.class.getSimpleName();
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    private static final int DEFAULT_BURST_SIZE = 20;
+    private static final double DEFAULT_PERMITS_PER_SECOND = 10;
+    private static final int MAX_RETRIES = 3;
+    private static final long BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+    private static final int MAX_HOSTS = 50;
+    private final ConcurrentLruCache<String, TokenBucket> mBuckets = new ConcurrentLruCache<>(MAX_HOSTS);
+    private final int mBurstSize;
+    private final double mPermitsPerSecond;
+    private final Clock mClock;
+    private final Random mRandom;
+    private final AtomicLong mWaitCount = new AtomicLong();
+    private final AtomicLong mWaitTimeMs = new AtomicLong();
+    private final AtomicLong mRetryCount = new AtomicLong();
+    private final AtomicLong mThrottledCount = new AtomicLong();
+
+    interface Clock {
+        long nowMs();
+        void sleep(long ms) throws InterruptedException;
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nowMs() {
+            return System.nanoTime() / 1_000_000;
+        }
+
+        @Override
+        public void sleep(long ms) throws InterruptedException {
+            Thread.sleep(ms);
+        }
+    };
+
+    private static class TokenBucket {
+        private final int mCapacity;
+        private final double mMaxRate;
+        private final double mMinRate;
+        private double mRate;
+        private double mTokens;
+        private long mLastRefillMs;
+        private long mBlockedUntilMs;
+
+        TokenBucket(int capacity, double permitsPerSecond, long nowMs) {
+            mCapacity = capacity;
+            mMaxRate = permitsPerSecond;
+            mMinRate = permitsPerSecond / 16;
+            mRate = permitsPerSecond;
+            mTokens = capacity;
+            mLastRefillMs = nowMs;
+        }
+
+        /**
+         * Takes a permit (tokens may go below zero, i.e. reserved in advance).<br/>
+         * Returns how long the caller should wait before sending the request.
+         */
+        synchronized long reserve(long nowMs) {
+            refill(nowMs);
+            mTokens -= 1;
+
+            long waitMs = mTokens < 0 ? (long) Math.ceil(-mTokens * 1_000 / mRate) : 0;
+
+            return Math.max(waitMs, mBlockedUntilMs - nowMs);
+        }
+
+        /**
+         * NOTE: the host is blocked for {@link #MAX_BACKOFF_MS} at most. Longer Retry-After isn't waited for.
+         */
+        synchronized void onThrottled(long nowMs, long retryAfterMs) {
+            refill(nowMs);
+            mRate = Math.max(mMinRate, mRate / 2);
+            mTokens = Math.min(mTokens, 0);
+            mBlockedUntilMs = Math.max(mBlockedUntilMs, nowMs + Math.min(retryAfterMs, MAX_BACKOFF_MS));
+        }
+
+        synchronized void onSuccess() {
+            if (mRate < mMaxRate) {
+                mRate = Math.min(mMaxRate, mRate + mMaxRate / 10);
+            }
+        }
+
+        synchronized double getRate() {
+            return mRate;
+        }
+
+        private void refill(long nowMs) {
+            if (nowMs > mLastRefillMs) {
+                mTokens = Math.min(mCapacity, mTokens + (nowMs - mLastRefillMs) * mRate / 1_000);
+                mLastRefillMs = nowMs;
+            }
+        }
+    }
+
+    public RateLimitInterceptor() {
+        this(DEFAULT_BURST_SIZE, DEFAULT_PERMITS_PER_SECOND);
+    }
 
+    /**
+     * @param burstSize requests that could be sent at once
+     * @param permitsPerSecond steady request rate per host
+     */
+    public RateLimitInterceptor(int burstSize, double permitsPerSecond) {
+        this(burstSize, permitsPerSecond, SYSTEM_CLOCK, new Random());
+    }
+
+    RateLimitInterceptor(int burstSize, double permitsPerSecond, Clock clock, Random random) {
+        if (burstSize < 1 || permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("Burst size and rate should be positive");
+        }
+
+        mBurstSize = burstSize;
+        mPermitsPerSecond = permitsPerSecond;
+        mClock = clock;
+        mRandom = random;
+    }
+
+    @NonNull
     @Override
-    public Response intercept(Chain chain) throws IOException {
-        Log.d(TAG, "Intercepting....");
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        TokenBucket bucket = getBucket(request.url().host());
+
+        for (int attempt = 0; ; attempt++) {
+            sleep(bucket.reserve(mClock.nowMs()));
 
-        Response response = chain.proceed(chain.request());
+            Response response = chain.proceed(request);
+
+            if (response.code() != HTTP_TOO_MANY_REQUESTS) {
+                bucket.onSuccess();
+                return response;
+            }
 
-        // 429 is how the api indicates a rate limit error
-        if (!response.isSuccessful() && response.code() == 429) {
-            Log.e(TAG, "To much requests. Waiting..." + response.message());
+            mThrottledCount.incrementAndGet();
 
+            long retryAfterMs = parseRetryAfter(response.header("Retry-After"));
+            long delayMs = retryAfterMs != -1 ? retryAfterMs : getBackoff(attempt);
+            bucket.onThrottled(mClock.nowMs(), delayMs);
+
+            Log.e(TAG, "Too many requests to %s. Rate: %s/s, retry in %s ms", request.url().host(), bucket.getRate(), delayMs);
+
+            if (attempt >= MAX_RETRIES || !isIdempotent(request) || delayMs > MAX_BACKOFF_MS || chain.call().isCanceled()) {
+                return response;
+            }
+
+            response.close();
+            mRetryCount.incrementAndGet();
+        }
+    }
+
+    private TokenBucket getBucket(String host) {
+        return mBuckets.get(host, key -> new TokenBucket(mBurstSize, mPermitsPerSecond, mClock.nowMs()));
+    }
+
+    private void sleep(long waitMs) throws InterruptedIOException {
+        if (waitMs <= 0) {
+            return;
+        }
+
+        mWaitCount.incrementAndGet();
+        mWaitTimeMs.addAndGet(waitMs);
+
+        try {
+            mClock.sleep(waitMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a rate limit");
+        }
+    }
+
+    /**
+     * Full jitter: random delay between zero and exponentially growing cap
+     */
+    private long getBackoff(int attempt) {
+        long capMs = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << attempt);
+
+        return (long) (mRandom.nextDouble() * capMs);
+    }
+
+    /**
+     * Retry-After could be either delay in seconds or http date.<br/>
+     * Returns -1 if header is absent or malformed.
+     */
+    private long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null) {
+            return -1;
+        }
+
+        retryAfter = retryAfter.trim();
+
+        if (Helpers.isInteger(retryAfter)) {
             try {
-                Thread.sleep(1_000);
-            } catch (InterruptedException ignored) {
-                // NOP
+                return Math.max(0, Math.min(Long.parseLong(retryAfter), Integer.MAX_VALUE) * 1_000);
+            } catch (NumberFormatException e) { // too long
+                return -1;
             }
         }
 
-        return response;
+        Date date = HttpDate.parse(retryAfter);
+
+        return date != null ? Math.max(0, date.getTime() - System.currentTimeMillis()) : -1;
+    }
+
+    private static boolean isIdempotent(Request request) {
+        switch (request.method()) {
+            case "GET":
+            case "HEAD":
+            case "OPTIONS":
+            case "PUT":
+            case "DELETE":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Number of requests that were delayed by the limiter
+     */
+    public long getWaitCount() {
+        return mWaitCount.get();
+    }
+
+    /**
+     * Total time spent waiting for permits
+     */
+    public long getWaitTimeMs() {
+        return mWaitTimeMs.get();
+    }
+
+    public long getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    /**
+     * Number of 429 responses received
+     */
+    public long getThrottledCount() {
+        return mThrottledCount.get();
+    }
+
+    double getPermitsPerSecond(String host) {
+        return getBucket(host).getRate();
     }
 }
@@ -8,17 +8,23 @@ import okhttp3.MediaType;
 import okhttp3.Protocol;
 import okhttp3.Response;
 import okhttp3.ResponseBody;
+import okhttp3.internal.http.HttpHeaders;
 import okhttp3.internal.http.RealResponseBody;
-import okio.GzipSource;
-import okio.InflaterSource;
+import okio.BufferedSource;
 import okio.Okio;
-import okio.Source;
 import org.brotli.dec.BrotliInputStream;
 
 import java.io.IOException;
-import java.util.zip.Inflater;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 public class UnzippingInterceptor implements Interceptor {
+    private static final String ENCODING_GZIP = "gzip";
+    private static final String ENCODING_DEFLATE = "deflate";
+    private static final String ENCODING_BROTLI = "br";
+    private static final String ENCODING_IDENTITY = "identity";
+
     @NonNull
     @Override
     public Response intercept(@NonNull Chain chain) throws IOException {
@@ -39,33 +45,70 @@ public class UnzippingInterceptor implements Interceptor {
             return response;
         }
 
-        //check if we have gzip response
-        String contentEncoding = response.headers().get("Content-Encoding");
-
-        //this is used to decompress gzipped responses
-        if (contentEncoding != null && contentEncoding.equals("gzip")) {
-            long contentLength = -1;
-            GzipSource responseBody = new GzipSource(response.body().source());
-            Headers strippedHeaders = stripHeaders(response.headers());
-            return response.newBuilder().headers(strippedHeaders).body(new RealResponseBody(toString(response.body().contentType()), contentLength
-                    , Okio.buffer(responseBody))).build();
-        } else if (contentEncoding != null && contentEncoding.equals("deflate")) {
-            long contentLength = -1;
-            InflaterSource responseBody = new InflaterSource(response.body().source(), new Inflater(true));
-            Headers strippedHeaders = stripHeaders(response.headers());
-            return response.newBuilder().headers(strippedHeaders).body(new RealResponseBody(toString(response.body().contentType()), contentLength
-                    , Okio.buffer(responseBody))).build();
-        } else if (contentEncoding != null && contentEncoding.equals("br")) {
-            long contentLength = -1;
-            Source responseBody = Okio.source(new BrotliInputStream(response.body().byteStream()));
-            Headers strippedHeaders = stripHeaders(response.headers());
-            return response.newBuilder().headers(strippedHeaders).body(new RealResponseBody(toString(response.body().contentType()), contentLength
-                    , Okio.buffer(responseBody))).build();
-        } else {
+        // E.g. 'gzip, br' means that gzip applied first
+        List<String> encodings = parseEncodings(response.headers("Content-Encoding"));
+
+        // No body: HEAD, 204, 304 (keep Content-Length as is)
+        if (encodings.isEmpty() || !HttpHeaders.hasBody(response)) {
             return response;
         }
+
+        for (String encoding : encodings) {
+            if (!isSupported(encoding)) {
+                return response; // e.g. zstd
+            }
+        }
+
+        BufferedSource source = response.body().source();
+
+        for (int i = encodings.size() - 1; i >= 0; i--) {
+            source = decode(encodings.get(i), source);
+        }
+
+        long contentLength = -1; // unknown until fully decoded
+        Headers strippedHeaders = stripHeaders(response.headers());
+        return response.newBuilder().headers(strippedHeaders).body(new RealResponseBody(toString(response.body().contentType()), contentLength
+                , source)).build();
+    }
+
+    private static BufferedSource decode(String encoding, BufferedSource source) throws IOException {
+        switch (encoding) {
+            case ENCODING_GZIP:
+                return Okio.buffer(new PooledInflaterSource(source, PooledInflaterSource.TYPE_GZIP));
+            case ENCODING_DEFLATE:
+                return Okio.buffer(new PooledInflaterSource(source, PooledInflaterSource.TYPE_DEFLATE));
+            case ENCODING_BROTLI:
+                return Okio.buffer(Okio.source(new BrotliInputStream(source.inputStream())));
+            default:
+                return source;
+        }
     }
-    
+
+    private static boolean isSupported(String encoding) {
+        return ENCODING_GZIP.equals(encoding) || ENCODING_DEFLATE.equals(encoding) ||
+                ENCODING_BROTLI.equals(encoding) || ENCODING_IDENTITY.equals(encoding);
+    }
+
+    /**
+     * Handles multiple headers, comma separated values and case variants
+     */
+    private static List<String> parseEncodings(List<String> headers) {
+        List<String> result = new ArrayList<>();
+
+        for (String header : headers) {
+            for (String value : header.split(",")) {
+                String encoding = value.trim().toLowerCase(Locale.US);
+
+                if (!encoding.isEmpty() && !ENCODING_IDENTITY.equals(encoding)) {
+                    result.add(encoding);
+                }
+            }
+        }
+
+        return result;
+    }
+
+
     private static String toString(MediaType mediaType) {
         return mediaType != null ? mediaType.toString() : null;
     }
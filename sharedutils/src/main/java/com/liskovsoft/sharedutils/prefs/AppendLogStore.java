@@ -0,0 +1,355 @@
+package com.liskovsoft.sharedutils.prefs;
+
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import com.liskovsoft.sharedutils.mylogger.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Key-value store for the large data strings (see {@link SharedPreferencesBase#getData(String)}).<br/>
+ * Every change is appended to the single log file as a checksummed record and synced.
+ * Torn record at the end (crash while writing) is dropped on load.<br/>
+ * The whole log is decoded once. Readers use the in-memory map without locks.<br/>
+ * The log is rewritten (temp file + rename) when stale records take more than a half of it. Removed keys are dropped then.
+ */
+class AppendLogStore {
+    private static final String TAG = AppendLogStore.class.getSimpleName();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] MAGIC = {'K', 'V', 'L', '1'};
+    private static final byte TYPE_PUT = 1;
+    private static final byte TYPE_REMOVE = 2;
+    private static final int RECORD_OVERHEAD = 4 + 4; // length + crc
+    private static final long MIN_COMPACT_SIZE = 256 * 1024;
+    private static final Map<String, AppendLogStore> sInstances = new HashMap<>();
+    private final File mFile;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    private final CRC32 mCrc = new CRC32();
+    private volatile boolean mLoaded;
+    private FileOutputStream mOut;
+    private long mFileSize;
+    private long mLiveSize;
+
+    /**
+     * Removed key has null value
+     */
+    private static final class Entry {
+        final String value;
+        final int recordSize;
+
+        Entry(String value, int recordSize) {
+            this.value = value;
+            this.recordSize = recordSize;
+        }
+    }
+
+    AppendLogStore(File file) {
+        mFile = file;
+    }
+
+    /**
+     * One store per file. Otherwise writers will corrupt each other's records.
+     */
+    public static AppendLogStore instance(File file) {
+        synchronized (sInstances) {
+            String path = file.getAbsolutePath();
+            AppendLogStore store = sInstances.get(path);
+
+            if (store == null) {
+                store = new AppendLogStore(file);
+                sInstances.put(path, store);
+            }
+
+            return store;
+        }
+    }
+
+    /**
+     * True for removed keys too (until the log is compacted)
+     */
+    public boolean contains(String key) {
+        ensureLoaded();
+        return mEntries.containsKey(key);
+    }
+
+    public String get(String key) {
+        ensureLoaded();
+        Entry entry = mEntries.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Null value removes the key
+     * @return false if the change wasn't saved to disk
+     */
+    public synchronized boolean put(String key, String value) {
+        ensureLoaded();
+
+        Entry current = mEntries.get(key);
+
+        if (current != null && (value == null ? current.value == null : value.equals(current.value))) {
+            return true;
+        }
+
+        byte[] record = encode(key, value);
+
+        try {
+            if (mOut == null) {
+                openForAppend();
+            }
+
+            writeRecord(record);
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.e(TAG, "Can't write %s: %s", mFile, e.getMessage());
+            FileHelpers.closeStream(mOut);
+            mOut = null; // a partial record is cut off on reopen
+            return false;
+        }
+
+        mEntries.put(key, new Entry(value, record.length)); // only what is on disk
+        mFileSize += record.length;
+        mLiveSize += liveSize(value, record.length) - (current != null ? liveSize(current.value, current.recordSize) : 0);
+
+        if (mFileSize > MIN_COMPACT_SIZE && mFileSize > mLiveSize * 2) {
+            compact();
+        }
+
+        return true;
+    }
+
+    long getFileSize() {
+        return mFileSize;
+    }
+
+    void writeRecord(byte[] record) throws IOException {
+        mOut.write(record);
+        mOut.getFD().sync();
+    }
+
+    private void ensureLoaded() {
+        if (mLoaded) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!mLoaded) {
+                load();
+                mLoaded = true;
+            }
+        }
+    }
+
+    private void load() {
+        File tmpFile = getTmpFile();
+
+        if (tmpFile.exists()) {
+            tmpFile.delete(); // interrupted compaction, the log is still intact
+        }
+
+        if (!mFile.exists()) {
+            return;
+        }
+
+        long validSize = 0;
+        long fileSize = mFile.length();
+        boolean damaged = true;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile), 64 * 1024))) {
+            byte[] magic = new byte[MAGIC.length];
+            in.readFully(magic);
+
+            if (!Arrays.equals(magic, MAGIC)) {
+                Log.e(TAG, "Unknown file format: %s", mFile);
+                return;
+            }
+
+            validSize = MAGIC.length;
+
+            while (true) {
+                int length = in.readInt();
+
+                if (length <= 0 || validSize + RECORD_OVERHEAD + length > fileSize) {
+                    break; // torn record
+                }
+
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                int crc = in.readInt();
+
+                mCrc.reset();
+                mCrc.update(payload, 0, length);
+
+                if ((int) mCrc.getValue() != crc) {
+                    break;
+                }
+
+                int recordSize = RECORD_OVERHEAD + length;
+                decode(payload, recordSize);
+                validSize += recordSize;
+            }
+        } catch (EOFException e) {
+            // torn record
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.e(TAG, "Can't read %s: %s", mFile, e.getMessage());
+            damaged = false; // don't touch the file, may be just a read error
+        }
+
+        if (damaged && validSize < fileSize) {
+            Log.w(TAG, "Dropping %s damaged bytes from %s", fileSize - validSize, mFile);
+
+            try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+                file.setLength(validSize);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        mFileSize = validSize;
+    }
+
+    private void decode(byte[] payload, int recordSize) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        String key = in.readUTF();
+        String value = null;
+
+        if (type == TYPE_PUT) {
+            int offset = payload.length - in.available();
+            value = new String(payload, offset, payload.length - offset, UTF_8);
+        }
+
+        Entry previous = mEntries.put(key, new Entry(value, recordSize));
+        mLiveSize += liveSize(value, recordSize) - (previous != null ? liveSize(previous.value, previous.recordSize) : 0);
+    }
+
+    /**
+     * Removal records aren't kept on compaction
+     */
+    private static int liveSize(String value, int recordSize) {
+        return value != null ? recordSize : 0;
+    }
+
+    private byte[] encode(String key, String value) {
+        try {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(value != null ? value.length() + 64 : 64);
+            DataOutputStream out = new DataOutputStream(payload);
+            out.writeByte(value != null ? TYPE_PUT : TYPE_REMOVE);
+            out.writeUTF(key);
+
+            if (value != null) {
+                out.write(value.getBytes(UTF_8));
+            }
+
+            byte[] data = payload.toByteArray();
+
+            mCrc.reset();
+            mCrc.update(data, 0, data.length);
+
+            ByteArrayOutputStream record = new ByteArrayOutputStream(data.length + RECORD_OVERHEAD);
+            DataOutputStream recordOut = new DataOutputStream(record);
+            recordOut.writeInt(data.length);
+            recordOut.write(data);
+            recordOut.writeInt((int) mCrc.getValue());
+
+            return record.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // in-memory streams don't throw
+        }
+    }
+
+    private void openForAppend() throws IOException {
+        File parent = mFile.getParentFile();
+
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        boolean isNew = mFileSize == 0;
+
+        if (!isNew && mFile.length() > mFileSize) {
+            // Remains of the failed write. Records appended after them would be lost on load.
+            try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+                file.setLength(mFileSize);
+            }
+        }
+
+        mOut = new FileOutputStream(mFile, !isNew);
+
+        if (isNew) {
+            mOut.write(MAGIC);
+            mFileSize = MAGIC.length;
+        }
+    }
+
+    /**
+     * Only the latest record of every key is kept. Removed keys are dropped.
+     */
+    private void compact() {
+        File tmpFile = getTmpFile();
+        long size = MAGIC.length;
+
+        try (FileOutputStream out = new FileOutputStream(tmpFile)) {
+            out.write(MAGIC);
+
+            for (Map.Entry<String, Entry> entry : mEntries.entrySet()) {
+                if (entry.getValue().value == null) {
+                    continue;
+                }
+
+                byte[] record = encode(entry.getKey(), entry.getValue().value);
+                out.write(record);
+                size += record.length;
+            }
+
+            out.getFD().sync();
+        } catch (IOException e) {
+            e.printStackTrace();
+            tmpFile.delete();
+            return;
+        }
+
+        FileHelpers.closeStream(mOut);
+        mOut = null;
+
+        if (!tmpFile.renameTo(mFile)) {
+            Log.e(TAG, "Can't replace %s", mFile);
+            tmpFile.delete();
+            return;
+        }
+
+        Log.d(TAG, "Compacted %s: %s -> %s bytes", mFile, mFileSize, size);
+
+        Iterator<Entry> iterator = mEntries.values().iterator();
+
+        while (iterator.hasNext()) {
+            if (iterator.next().value == null) {
+                iterator.remove();
+            }
+        }
+
+        mFileSize = size;
+        mLiveSize = size - MAGIC.length;
+    }
+
+    private File getTmpFile() {
+        return new File(mFile.getPath() + ".tmp");
+    }
+}
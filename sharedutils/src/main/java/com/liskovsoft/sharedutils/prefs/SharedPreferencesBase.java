@@ -2,6 +2,9 @@ package com.liskovsoft.sharedutils.prefs;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.content.SharedPreferences.Editor;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.Nullable;
 import androidx.preference.PreferenceManager;
@@ -10,15 +13,70 @@ import com.liskovsoft.sharedutils.helpers.FileHelpers;
 import com.liskovsoft.sharedutils.mylogger.Log;
 
 import java.io.File;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class SharedPreferencesBase {
     private static final String TAG = SharedPreferencesBase.class.getSimpleName();
     private static final long PREF_MAX_SIZE_MB = 5;
+    private static final Object REMOVED = new Object();
     private final SharedPreferences mPrefs;
+    private final Map<String, Object> mPending = new LinkedHashMap<>();
+    private final Runnable mFlushTask = this::flush;
     private Context mContext;
-    private Map<String, Integer> mDataHashes;
+    private volatile AppendLogStore mDataStore;
+    private Handler mHandler;
+    private volatile long mDebounceMs;
+    private boolean mFlushScheduled;
+
+    /**
+     * Changes made inside {@link #edit(BatchCallback)}. Saved with a single apply.
+     */
+    public interface Batch {
+        Batch putLong(String key, long val);
+        Batch putInt(String key, int val);
+        Batch putBoolean(String key, boolean val);
+        Batch putString(String key, String val);
+        Batch remove(String key);
+    }
+
+    public interface BatchCallback {
+        void onBatch(Batch batch);
+    }
+
+    private static class PendingBatch implements Batch {
+        private final Map<String, Object> mChanges = new LinkedHashMap<>();
+
+        @Override
+        public Batch putLong(String key, long val) {
+            mChanges.put(key, val);
+            return this;
+        }
+
+        @Override
+        public Batch putInt(String key, int val) {
+            mChanges.put(key, val);
+            return this;
+        }
+
+        @Override
+        public Batch putBoolean(String key, boolean val) {
+            mChanges.put(key, val);
+            return this;
+        }
+
+        @Override
+        public Batch putString(String key, String val) {
+            mChanges.put(key, val != null ? val : REMOVED);
+            return this;
+        }
+
+        @Override
+        public Batch remove(String key) {
+            mChanges.put(key, REMOVED);
+            return this;
+        }
+    }
 
     public SharedPreferencesBase(Context context, String prefName) {
         this(context, prefName, -1, false);
@@ -93,49 +151,185 @@ public class SharedPreferencesBase {
     }
 
     public void putLong(String key, long val) {
-        mPrefs.edit()
-                .putLong(key, val)
-                .apply();
+        put(key, val);
     }
 
     public long getLong(String key, long defVal) {
+        Object pending = getPending(key);
+
+        if (pending != null) {
+            return pending != REMOVED ? (Long) pending : defVal;
+        }
+
         return mPrefs.getLong(key, defVal);
     }
 
     public void putInt(String key, int val) {
-        mPrefs.edit()
-                .putInt(key, val)
-                .apply();
+        put(key, val);
     }
 
     public int getInt(String key, int defVal) {
+        Object pending = getPending(key);
+
+        if (pending != null) {
+            return pending != REMOVED ? (Integer) pending : defVal;
+        }
+
         return mPrefs.getInt(key, defVal);
     }
 
     public void putBoolean(String key, boolean val) {
-        mPrefs.edit()
-                .putBoolean(key, val)
-                .apply();
+        put(key, val);
     }
 
     public boolean getBoolean(String key, boolean defVal) {
+        Object pending = getPending(key);
+
+        if (pending != null) {
+            return pending != REMOVED ? (Boolean) pending : defVal;
+        }
+
         return mPrefs.getBoolean(key, defVal);
     }
 
     public void putString(String key, String  val) {
-        mPrefs.edit()
-                .putString(key, val)
-                .apply();
+        put(key, val != null ? val : REMOVED);
     }
 
     public String getString(String key, String defVal) {
+        Object pending = getPending(key);
+
+        if (pending != null) {
+            return pending != REMOVED ? (String) pending : defVal;
+        }
+
         return mPrefs.getString(key, defVal);
     }
 
     public void clear() {
-        mPrefs.edit()
-                .clear()
-                .apply();
+        synchronized (mPending) {
+            mPending.clear();
+            mPrefs.edit()
+                    .clear()
+                    .apply();
+        }
+    }
+
+    /**
+     * Multiple changes in one disk write<br/>
+     * <code>edit(batch -> batch.putInt(KEY1, 1).putString(KEY2, "val"))</code>
+     */
+    public void edit(BatchCallback callback) {
+        PendingBatch batch = new PendingBatch();
+        callback.onBatch(batch);
+
+        if (batch.mChanges.isEmpty()) {
+            return;
+        }
+
+        if (mDebounceMs > 0) {
+            synchronized (mPending) {
+                mPending.putAll(batch.mChanges);
+            }
+            scheduleFlush();
+        } else {
+            applyChanges(batch.mChanges);
+        }
+    }
+
+    /**
+     * Coalesce changes made within the window into a single disk write. 0 to disable (default).<br/>
+     * Call {@link #flush()} on lifecycle events (e.g. onPause) to not lose pending changes.
+     */
+    public void setDebounceMs(long debounceMs) {
+        mDebounceMs = debounceMs;
+
+        if (debounceMs <= 0) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes pending changes immediately
+     */
+    public void flush() {
+        synchronized (mPending) {
+            mFlushScheduled = false;
+
+            if (mHandler != null) {
+                mHandler.removeCallbacks(mFlushTask);
+            }
+
+            if (mPending.isEmpty()) {
+                return;
+            }
+
+            applyChanges(mPending);
+            mPending.clear();
+        }
+    }
+
+    private void put(String key, Object val) {
+        if (mDebounceMs > 0) {
+            synchronized (mPending) {
+                mPending.put(key, val);
+            }
+            scheduleFlush();
+        } else {
+            Editor editor = mPrefs.edit();
+            putValue(editor, key, val);
+            editor.apply();
+        }
+    }
+
+    /**
+     * Window starts with the first change. Constant writes won't postpone the flush forever.
+     */
+    private void scheduleFlush() {
+        synchronized (mPending) {
+            if (mFlushScheduled) {
+                return;
+            }
+
+            if (mHandler == null) {
+                mHandler = new Handler(Looper.getMainLooper());
+            }
+
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlushTask, mDebounceMs);
+        }
+    }
+
+    private Object getPending(String key) {
+        synchronized (mPending) {
+            return mPending.isEmpty() ? null : mPending.get(key);
+        }
+    }
+
+    private void applyChanges(Map<String, Object> changes) {
+        synchronized (mPending) {
+            Editor editor = mPrefs.edit();
+
+            for (Map.Entry<String, Object> entry : changes.entrySet()) {
+                putValue(editor, entry.getKey(), entry.getValue());
+            }
+
+            editor.apply();
+        }
+    }
+
+    private static void putValue(Editor editor, String key, Object val) {
+        if (val == REMOVED) {
+            editor.remove(key);
+        } else if (val instanceof Long) {
+            editor.putLong(key, (Long) val);
+        } else if (val instanceof Integer) {
+            editor.putInt(key, (Integer) val);
+        } else if (val instanceof Boolean) {
+            editor.putBoolean(key, (Boolean) val);
+        } else {
+            editor.putString(key, (String) val);
+        }
     }
 
     @Nullable
@@ -144,58 +338,81 @@ public class SharedPreferencesBase {
     }
 
     final public String getData(String key) {
-        // Don't sync hash here. Hashes won't match.
+        if (key == null) {
+            return null;
+        }
+
+        AppendLogStore store = getDataStore();
+
+        if (store.contains(key)) {
+            return store.get(key);
+        }
+
+        // Migrate from plain files or prefs
         File source = getStorageFile(key);
         String data = FileHelpers.getFileContents(source);
+        boolean fromPrefs = false;
 
-        // Migrate to plain files
         if (data == null) {
             data = getString(key, null);
-            putString(key, null);
-            setData(key, data);
+            fromPrefs = data != null;
+        }
+
+        if (data == null) {
+            return null; // nothing to migrate
+        }
+
+        if (store.put(key, data)) {
+            if (fromPrefs) {
+                putString(key, null);
+            }
+
+            source.delete();
         }
 
         return data;
     }
 
+    /**
+     * Unchanged data isn't written
+     */
     final public void setData(String key, String data) {
-        if (checkData(key, data)) {
-            File destination = getStorageFile(key);
-            FileHelpers.stringToFile(data, destination);
+        if (key == null) {
+            return;
         }
-    }
 
-    private File getStorageFile(String key) {
-        String prefsDir = getPrefsDir();
+        if (getDataStore().put(key, data) && data == null) {
+            // Removed keys are dropped from the store on compaction. Don't migrate the old copy after that.
+            getStorageFile(key).delete();
 
-        if (prefsDir == null) {
-            throw new IllegalStateException(TAG + ": getPrefsDir() cannot be null. Probably, you forgot to override it.");
+            if (getString(key, null) != null) {
+                putString(key, null);
+            }
         }
+    }
 
-        if (key == null) {
-            return null;
+    private AppendLogStore getDataStore() {
+        if (mDataStore == null) {
+            mDataStore = AppendLogStore.instance(new File(FileHelpers.getFilesDir(getContext()), getCheckedPrefsDir() + ".log"));
         }
 
-        return new File(FileHelpers.getFilesDir(getContext()), prefsDir + "/" + key);
+        return mDataStore;
     }
 
     /**
-     * Check that the data has been modified.
+     * Legacy storage: file per key
      */
-    private boolean checkData(String key, String data) {
-        if (mDataHashes == null) {
-            mDataHashes = new HashMap<>();
-        }
+    private File getStorageFile(String key) {
+        return new File(FileHelpers.getFilesDir(getContext()), getCheckedPrefsDir() + "/" + key);
+    }
 
-        Integer oldHashCode = mDataHashes.get(key);
-        int newHashCode = data != null ? data.hashCode() : -1;
+    private String getCheckedPrefsDir() {
+        String prefsDir = getPrefsDir();
 
-        if (oldHashCode != null && oldHashCode == newHashCode) {
-            return false;
+        if (prefsDir == null) {
+            throw new IllegalStateException(TAG + ": getPrefsDir() cannot be null. Probably, you forgot to override it.");
         }
 
-        mDataHashes.put(key, newHashCode);
-
-        return true;
+        return prefsDir;
     }
 }
@@ -2,28 +2,88 @@ package com.liskovsoft.sharedutils.querystringparser;
 
 import androidx.annotation.NonNull;
 
-import java.util.ArrayList;
-import java.util.List;
-
+/**
+ * Url with path pairs (http://myurl.com/key1/value1) and/or query pairs (?key2=value2).<br/>
+ * Url is split once into path and query regions, each region is tokenized once.<br/>
+ * Every modification goes to the single representation that owns the key.
+ */
 class CombinedQueryString implements UrlQueryString {
-    private final List<UrlQueryString> mQueryStrings = new ArrayList<>();
+    private final String mUrl;
+    private final boolean mIsUrl;
+    private final PathQueryString mPath;
+    private final UrlEncodedQueryStringBase mQuery;
+    private final boolean mPathValid;
+    private final boolean mQueryValid;
+    private String mCachedUrl;
 
     public CombinedQueryString(String url) {
-        UrlQueryString urlQueryString = UrlEncodedQueryString.parse(url);
+        mUrl = url;
+
+        if (url == null) {
+            mIsUrl = false;
+            mPath = null;
+            mQuery = null;
+            mPathValid = false;
+            mQueryValid = false;
+            return;
+        }
+
+        int length = url.length();
+        int queryIndex = -1;
+        boolean queryValid = false;
+
+        // Same as [^\/?&]+=[^\/&]+
+        for (int i = 0; i < length; i++) {
+            char c = url.charAt(i);
 
-        if (urlQueryString.isValid()) {
-            mQueryStrings.add(urlQueryString);
+            if (c == '?' && queryIndex == -1) {
+                queryIndex = i;
+            } else if (c == '=' && !queryValid && i > 0 && i < length - 1) {
+                char prev = url.charAt(i - 1);
+                char next = url.charAt(i + 1);
+                queryValid = prev != '/' && prev != '?' && prev != '&' && next != '/' && next != '&';
+            }
+        }
+
+        mIsUrl = isUrl(url);
+        mQueryValid = queryValid;
+
+        String path = queryIndex != -1 ? url.substring(0, queryIndex) : url;
+        mPath = PathQueryString.parse(path);
+        mPathValid = mPath.isValid();
+
+        if (!mIsUrl) { // Only query
+            mQuery = mQueryValid ? UrlEncodedQueryStringBase.parse(url) : null;
+        } else if (queryIndex != -1) {
+            // # isn't valid in the query, drop it and keep the pairs behind it. E.g.
+            // https://m.youtube.com/watch?v=JsY3_Va6uqI&feature=emb_title###&Urj7svfj=&Rkj2f3jk=&Czj1i9k6=
+            mQuery = mQueryValid ? UrlEncodedQueryStringBase.parse(url.substring(queryIndex + 1).replace("#", "")) : null;
+        } else {
+            mQuery = mQueryValid ? UrlEncodedQueryStringBase.parse("") : null;
         }
 
-        UrlQueryString pathQueryString = PathQueryString.parse(url);
+        mCachedUrl = mQueryValid || mPathValid ? null : url;
+    }
 
-        if (pathQueryString.isValid()) {
-            mQueryStrings.add(pathQueryString);
+    /**
+     * Same as ^[a-z.]+://.+$
+     */
+    private static boolean isUrl(String url) {
+        int schemeEnd = url.indexOf("://");
+
+        if (schemeEnd <= 0 || schemeEnd + 3 >= url.length()) {
+            return false;
         }
 
-        if (mQueryStrings.isEmpty()) {
-            mQueryStrings.add(NullQueryString.parse(url));
+        for (int i = 0; i < schemeEnd; i++) {
+            char c = url.charAt(i);
+
+            if ((c < 'a' || c > 'z') && c != '.') {
+                return false;
+            }
         }
+
+        return true;
     }
 
     public static UrlQueryString parse(String url) {
@@ -32,93 +92,87 @@ class CombinedQueryString implements UrlQueryString {
 
     @Override
     public void remove(String key) {
-        for (UrlQueryString queryString : mQueryStrings) {
-            queryString.remove(key);
+        if (mQueryValid && mQuery.contains(key)) {
+            mQuery.remove(key);
+            mCachedUrl = null;
+        }
+
+        if (mPathValid && mPath.contains(key)) {
+            mPath.remove(key);
+            mCachedUrl = null;
         }
     }
 
     @Override
     public String get(String key) {
-        for (UrlQueryString queryString : mQueryStrings) {
-            String value = queryString.get(key);
-            if (value != null) {
-                return value;
-            }
+        String value = mQueryValid ? mQuery.get(key) : null;
+
+        if (value == null && mPathValid) {
+            value = mPath.get(key);
         }
 
-        return null;
+        return value;
     }
 
     @Override
     public float getFloat(String key) {
-        for (UrlQueryString queryString : mQueryStrings) {
-            float value = queryString.getFloat(key);
-            if (value != 0) {
-                return value;
-            }
+        String value = mQueryValid ? mQuery.get(key) : null;
+        float result = value != null ? Float.parseFloat(value) : 0;
+
+        if (result == 0 && mPathValid) {
+            result = mPath.getFloat(key);
         }
 
-        return 0;
+        return result;
     }
 
     @Override
     public void set(String key, String value) {
-        for (UrlQueryString queryString : mQueryStrings) {
-            queryString.set(key, value);
+        if (mQueryValid && (mQuery.contains(key) || !mPathValid || !mPath.contains(key))) {
+            mQuery.set(key, value);
+            mCachedUrl = null;
+        } else if (mPathValid) {
+            mPath.set(key, value);
+            mCachedUrl = null;
         }
     }
 
     @Override
     public void set(String key, int value) {
-        for (UrlQueryString queryString : mQueryStrings) {
-            queryString.set(key, value);
-        }
+        set(key, String.valueOf(value));
     }
 
     @Override
     public void set(String key, float value) {
-        for (UrlQueryString queryString : mQueryStrings) {
-            queryString.set(key, value);
-        }
+        set(key, String.valueOf(value));
     }
 
     @Override
     public boolean isEmpty() {
-        for (UrlQueryString queryString : mQueryStrings) {
-            return queryString.isEmpty();
-        }
-
-        return true;
+        return !mQueryValid && !mPathValid;
     }
 
     @Override
     public boolean isValid() {
-        for (UrlQueryString queryString : mQueryStrings) {
-            return queryString.isValid();
-        }
-
-        return false;
+        return mQueryValid || mPathValid;
     }
 
     @Override
     public boolean contains(String key) {
-        for (UrlQueryString queryString : mQueryStrings) {
-            boolean contains = queryString.contains(key);
-            if (contains) {
-                return true;
-            }
-        }
-
-        return false;
+        return (mQueryValid && mQuery.contains(key)) || (mPathValid && mPath.contains(key));
     }
 
     @NonNull
     @Override
     public String toString() {
-        for (UrlQueryString queryString : mQueryStrings) {
-            return queryString.toString();
+        if (mCachedUrl == null && mUrl != null) {
+            if (mQueryValid) {
+                mCachedUrl = mIsUrl ? mPath + "?" + mQuery : mQuery.toString();
+            } else {
+                mCachedUrl = mPath.toString();
+            }
         }
 
-        return super.toString();
+        return mCachedUrl;
     }
 }
@@ -1,36 +1,90 @@
 package com.liskovsoft.sharedutils.querystringparser;
 
 import androidx.annotation.NonNull;
-import com.liskovsoft.sharedutils.helpers.Helpers;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Example: http://myurl.com/key1/value1/key2/value2/key3/value3<br/>
  * Should contain at least one key/value pair: http://myurl.com/key/value/<br/>
- * Regex: \/key\/([^\/]*)
+ * Pair is any segment followed by another segment: \/key\/([^\/]*)<br/>
+ * Url is split into segments once, string is rebuilt only after modification.
  */
 class PathQueryString implements UrlQueryString {
-    private static final Pattern VALIDATION_PATTERN = Pattern.compile("\\/[^\\/]+\\/[^\\/]+\\/[^\\/]+");
-    private static final Pattern ENDING_PATTERN = Pattern.compile("\\?.*");
+    private final List<String> mSegments;
+    private final Map<String, Integer> mKeyIndex = new HashMap<>();
+    private boolean mHasDuplicateKeys;
     private String mUrl;
 
     public PathQueryString(String url) {
-        mUrl = Helpers.replace(url, ENDING_PATTERN, "");
+        if (url == null) {
+            mSegments = null;
+            return;
+        }
+
+        int queryIndex = url.indexOf('?');
+
+        if (queryIndex != -1) {
+            url = url.substring(0, queryIndex);
+        }
+
+        mUrl = url;
+        mSegments = split(url);
+        updateIndex();
+    }
+
+    private static List<String> split(String url) {
+        List<String> result = new ArrayList<>();
+        int start = 0;
+        int end;
+
+        while ((end = url.indexOf('/', start)) != -1) {
+            result.add(url.substring(start, end));
+            start = end + 1;
+        }
+
+        result.add(url.substring(start));
+
+        return result;
+    }
+
+    /**
+     * First segment (before the first slash) never acts as a key
+     */
+    private void updateIndex() {
+        mKeyIndex.clear();
+        mHasDuplicateKeys = false;
+
+        for (int i = 1; i < mSegments.size() - 1; i++) {
+            addToIndex(i);
+        }
+    }
+
+    private void addToIndex(int position) {
+        if (position < 1) {
+            return;
+        }
+
+        String key = mSegments.get(position);
+
+        if (mKeyIndex.containsKey(key)) {
+            mHasDuplicateKeys = true;
+        } else {
+            mKeyIndex.put(key, position);
+        }
     }
 
     @Override
     public String get(String key) {
-        if (mUrl == null) {
+        if (mSegments == null) {
             return null;
         }
 
-        final String template = "\\/%s\\/([^\\/]*)";
-        Pattern pattern = Pattern.compile(String.format(template, key));
-        Matcher matcher = pattern.matcher(mUrl);
-        boolean result = matcher.find();
-        return result ? matcher.group(1) : null;
+        Integer index = mKeyIndex.get(key);
+        return index != null ? mSegments.get(index + 1) : null;
     }
 
     @Override
@@ -41,7 +95,7 @@ class PathQueryString implements UrlQueryString {
 
     @Override
     public void set(String key, String value) {
-        if (mUrl == null) {
+        if (mSegments == null) {
             return;
         }
 
@@ -50,8 +104,18 @@ class PathQueryString implements UrlQueryString {
         }
 
         if (!replace(key, value)) {
-            String pattern = mUrl.endsWith("/") ? "%s/%s" : "/%s/%s";
-            mUrl += String.format(pattern, key, value);
+            // Trailing slash is reused: http://myurl.com/key/value/ -> http://myurl.com/key/value/key2/value2
+            if (mSegments.size() > 1 && mSegments.get(mSegments.size() - 1).isEmpty()) {
+                mSegments.set(mSegments.size() - 1, key);
+            } else {
+                // Former last segment may act as a key now
+                addToIndex(mSegments.size() - 1);
+                mSegments.add(key);
+            }
+
+            addToIndex(mSegments.size() - 1);
+            mSegments.add(value);
+            mUrl = null;
         }
     }
 
@@ -65,53 +129,134 @@ class PathQueryString implements UrlQueryString {
         set(key, String.valueOf(value));
     }
 
+    /**
+     * Replaces values of all non-overlapping pairs with the same key
+     */
     private boolean replace(String key, String newValue) {
-        if (mUrl == null) {
+        Integer index = mKeyIndex.get(key);
+
+        if (index == null) {
             return false;
         }
 
-        String originUrl = mUrl;
+        mUrl = null;
 
-        final String template = "\\/%s\\/[^\\/]*";
-        mUrl = mUrl.replaceAll(
-                String.format(template, key),
-                String.format("\\/%s\\/%s", key, newValue));
+        if (!mHasDuplicateKeys) {
+            String oldValue = mSegments.set(index + 1, newValue);
+            onValueChanged(index + 1, oldValue, newValue);
+            return true;
+        }
+
+        for (int i = index; i < mSegments.size() - 1; i++) {
+            if (key.equals(mSegments.get(i))) {
+                mSegments.set(++i, newValue);
+            }
+        }
 
-        return !mUrl.equals(originUrl);
+        updateIndex();
+
+        return true;
+    }
+
+    /**
+     * Value may act as a key of the next pair. Index is patched without full rebuild when keys are unique.
+     */
+    private void onValueChanged(int position, String oldValue, String newValue) {
+        if (oldValue.equals(newValue) || position >= mSegments.size() - 1) {
+            return;
+        }
+
+        mKeyIndex.remove(oldValue);
+        Integer existing = mKeyIndex.get(newValue);
+
+        if (existing != null) {
+            mHasDuplicateKeys = true;
+        }
+
+        if (existing == null || existing > position) {
+            mKeyIndex.put(newValue, position);
+        }
     }
 
     @Override
     public void remove(String key) {
-        if (mUrl == null) {
+        if (mSegments == null) {
+            return;
+        }
+
+        Integer index = mKeyIndex.get(key);
+
+        if (index == null) {
             return;
         }
 
-        final String template = "\\/%s\\/[^\\/]*";
-        mUrl = mUrl.replaceAll(String.format(template, key), "");
+        for (int i = index; i < mSegments.size() - 1; i++) {
+            if (key.equals(mSegments.get(i))) {
+                mSegments.remove(i);
+                mSegments.remove(i);
+                i--;
+            }
+        }
+
+        mUrl = null;
+        updateIndex();
     }
 
     @NonNull
     @Override
     public String toString() {
+        if (mUrl == null && mSegments != null) {
+            int length = mSegments.size();
+
+            for (String segment : mSegments) {
+                length += segment.length();
+            }
+
+            StringBuilder result = new StringBuilder(length);
+
+            for (int i = 0; i < mSegments.size(); i++) {
+                if (i > 0) {
+                    result.append('/');
+                }
+
+                result.append(mSegments.get(i));
+            }
+
+            mUrl = result.toString();
+        }
+
         return mUrl;
     }
 
     @Override
     public boolean isEmpty() {
-        return mUrl == null || mUrl.isEmpty();
+        return mSegments == null || toString().isEmpty();
     }
 
     public static PathQueryString parse(String url) {
         return new PathQueryString(url);
     }
 
+    /**
+     * Three non-empty segments in a row after a slash: \/[^\/]+\/[^\/]+\/[^\/]+
+     */
     @Override
     public boolean isValid() {
-        if (mUrl == null) {
+        if (mSegments == null) {
             return false;
         }
 
-        return Helpers.matchAll(mUrl, VALIDATION_PATTERN);
+        int nonEmpty = 0;
+
+        for (int i = 1; i < mSegments.size(); i++) {
+            nonEmpty = mSegments.get(i).isEmpty() ? 0 : nonEmpty + 1;
+
+            if (nonEmpty == 3) {
+                return true;
+            }
+        }
+
+        return false;
     }
 
     @Override
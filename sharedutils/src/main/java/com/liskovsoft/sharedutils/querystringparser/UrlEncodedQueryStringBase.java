@@ -33,6 +33,7 @@ import java.net.URISyntaxException;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -242,12 +243,36 @@ class UrlEncodedQueryStringBase {
 
 	public static UrlEncodedQueryStringBase parse(final CharSequence query ) {
 
+		return parse( query, true );
+	}
+
+	/**
+	 * Creates a UrlEncodedQueryString by parsing the given query string.
+	 * <p>
+	 * In lazy mode only parameter offsets are recorded. Names and values are decoded the first time
+	 * they are read, unmodified parameters are written back as is. Queries with multi-valued
+	 * parameters (or malformed escapes) are always parsed eagerly.
+	 *
+	 * @param query
+	 *            query string to be parsed
+	 * @param lazy
+	 *            decode parameters on demand
+	 */
+
+	public static UrlEncodedQueryStringBase parse(final CharSequence query, final boolean lazy ) {
+
 		UrlEncodedQueryStringBase queryString = new UrlEncodedQueryStringBase();
 
+		if ( lazy && query != null ) {
+			queryString.lazyParams = LazyParams.parse( query.toString() );
+		}
+
 		// Note: import to call appendOrSet with 'true', in
 		// case the given query contains multi-valued parameters
 
-		queryString.appendOrSet( query, true );
+		if ( queryString.lazyParams == null ) {
+			queryString.appendOrSet( query, true );
+		}
 
 		return queryString;
 	}
@@ -299,6 +324,13 @@ class UrlEncodedQueryStringBase {
 	// is always going to be needed (eg. there is little point lazy-initializing it)
 	private final Map<String, List<String>>	queryMap					= new LinkedHashMap<String, List<String>>();
 
+	/**
+	 * Parameters of the lazily parsed query. Moved to <code>queryMap</code> as soon as the Map
+	 * is needed (see {@link #materialize materialize}).
+	 */
+
+	private LazyParams						lazyParams;
+
 	//
 	// Public methods
 	//
@@ -324,6 +356,10 @@ class UrlEncodedQueryStringBase {
 
 	public String get( final String name ) {
 
+		if ( this.lazyParams != null ) {
+			return this.lazyParams.get( name );
+		}
+
 		List<String> parameters = getValues( name );
 
 		if ( parameters == null || parameters.isEmpty() ) {
@@ -343,6 +379,10 @@ class UrlEncodedQueryStringBase {
 
 	public boolean contains( final String name ) {
 
+		if ( this.lazyParams != null ) {
+			return this.lazyParams.indexOf( name ) != -1;
+		}
+
 		return this.queryMap.containsKey( name );
 	}
 
@@ -357,6 +397,8 @@ class UrlEncodedQueryStringBase {
 
 	public Iterator<String> getNames() {
 
+		materialize();
+
 		return this.queryMap.keySet().iterator();
 	}
 
@@ -374,6 +416,8 @@ class UrlEncodedQueryStringBase {
 
 	public List<String> getValues( final String name ) {
 
+		materialize();
+
 		return this.queryMap.get( name );
 	}
 
@@ -389,6 +433,8 @@ class UrlEncodedQueryStringBase {
 
 	public Map<String, List<String>> getMap() {
 
+		materialize();
+
 		LinkedHashMap<String, List<String>> map = new LinkedHashMap<String, List<String>>();
 
 		// Defensively copy the List<String>'s
@@ -553,6 +599,10 @@ class UrlEncodedQueryStringBase {
 
 	public boolean isEmpty() {
 
+		if ( this.lazyParams != null ) {
+			return this.lazyParams.isEmpty();
+		}
+
 		return queryMap.isEmpty();
 	}
 
@@ -750,6 +800,10 @@ class UrlEncodedQueryStringBase {
 	// (eg. toString().replaceAll( '&', '&amp;' ))
 	public String toString( Separator separator ) {
 
+		if ( this.lazyParams != null ) {
+			return this.lazyParams.toString( separator );
+		}
+
 		StringBuilder builder = new StringBuilder();
 
 		for ( String name : this.queryMap.keySet() ) {
@@ -814,6 +868,22 @@ class UrlEncodedQueryStringBase {
 			throw new NullPointerException( "name" );
 		}
 
+		// Single-valued parameters stay in lazy storage
+
+		if ( this.lazyParams != null ) {
+			if ( !append ) {
+				this.lazyParams.set( name, value );
+				return;
+			}
+
+			if ( this.lazyParams.indexOf( name ) == -1 ) {
+				this.lazyParams.add( name, value );
+				return;
+			}
+
+			materialize();
+		}
+
 		// If we're appending, and there's an existing parameter...
 
 		if ( append ) {
@@ -861,6 +931,8 @@ class UrlEncodedQueryStringBase {
 			return;
 		}
 
+		materialize();
+
 		// Note we always parse using PARSE_PARAMETER_SEPARATORS, regardless
 		// of what the user later nominates as their output parameter
 		// separator using toString()
@@ -919,4 +991,393 @@ class UrlEncodedQueryStringBase {
 			}
 		}
 	}
+
+	/**
+	 * Moves lazily parsed parameters to the Map.
+	 */
+
+	private void materialize() {
+
+		if ( this.lazyParams == null ) {
+			return;
+		}
+
+		this.lazyParams.copyTo( this.queryMap );
+		this.lazyParams = null;
+	}
+
+	//
+	// Inner classes
+	//
+
+	/**
+	 * Single-valued parameters stored as offsets into the original query (flat parallel arrays).
+	 * <p>
+	 * Plain names are compared in place, values are decoded on first read. Parameters whose raw form
+	 * equals their <code>URLEncoder</code> form are copied to the output without re-encoding.
+	 */
+
+	private static final class LazyParams {
+
+		private static final int	NAME_PLAIN		= 1;	// no escapes, decoded name equals raw name
+		private static final int	NAME_CANONICAL	= 2;	// URLEncoder would produce the raw name
+		private static final int	VALUE_PLAIN		= 4;
+		private static final int	VALUE_CANONICAL	= 8;
+		private static final int	VALUE_MODIFIED	= 16;	// raw value is stale, use values[]
+		private static final int	REMOVED			= 32;
+
+		private static final int	NO_VALUE		= -1;
+
+		private static final int	MALFORMED		= -1;
+
+		private final String		source;
+
+		private int					count;
+
+		// nameStart, nameEnd, valueStart (or NO_VALUE), valueEnd. Added parameters have no bounds.
+		private int[]				bounds;
+
+		private int[]				flags;
+
+		private int[]				hashes;
+
+		private String[]			names;
+
+		private String[]			values;
+
+		private LazyParams( String source, int capacity ) {
+
+			this.source = source;
+			this.bounds = new int[capacity * 4];
+			this.flags = new int[capacity];
+			this.hashes = new int[capacity];
+			this.names = new String[capacity];
+			this.values = new String[capacity];
+		}
+
+		/**
+		 * @return <code>null</code> if the query can't be stored lazily (multi-valued parameter or
+		 *         malformed escape)
+		 */
+
+		static LazyParams parse( String query ) {
+
+			LazyParams result = new LazyParams( query, 8 );
+			int length = query.length();
+			int start = 0;
+
+			while ( start < length ) {
+				int end = start;
+				int equals = -1;
+
+				// Same separators as PARSE_PARAMETER_SEPARATORS
+
+				while ( end < length && query.charAt( end ) != '&' && query.charAt( end ) != ';' ) {
+					if ( equals == -1 && query.charAt( end ) == '=' ) {
+						equals = end;
+					}
+
+					end++;
+				}
+
+				if ( end > start && !result.addRaw( start, equals == -1 ? end : equals, equals == -1 ? NO_VALUE : equals + 1, end ) ) {
+					return null;
+				}
+
+				start = end + 1;
+			}
+
+			return result;
+		}
+
+		private boolean addRaw( int nameStart, int nameEnd, int valueStart, int valueEnd ) {
+
+			int nameFlags = classify( this.source, nameStart, nameEnd );
+			int valueFlags = valueStart == NO_VALUE ? 0 : classify( this.source, valueStart, valueEnd );
+
+			if ( nameFlags == MALFORMED || valueFlags == MALFORMED ) {
+				return false;
+			}
+
+			int index = grow();
+			String name = null;
+			int hash = 0;
+
+			if ( ( nameFlags & NAME_PLAIN ) != 0 ) {
+				for ( int i = nameStart; i < nameEnd; i++ ) {
+					hash = 31 * hash + this.source.charAt( i );
+				}
+			} else {
+				name = decode( this.source.substring( nameStart, nameEnd ) );
+				hash = name.hashCode();
+			}
+
+			// Multi-valued parameter
+
+			for ( int i = 0; i < index; i++ ) {
+				if ( this.hashes[i] == hash && matches( i, name != null ? name : this.source.substring( nameStart, nameEnd ), hash ) ) {
+					return false;
+				}
+			}
+
+			this.bounds[index * 4] = nameStart;
+			this.bounds[index * 4 + 1] = nameEnd;
+			this.bounds[index * 4 + 2] = valueStart;
+			this.bounds[index * 4 + 3] = valueEnd;
+			this.flags[index] = nameFlags | ( valueFlags << 2 );
+			this.hashes[index] = hash;
+			this.names[index] = name;
+			this.count++;
+
+			return true;
+		}
+
+		void add( String name, String value ) {
+
+			int index = grow();
+
+			this.bounds[index * 4] = -1;
+			this.flags[index] = VALUE_MODIFIED;
+			this.hashes[index] = name.hashCode();
+			this.names[index] = name;
+			this.values[index] = value;
+			this.count++;
+		}
+
+		void set( String name, String value ) {
+
+			int index = indexOf( name );
+
+			if ( value == null ) {
+				if ( index != -1 ) {
+					this.flags[index] |= REMOVED;
+				}
+			} else if ( index == -1 ) {
+				add( name, value );
+			} else {
+				this.values[index] = value;
+				this.flags[index] |= VALUE_MODIFIED;
+			}
+		}
+
+		String get( String name ) {
+
+			int index = indexOf( name );
+
+			return index != -1 ? getValue( index ) : null;
+		}
+
+		int indexOf( String name ) {
+
+			int hash = name.hashCode();
+
+			for ( int i = 0; i < this.count; i++ ) {
+				if ( matches( i, name, hash ) ) {
+					return i;
+				}
+			}
+
+			return -1;
+		}
+
+		boolean isEmpty() {
+
+			for ( int i = 0; i < this.count; i++ ) {
+				if ( ( this.flags[i] & REMOVED ) == 0 ) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		void copyTo( Map<String, List<String>> map ) {
+
+			for ( int i = 0; i < this.count; i++ ) {
+				if ( ( this.flags[i] & REMOVED ) == 0 ) {
+					List<String> listValues = new ArrayList<String>( 1 );
+					listValues.add( getValue( i ) );
+					map.put( getName( i ), listValues );
+				}
+			}
+		}
+
+		String toString( Separator separator ) {
+
+			StringBuilder builder = new StringBuilder( this.source.length() + 16 );
+
+			for ( int i = 0; i < this.count; i++ ) {
+				int flag = this.flags[i];
+
+				if ( ( flag & REMOVED ) != 0 ) {
+					continue;
+				}
+
+				if ( builder.length() != 0 ) {
+					builder.append( separator );
+				}
+
+				if ( this.bounds[i * 4] != -1 && ( flag & NAME_CANONICAL ) != 0 ) {
+					builder.append( this.source, this.bounds[i * 4], this.bounds[i * 4 + 1] );
+				} else {
+					builder.append( encode( getName( i ) ) );
+				}
+
+				if ( ( flag & VALUE_MODIFIED ) == 0 && ( flag & VALUE_CANONICAL ) != 0 ) {
+					builder.append( '=' );
+					builder.append( this.source, this.bounds[i * 4 + 2], this.bounds[i * 4 + 3] );
+				} else {
+					String value = getValue( i );
+
+					if ( value != null ) {
+						builder.append( '=' );
+						builder.append( encode( value ) );
+					}
+				}
+			}
+
+			return builder.toString();
+		}
+
+		private boolean matches( int index, String name, int hash ) {
+
+			if ( this.hashes[index] != hash || ( this.flags[index] & REMOVED ) != 0 ) {
+				return false;
+			}
+
+			if ( this.names[index] != null ) {
+				return this.names[index].equals( name );
+			}
+
+			int nameStart = this.bounds[index * 4];
+			int nameLength = this.bounds[index * 4 + 1] - nameStart;
+
+			return nameLength == name.length() && this.source.regionMatches( nameStart, name, 0, nameLength );
+		}
+
+		private String getName( int index ) {
+
+			if ( this.names[index] == null ) {
+				this.names[index] = this.source.substring( this.bounds[index * 4], this.bounds[index * 4 + 1] );
+			}
+
+			return this.names[index];
+		}
+
+		private String getValue( int index ) {
+
+			int flag = this.flags[index];
+
+			if ( this.values[index] != null || ( flag & VALUE_MODIFIED ) != 0 ) {
+				return this.values[index];
+			}
+
+			int valueStart = this.bounds[index * 4 + 2];
+
+			if ( valueStart == NO_VALUE ) {
+				return null;
+			}
+
+			String value = this.source.substring( valueStart, this.bounds[index * 4 + 3] );
+
+			this.values[index] = ( flag & VALUE_PLAIN ) != 0 ? value : decode( value );
+
+			return this.values[index];
+		}
+
+		private int grow() {
+
+			if ( this.count == this.flags.length ) {
+				int capacity = this.count * 2;
+
+				this.bounds = Arrays.copyOf( this.bounds, capacity * 4 );
+				this.flags = Arrays.copyOf( this.flags, capacity );
+				this.hashes = Arrays.copyOf( this.hashes, capacity );
+				this.names = Arrays.copyOf( this.names, capacity );
+				this.values = Arrays.copyOf( this.values, capacity );
+			}
+
+			return this.count;
+		}
+
+		/**
+		 * @return NAME_PLAIN and/or NAME_CANONICAL bits, or MALFORMED if URLDecoder would fail
+		 */
+
+		private static int classify( String source, int start, int end ) {
+
+			boolean plain = true;
+			boolean canonical = true;
+
+			for ( int i = start; i < end; i++ ) {
+				char c = source.charAt( i );
+
+				if ( c == '+' ) {
+					plain = false;
+				} else if ( c == '%' ) {
+					if ( i + 2 >= end ) {
+						return MALFORMED;
+					}
+
+					int high = Character.digit( source.charAt( i + 1 ), 16 );
+					int low = Character.digit( source.charAt( i + 2 ), 16 );
+
+					if ( high == -1 || low == -1 ) {
+						return MALFORMED;
+					}
+
+					int decoded = high * 16 + low;
+
+					// URLEncoder writes upper case hex and doesn't escape safe chars and spaces
+
+					canonical &= decoded < 0x80 && decoded != ' ' && !isSafe( (char) decoded )
+							&& isUpperHex( source.charAt( i + 1 ) ) && isUpperHex( source.charAt( i + 2 ) );
+					plain = false;
+					i += 2;
+				} else if ( !isSafe( c ) ) {
+					canonical = false;
+				}
+			}
+
+			return ( plain ? NAME_PLAIN : 0 ) | ( canonical ? NAME_CANONICAL : 0 );
+		}
+
+		/**
+		 * Chars left as is by <code>URLEncoder</code>
+		 */
+
+		private static boolean isSafe( char c ) {
+
+			return ( c >= 'a' && c <= 'z' ) || ( c >= 'A' && c <= 'Z' ) || ( c >= '0' && c <= '9' ) || c == '.' || c == '-' || c == '*' || c == '_';
+		}
+
+		private static boolean isUpperHex( char c ) {
+
+			return ( c >= '0' && c <= '9' ) || ( c >= 'A' && c <= 'F' );
+		}
+
+		private static String decode( String value ) {
+
+			try {
+				return URLDecoder.decode( value, "UTF-8" );
+			} catch ( UnsupportedEncodingException e ) {
+				// Should never happen. UTF-8 should always be available
+				// according to Java spec
+
+				throw new RuntimeException( e );
+			}
+		}
+
+		private static String encode( String value ) {
+
+			try {
+				return URLEncoder.encode( value, "UTF-8" );
+			} catch ( UnsupportedEncodingException e ) {
+				// Should never happen. UTF-8 should always be available
+				// according to Java spec
+
+				throw new RuntimeException( e );
+			}
+		}
+	}
 }
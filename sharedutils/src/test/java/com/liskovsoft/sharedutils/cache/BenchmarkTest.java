@@ -0,0 +1,167 @@
+package com.liskovsoft.sharedutils.cache;
+
+import com.liskovsoft.sharedutils.cache.ConcurrentLruCacheTest.CacheOps;
+import com.liskovsoft.sharedutils.helpers.Helpers;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static com.liskovsoft.sharedutils.cache.ConcurrentLruCacheTest.runThreads;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Timings of the caches against the previous implementations. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+
+    /**
+     * Several threads, mostly reads (e.g. dns answers, rate limiter buckets).<br/>
+     * Before: synchronized {@link Helpers#createLRUMap(int)}. After: segmented cache.<br/>
+     * Gain depends on the number of cores, no difference expected on a single core.
+     */
+    @Test
+    public void testConcurrentThroughput() throws InterruptedException {
+        int threads = 4;
+        int operations = 1_000_000;
+        int keys = 2_000;
+        Map<Integer, Integer> map = Collections.synchronizedMap(Helpers.createLRUMap(keys / 2));
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<>(keys / 2);
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long startTimeNs = System.nanoTime();
+            assertEquals(0, runThreads(threads, operations, keys, new CacheOps() {
+                @Override
+                public Integer get(int key) {
+                    return map.get(key);
+                }
+
+                @Override
+                public void put(int key) {
+                    map.put(key, key);
+                }
+            }));
+            long beforeNs = System.nanoTime() - startTimeNs;
+
+            startTimeNs = System.nanoTime();
+            assertEquals(0, runThreads(threads, operations, keys, new CacheOps() {
+                @Override
+                public Integer get(int key) {
+                    return cache.get(key);
+                }
+
+                @Override
+                public void put(int key) {
+                    cache.put(key, key);
+                }
+            }));
+            long afterNs = System.nanoTime() - startTimeNs;
+
+            if (pass == 1) {
+                System.out.printf("LRU map, %s threads: before %s ms, after %s ms, %s%n",
+                        threads, beforeNs / 1_000_000, afterNs / 1_000_000, cache);
+            }
+        }
+    }
+
+    /**
+     * Before: {@link Helpers#createSafeLRUList(int)} (linear search + array copy). After: {@link RecencyList}.
+     */
+    @Test
+    public void testRecencyListThroughput() throws InterruptedException {
+        int threads = 4;
+        int operations = 20_000;
+        int maxSize = 500;
+        List<Integer> list = Helpers.createSafeLRUList(maxSize);
+        RecencyList<Integer> recencyList = new RecencyList<>(maxSize);
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long startTimeNs = System.nanoTime();
+            assertEquals(0, runThreads(threads, operations, maxSize * 2, new CacheOps() {
+                @Override
+                public Integer get(int key) {
+                    return list.contains(key) ? key : null;
+                }
+
+                @Override
+                public void put(int key) {
+                    list.add(key);
+                }
+            }));
+            long beforeNs = System.nanoTime() - startTimeNs;
+
+            startTimeNs = System.nanoTime();
+            assertEquals(0, runThreads(threads, operations, maxSize * 2, new CacheOps() {
+                @Override
+                public Integer get(int key) {
+                    return recencyList.contains(key) ? key : null;
+                }
+
+                @Override
+                public void put(int key) {
+                    recencyList.add(key);
+                }
+            }));
+            long afterNs = System.nanoTime() - startTimeNs;
+
+            if (pass == 1) {
+                System.out.printf("LRU list, %s threads: before %s ms, after %s ms%n", threads, beforeNs / 1_000_000, afterNs / 1_000_000);
+            }
+        }
+    }
+
+    /**
+     * Startup of 10_000 files: full scan vs journal replay
+     */
+    @Test
+    public void testCacheDirStartup() throws IOException {
+        File dir = mTempDir.newFolder("cache");
+        long expectedSize = 0;
+
+        for (int i = 0; i < 10_000; i++) {
+            write(new File(dir, "dir" + i % 100 + "/file" + i), i % 10);
+            expectedSize += i % 10;
+        }
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            new File(dir, ".journal").delete();
+
+            long startTimeNs = System.nanoTime();
+            assertEquals(expectedSize, create(dir).getSize());
+            long scanNs = System.nanoTime() - startTimeNs;
+
+            startTimeNs = System.nanoTime();
+            assertEquals(expectedSize, create(dir).getSize());
+            long journalNs = System.nanoTime() - startTimeNs;
+
+            if (pass == 1) {
+                System.out.printf("Startup of 10000 files: scan %s ms, journal %s ms%n", scanNs / 1_000_000, journalNs / 1_000_000);
+            }
+        }
+    }
+
+    private static CacheDirManager create(File dir) {
+        return new CacheDirManager(dir, Long.MAX_VALUE, System::currentTimeMillis, Runnable::run);
+    }
+
+    private static void write(File file, int length) throws IOException {
+        file.getParentFile().mkdirs();
+
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(new byte[length]);
+        }
+    }
+}
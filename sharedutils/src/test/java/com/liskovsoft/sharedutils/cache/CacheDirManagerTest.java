@@ -0,0 +1,245 @@
+package com.liskovsoft.sharedutils.cache;
+
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class CacheDirManagerTest {
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private File mDir;
+    private long mNowMs;
+    private final List<Runnable> mTasks = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = mTempDir.newFolder("cache");
+        mNowMs = 1_000;
+        mTasks.clear();
+    }
+
+    private CacheDirManager create(long maxBytes) {
+        return new CacheDirManager(mDir, maxBytes, () -> mNowMs++, mTasks::add);
+    }
+
+    private void runTasks() {
+        for (Runnable task : mTasks) {
+            task.run();
+        }
+
+        mTasks.clear();
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        CacheDirManager manager = create(300);
+        assertTrue(manager.put("a", data(100)));
+        assertTrue(manager.put("b", data(100)));
+        assertTrue(manager.put("dir/c", data(100)));
+        assertNotNull(manager.get("a")); // b is the eldest now
+        assertTrue(mTasks.isEmpty());
+
+        assertTrue(manager.put("d", data(100)));
+        assertEquals(400, manager.getSize()); // eviction is in background
+        assertEquals(1, mTasks.size());
+        runTasks();
+
+        assertEquals(300, manager.getSize());
+        assertNull(manager.get("b"));
+        assertFalse(manager.getFile("b").exists());
+        assertNotNull(manager.get("a"));
+        assertNotNull(manager.get("dir/c"));
+        assertEquals(1, manager.getEvictionCount());
+        assertEquals(100, manager.getEvictedBytes());
+        assertEquals(1, manager.getMissCount());
+        assertEquals(3, manager.getHitCount());
+        assertEquals(3, manager.getFileCount());
+    }
+
+    @Test
+    public void testJournalReopen() throws IOException {
+        CacheDirManager manager = create(1_000);
+        manager.put("a", data(10));
+        manager.put("b", data(20));
+        manager.put("c", data(30));
+        manager.get("a");
+        manager.remove("b");
+
+        // Not registered, should be unknown without rescan
+        write(new File(mDir, "untracked"), 5);
+
+        CacheDirManager reopened = create(1_000);
+        assertEquals(40, reopened.getSize());
+        assertEquals(2, reopened.getFileCount());
+        assertNull(reopened.get("untracked"));
+
+        reopened.rescan();
+        assertEquals(45, reopened.getSize());
+        assertNotNull(reopened.get("untracked"));
+    }
+
+    @Test
+    public void testAccessOrderSurvivesReopen() {
+        CacheDirManager manager = create(1_000);
+        manager.put("a", data(100));
+        manager.put("b", data(100));
+        manager.get("a");
+        manager.flush();
+
+        CacheDirManager reopened = create(150);
+        reopened.trimToSize();
+
+        assertNull(reopened.get("b"));
+        assertNotNull(reopened.get("a"));
+    }
+
+    @Test
+    public void testScanWithoutJournal() throws IOException {
+        write(new File(mDir, "one"), 10);
+        write(new File(mDir, "sub/two"), 20);
+        write(new File(mDir, "sub/three.tmp"), 30); // interrupted put
+
+        CacheDirManager manager = create(1_000);
+        assertEquals(30, manager.getSize());
+        assertNotNull(manager.get("sub/two"));
+        assertFalse(new File(mDir, "sub/three.tmp").exists());
+        assertTrue(new File(mDir, ".journal").isFile());
+    }
+
+    @Test
+    public void testTornJournal() throws IOException {
+        CacheDirManager manager = create(1_000);
+        manager.put("a", data(10));
+        manager.put("b", data(20));
+
+        try (FileOutputStream out = new FileOutputStream(new File(mDir, ".journal"), true)) {
+            out.write("CLEAN 12".getBytes()); // crash in the middle of the line
+        }
+
+        CacheDirManager reopened = create(1_000);
+        assertEquals(30, reopened.getSize());
+        assertEquals(2, reopened.getFileCount());
+    }
+
+    @Test
+    public void testDeletedFileIsMiss() {
+        CacheDirManager manager = create(1_000);
+        manager.put("a", data(10));
+        assertTrue(manager.getFile("a").delete());
+
+        assertNull(manager.get("a"));
+        assertEquals(0, manager.getSize());
+        assertEquals(0, manager.getFileCount());
+    }
+
+    @Test
+    public void testInvalidate() {
+        CacheDirManager manager = CacheDirManager.instance(mDir, 1_000);
+        manager.put("a", data(10));
+        assertEquals(10, manager.getSize());
+
+        FileHelpers.deleteContent(mDir);
+        CacheDirManager.invalidate(mDir);
+
+        assertEquals(0, manager.getSize());
+        manager.put("b", data(20));
+        assertEquals(20, create(1_000).getSize());
+    }
+
+    @Test
+    public void testJournalCompaction() {
+        CacheDirManager manager = create(1_000_000);
+        manager.put("a", data(10));
+
+        for (int i = 0; i < 10_000; i++) {
+            manager.get("a");
+        }
+
+        assertTrue(manager.getJournalOps() <= 2_001);
+
+        CacheDirManager reopened = create(1_000_000);
+        assertEquals(10, reopened.getSize());
+        assertNotNull(reopened.get("a"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testJournalNameIsReserved() {
+        create(1_000).put(".journal", data(1));
+    }
+
+    @Test
+    public void testNamesStayInsideDir() {
+        CacheDirManager manager = create(1_000);
+
+        for (String name : new String[] {"../x", "a/../../x", "/x", "a//b", "a/", ".", "a\\..\\..\\x"}) {
+            try {
+                manager.getFile(name);
+                fail("Name should be rejected: " + name);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+
+        assertTrue(manager.put("sub/dir/file", data(10)));
+        assertEquals(10, manager.getSize());
+        assertTrue(new File(mDir, "sub/dir/file").isFile());
+    }
+
+    @Test
+    public void testFailedSourceIsNotSaved() {
+        CacheDirManager manager = create(1_000);
+        assertTrue(manager.put("a", data(100)));
+
+        InputStream broken = new InputStream() {
+            private int mPosition;
+
+            @Override
+            public int read() throws IOException {
+                if (mPosition == 50) {
+                    throw new IOException("Connection reset");
+                }
+
+                mPosition++;
+                return 'b';
+            }
+        };
+
+        assertFalse(manager.put("a", broken));
+
+        assertEquals(100, manager.getFile("a").length()); // previous version is kept
+        assertEquals(100, manager.getSize());
+        assertEquals(2, mDir.list().length); // file + journal, no temp files left
+    }
+
+    private static InputStream data(int length) {
+        return new ByteArrayInputStream(new byte[length]);
+    }
+
+    private static void write(File file, int length) throws IOException {
+        file.getParentFile().mkdirs();
+
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(new byte[length]);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.liskovsoft.sharedutils.cache;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ConcurrentLruCacheTest {
+    private long mNowMs;
+
+    @Test
+    public void testSizeEviction() {
+        ConcurrentLruCache<Integer, String> cache = new ConcurrentLruCache<>(10);
+
+        for (int i = 0; i < 10; i++) {
+            cache.put(i, "value" + i);
+        }
+
+        cache.get(0); // recently used
+        cache.put(10, "value10");
+
+        assertEquals(10, cache.size());
+        assertEquals("value0", cache.get(0));
+        assertNull(cache.get(1));
+        assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testSegmentedSizeLimit() {
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<>(1_000);
+
+        for (int i = 0; i < 100_000; i++) {
+            cache.put(i, i);
+        }
+
+        assertTrue(cache.size() <= 1_000);
+        assertTrue(cache.size() > 900);
+        assertEquals(99_999, (int) cache.get(99_999));
+    }
+
+    @Test
+    public void testTtl() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<>(10, 1_000, null, 1, () -> mNowMs);
+
+        cache.put("key", "value");
+        cache.put("long", "value", 5_000);
+        cache.put("forever", "value", 0);
+
+        mNowMs += 999;
+        assertEquals("value", cache.get("key"));
+
+        mNowMs += 1;
+        assertNull(cache.get("key"));
+        assertEquals("value", cache.get("long"));
+
+        mNowMs += 10_000;
+        assertNull(cache.get("long"));
+        assertEquals("value", cache.get("forever"));
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testWeight() {
+        ConcurrentLruCache<String, byte[]> cache = new ConcurrentLruCache<>(100, 0, (key, value) -> value.length, 1);
+
+        cache.put("a", new byte[40]);
+        cache.put("b", new byte[40]);
+        cache.put("c", new byte[40]);
+
+        assertNull(cache.get("a"));
+        assertEquals(80, cache.getWeight());
+
+        cache.put("huge", new byte[101]);
+        assertNull(cache.get("huge"));
+        assertTrue(cache.getWeight() <= 100);
+
+        cache.remove("b");
+        cache.remove("c");
+        assertEquals(0, cache.getWeight());
+    }
+
+    @Test
+    public void testStatsAndLoader() {
+        ConcurrentLruCache<String, String> cache = new ConcurrentLruCache<>(10);
+
+        assertNull(cache.get("key"));
+        assertEquals("loaded", cache.get("key", key -> "loaded"));
+        assertEquals("loaded", cache.get("key", key -> "other"));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testRecencyList() {
+        RecencyList<String> list = new RecencyList<>(3);
+        list.add("a");
+        list.add("b");
+        list.add("c");
+        list.add("a");
+        list.add("d");
+
+        assertEquals(Arrays.asList("c", "a", "d"), list.toList());
+        assertFalse(list.contains("b"));
+
+        assertTrue(list.remove("a"));
+        assertEquals(2, list.size());
+    }
+
+    /**
+     * Several threads, mostly reads (e.g. dns answers, rate limiter buckets)
+     */
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        int operations = 1_000_000;
+        int keys = 2_000;
+        ConcurrentLruCache<Integer, Integer> cache = new ConcurrentLruCache<>(keys / 2);
+
+        int wrongValues = runThreads(4, operations, keys, new CacheOps() {
+            @Override
+            public Integer get(int key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void put(int key) {
+                cache.put(key, key);
+            }
+        });
+
+        assertEquals(0, wrongValues);
+        assertTrue(cache.size() <= keys / 2);
+        assertEquals(operations, cache.getHitCount() + cache.getMissCount());
+    }
+
+    @Test
+    public void testRecencyListConcurrentAccess() throws InterruptedException {
+        int maxSize = 500;
+        RecencyList<Integer> recencyList = new RecencyList<>(maxSize);
+
+        int wrongValues = runThreads(4, 20_000, maxSize * 2, new CacheOps() {
+            @Override
+            public Integer get(int key) {
+                return recencyList.contains(key) ? key : null;
+            }
+
+            @Override
+            public void put(int key) {
+                recencyList.add(key);
+            }
+        });
+
+        assertEquals(0, wrongValues);
+
+        List<Integer> items = recencyList.toList();
+        assertEquals(maxSize, items.size());
+        assertEquals(items.size(), new HashSet<>(items).size()); // no duplicates
+    }
+
+    interface CacheOps {
+        Integer get(int key);
+        void put(int key);
+    }
+
+    /**
+     * 80% reads, misses are followed by put
+     * @return count of the wrong values read
+     */
+    static int runThreads(int threadCount, int operations, int keys, CacheOps ops) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        AtomicInteger wrongValues = new AtomicInteger();
+
+        for (int t = 0; t < threadCount; t++) {
+            long seed = t;
+            Thread thread = new Thread(() -> {
+                Random random = new Random(seed);
+
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                for (int i = 0; i < operations / threadCount; i++) {
+                    int key = random.nextInt(keys);
+                    Integer value = ops.get(key);
+
+                    if (value != null && value != key) {
+                        wrongValues.incrementAndGet();
+                    }
+
+                    if (value == null || random.nextInt(5) == 0) {
+                        ops.put(key);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        return wrongValues.get();
+    }
+}
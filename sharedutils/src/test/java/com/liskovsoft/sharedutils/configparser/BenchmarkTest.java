@@ -0,0 +1,100 @@
+package com.liskovsoft.sharedutils.configparser;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+
+import static com.liskovsoft.sharedutils.configparser.ConfigIndexTest.legacyGetArray;
+import static com.liskovsoft.sharedutils.configparser.ConfigIndexTest.legacyLoad;
+import static com.liskovsoft.sharedutils.configparser.ConfigIndexTest.stream;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Timings of the config index against the Properties based lookups. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+
+    /**
+     * 5_000 keys (1_000 arrays of 4 items + 1_000 plain values).<br/>
+     * Startup: Properties parse vs binary index. Lookup: Properties scan vs sorted index.
+     */
+    @Test
+    public void testLookupCost() throws IOException {
+        StringBuilder config = new StringBuilder();
+
+        for (int i = 0; i < 1_000; i++) {
+            config.append("key").append(i).append(" = value ").append(i).append('\n');
+
+            for (int j = 0; j < 4; j++) {
+                config.append("array").append(i).append('.').append(j).append(" = item").append(j).append('\n');
+            }
+        }
+
+        String text = config.toString();
+        File file = new File(mTempDir.getRoot(), "config.bin");
+        ConfigIndex.parse(stream(text)).write(file);
+        int lookups = 2_000;
+        int loads = 20;
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            Properties properties = null;
+            ConfigIndex index = null;
+            long startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < loads; i++) {
+                properties = legacyLoad(text);
+            }
+
+            long parseNs = (System.nanoTime() - startTimeNs) / loads;
+
+            startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < loads; i++) {
+                index = ConfigIndex.parse(stream(text));
+            }
+
+            long indexParseNs = (System.nanoTime() - startTimeNs) / loads;
+
+            startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < loads; i++) {
+                assertEquals(5_000, ConfigIndex.read(file).size());
+            }
+
+            long readNs = (System.nanoTime() - startTimeNs) / loads;
+
+            startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < lookups; i++) {
+                assertEquals(4, legacyGetArray(properties, "array" + i % 1_000 + ".").length);
+            }
+
+            long beforeNs = System.nanoTime() - startTimeNs;
+
+            startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < lookups; i++) {
+                assertEquals(4, index.getArray("array" + i % 1_000 + ".").length);
+            }
+
+            long afterNs = System.nanoTime() - startTimeNs;
+
+            if (pass == 1) {
+                System.out.printf("Config of 5000 keys. Startup: properties %s us, index %s us, binary %s us. " +
+                        "%s getArray: before %s us, after %s us%n", parseNs / 1_000, indexParseNs / 1_000, readNs / 1_000,
+                        lookups, beforeNs / 1_000, afterNs / 1_000);
+            }
+        }
+    }
+}
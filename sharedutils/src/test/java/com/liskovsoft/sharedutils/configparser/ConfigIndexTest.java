@@ -0,0 +1,193 @@
+package com.liskovsoft.sharedutils.configparser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class ConfigIndexTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String CONFIG = "simple_key = simple_value\n" +
+            "# comment\n" +
+            "spaces = one two   three \n" +
+            "arr.0 = first\n" +
+            "arr.1 = second\n" +
+            "arr = ignored\n" +
+            "arrow = not an item\n" +
+            "unicode = \\u0436\u0451\n" +
+            "empty =\n";
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+
+    /**
+     * Previous implementation, used as the reference
+     */
+    static String[] legacyGetArray(Properties properties, String key) {
+        List<String> valArr = new ArrayList<>();
+
+        for (String name : properties.stringPropertyNames()) {
+            if (name.startsWith(key) && !name.equals(key)) {
+                valArr.add(properties.getProperty(name));
+            }
+        }
+
+        if (valArr.size() != 0) {
+            return valArr.toArray(new String[]{});
+        }
+
+        String arrProp = properties.getProperty(key);
+        return arrProp != null ? arrProp.split(" +") : null;
+    }
+
+    static Properties legacyLoad(String config) throws IOException {
+        Properties properties = new Properties();
+        properties.load(stream(config));
+        return properties;
+    }
+
+    @Test
+    public void testCompatibility() throws IOException {
+        Properties properties = legacyLoad(CONFIG);
+        ConfigIndex index = ConfigIndex.parse(stream(CONFIG));
+        AssetPropertyParser2 parser = new AssetPropertyParser2(null, stream(CONFIG));
+
+        assertEquals(properties.size(), index.size());
+
+        for (String key : new String[] {"simple_key", "spaces", "arr", "arr.", "arrow", "unicode", "empty", "missing", "simple"}) {
+            assertEquals(key, properties.getProperty(key), index.get(key));
+            assertEquals(key, properties.getProperty(key), parser.get(key));
+            assertEquals(key, sorted(legacyGetArray(properties, key)), sorted(index.getArray(key)));
+            assertEquals(key, sorted(legacyGetArray(properties, key)), sorted(parser.getArray(key)));
+        }
+
+        assertArrayEquals(new String[] {"first", "second", "not an item"}, index.getArray("arr"));
+        assertArrayEquals(new String[] {"first", "second"}, index.getArray("arr."));
+    }
+
+    @Test
+    public void testNumericOrder() throws IOException {
+        ConfigIndex index = ConfigIndex.parse(stream("arr.10 = k\narr.2 = c\narr.0 = a\narr.1 = b\narr.02 = d\narr.x = x\n"));
+
+        assertArrayEquals(new String[] {"a", "b", "c", "d", "k", "x"}, index.getArray("arr."));
+        assertTrue(ConfigIndex.compareNatural("key9", "key10") < 0);
+        assertTrue(ConfigIndex.compareNatural("key10", "key9a") > 0);
+        assertTrue(ConfigIndex.compareNatural("a99999999999999999999", "a100000000000000000000") < 0);
+        assertEquals(0, ConfigIndex.compareNatural("a.1.b", "a.1.b"));
+    }
+
+    @Test
+    public void testSplitSpaces() {
+        String[] samples = {"", " ", "   ", "a", "a b", "a  b", " a", "  a b ", "a b  ", "a\tb", "ab c"};
+
+        for (String sample : samples) {
+            assertArrayEquals("'" + sample + "'", sample.split(" +"), ConfigIndex.splitSpaces(sample));
+        }
+    }
+
+    @Test
+    public void testCachedArrayIsCopied() throws IOException {
+        ConfigIndex index = ConfigIndex.parse(stream(CONFIG));
+        index.getArray("spaces")[0] = "changed";
+
+        assertEquals("one", index.getArray("spaces")[0]);
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws IOException {
+        ConfigIndex index = ConfigIndex.parse(stream(CONFIG + "long = " + repeat('x', 70_000) + "\n"));
+        File file = new File(mTempDir.getRoot(), "index/config");
+        assertTrue(index.write(file));
+
+        ConfigIndex loaded = ConfigIndex.read(file);
+        assertEquals(index.size(), loaded.size());
+        assertEquals("ж", loaded.get("unicode").substring(0, 1));
+        assertEquals(index.get("unicode"), loaded.get("unicode"));
+        assertEquals(70_000, loaded.get("long").length());
+        assertArrayEquals(index.getArray("arr"), loaded.getArray("arr"));
+
+        // Damaged files aren't used
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(20);
+            raf.write(0x7F);
+        }
+
+        assertNull(ConfigIndex.read(file));
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(10);
+        }
+
+        assertNull(ConfigIndex.read(file));
+        assertNull(ConfigIndex.read(new File(mTempDir.getRoot(), "missing")));
+    }
+
+    /**
+     * 5_000 keys (1_000 arrays of 4 items + 1_000 plain values)
+     */
+    @Test
+    public void testManyKeys() throws IOException {
+        StringBuilder config = new StringBuilder();
+
+        for (int i = 0; i < 1_000; i++) {
+            config.append("key").append(i).append(" = value ").append(i).append('\n');
+
+            for (int j = 0; j < 4; j++) {
+                config.append("array").append(i).append('.').append(j).append(" = item").append(j).append('\n');
+            }
+        }
+
+        String text = config.toString();
+        File file = new File(mTempDir.getRoot(), "config.bin");
+        Properties properties = legacyLoad(text);
+        ConfigIndex index = ConfigIndex.parse(stream(text));
+        assertTrue(index.write(file));
+        ConfigIndex loaded = ConfigIndex.read(file);
+
+        assertEquals(5_000, loaded.size());
+
+        for (int i = 0; i < 1_000; i++) {
+            String key = "array" + i + ".";
+            assertEquals(sorted(legacyGetArray(properties, key)), Arrays.asList(index.getArray(key)));
+            assertEquals(Arrays.asList(index.getArray(key)), Arrays.asList(loaded.getArray(key)));
+            assertEquals(properties.getProperty("key" + i), loaded.get("key" + i));
+        }
+    }
+
+    private static List<String> sorted(String[] values) {
+        if (values == null) {
+            return null;
+        }
+
+        List<String> result = new ArrayList<>(Arrays.asList(values));
+        result.sort(null);
+        return result;
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(UTF_8));
+    }
+}
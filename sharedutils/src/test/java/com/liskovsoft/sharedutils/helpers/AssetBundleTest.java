@@ -0,0 +1,212 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class AssetBundleTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private FakeSource mSource;
+
+    /**
+     * Asset tree in memory. Dirs have listings, files have content.
+     */
+    static class FakeSource implements AssetBundle.Source {
+        final Map<String, String[]> dirs = new HashMap<>();
+        final Map<String, byte[]> files = new HashMap<>();
+        int listCount;
+        int openCount;
+
+        void addFile(String path, String content) {
+            files.put(path, content.getBytes(UTF_8));
+            String dir = path.substring(0, path.lastIndexOf('/'));
+            String name = path.substring(path.lastIndexOf('/') + 1);
+            String[] children = dirs.get(dir);
+            dirs.put(dir, children == null ? new String[] {name} : append(children, name));
+
+            if (children == null && dir.contains("/")) {
+                String parent = dir.substring(0, dir.lastIndexOf('/'));
+                String dirName = dir.substring(dir.lastIndexOf('/') + 1);
+                String[] parentChildren = dirs.get(parent);
+                dirs.put(parent, parentChildren == null ? new String[] {dirName} : append(parentChildren, dirName));
+            }
+        }
+
+        @Override
+        public String[] list(String path) {
+            listCount++;
+            String[] result = dirs.get(path);
+            return result != null ? result : new String[0];
+        }
+
+        @Override
+        public InputStream open(String path) throws IOException {
+            openCount++;
+            byte[] content = files.get(path);
+
+            if (content == null) {
+                throw new FileNotFoundException(path);
+            }
+
+            return new ByteArrayInputStream(content);
+        }
+
+        private static String[] append(String[] array, String item) {
+            String[] result = Arrays.copyOf(array, array.length + 1);
+            result[array.length] = item;
+            return result;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        AssetBundle.clearListings();
+        mSource = new FakeSource();
+        mSource.addFile("web/a.js", "var a = 1;");
+        mSource.addFile("web/b.css", "body {}");
+        mSource.addFile("web/lib/c.js", "var c = 'ц';");
+        mSource.addFile("web/lib/d.js", "");
+        mSource.addFile("web/z.js", "var z;");
+    }
+
+    /**
+     * Previous implementation, used as the reference
+     */
+    private static List<String> legacyListFiles(FakeSource source, String dir, String endsWith) {
+        List<String> result = new ArrayList<>();
+        String[] list = source.list(dir);
+
+        for (String file : list) {
+            List<String> nestedList = legacyListFiles(source, dir + "/" + file, endsWith);
+
+            if (!nestedList.isEmpty()) {
+                result.addAll(nestedList);
+            } else if (endsWith == null || file.endsWith(endsWith)) {
+                result.add(dir + "/" + file);
+            }
+        }
+
+        return result;
+    }
+
+    static InputStream legacyMerged(FakeSource source, List<String> paths) {
+        InputStream is = null;
+
+        for (String path : paths) {
+            InputStream asset;
+
+            try {
+                asset = source.open(path);
+            } catch (IOException e) {
+                asset = null;
+            }
+
+            asset = FileHelpers.appendStream(asset, new ByteArrayInputStream("\n".getBytes()));
+            is = FileHelpers.appendStream(is, asset);
+        }
+
+        return is;
+    }
+
+    @Test
+    public void testListingCompatibility() {
+        for (String filter : new String[] {null, ".js", ".css", ".txt"}) {
+            assertEquals(legacyListFiles(mSource, "web", filter), AssetBundle.listFiles(mSource, "web", filter));
+        }
+
+        assertEquals(Arrays.asList("web/a.js", "web/lib/c.js", "web/lib/d.js", "web/z.js"), AssetBundle.listFiles(mSource, "web", ".js"));
+        assertTrue(AssetBundle.listFiles(mSource, "missing", null).isEmpty());
+    }
+
+    @Test
+    public void testListingIsCached() {
+        AssetBundle.listFiles(mSource, "web", ".js");
+        int listCount = mSource.listCount;
+        assertEquals(7, listCount); // every entry once
+
+        AssetBundle.listFiles(mSource, "web", ".css");
+        assertEquals(listCount, mSource.listCount);
+    }
+
+    @Test
+    public void testMergeCompatibility() throws IOException {
+        List<String> paths = new ArrayList<>(legacyListFiles(mSource, "web", null));
+        paths.add("web/missing.js");
+
+        byte[] expected = readAll(legacyMerged(mSource, paths), 8192);
+
+        assertArrayEquals(expected, readAll(AssetBundle.open(mSource, paths, "\n".getBytes()), 8192));
+        assertArrayEquals(expected, readAll(AssetBundle.open(mSource, paths, "\n".getBytes()), 1));
+        assertArrayEquals(expected, readSingleBytes(AssetBundle.open(mSource, paths, "\n".getBytes())));
+        assertEquals("var a = 1;var z;", new String(readAll(AssetBundle.open(mSource, Arrays.asList("web/a.js", "web/z.js"), null), 3), UTF_8));
+    }
+
+    /**
+     * 300 assets read by small chunks (e.g. parser reads)
+     */
+    @Test
+    public void testManyAssets() throws IOException {
+        FakeSource source = new FakeSource();
+        List<String> paths = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+
+        while (content.length() < 10 * 1024) {
+            content.append("function f() { return 1; }\n");
+        }
+
+        for (int i = 0; i < 300; i++) {
+            String path = "web/script" + i + ".js";
+            source.addFile(path, content.toString());
+            paths.add(path);
+        }
+
+        assertArrayEquals(readAll(legacyMerged(source, paths), 64), readAll(AssetBundle.open(source, paths, "\n".getBytes()), 64));
+    }
+
+    static byte[] readAll(InputStream in, int chunkSize) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[chunkSize];
+        int count;
+
+        while ((count = in.read(buffer)) != -1) {
+            result.write(buffer, 0, count);
+        }
+
+        in.close();
+        return result.toByteArray();
+    }
+
+    private static byte[] readSingleBytes(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        int value;
+
+        while ((value = in.read()) != -1) {
+            result.write(value);
+        }
+
+        in.close();
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,315 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import com.liskovsoft.sharedutils.helpers.AssetBundleTest.FakeSource;
+import com.liskovsoft.sharedutils.helpers.DirWalker.SimpleVisitor;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Timings of the helpers against the previous implementations. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+
+    private interface Writer {
+        void write(Response response, File file) throws IOException;
+    }
+
+    /**
+     * Old (1 KB byte array) and new (okio/NIO) paths of saving a 100 MB local download
+     */
+    @Test
+    public void testStreamToFile() throws IOException {
+        int sizeBytes = 100 * 1024 * 1024;
+        Buffer data = new Buffer();
+        byte[] chunk = new byte[1024 * 1024];
+
+        for (int i = 0; i < sizeBytes / chunk.length; i++) {
+            data.write(chunk);
+        }
+
+        MockWebServer server = new MockWebServer();
+        server.start();
+
+        try {
+            OkHttpClient client = new OkHttpClient();
+
+            download(client, server, data, "warm-up", (response, file) -> FileHelpers.streamToFile(response.body().source(), file));
+
+            download(client, server, data, "old: BufferedInputStream + 1 KB array", (response, file) -> {
+                InputStream is = new BufferedInputStream(response.body().byteStream());
+
+                try (FileOutputStream fos = new FileOutputStream(file)) {
+                    byte[] buffer = new byte[1024];
+                    int count;
+                    while ((count = is.read(buffer)) != -1) {
+                        fos.write(buffer, 0, count);
+                    }
+                }
+            });
+
+            download(client, server, data, "new: BufferedSource.readAll", (response, file) -> FileHelpers.streamToFile(response.body().source(), file));
+
+            download(client, server, data, "new: InputStream + shared 64 KB array", (response, file) -> FileHelpers.streamToFile(response.body().byteStream(), file));
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Round trip of 10_000 numbers (e.g. stored positions or ids).<br/>
+     * Before: mergeList of boxed list + regex split + parseInt per item. After: reusable builder + scanner.
+     */
+    @Test
+    public void testIntArrayRoundTrip() {
+        int size = 10_000;
+        int iterations = 100;
+        Random random = new Random(1);
+        int[] values = new int[size];
+        List<Integer> list = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(1_000_000);
+            list.add(values[i]);
+        }
+
+        StringBuilder builder = new StringBuilder();
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long bytes = getAllocatedBytes();
+            long startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(size, DataCodecTest.legacyParseIntList(Helpers.mergeList(list)).size());
+            }
+
+            long beforeNs = System.nanoTime() - startTimeNs;
+            long beforeBytes = getAllocatedBytes() - bytes;
+
+            bytes = getAllocatedBytes();
+            startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                builder.setLength(0);
+                DataCodec.appendIntArray(builder, values);
+                assertEquals(size, DataCodec.parseIntArray(builder.toString()).length);
+            }
+
+            long afterNs = System.nanoTime() - startTimeNs;
+            long afterBytes = getAllocatedBytes() - bytes;
+
+            if (pass == 1) {
+                System.out.printf("Round trip %s ints: before %s us %s KB, after %s us %s KB%n", size,
+                        beforeNs / iterations / 1_000, beforeBytes / iterations / 1024, afterNs / iterations / 1_000, afterBytes / iterations / 1024);
+            }
+        }
+    }
+
+    /**
+     * Size and delete of 100_000 files. Before: recursive listFiles. After: serial and parallel walk.
+     */
+    @Test
+    public void testBigTree() throws IOException {
+        File root = mTempDir.newFolder("big");
+        long expectedSize = DirWalkerTest.createTree(root, 100, 10, 100);
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long startTimeNs = System.nanoTime();
+            assertEquals(expectedSize, DirWalkerTest.legacyGetDirSize(root));
+            long beforeNs = System.nanoTime() - startTimeNs;
+
+            startTimeNs = System.nanoTime();
+            assertEquals(expectedSize, walkSize(root, false));
+            long serialNs = System.nanoTime() - startTimeNs;
+
+            startTimeNs = System.nanoTime();
+            assertEquals(expectedSize, walkSize(root, true));
+            long parallelNs = System.nanoTime() - startTimeNs;
+
+            if (pass == 1) {
+                System.out.printf("Size of 100000 files (%s cpu): before %s ms, serial %s ms, parallel %s ms%n",
+                        Runtime.getRuntime().availableProcessors(), beforeNs / 1_000_000, serialNs / 1_000_000, parallelNs / 1_000_000);
+            }
+        }
+
+        long startTimeNs = System.nanoTime();
+        assertTrue(FileHelpers.deleteContent(root, true));
+        System.out.printf("Delete of 100000 files: %s ms%n", (System.nanoTime() - startTimeNs) / 1_000_000);
+        assertEquals(0, root.list().length);
+    }
+
+    /**
+     * Allocation and time of the stream to String, 10 KB to 10 MB.<br/>
+     * Before: InputStreamReader + StringBuilder growth + copy. After: pooled byte buffer + single decode.
+     */
+    @Test
+    public void testDecode() throws IOException {
+        for (int size : new int[] {10 * 1024, 100 * 1024, 1024 * 1024, 10 * 1024 * 1024}) {
+            byte[] data = TextDecoderTest.createText(size).getBytes(UTF_8);
+            int iterations = Math.max(3, 20 * 1024 * 1024 / size);
+
+            for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+                long bytes = getAllocatedBytes();
+                long startTimeNs = System.nanoTime();
+
+                for (int i = 0; i < iterations; i++) {
+                    TextDecoderTest.legacyToString(new ByteArrayInputStream(data));
+                }
+
+                long beforeNs = System.nanoTime() - startTimeNs;
+                long beforeBytes = getAllocatedBytes() - bytes;
+
+                bytes = getAllocatedBytes();
+                startTimeNs = System.nanoTime();
+
+                for (int i = 0; i < iterations; i++) {
+                    TextDecoder.toString(new ByteArrayInputStream(data));
+                }
+
+                long afterNs = System.nanoTime() - startTimeNs;
+                long afterBytes = getAllocatedBytes() - bytes;
+
+                bytes = getAllocatedBytes();
+                startTimeNs = System.nanoTime();
+
+                for (int i = 0; i < iterations; i++) {
+                    TextDecoder.toCharSequence(new ByteArrayInputStream(data), data.length).length();
+                }
+
+                long viewNs = System.nanoTime() - startTimeNs;
+                long viewBytes = getAllocatedBytes() - bytes;
+
+                if (pass == 1) {
+                    System.out.printf("Decode %s KB: before %s us %s KB, string %s us %s KB, view %s us %s KB%n", data.length / 1024,
+                            beforeNs / iterations / 1_000, beforeBytes / iterations / 1024,
+                            afterNs / iterations / 1_000, afterBytes / iterations / 1024,
+                            viewNs / iterations / 1_000, viewBytes / iterations / 1024);
+                }
+            }
+        }
+    }
+
+    /**
+     * 300 assets read by small chunks (e.g. parser reads). Before: left-nested SequenceInputStream chain. After: flat stream.
+     */
+    @Test
+    public void testMergedAssetsRead() throws IOException {
+        FakeSource source = new FakeSource();
+        List<String> paths = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+
+        while (content.length() < 10 * 1024) {
+            content.append("function f() { return 1; }\n");
+        }
+
+        for (int i = 0; i < 300; i++) {
+            String path = "web/script" + i + ".js";
+            source.addFile(path, content.toString());
+            paths.add(path);
+        }
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long startTimeNs = System.nanoTime();
+            byte[] before = AssetBundleTest.readAll(AssetBundleTest.legacyMerged(source, paths), 64);
+            long beforeNs = System.nanoTime() - startTimeNs;
+
+            startTimeNs = System.nanoTime();
+            byte[] after = AssetBundleTest.readAll(AssetBundle.open(source, paths, "\n".getBytes()), 64);
+            long afterNs = System.nanoTime() - startTimeNs;
+
+            assertArrayEquals(before, after);
+
+            if (pass == 1) {
+                System.out.printf("Read 300 assets (%s KB): before %s ms, after %s ms%n", after.length / 1024, beforeNs / 1_000_000, afterNs / 1_000_000);
+            }
+        }
+    }
+
+    private void download(OkHttpClient client, MockWebServer server, Buffer data, String name, Writer writer) throws IOException {
+        server.enqueue(new MockResponse().setBody(data.clone()));
+        File file = mTempDir.newFile();
+        Request request = new Request.Builder().url(server.url("/")).build();
+
+        long gcCount = getGcCount();
+        long startTimeNs = System.nanoTime();
+
+        try (Response response = client.newCall(request).execute()) {
+            writer.write(response, file);
+        }
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - startTimeNs) / 1_000_000);
+
+        System.out.printf("%s: %s ms, %.1f MB/s, gc: %s%n", name, elapsedMs,
+                data.size() / 1024f / 1024f / (elapsedMs / 1_000f), getGcCount() - gcCount);
+
+        assertEquals(data.size(), file.length());
+        file.delete();
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static long walkSize(File root, boolean parallel) {
+        AtomicLong size = new AtomicLong();
+
+        SimpleVisitor visitor = new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                size.addAndGet(file.length());
+                return true;
+            }
+        };
+
+        if (parallel) {
+            DirWalker.walkParallel(root, visitor, 4);
+        } else {
+            DirWalker.walk(root, visitor);
+        }
+
+        return size.get();
+    }
+
+    private static long getGcCount() {
+        long result = 0;
+
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, bean.getCollectionCount());
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import com.jakewharton.disklrucache.DiskLruCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class CacheHelpersTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private DiskLruCache mCache;
+
+    @Before
+    public void setUp() throws IOException {
+        mCache = DiskLruCache.open(mTempDir.newFolder("cache"), 1, 1, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mCache.close();
+    }
+
+    @Test
+    public void testSaveToCache() throws IOException {
+        assertEquals("value", read(CacheHelpers.saveToCache(mCache, stream("value"), "key")));
+        assertTrue(CacheHelpers.exists(mCache, "key"));
+        assertEquals("value", read(CacheHelpers.returnFromCache(mCache, "key")));
+        assertNull(CacheHelpers.saveToCache(mCache, null, "key"));
+    }
+
+    @Test
+    public void testDataIsKeptWhenNotCached() throws IOException {
+        DiskLruCache.Editor editor = mCache.edit("busy"); // another edit is in progress
+
+        assertEquals("value", read(CacheHelpers.saveToCache(mCache, stream("value"), "busy")));
+        assertFalse(CacheHelpers.exists(mCache, "busy"));
+
+        editor.abort();
+    }
+
+    @Test
+    public void testPartialReadIsNotCached() throws IOException {
+        InputStream data = CacheHelpers.saveToCache(mCache, stream("value"), "key");
+
+        assertEquals('v', data.read());
+        assertFalse(CacheHelpers.exists(mCache, "key")); // nothing is committed before the end
+        data.close();
+
+        assertFalse(CacheHelpers.exists(mCache, "key"));
+        assertEquals("value", read(CacheHelpers.saveToCache(mCache, stream("value"), "key"))); // entry isn't locked
+        assertTrue(CacheHelpers.exists(mCache, "key"));
+    }
+
+    @Test
+    public void testFailedSourceIsNotCached() throws IOException {
+        InputStream failing = new InputStream() {
+            private int mCount;
+
+            @Override
+            public int read() throws IOException {
+                if (mCount++ >= 3) {
+                    throw new IOException("Connection reset");
+                }
+
+                return 'a';
+            }
+        };
+        InputStream data = CacheHelpers.saveToCache(mCache, failing, "key");
+
+        try {
+            drain(data);
+            fail("The read error should reach the caller");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertFalse(CacheHelpers.exists(mCache, "key"));
+        assertEquals("value", read(CacheHelpers.saveToCache(mCache, stream("value"), "key")));
+        assertEquals("value", read(CacheHelpers.returnFromCache(mCache, "key")));
+    }
+
+    @Test
+    public void testLargeDataIsStreamed() throws IOException {
+        byte[] value = new byte[1024 * 512];
+        new Random(1).nextBytes(value);
+
+        ByteArrayInputStream source = new ByteArrayInputStream(value);
+        InputStream data = CacheHelpers.saveToCache(mCache, source, "key");
+        byte[] head = new byte[1024];
+
+        assertEquals(head.length, data.read(head));
+        assertEquals(value.length - head.length, source.available()); // the source isn't drained up front
+        assertEquals(value.length - head.length, data.skip(Long.MAX_VALUE) + drain(data));
+        data.close();
+
+        InputStream cached = CacheHelpers.returnFromCache(mCache, "key");
+        assertEquals(value.length, drain(cached));
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        long total = 0;
+        byte[] buffer = new byte[8 * 1024];
+        int len;
+        while ((len = in.read(buffer)) != -1) {
+            total += len;
+        }
+        return total;
+    }
+
+    private static ByteArrayInputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(UTF_8));
+    }
+
+    private static String read(InputStream in) {
+        return FileHelpers.toString(in);
+    }
+}
@@ -0,0 +1,150 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class DataCodecTest {
+    private static final String ARRAY_DELIM = "%AR%";
+
+    /**
+     * Previous implementation, used as the reference
+     */
+    private static String[] legacySplit(String data, String delim) {
+        if (data == null) {
+            return null;
+        }
+
+        if (data.trim().isEmpty()) {
+            return new String[]{};
+        }
+
+        return data.split(Pattern.quote(delim));
+    }
+
+    private static int legacyParseInt(String numString) {
+        if (numString == null || !numString.matches("^[-+]?\\d+$")) {
+            return -1;
+        }
+
+        try {
+            return Integer.parseInt(numString);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static List<Integer> legacyParseIntList(String data) {
+        List<Integer> result = new ArrayList<>();
+
+        if (data != null) {
+            for (String item : legacySplit(data, ARRAY_DELIM)) {
+                result.add(legacyParseInt(item));
+            }
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testSplitCompatibility() {
+        String[] samples = {
+                "", " ", "  \t", "a", "a%AR%b", "%AR%a", "a%AR%", "a%AR%%AR%", "%AR%", "%AR%%AR%", "a%AR%%AR%b",
+                " %AR%a", "%AR%AR%", "a%AR%AR%b", "a%OB%b%AR%c", "null"
+        };
+
+        for (String sample : samples) {
+            assertArrayEquals(sample, legacySplit(sample, ARRAY_DELIM), Helpers.split(sample, ARRAY_DELIM));
+            assertArrayEquals(sample, legacySplit(sample, "%OB%"), Helpers.splitData(sample));
+            assertArrayEquals(sample, legacySplit(sample, "|"), Helpers.split(sample, "|"));
+        }
+
+        assertArrayEquals(legacySplit("abc", ""), Helpers.split("abc", ""));
+    }
+
+    @Test
+    public void testParseCompatibility() {
+        String[] samples = {
+                " ", "1", "1%AR%2%AR%3", "-5%AR%+7", "abc%AR%4", "%AR%1", "1%AR%%AR%", "2147483647%AR%2147483648",
+                "-2147483648%AR%-2147483649", "1.5", "+", "-", "१२", "9223372036854775807%AR%9223372036854775808"
+        };
+
+        for (String sample : samples) {
+            assertEquals(sample, legacyParseIntList(sample), DataCodec.toList(DataCodec.parseIntArray(sample)));
+            assertEquals(sample, legacyParseIntList(sample), Helpers.parseIntList(new String[]{sample}, 0));
+        }
+
+        assertArrayEquals(new long[]{Long.MAX_VALUE, Long.MIN_VALUE, -1, 5},
+                DataCodec.parseLongArray("9223372036854775807%AR%-9223372036854775808%AR%9223372036854775808%AR%5"));
+        assertEquals(0, Helpers.parseIntList(new String[]{"null"}, 0).size());
+        assertEquals(0, Helpers.parseIntList(null, 0).size());
+    }
+
+    @Test
+    public void testMergeCompatibility() {
+        Random random = new Random(1);
+
+        for (int size : new int[]{0, 1, 2, 100}) {
+            int[] ints = new int[size];
+            long[] longs = new long[size];
+            List<Integer> intList = new ArrayList<>();
+            List<Long> longList = new ArrayList<>();
+
+            for (int i = 0; i < size; i++) {
+                ints[i] = random.nextInt();
+                longs[i] = random.nextLong();
+                intList.add(ints[i]);
+                longList.add(longs[i]);
+            }
+
+            assertEquals(Helpers.mergeList(intList), DataCodec.mergeIntArray(ints));
+            assertEquals(Helpers.mergeList(longList), DataCodec.mergeLongArray(longs));
+            assertArrayEquals(ints, DataCodec.parseIntArray(DataCodec.mergeIntArray(ints)));
+            assertArrayEquals(longs, DataCodec.parseLongArray(DataCodec.mergeLongArray(longs)));
+        }
+
+        assertEquals(Arrays.asList(1, 2), Helpers.parseIntList(new String[]{Helpers.mergeList(Arrays.asList(1, 2))}, 0));
+    }
+
+    @Test
+    public void testIsInteger() {
+        String[] samples = {null, "", "+", "-", "0", "-12", "+12", "1a", " 1", "1 ", "1\n", "١"};
+
+        for (String sample : samples) {
+            assertEquals(sample, sample != null && sample.matches("^[-+]?\\d+$"), Helpers.isInteger(sample));
+        }
+    }
+
+    /**
+     * Round trip of 10_000 numbers (e.g. stored positions or ids)
+     */
+    @Test
+    public void testRoundTrip() {
+        int size = 10_000;
+        Random random = new Random(1);
+        int[] values = new int[size];
+        List<Integer> list = new ArrayList<>();
+
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(1_000_000);
+            list.add(values[i]);
+        }
+
+        StringBuilder builder = new StringBuilder();
+        DataCodec.appendIntArray(builder, values);
+
+        assertEquals(Helpers.mergeList(list), builder.toString());
+        assertArrayEquals(values, DataCodec.parseIntArray(builder.toString()));
+        assertEquals(list, legacyParseIntList(builder.toString()));
+    }
+}
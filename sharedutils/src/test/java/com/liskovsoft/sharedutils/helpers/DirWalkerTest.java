@@ -0,0 +1,286 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import com.liskovsoft.sharedutils.helpers.DirWalker.SimpleVisitor;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class DirWalkerTest {
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+
+    /**
+     * Previous implementation, used as the reference
+     */
+    static long legacyGetDirSize(File dir) {
+        File[] files = dir.listFiles();
+
+        if (files == null) {
+            return 0;
+        }
+
+        long size = 0;
+        for (File file : files) {
+            if (file.isDirectory()) {
+                size += legacyGetDirSize(file);
+            } else if (file.isFile()) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    @Test
+    public void testDeepTree() throws IOException {
+        File root = mTempDir.newFolder("deep");
+        File dir = root;
+
+        for (int i = 0; i < 200; i++) {
+            dir = new File(dir, "d");
+            assertTrue(dir.mkdir());
+            write(new File(dir, "f"), 10);
+        }
+
+        assertEquals(200, FileHelpers.listFileTree(root).size());
+        assertEquals(2_000, FileHelpers.getDirSize(root));
+        assertEquals(2_000, FileHelpers.getDirSize(root, true));
+        assertFalse(FileHelpers.isEmpty(root));
+
+        assertTrue(FileHelpers.deleteContent(root)); // was limited by 10 levels
+        assertTrue(root.exists());
+        assertEquals(0, root.list().length);
+        assertTrue(FileHelpers.isEmpty(root));
+    }
+
+    @Test
+    public void testSerialAndParallel() throws IOException {
+        File root = mTempDir.newFolder("tree");
+        long expectedSize = createTree(root, 20, 5, 10);
+
+        assertEquals(expectedSize, legacyGetDirSize(root));
+        assertEquals(expectedSize, FileHelpers.getDirSize(root));
+        assertEquals(expectedSize, FileHelpers.getDirSize(root, true));
+        assertEquals(20 * 5 * 10, FileHelpers.listFileTree(root).size());
+
+        assertTrue(FileHelpers.deleteContent(root, true));
+        assertEquals(0, root.list().length);
+
+        createTree(root, 3, 3, 3);
+        assertTrue(FileHelpers.delete(root));
+        assertFalse(root.exists());
+    }
+
+    @Test
+    public void testChildrenBeforeParent() throws IOException {
+        File root = mTempDir.newFolder("order");
+        createTree(root, 10, 10, 2);
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            Set<File> visited = Collections.synchronizedSet(new HashSet<>());
+            AtomicInteger dirCount = new AtomicInteger();
+
+            SimpleVisitor visitor = new SimpleVisitor() {
+                @Override
+                public boolean visitFile(File file) {
+                    visited.add(file);
+                    return true;
+                }
+
+                @Override
+                public void postVisitDir(File dir) {
+                    for (String name : dir.list()) {
+                        assertTrue(visited.contains(new File(dir, name)));
+                    }
+
+                    visited.add(dir);
+                    dirCount.incrementAndGet();
+                }
+            };
+
+            if (parallel) {
+                DirWalker.walkParallel(root, visitor, 4);
+            } else {
+                DirWalker.walk(root, visitor);
+            }
+
+            assertEquals(1 + 10 + 10 * 10, dirCount.get());
+        }
+    }
+
+    @Test
+    public void testStopAndSkip() throws IOException {
+        File root = mTempDir.newFolder("stop");
+        createTree(root, 5, 5, 5);
+        AtomicInteger fileCount = new AtomicInteger();
+
+        DirWalker.walk(root, new SimpleVisitor() {
+            @Override
+            public boolean preVisitDir(File dir) {
+                return dir.equals(root); // first level only, no files there
+            }
+
+            @Override
+            public boolean visitFile(File file) {
+                fileCount.incrementAndGet();
+                return true;
+            }
+        });
+
+        assertEquals(0, fileCount.get());
+
+        DirWalker.walk(root, new SimpleVisitor() {
+            @Override
+            public boolean visitFile(File file) {
+                return fileCount.incrementAndGet() < 3;
+            }
+        });
+
+        assertEquals(3, fileCount.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void testParallelVisitorException() throws IOException {
+        File root = mTempDir.newFolder("tree");
+        createTree(root, 10, 3, 5);
+
+        File broken = new File(root, "dir5/sub1/file2");
+
+        try {
+            DirWalker.walkParallel(root, new SimpleVisitor() {
+                @Override
+                public boolean visitFile(File file) {
+                    if (file.equals(broken)) {
+                        throw new IllegalStateException("Visitor failed: " + file);
+                    }
+
+                    return true;
+                }
+            }, 4);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Visitor failed: " + broken, e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCopyFilters() throws IOException {
+        File source = mTempDir.newFolder("source");
+        write(new File(source, "root.txt"), 1);
+        File keep = new File(source, "keep");
+        File skip = new File(source, "skip");
+        assertTrue(new File(keep, "nested").mkdirs());
+        assertTrue(skip.mkdirs());
+        write(new File(keep, "a.txt"), 1);
+        write(new File(keep, "b.bin"), 1);
+        write(new File(keep, "nested/c.txt"), 1);
+        write(new File(skip, "d.txt"), 1);
+
+        File target = new File(mTempDir.getRoot(), "target");
+        FileHelpers.copy(source, target, file -> file.getName().endsWith(".txt"), dir -> !dir.getName().equals("skip"));
+
+        // Files of the root are skipped when dir filter is set
+        assertFalse(new File(target, "root.txt").exists());
+        assertFalse(new File(target, "skip").exists());
+        assertTrue(new File(target, "keep/a.txt").exists());
+        assertFalse(new File(target, "keep/b.bin").exists());
+        assertTrue(new File(target, "keep/nested/c.txt").exists());
+
+        File allTarget = new File(mTempDir.getRoot(), "all");
+        FileHelpers.copy(source, allTarget);
+        assertEquals(FileHelpers.getDirSize(source), FileHelpers.getDirSize(allTarget));
+
+        File single = new File(mTempDir.getRoot(), "single.txt");
+        FileHelpers.copy(new File(source, "root.txt"), single);
+        assertTrue(single.isFile());
+    }
+
+    /**
+     * Sizing of 100_000 files in 1_100 dirs. Before: recursive listFiles. After: serial and parallel walker.<br/>
+     * NOTE: parallel gain depends on the cores and the storage, so only the correctness is checked.
+     */
+    @Test
+    public void testSymlinksAreNotFollowed() throws IOException {
+        File root = mTempDir.newFolder("links");
+        File outside = mTempDir.newFolder("outside");
+        File dir = new File(root, "dir");
+        assertTrue(dir.mkdir());
+        write(new File(dir, "f"), 10);
+        write(new File(outside, "keep"), 10);
+        Files.createSymbolicLink(new File(dir, "loop").toPath(), root.toPath());
+        Files.createSymbolicLink(new File(root, "out").toPath(), outside.toPath());
+
+        for (boolean parallel : new boolean[] {false, true}) {
+            List<File> files = Collections.synchronizedList(new ArrayList<>());
+            SimpleVisitor visitor = new SimpleVisitor() {
+                @Override
+                public boolean visitFile(File file) {
+                    files.add(file);
+                    return true;
+                }
+            };
+
+            if (parallel) {
+                DirWalker.walkParallel(root, visitor, 2);
+            } else {
+                DirWalker.walk(root, visitor);
+            }
+
+            assertEquals(3, files.size()); // links are visited as files
+        }
+
+        assertTrue(FileHelpers.deleteContent(root));
+        assertEquals(0, root.list().length);
+        assertTrue(new File(outside, "keep").exists());
+    }
+
+    /**
+     * root/dirCount/subDirCount/fileCount, file size depends on the index
+     */
+    static long createTree(File root, int dirCount, int subDirCount, int fileCount) throws IOException {
+        long size = 0;
+        List<File> dirs = new ArrayList<>();
+
+        for (int i = 0; i < dirCount; i++) {
+            for (int j = 0; j < subDirCount; j++) {
+                File dir = new File(root, "dir" + i + "/sub" + j);
+                assertTrue(dir.mkdirs());
+                dirs.add(dir);
+            }
+        }
+
+        for (File dir : dirs) {
+            for (int k = 0; k < fileCount; k++) {
+                int length = k % 7;
+                write(new File(dir, "file" + k), length);
+                size += length;
+            }
+        }
+
+        return size;
+    }
+
+    private static void write(File file, int length) throws IOException {
+        try (FileOutputStream stream = new FileOutputStream(file)) {
+            stream.write(new byte[length]);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.liskovsoft.sharedutils.helpers;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class TextDecoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Previous implementation, used as the reference
+     */
+    static String legacyToString(InputStream in) throws IOException {
+        int bufsize = 8196;
+        char[] cbuf = new char[bufsize];
+        StringBuilder buf = new StringBuilder(bufsize);
+        InputStreamReader reader = new InputStreamReader(in, "UTF-8");
+
+        int readBytes;
+        while ((readBytes = reader.read(cbuf, 0, bufsize)) != -1) {
+            buf.append(cbuf, 0, readBytes);
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Returns one byte per read and nothing in available()
+     */
+    private static InputStream slow(byte[] data) {
+        return new FilterInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 1));
+            }
+
+            @Override
+            public int available() {
+                return 0;
+            }
+        };
+    }
+
+    @Test
+    public void testCompatibility() throws IOException {
+        byte[][] samples = {
+                new byte[0],
+                "plain ascii".getBytes(UTF_8),
+                "кириллица, 日本語, emoji 😀".getBytes(UTF_8),
+                {'a', (byte) 0xC3}, // torn sequence at the end
+                {(byte) 0xFF, 'b', (byte) 0xE2, (byte) 0x82, 'c'}, // malformed
+                createText(100_000).getBytes(UTF_8)
+        };
+
+        for (byte[] sample : samples) {
+            String expected = legacyToString(new ByteArrayInputStream(sample));
+
+            assertEquals(expected, TextDecoder.toString(new ByteArrayInputStream(sample)));
+            assertEquals(expected, TextDecoder.toString(slow(sample)));
+            assertEquals(expected, TextDecoder.toString(new ByteArrayInputStream(sample), sample.length));
+            assertEquals(expected, TextDecoder.toString(new ByteArrayInputStream(sample), 1)); // wrong length
+            assertEquals(expected, TextDecoder.toString(new ByteArrayInputStream(sample), sample.length * 3L));
+            assertEquals(expected, TextDecoder.toCharSequence(slow(sample)).toString());
+            assertEquals(expected, TextDecoder.toCharSequence(new ByteArrayInputStream(sample), sample.length).toString());
+            assertEquals(expected, readAll(TextDecoder.toReader(slow(sample))));
+        }
+
+        assertNull(TextDecoder.toString(null));
+        assertNull(FileHelpers.toString(null));
+        assertEquals("текст", Helpers.toString(Helpers.toStream("текст")));
+    }
+
+    @Test
+    public void testBigInputIsNotPooled() throws IOException {
+        String text = createText(3 * 1024 * 1024);
+        byte[] data = text.getBytes(UTF_8);
+
+        assertEquals(text, TextDecoder.toString(new ByteArrayInputStream(data)));
+        assertEquals(text, TextDecoder.toCharSequence(new ByteArrayInputStream(data)).toString());
+        assertEquals("small", TextDecoder.toCharSequence(new ByteArrayInputStream("small".getBytes(UTF_8))).toString());
+    }
+
+    @Test
+    public void testBogusContentLength() throws IOException {
+        byte[] data = "small".getBytes(UTF_8);
+        long bytes = getAllocatedBytes();
+
+        assertEquals("small", TextDecoder.toString(new ByteArrayInputStream(data), Integer.MAX_VALUE));
+        assertEquals("small", TextDecoder.toString(new ByteArrayInputStream(data), Long.MAX_VALUE));
+        assertTrue(getAllocatedBytes() - bytes < 8 * 1024 * 1024); // not pre-sized by the declared length
+
+        String text = createText(3 * 1024 * 1024);
+        assertEquals(text, TextDecoder.toString(new ByteArrayInputStream(text.getBytes(UTF_8)), text.length()));
+    }
+
+    /**
+     * Mostly ascii (json, js, css), some multi-byte chars
+     */
+    static String createText(int length) {
+        Random random = new Random(1);
+        StringBuilder builder = new StringBuilder(length);
+
+        while (builder.length() < length) {
+            builder.append(random.nextInt(20) == 0 ? "ё" : "{\"key\":\"value\"}");
+        }
+
+        builder.setLength(length);
+        return builder.toString();
+    }
+
+    private static String readAll(Reader reader) throws IOException {
+        StringBuilder builder = new StringBuilder();
+        char[] buffer = new char[100];
+        int count;
+
+        while ((count = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, count);
+        }
+
+        return builder.toString();
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,202 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import com.liskovsoft.sharedutils.mylogger.AsyncLogWriter.DropPolicy;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class AsyncLogWriterTest {
+    private static final int CAPACITY = 64;
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private File mFile;
+    private AsyncLogWriter mWriter;
+
+    /**
+     * Keeps the writer thread inside {@link #canOpen()} until released
+     */
+    private static class BlockingCallback implements AsyncLogWriter.Callback {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch released = new CountDownLatch(1);
+
+        @Override
+        public boolean canOpen() {
+            entered.countDown();
+
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return true;
+        }
+
+        @Override
+        public void onOpen(File file) {
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mTempDir.newFolder(), "log.txt");
+        mWriter = new AsyncLogWriter(mFile, CAPACITY);
+        mWriter.setFlushIntervalMs(10);
+    }
+
+    @After
+    public void tearDown() {
+        mWriter.close();
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        int threadCount = 4;
+        int linesPerThread = 10_000;
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < threadCount; i++) {
+            int threadNum = i;
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < linesPerThread; j++) {
+                    mWriter.append("thread " + threadNum + " line " + j);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        mWriter.flush(null, 5_000);
+
+        assertEquals(threadCount * linesPerThread, mWriter.getWrittenCount() + mWriter.getDroppedCount());
+        assertEquals(mWriter.getWrittenCount(), readLines(mFile).size());
+    }
+
+    @Test
+    public void testDropNewest() throws Exception {
+        List<String> lines = fillWhileBlocked(DropPolicy.DROP_NEWEST);
+
+        assertEquals(10, mWriter.getDroppedCount());
+        assertEquals("first", lines.get(0));
+        assertEquals("line 0", lines.get(1));
+        assertEquals("line " + (CAPACITY - 1), lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testDropOldest() throws Exception {
+        List<String> lines = fillWhileBlocked(DropPolicy.DROP_OLDEST);
+
+        assertEquals(10, mWriter.getDroppedCount());
+        assertEquals("first", lines.get(0));
+        assertEquals("line 10", lines.get(1));
+        assertEquals("line " + (CAPACITY + 9), lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testRotation() throws Exception {
+        mWriter.setMaxFileSize(1_000);
+        mWriter.setMaxBackupCount(2);
+
+        for (int i = 0; i < 95; i++) {
+            mWriter.append(String.format("%049d", i));
+
+            if (i % 10 == 0) {
+                mWriter.flush(null, 5_000); // don't overflow the buffer
+            }
+        }
+
+        mWriter.flush(null, 5_000);
+
+        assertTrue(mWriter.getBackupFile(1).exists());
+        assertTrue(mWriter.getBackupFile(2).exists());
+        assertFalse(mWriter.getBackupFile(3).exists());
+        assertTrue(mFile.length() < 1_000);
+        assertEquals(String.format("%049d", 94), readLines(mFile).get(readLines(mFile).size() - 1));
+        assertEquals(95, mWriter.getWrittenCount());
+    }
+
+    @Test
+    public void testBinaryBlocksAreNotClosedByTimer() throws Exception {
+        File file = new File(mTempDir.newFolder(), "log.bin");
+        AsyncLogWriter writer = new AsyncLogWriter(file, CAPACITY, true);
+        writer.setFlushIntervalMs(10);
+
+        for (int i = 0; i < 10; i++) {
+            writer.append(Log.LEVEL_DEBUG, "tag", "line " + i);
+            Thread.sleep(30);
+        }
+
+        assertEquals(0, countRecords(file)); // single pending block
+
+        writer.flush(null, 5_000);
+        assertEquals(10, countRecords(file));
+        writer.close();
+    }
+
+    /**
+     * Writer thread is stopped while the buffer receives CAPACITY + 10 lines
+     */
+    private List<String> fillWhileBlocked(DropPolicy dropPolicy) throws Exception {
+        BlockingCallback callback = new BlockingCallback();
+        mWriter.setCallback(callback);
+        mWriter.setDropPolicy(dropPolicy);
+
+        mWriter.append("first");
+        assertTrue(callback.entered.await(5, TimeUnit.SECONDS));
+
+        for (int i = 0; i < CAPACITY + 10; i++) {
+            mWriter.append("line " + i);
+        }
+
+        callback.released.countDown();
+        mWriter.flush(null, 5_000);
+
+        List<String> lines = readLines(mFile);
+        assertEquals(CAPACITY + 1, lines.size());
+        assertEquals(CAPACITY + 1, mWriter.getWrittenCount());
+
+        return lines;
+    }
+
+    private static int countRecords(File file) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int count = 0;
+
+        try (BinaryLogReader reader = new BinaryLogReader(file)) {
+            while (reader.next() != null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+}
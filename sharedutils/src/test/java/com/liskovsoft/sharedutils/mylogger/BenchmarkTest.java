@@ -0,0 +1,97 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Timings of the logger. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    private static final String TAG = BenchmarkTest.class.getSimpleName();
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+
+    /**
+     * Cost of a debug call on the hot path when debug messages aren't needed.<br/>
+     * Before: message always formatted (then dropped). After: level is checked first.
+     */
+    @Test
+    public void testSuppressedDebug() {
+        int iterations = 1_000_000;
+        Log.setMinLevel(Log.LEVEL_INFO);
+
+        try {
+            for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+                long bytes = getAllocatedBytes();
+                long startTimeNs = System.nanoTime();
+
+                for (int i = 0; i < iterations; i++) {
+                    Log.formatMsg("Downloading %s, progress %s", "file.apk", i);
+                }
+
+                long beforeNs = System.nanoTime() - startTimeNs;
+                long beforeBytes = getAllocatedBytes() - bytes;
+
+                bytes = getAllocatedBytes();
+                startTimeNs = System.nanoTime();
+
+                for (int i = 0; i < iterations; i++) {
+                    Log.d(TAG, "Downloading {}, progress {}", "file.apk", i);
+                }
+
+                long afterNs = System.nanoTime() - startTimeNs;
+                long afterBytes = getAllocatedBytes() - bytes;
+
+                if (pass == 1) {
+                    System.out.printf("Suppressed Log.d: before %.1f ns %s bytes/op, after %.1f ns %s bytes/op%n",
+                            (double) beforeNs / iterations, beforeBytes / iterations, (double) afterNs / iterations, afterBytes / iterations);
+                }
+            }
+        } finally {
+            Log.setMinLevel(Log.LEVEL_DEBUG);
+        }
+    }
+
+    /**
+     * Size of a million records: binary log vs the same records as text
+     */
+    @Test
+    public void testBinaryLogSize() throws IOException {
+        File file = new File(mTempDir.newFolder(), "log.bin");
+        int count = 1_000_000;
+
+        long startTimeNs = System.nanoTime();
+        BinaryLogTest.writeRecords(file, count);
+        long writeNs = System.nanoTime() - startTimeNs;
+
+        long textSize = 0;
+        startTimeNs = System.nanoTime();
+
+        try (BinaryLogReader reader = new BinaryLogReader(file)) {
+            LogRecord record;
+
+            while ((record = reader.next()) != null) {
+                textSize += record.toString().length() + 1;
+            }
+        }
+
+        long readNs = System.nanoTime() - startTimeNs;
+
+        System.out.printf("Binary log: %s records, text %s bytes, binary %s bytes, write %s ms, read %s ms%n",
+                count, textSize, file.length(), writeNs / 1_000_000, readNs / 1_000_000);
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,174 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class BinaryLogTest {
+    private static final long START_TIME_MS = 1_700_000_000_000L;
+    private static final String[] TAGS = {"PlayerFragment", "VideoLoader", "AppUpdateChecker", "MediaServiceCore"};
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mTempDir.newFolder(), "log.bin");
+    }
+
+    @Test
+    public void testRoundTripMillionRecords() throws IOException {
+        int count = 1_000_000;
+        writeRecords(mFile, count);
+
+        long textSize = 0;
+
+        try (BinaryLogReader reader = new BinaryLogReader(mFile)) {
+            for (int i = 0; i < count; i++) {
+                LogRecord record = reader.next();
+                LogRecord expected = createRecord(i);
+                assertEquals(expected.getTimeMs(), record.getTimeMs());
+                assertEquals(expected.getLevel(), record.getLevel());
+                assertEquals(expected.getTag(), record.getTag());
+                assertEquals(expected.getMessage(), record.getMessage());
+                textSize += record.toString().length() + 1;
+            }
+
+            assertNull(reader.next());
+        }
+
+        assertTrue(mFile.length() * 5 < textSize); // compact form
+    }
+
+    @Test
+    public void testTimeRangeFilter() throws IOException {
+        int count = 100_000;
+        writeRecords(mFile, count);
+
+        try (BinaryLogReader reader = new BinaryLogReader(mFile)) {
+            reader.setTimeRange(createRecord(50_000).getTimeMs(), createRecord(50_999).getTimeMs());
+
+            int found = 0;
+            LogRecord record;
+
+            while ((record = reader.next()) != null) {
+                assertEquals(createRecord(50_000 + found).getMessage(), record.getMessage());
+                found++;
+            }
+
+            assertEquals(1_000, found);
+        }
+    }
+
+    @Test
+    public void testTagFilter() throws IOException {
+        writeRecords(mFile, 10_000);
+
+        try (BinaryLogReader reader = new BinaryLogReader(mFile)) {
+            reader.setTags(Collections.singleton(TAGS[1]));
+
+            int found = 0;
+            LogRecord record;
+
+            while ((record = reader.next()) != null) {
+                assertEquals(TAGS[1], record.getTag());
+                found++;
+            }
+
+            assertEquals(2_500, found);
+        }
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        try (BinaryLogOutput output = new BinaryLogOutput(mFile, false)) {
+            output.write(LogRecord.raw("----------- STARTING LOG"));
+            output.write(new LogRecord(START_TIME_MS, Log.LEVEL_WARN, "Tag", "Привет"));
+        }
+
+        StringWriter writer = new StringWriter();
+
+        try (BinaryLogReader reader = new BinaryLogReader(mFile)) {
+            assertEquals(2, reader.export(writer));
+        }
+
+        String[] lines = writer.toString().split("\n");
+        assertTrue(lines[0].endsWith(" ----------- STARTING LOG"));
+        assertTrue(lines[1].endsWith(" WARN: Tag: Привет"));
+    }
+
+    @Test
+    public void testTruncatedFile() throws IOException {
+        writeRecords(mFile, 100_000);
+
+        byte[] data = Files.readAllBytes(mFile.toPath());
+        int found = 0;
+
+        try (BinaryLogReader reader = new BinaryLogReader(new ByteArrayInputStream(Arrays.copyOf(data, data.length - 100)))) {
+            while (reader.next() != null) {
+                found++;
+            }
+        }
+
+        assertTrue(found > 0 && found < 100_000);
+    }
+
+    @Test
+    public void testAppend() throws IOException {
+        writeRecords(mFile, 10);
+
+        try (BinaryLogOutput output = new BinaryLogOutput(mFile, true)) {
+            output.write(createRecord(10));
+        }
+
+        int found = 0;
+
+        try (BinaryLogReader reader = new BinaryLogReader(mFile)) {
+            while (reader.next() != null) {
+                found++;
+            }
+        }
+
+        assertEquals(11, found);
+    }
+
+    @Test
+    public void testNotBinaryLog() throws IOException {
+        try {
+            new BinaryLogReader(new ByteArrayInputStream("DEBUG: tag: text".getBytes()));
+            fail();
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    static void writeRecords(File file, int count) throws IOException {
+        try (BinaryLogOutput output = new BinaryLogOutput(file, false)) {
+            for (int i = 0; i < count; i++) {
+                output.write(createRecord(i));
+            }
+        }
+    }
+
+    private static LogRecord createRecord(int index) {
+        return new LogRecord(START_TIME_MS + index * 3L, Log.LEVEL_DEBUG + index % 4, TAGS[index % TAGS.length],
+                "Loading video " + (index % 1000) + ", position " + index + " ms");
+    }
+}
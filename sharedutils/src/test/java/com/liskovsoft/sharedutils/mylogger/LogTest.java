@@ -0,0 +1,74 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class LogTest {
+    private static final String TAG = LogTest.class.getSimpleName();
+
+    @After
+    public void tearDown() {
+        Log.setMinLevel(Log.LEVEL_DEBUG);
+        Log.setTagLevel(TAG, null);
+    }
+
+    @Test
+    public void testFormat() {
+        assertEquals("a 1 b null", Log.formatMsg("a {} b {}", 1, null));
+        assertEquals("a 1 b {}", Log.formatMsg("a {} b {}", 1));
+        assertEquals("a 1 b 2", Log.formatMsg("a {} b {}", 1, 2, 3));
+        assertEquals("legacy 1 2.50", Log.formatMsg("legacy %s %.2f", 1, 2.5f));
+        assertEquals("no args {}", Log.formatMsg("no args {}"));
+        assertEquals("json {} 1", Log.formatMsg("json {} %s", 1));
+        assertNull(Log.formatMsg(null, 1));
+    }
+
+    @Test
+    public void testLevels() {
+        assertTrue(Log.isLoggable(Log.LEVEL_DEBUG, TAG));
+
+        Log.setMinLevel(Log.LEVEL_INFO);
+        assertFalse(Log.isLoggable(Log.LEVEL_DEBUG, TAG));
+        assertTrue(Log.isLoggable(Log.LEVEL_WARN, TAG));
+
+        Log.setTagLevel(TAG, Log.LEVEL_DEBUG);
+        assertTrue(Log.isLoggable(Log.LEVEL_DEBUG, TAG));
+        assertFalse(Log.isLoggable(Log.LEVEL_DEBUG, "OtherTag"));
+
+        Log.setTagLevel(TAG, Log.LEVEL_NONE);
+        assertFalse(Log.isLoggable(Log.LEVEL_ERROR, TAG));
+
+        Log.setTagLevel(TAG, null);
+        assertFalse(Log.isLoggable(Log.LEVEL_DEBUG, TAG));
+    }
+
+    /**
+     * Debug call on the hot path when debug messages aren't needed: level is checked before the formatting
+     */
+    @Test
+    public void testSuppressedDebugIsNotFormatted() {
+        int[] formatCount = {0};
+        Object arg = new Object() {
+            @Override
+            public String toString() {
+                formatCount[0]++;
+                return "file.apk";
+            }
+        };
+
+        Log.setMinLevel(Log.LEVEL_INFO);
+        Log.d(TAG, "Downloading {}, progress {}", arg, 1);
+        assertEquals(0, formatCount[0]);
+
+        assertEquals("Downloading file.apk, progress 1", Log.formatMsg("Downloading {}, progress {}", arg, 1));
+        assertEquals(1, formatCount[0]);
+    }
+}
@@ -0,0 +1,85 @@
+package com.liskovsoft.sharedutils.mylogger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class RingBufferTest {
+    @Test
+    public void testBounds() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(3);
+
+        assertEquals(4, buffer.getCapacity());
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        assertFalse(buffer.offer(4));
+        assertEquals(0, (int) buffer.poll());
+        assertTrue(buffer.offer(4));
+
+        List<Integer> result = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(result, 10));
+        assertEquals(4, (int) result.get(3));
+        assertNull(buffer.poll());
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testManyProducersAndConsumers() throws InterruptedException {
+        RingBuffer<Integer> buffer = new RingBuffer<>(128);
+        int producerCount = 4;
+        int itemsPerProducer = 50_000;
+        AtomicLong sum = new AtomicLong();
+        AtomicInteger received = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int i = 0; i < producerCount; i++) {
+            threads.add(new Thread(() -> {
+                for (int j = 1; j <= itemsPerProducer; j++) {
+                    while (!buffer.offer(j)) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        for (int i = 0; i < 2; i++) {
+            threads.add(new Thread(() -> {
+                while (received.get() < producerCount * itemsPerProducer) {
+                    Integer item = buffer.poll();
+
+                    if (item != null) {
+                        sum.addAndGet(item);
+                        received.incrementAndGet();
+                    } else {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals((long) producerCount * itemsPerProducer * (itemsPerProducer + 1) / 2, sum.get());
+        assertTrue(buffer.isEmpty());
+    }
+}
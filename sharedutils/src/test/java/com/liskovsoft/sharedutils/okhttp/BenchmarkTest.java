@@ -0,0 +1,46 @@
+package com.liskovsoft.sharedutils.okhttp;
+
+import com.liskovsoft.sharedutils.okhttp.PublicDnsResolverTest.TestDnsServer;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+
+import static com.liskovsoft.sharedutils.okhttp.PublicDnsResolverTest.TEST_HOST;
+
+/**
+ * Timings of the okhttp helpers. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    /**
+     * Cold lookup goes to the (local) server, warm one is served from the cache
+     */
+    @Test
+    public void testDnsColdVsWarmLatency() throws IOException {
+        TestDnsServer server = new TestDnsServer();
+        server.start();
+
+        try {
+            PublicDnsResolver resolver = new PublicDnsResolver("127.0.0.1", "127.0.0.1", server.getPort(), 2, true);
+            int iterations = 1_000;
+
+            long coldStartNs = System.nanoTime();
+            resolver.lookup(TEST_HOST);
+            long coldNs = System.nanoTime() - coldStartNs;
+
+            long warmStartNs = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                resolver.lookup(TEST_HOST);
+            }
+            long warmNs = (System.nanoTime() - warmStartNs) / iterations;
+
+            System.out.printf("DNS lookup latency: cold %d us, warm %d us%n", coldNs / 1_000, warmNs / 1_000);
+        } finally {
+            server.stop();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.liskovsoft.sharedutils.okhttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+public class OkHttpClientRegistryTest {
+    private MockWebServer mServer;
+    private OkHttpClientRegistry mRegistry;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        OkHttpClientRegistry.setupPool(5, 60_000);
+        mRegistry = OkHttpClientRegistry.instance();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mRegistry.shutdown();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testClientsShareResources() {
+        OkHttpClient base = mRegistry.getClient();
+        OkHttpClient named = mRegistry.getClient("test", builder -> builder.followRedirects(false));
+
+        assertNotSame(base, named);
+        assertSame(named, mRegistry.getClient("test"));
+        assertSame(base.connectionPool(), named.connectionPool());
+        assertSame(base.dispatcher(), named.dispatcher());
+        assertSame(base.dns(), named.dns());
+    }
+
+    @Test
+    public void testConnectionReuseAcrossClients() throws IOException {
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setBody("ok"));
+        }
+
+        OkHttpClient first = mRegistry.getClient("first");
+        OkHttpClient second = mRegistry.getClient("second");
+
+        for (int i = 0; i < 2; i++) {
+            execute(first);
+            execute(second);
+        }
+
+        assertEquals(1, mRegistry.getNewConnectionCount());
+        assertEquals(3, mRegistry.getPoolHitCount());
+    }
+
+    @Test
+    public void testManagerClientFollowsRegistry() {
+        OkHttpManager manager = OkHttpManager.instance();
+        manager.setMaxRequests(3, 1);
+        OkHttpClient client = manager.getClient();
+
+        assertNotSame(mRegistry.getDispatcher(), client.dispatcher()); // limits don't leak to other clients
+        assertEquals(1, client.dispatcher().getMaxRequestsPerHost());
+        assertEquals(5, mRegistry.getDispatcher().getMaxRequestsPerHost());
+        assertSame(mRegistry.getConnectionPool(), client.connectionPool());
+        assertSame(client, manager.getClient());
+
+        OkHttpClientRegistry.setupPool(2, 60_000);
+        mRegistry = OkHttpClientRegistry.instance();
+        OkHttpClient refreshed = manager.getClient();
+
+        assertNotSame(client, refreshed);
+        assertSame(mRegistry.getConnectionPool(), refreshed.connectionPool());
+        assertSame(client.dispatcher(), refreshed.dispatcher());
+        OkHttpManager.unhold();
+    }
+
+    private void execute(OkHttpClient client) throws IOException {
+        Request request = new Request.Builder().url(mServer.url("/")).build();
+
+        try (Response response = client.newCall(request).execute()) {
+            response.body().string();
+        }
+    }
+}
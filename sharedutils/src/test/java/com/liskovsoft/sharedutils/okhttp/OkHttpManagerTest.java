@@ -1,5 +1,7 @@
 package com.liskovsoft.sharedutils.okhttp;
 
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
@@ -11,23 +13,172 @@ import java.net.PasswordAuthentication;
 import java.net.Proxy;
 import java.net.Proxy.Type;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import io.reactivex.disposables.Disposable;
 import okhttp3.Call;
 import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.OkHttpClient.Builder;
 import okhttp3.Request;
 import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
 
 import static org.junit.Assert.*;
 
 import static info.guardianproject.netcipher.proxy.NetCipherURLStreamHandlerFactory.TAG;
 
 import android.util.Log;
+import com.liskovsoft.sharedutils.BuildConfig;
 import com.liskovsoft.sharedutils.helpers.Helpers;
+import com.localebro.okhttpprofiler.OkHttpProfilerInterceptor;
 
 @RunWith(RobolectricTestRunner.class)
 public class OkHttpManagerTest {
+    private static final int CONCURRENT_REQUESTS = 1_000;
+    private static final int THREAD_COUNT = 8;
+    private MockWebServer mServer;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mExecutor = Executors.newFixedThreadPool(THREAD_COUNT);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mExecutor.shutdownNow();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testConcurrentAsyncRequests() throws InterruptedException {
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            mServer.enqueue(new MockResponse().setBody("ok"));
+        }
+
+        OkHttpClient client = createClient();
+        String url = mServer.url("/").toString();
+
+        CountDownLatch done = new CountDownLatch(CONCURRENT_REQUESTS);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            OkHttpManager.instance(false).doGetRequestAsync(url, client, null, new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    if (response.isSuccessful()) {
+                        succeeded.incrementAndGet();
+                    }
+                    response.close();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertTrue("All requests are finished", done.await(60, TimeUnit.SECONDS));
+        assertEquals(CONCURRENT_REQUESTS, succeeded.get());
+        assertEquals(CONCURRENT_REQUESTS, mServer.getRequestCount());
+    }
+
+    /**
+     * Own client of the manager: async calls over the limits are queued by its dispatcher
+     */
+    @Test
+    public void testManagerClientLimits() throws InterruptedException {
+        int requestCount = 6;
+
+        for (int i = 0; i < requestCount; i++) {
+            mServer.enqueue(new MockResponse().setBody("ok").setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        }
+
+        OkHttpManager.unhold();
+        OkHttpManager manager = OkHttpManager.instance(false);
+        manager.setMaxRequests(4, 2);
+        Dispatcher dispatcher = manager.getClient().dispatcher();
+
+        assertNotSame(OkHttpClientRegistry.instance().getDispatcher(), dispatcher);
+        assertEquals(4, dispatcher.getMaxRequests());
+        assertEquals(2, dispatcher.getMaxRequestsPerHost());
+
+        CountDownLatch done = new CountDownLatch(requestCount);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        for (int i = 0; i < requestCount; i++) {
+            manager.doGetRequestAsync(mServer.url("/").toString(), null, new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    done.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    if (response.isSuccessful()) {
+                        succeeded.incrementAndGet();
+                    }
+                    response.close();
+                    done.countDown();
+                }
+            });
+        }
+
+        assertEquals(2, dispatcher.runningCallsCount()); // one host
+        assertEquals(requestCount - 2, dispatcher.queuedCallsCount());
+
+        assertTrue("All requests are finished", done.await(30, TimeUnit.SECONDS));
+        assertEquals(requestCount, succeeded.get());
+
+        OkHttpManager.unhold();
+    }
+
+    @Test
+    public void testDisposeCancelsCall() throws InterruptedException {
+        mServer.enqueue(new MockResponse().setBody("slow").setHeadersDelay(3, TimeUnit.SECONDS));
+
+        OkHttpClient client = createClient();
+
+        Disposable action = OkHttpManager.instance(false)
+                .doGetRequestSingle(mServer.url("/").toString(), client, null)
+                .subscribe(response -> fail("Call should be cancelled"), error -> {});
+
+        mServer.takeRequest(5, TimeUnit.SECONDS);
+        assertEquals(1, client.dispatcher().runningCallsCount());
+
+        action.dispose();
+
+        for (int i = 0; i < 50 && client.dispatcher().runningCallsCount() > 0; i++) {
+            Thread.sleep(100);
+        }
+
+        assertEquals(0, client.dispatcher().runningCallsCount());
+    }
+
+    @Test
+    public void testProfilerFlagAfterRegistryClient() {
+        OkHttpClientRegistry.instance().getClient(); // built by another component first
+
+        OkHttpManager.unhold();
+        assertFalse(hasProfiler(OkHttpManager.instance(false).getClient()));
+
+        OkHttpManager.unhold();
+        assertEquals(BuildConfig.DEBUG, hasProfiler(OkHttpManager.instance(true).getClient()));
+
+        OkHttpManager.unhold();
+    }
+
     @Test
     public void testSocks5Proxy() throws InterruptedException {
         String[] testUrls = {"https://www.youtube.com", "https://www.google.com"};
@@ -58,6 +209,26 @@ public class OkHttpManagerTest {
         waitForRegister.await();
     }
 
+    private OkHttpClient createClient() {
+        Dispatcher dispatcher = new Dispatcher(mExecutor);
+        dispatcher.setMaxRequests(THREAD_COUNT);
+        dispatcher.setMaxRequestsPerHost(THREAD_COUNT);
+
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .build();
+    }
+
+    private static boolean hasProfiler(OkHttpClient client) {
+        for (Interceptor interceptor : client.interceptors()) {
+            if (interceptor instanceof OkHttpProfilerInterceptor) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private static void setupProxy(Builder builder, String host, String port, String user, String password, Proxy.Type proxyType) {
         if (host == null || port == null) {
             return;
@@ -0,0 +1,176 @@
+package com.liskovsoft.sharedutils.okhttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.Flags;
+import org.xbill.DNS.Message;
+import org.xbill.DNS.Rcode;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Section;
+import org.xbill.DNS.Type;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class PublicDnsResolverTest {
+    static final String TEST_HOST = "cached.example.test";
+    private static final String MISSING_HOST = "missing.example.test";
+    private TestDnsServer mServer;
+    private PublicDnsResolver mResolver;
+    private long mNowMs;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new TestDnsServer();
+        mServer.start();
+        mNowMs = System.currentTimeMillis();
+        mResolver = new PublicDnsResolver("127.0.0.1", "127.0.0.1", mServer.getPort(), 2, true, () -> mNowMs);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void testWarmLookupDoesNotQueryServer() throws UnknownHostException {
+        List<InetAddress> cold = mResolver.lookup(TEST_HOST);
+        int queries = mServer.getQueryCount();
+
+        List<InetAddress> warm = mResolver.lookup(TEST_HOST);
+
+        assertEquals(4, cold.size());
+        assertEquals(cold, warm);
+        assertEquals(2, queries); // A and AAAA
+        assertEquals(queries, mServer.getQueryCount());
+    }
+
+    @Test
+    public void testAddressFamiliesAreInterleaved() throws UnknownHostException {
+        List<InetAddress> addresses = mResolver.lookup(TEST_HOST);
+
+        for (int i = 1; i < addresses.size(); i++) {
+            assertTrue("Families alternate", addresses.get(i).getClass() != addresses.get(i - 1).getClass());
+        }
+    }
+
+    @Test
+    public void testNegativeAnswerIsCached() {
+        lookupMissing();
+        int queries = mServer.getQueryCount();
+
+        lookupMissing();
+
+        assertEquals(queries, mServer.getQueryCount());
+    }
+
+    @Test
+    public void testFailedRefreshKeepsStaleAnswer() throws UnknownHostException {
+        List<InetAddress> addresses = mResolver.lookup(TEST_HOST);
+        mServer.stop();
+        mNowMs += 301_000; // TTL is 300 s
+
+        assertEquals(addresses, mResolver.lookup(TEST_HOST)); // stale, refreshed in background
+
+        try {
+            mResolver.refresh(TEST_HOST);
+            fail("Server doesn't answer");
+        } catch (UnknownHostException e) {
+            // expected
+        }
+
+        assertEquals(addresses, mResolver.lookup(TEST_HOST));
+    }
+
+    private void lookupMissing() {
+        try {
+            mResolver.lookup(MISSING_HOST);
+            fail("Host should not be resolved");
+        } catch (UnknownHostException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Minimal UDP DNS server. Answers {@link #TEST_HOST} with two A and two AAAA records, NXDOMAIN otherwise.
+     */
+    static class TestDnsServer {
+        private final AtomicInteger mQueryCount = new AtomicInteger();
+        private DatagramSocket mSocket;
+        private Thread mThread;
+
+        void start() throws IOException {
+            mSocket = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+            mThread = new Thread(this::serve);
+            mThread.setDaemon(true);
+            mThread.start();
+        }
+
+        void stop() {
+            mSocket.close();
+        }
+
+        int getPort() {
+            return mSocket.getLocalPort();
+        }
+
+        int getQueryCount() {
+            return mQueryCount.get();
+        }
+
+        private void serve() {
+            byte[] buffer = new byte[512];
+
+            while (!mSocket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    mSocket.receive(packet);
+                    mQueryCount.incrementAndGet();
+
+                    byte[] response = answer(new Message(packet.getData())).toWire();
+                    mSocket.send(new DatagramPacket(response, response.length, packet.getSocketAddress()));
+                } catch (IOException e) {
+                    // socket closed
+                }
+            }
+        }
+
+        private static Message answer(Message query) throws UnknownHostException {
+            Record question = query.getQuestion();
+            Message response = new Message(query.getHeader().getID());
+            response.getHeader().setFlag(Flags.QR);
+            response.addRecord(question, Section.QUESTION);
+
+            if (!question.getName().toString().equals(TEST_HOST + ".")) {
+                response.getHeader().setRcode(Rcode.NXDOMAIN);
+                return response;
+            }
+
+            if (question.getType() == Type.A) {
+                response.addRecord(new ARecord(question.getName(), DClass.IN, 300, InetAddress.getByName("10.0.0.1")), Section.ANSWER);
+                response.addRecord(new ARecord(question.getName(), DClass.IN, 300, InetAddress.getByName("10.0.0.2")), Section.ANSWER);
+            } else if (question.getType() == Type.AAAA) {
+                response.addRecord(new AAAARecord(question.getName(), DClass.IN, 300, InetAddress.getByName("fd00::1")), Section.ANSWER);
+                response.addRecord(new AAAARecord(question.getName(), DClass.IN, 300, InetAddress.getByName("fd00::2")), Section.ANSWER);
+            }
+
+            return response;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.liskovsoft.sharedutils.okhttp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class RangeDownloaderTest {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d*)");
+    private static final String ETAG = "\"v1\"";
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private final byte[] mData = createData(1024 * 1024);
+    private MockWebServer mServer;
+    private RangeDownloader mDownloader;
+
+    /**
+     * Serves byte ranges. Optionally drops the first response of every segment (in the middle of the body).
+     */
+    private class RangeDispatcher extends Dispatcher {
+        final Set<Integer> droppedSegments = Collections.synchronizedSet(new HashSet<>());
+        final Set<Integer> failedSegments = Collections.synchronizedSet(new HashSet<>());
+        final AtomicLong maxRangeStart = new AtomicLong();
+        final AtomicInteger wholeRequests = new AtomicInteger();
+        volatile boolean dropOnce;
+        volatile boolean alwaysDrop;
+        volatile boolean rangeSupported = true;
+        volatile boolean empty;
+        volatile boolean unknownLength;
+        volatile int errorCodeOnce;
+        volatile boolean wholeFailures;
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            String range = request.getHeader("Range");
+
+            if (empty) {
+                return new MockResponse().setResponseCode(416).setHeader("Content-Range", "bytes */0");
+            }
+
+            if (!rangeSupported || range == null) {
+                int count = wholeRequests.incrementAndGet();
+
+                if (wholeFailures && count == 1) {
+                    return new MockResponse().setBody(new Buffer().write(mData)).setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+                }
+
+                if (wholeFailures && count == 2) {
+                    return new MockResponse().setResponseCode(503);
+                }
+
+                return new MockResponse().setBody(new Buffer().write(mData));
+            }
+
+            Matcher matcher = RANGE.matcher(range);
+            assertTrue(matcher.matches());
+            int start = Integer.parseInt(matcher.group(1));
+            int end = matcher.group(2).isEmpty() ? mData.length - 1 : Integer.parseInt(matcher.group(2));
+
+            if (start > 0) {
+                maxRangeStart.set(Math.max(maxRangeStart.get(), start));
+            }
+
+            MockResponse response = new MockResponse()
+                    .setResponseCode(206)
+                    .setHeader("ETag", ETAG)
+                    .setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, mData.length))
+                    .setBody(new Buffer().write(Arrays.copyOfRange(mData, start, end + 1)));
+
+            boolean isProbe = start == 0 && end == 0;
+
+            if (isProbe && unknownLength) {
+                return response.setHeader("Content-Range", "bytes 0-0/*");
+            }
+
+            if (!isProbe && errorCodeOnce != 0 && failedSegments.add(end)) {
+                return new MockResponse().setResponseCode(errorCodeOnce);
+            }
+
+            if (!isProbe && (alwaysDrop || (dropOnce && droppedSegments.add(end)))) {
+                response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+
+            return response;
+        }
+    }
+
+    private RangeDispatcher mDispatcher;
+
+    @Before
+    public void setUp() throws IOException {
+        mDispatcher = new RangeDispatcher();
+        mServer = new MockWebServer();
+        mServer.setDispatcher(mDispatcher);
+        mServer.start();
+        mDownloader = new RangeDownloader(new OkHttpClient());
+        mDownloader.setMinSegmentSize(64 * 1024);
+        mDownloader.setRetryDelayMs(0);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testSegmentsAreResumedAfterDrop() throws Exception {
+        mDispatcher.dropOnce = true;
+        File file = mTempDir.newFile();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong lastBytes = new AtomicLong();
+
+        mDownloader.download(createRequest(), file, sha256(mData), (bytesRead, contentLength, isDone) -> {
+            assertEquals(mData.length, contentLength);
+            lastBytes.set(bytesRead);
+            done.set(isDone);
+        });
+
+        assertArrayEquals(mData, Files.readAllBytes(file.toPath()));
+        assertTrue(done.get());
+        assertEquals(mData.length, lastBytes.get());
+        assertEquals(4, mDispatcher.droppedSegments.size());
+        assertFalse(new File(file.getPath() + ".state").exists());
+    }
+
+    @Test
+    public void testResumeAfterFailedDownload() throws Exception {
+        mDispatcher.alwaysDrop = true;
+        mDownloader.setSegmentCount(1);
+        mDownloader.setMaxRetries(0);
+        File file = mTempDir.newFile();
+
+        try {
+            mDownloader.download(createRequest(), file, null, null);
+            fail("Download should fail");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertTrue(new File(file.getPath() + ".state").exists());
+
+        mDispatcher.alwaysDrop = false;
+        mDownloader.download(createRequest(), file, null, null);
+
+        assertArrayEquals(mData, Files.readAllBytes(file.toPath()));
+        assertTrue(mDispatcher.maxRangeStart.get() > 0);
+    }
+
+    @Test
+    public void testNoRangeSupport() throws Exception {
+        mDispatcher.rangeSupported = false;
+        File file = mTempDir.newFile();
+
+        mDownloader.download(createRequest(), file, null, null);
+
+        assertArrayEquals(mData, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testTemporaryErrorsAreRetried() throws Exception {
+        for (int code : new int[] {503, 408, 429}) {
+            mDispatcher.errorCodeOnce = code;
+            mDispatcher.failedSegments.clear();
+            File file = mTempDir.newFile();
+
+            mDownloader.download(createRequest(), file, null, null);
+
+            assertArrayEquals(mData, Files.readAllBytes(file.toPath()));
+            assertEquals(4, mDispatcher.failedSegments.size());
+        }
+    }
+
+    @Test
+    public void testClientErrorIsNotRetried() throws Exception {
+        mDispatcher.errorCodeOnce = 404;
+        mDownloader.setSegmentCount(1);
+
+        try {
+            mDownloader.download(createRequest(), mTempDir.newFile(), null, null);
+            fail("Download should fail");
+        } catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("404"));
+        }
+
+        assertEquals(1, mDispatcher.failedSegments.size());
+        assertEquals(2, mServer.getRequestCount()); // probe + segment
+    }
+
+    @Test
+    public void testNoRangeSupportRetryChecksCode() throws Exception {
+        mDispatcher.rangeSupported = false;
+        mDispatcher.wholeFailures = true; // dropped body, then 503
+        File file = mTempDir.newFile();
+
+        mDownloader.download(createRequest(), file, null, null);
+
+        assertArrayEquals(mData, Files.readAllBytes(file.toPath()));
+        assertEquals(3, mDispatcher.wholeRequests.get());
+    }
+
+    @Test
+    public void testUnknownLength() throws Exception {
+        mDispatcher.unknownLength = true;
+        File file = mTempDir.newFile();
+
+        mDownloader.download(createRequest(), file, sha256(mData), null);
+
+        assertArrayEquals(mData, Files.readAllBytes(file.toPath()));
+        assertEquals(1, mDispatcher.wholeRequests.get());
+    }
+
+    @Test
+    public void testResumeStateIsReplacedAtomically() throws Exception {
+        mDispatcher.alwaysDrop = true;
+        mDownloader.setSegmentCount(1);
+        mDownloader.setMaxRetries(0);
+        File file = mTempDir.newFile();
+
+        try {
+            mDownloader.download(createRequest(), file, null, null);
+            fail("Download should fail");
+        } catch (IOException e) {
+            // expected
+        }
+
+        assertTrue(new File(file.getPath() + ".state").exists());
+        assertFalse(new File(file.getPath() + ".state.tmp").exists());
+    }
+
+    @Test
+    public void testEmptyFile() throws Exception {
+        mDispatcher.empty = true;
+        File file = mTempDir.newFile();
+        Files.write(file.toPath(), new byte[] {1, 2, 3}); // previous content
+        AtomicBoolean done = new AtomicBoolean();
+
+        mDownloader.download(createRequest(), file, null, (bytesRead, contentLength, isDone) -> done.set(isDone));
+
+        assertEquals(0, file.length());
+        assertTrue(done.get());
+    }
+
+    @Test
+    public void testChecksumMismatch() throws Exception {
+        File file = mTempDir.newFile();
+
+        try {
+            mDownloader.download(createRequest(), file, sha256(new byte[] {1}), null);
+            fail("Checksum should not match");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("SHA-256"));
+        }
+
+        assertFalse(file.exists());
+    }
+
+    private Request createRequest() {
+        return new Request.Builder().url(mServer.url("/app.apk")).build();
+    }
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        new Random(1).nextBytes(data);
+        return data;
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder result = new StringBuilder();
+
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            result.append(String.format("%02x", b));
+        }
+
+        return result.toString();
+    }
+}
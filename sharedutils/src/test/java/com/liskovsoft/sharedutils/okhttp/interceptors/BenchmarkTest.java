@@ -0,0 +1,60 @@
+package com.liskovsoft.sharedutils.okhttp.interceptors;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static com.liskovsoft.sharedutils.okhttp.interceptors.UnzippingInterceptorTest.TEXT;
+import static com.liskovsoft.sharedutils.okhttp.interceptors.UnzippingInterceptorTest.gzip;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Timings of the interceptors. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    /**
+     * 100 gzip responses through the pooled inflaters
+     */
+    @Test
+    public void testGzipResponses() throws IOException {
+        MockWebServer server = new MockWebServer();
+        server.start();
+
+        try {
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .addInterceptor(new UnzippingInterceptor())
+                    .build();
+            byte[] data = gzip(TEXT.getBytes());
+
+            for (int i = 0; i < 100; i++) {
+                server.enqueue(new MockResponse().setBody(new Buffer().write(data)).setHeader("Content-Encoding", "gzip"));
+            }
+
+            // Own Accept-Encoding disables okhttp's transparent gzip
+            Request request = new Request.Builder().url(server.url("/")).header("Accept-Encoding", "gzip, deflate, br").build();
+            long startTimeMs = System.currentTimeMillis();
+
+            for (int i = 0; i < 100; i++) {
+                try (Response response = client.newCall(request).execute()) {
+                    assertEquals(TEXT, response.body().string());
+                }
+            }
+
+            System.out.println("100 gzip responses: " + (System.currentTimeMillis() - startTimeMs) + "ms");
+        } finally {
+            server.shutdown();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.liskovsoft.sharedutils.okhttp.interceptors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+
+import okhttp3.Cache;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+public class CacheInterceptorTest {
+    @Rule
+    public TemporaryFolder mCacheDir = new TemporaryFolder();
+    private MockWebServer mServer;
+    private CacheInterceptor mInterceptor;
+    private OkHttpClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mInterceptor = new CacheInterceptor();
+        mClient = new OkHttpClient.Builder()
+                .cache(new Cache(mCacheDir.getRoot(), 1024 * 1024))
+                .addInterceptor(mInterceptor)
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mClient.cache().close();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testFreshResponseIsServedFromCache() throws IOException {
+        mServer.enqueue(new MockResponse().setBody("data").setHeader("Cache-Control", "max-age=60"));
+
+        assertEquals("data", get());
+        assertEquals("data", get());
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(1, mInterceptor.getMissCount());
+        assertEquals(1, mInterceptor.getHitCount());
+    }
+
+    @Test
+    public void testETagRevalidation() throws IOException, InterruptedException {
+        mServer.enqueue(new MockResponse().setBody("data").setHeader("Cache-Control", "no-cache").setHeader("ETag", "\"v1\""));
+        mServer.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+        assertEquals("data", get());
+        assertEquals("data", get());
+
+        mServer.takeRequest();
+        assertEquals("\"v1\"", mServer.takeRequest().getHeader("If-None-Match"));
+        assertEquals(1, mInterceptor.getRevalidationCount());
+    }
+
+    @Test
+    public void testMaxStaleWhenOffline() throws IOException {
+        mServer.enqueue(new MockResponse().setBody("data").setHeader("Cache-Control", "max-age=0").setHeader("ETag", "\"v1\""));
+
+        assertEquals("data", get());
+
+        mServer.shutdown();
+        mInterceptor.setMaxStale(60 * 60);
+
+        assertEquals("data", get());
+        assertEquals(1, mInterceptor.getHitCount());
+    }
+
+    private String get() throws IOException {
+        Request request = new Request.Builder().url(mServer.url("/")).build();
+
+        try (Response response = mClient.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.liskovsoft.sharedutils.okhttp.interceptors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class RateLimitInterceptorTest {
+    private MockWebServer mServer;
+    private FakeClock mClock;
+
+    private static class FakeClock implements RateLimitInterceptor.Clock {
+        private long mNowMs;
+        private final List<Long> mSleeps = new ArrayList<>();
+
+        @Override
+        public long nowMs() {
+            return mNowMs;
+        }
+
+        @Override
+        public void sleep(long ms) {
+            mSleeps.add(ms);
+            mNowMs += ms;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClock = new FakeClock();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testBurstThenSteadyRate() throws IOException {
+        RateLimitInterceptor interceptor = createInterceptor(5, 1);
+        OkHttpClient client = createClient(interceptor);
+
+        for (int i = 0; i < 7; i++) {
+            mServer.enqueue(new MockResponse().setBody("ok"));
+            assertEquals(200, get(client).code());
+        }
+
+        assertEquals(2, mClock.mSleeps.size());
+        assertEquals(1_000, (long) mClock.mSleeps.get(0));
+        assertEquals(1_000, (long) mClock.mSleeps.get(1));
+        assertEquals(2, interceptor.getWaitCount());
+        assertEquals(2_000, interceptor.getWaitTimeMs());
+    }
+
+    @Test
+    public void testRetryAfterIsHonored() throws IOException {
+        RateLimitInterceptor interceptor = createInterceptor(5, 10);
+        OkHttpClient client = createClient(interceptor);
+
+        mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "2"));
+        mServer.enqueue(new MockResponse().setBody("ok"));
+
+        try (Response response = client.newCall(createRequest()).execute()) {
+            assertEquals(200, response.code());
+            assertEquals("ok", response.body().string());
+        }
+
+        assertEquals(2, mServer.getRequestCount());
+        assertEquals(1, interceptor.getRetryCount());
+        assertEquals(1, interceptor.getThrottledCount());
+        assertTrue(mClock.mNowMs >= 2_000);
+        assertTrue(interceptor.getPermitsPerSecond(mServer.getHostName()) < 10);
+    }
+
+    @Test
+    public void testJitteredBackoffGivesUp() throws IOException {
+        RateLimitInterceptor interceptor = createInterceptor(5, 10);
+        OkHttpClient client = createClient(interceptor);
+
+        for (int i = 0; i < 4; i++) {
+            mServer.enqueue(new MockResponse().setResponseCode(429));
+        }
+
+        assertEquals(429, get(client).code());
+        assertEquals(4, mServer.getRequestCount());
+        assertEquals(3, interceptor.getRetryCount());
+        assertEquals(4, interceptor.getThrottledCount());
+    }
+
+    @Test
+    public void testLongRetryAfterDoesNotBlockHost() throws IOException {
+        RateLimitInterceptor interceptor = createInterceptor(5, 10);
+        OkHttpClient client = createClient(interceptor);
+
+        mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "3600"));
+        mServer.enqueue(new MockResponse().setBody("ok"));
+
+        assertEquals(429, get(client).code()); // not retried
+        assertEquals(200, get(client).code());
+        assertTrue(mClock.mNowMs <= 30_000); // next call waits for the backoff cap, not for an hour
+    }
+
+    @Test
+    public void testPostIsNotRetried() throws IOException {
+        RateLimitInterceptor interceptor = createInterceptor(5, 10);
+        OkHttpClient client = createClient(interceptor);
+
+        mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "1"));
+
+        Request request = new Request.Builder()
+                .url(mServer.url("/"))
+                .post(RequestBody.create(MediaType.parse("text/plain"), "data"))
+                .build();
+
+        try (Response response = client.newCall(request).execute()) {
+            assertEquals(429, response.code());
+        }
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(0, interceptor.getRetryCount());
+    }
+
+    @Test
+    public void testRateRecoversAfterSuccess() throws IOException {
+        RateLimitInterceptor interceptor = createInterceptor(5, 10);
+        OkHttpClient client = createClient(interceptor);
+        String host = mServer.getHostName();
+
+        mServer.enqueue(new MockResponse().setResponseCode(429).setHeader("Retry-After", "0"));
+        for (int i = 0; i < 10; i++) {
+            mServer.enqueue(new MockResponse().setBody("ok"));
+        }
+
+        get(client);
+        double throttledRate = interceptor.getPermitsPerSecond(host);
+
+        for (int i = 0; i < 9; i++) {
+            get(client);
+        }
+
+        assertTrue(throttledRate < 10);
+        assertEquals(10, interceptor.getPermitsPerSecond(host), 0.001);
+    }
+
+    private RateLimitInterceptor createInterceptor(int burstSize, double permitsPerSecond) {
+        return new RateLimitInterceptor(burstSize, permitsPerSecond, mClock, new Random(1));
+    }
+
+    private static OkHttpClient createClient(RateLimitInterceptor interceptor) {
+        return new OkHttpClient.Builder().addInterceptor(interceptor).build();
+    }
+
+    private Request createRequest() {
+        return new Request.Builder().url(mServer.url("/")).build();
+    }
+
+    private Response get(OkHttpClient client) throws IOException {
+        try (Response response = client.newCall(createRequest()).execute()) {
+            return response;
+        }
+    }
+}
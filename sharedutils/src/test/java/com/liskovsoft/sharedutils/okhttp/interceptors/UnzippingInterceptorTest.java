@@ -0,0 +1,158 @@
+package com.liskovsoft.sharedutils.okhttp.interceptors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UnzippingInterceptorTest {
+    static final String TEXT = createText();
+    private MockWebServer mServer;
+    private OkHttpClient mClient;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new MockWebServer();
+        mServer.start();
+        mClient = new OkHttpClient.Builder()
+                .addInterceptor(new UnzippingInterceptor())
+                .build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        mServer.shutdown();
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        mServer.enqueue(new MockResponse().setBody(toBuffer(gzip(TEXT.getBytes()))).setHeader("Content-Encoding", "gzip"));
+
+        try (Response response = get()) {
+            assertNull(response.header("Content-Encoding"));
+            assertNull(response.header("Content-Length"));
+            assertEquals(TEXT, response.body().string());
+        }
+    }
+
+    @Test
+    public void testRawAndZlibDeflate() throws IOException {
+        mServer.enqueue(new MockResponse().setBody(toBuffer(deflate(TEXT.getBytes(), true))).setHeader("Content-Encoding", "deflate"));
+        mServer.enqueue(new MockResponse().setBody(toBuffer(deflate(TEXT.getBytes(), false))).setHeader("Content-Encoding", "deflate"));
+
+        assertEquals(TEXT, getString());
+        assertEquals(TEXT, getString());
+    }
+
+    @Test
+    public void testMultipleCaseInsensitiveEncodings() throws IOException {
+        byte[] data = gzip(deflate(TEXT.getBytes(), false));
+        mServer.enqueue(new MockResponse().setBody(toBuffer(data)).setHeader("Content-Encoding", "Deflate, GZIP"));
+
+        assertEquals(TEXT, getString());
+    }
+
+    @Test
+    public void testUnsupportedEncodingIsKept() throws IOException {
+        mServer.enqueue(new MockResponse().setBody("raw").setHeader("Content-Encoding", "zstd"));
+
+        try (Response response = get()) {
+            assertEquals("zstd", response.header("Content-Encoding"));
+            assertEquals("raw", response.body().string());
+        }
+    }
+
+    @Test
+    public void testHeadKeepsContentLength() throws IOException {
+        mServer.enqueue(new MockResponse().setHeader("Content-Encoding", "gzip").setHeader("Content-Length", "100"));
+
+        Request request = new Request.Builder().url(mServer.url("/")).head().build();
+
+        try (Response response = mClient.newCall(request).execute()) {
+            assertEquals("gzip", response.header("Content-Encoding"));
+            assertEquals("100", response.header("Content-Length"));
+        }
+    }
+
+    @Test
+    public void testInflaterIsReused() throws IOException {
+        byte[] data = gzip(TEXT.getBytes());
+
+        for (int i = 0; i < 100; i++) {
+            mServer.enqueue(new MockResponse().setBody(toBuffer(data)).setHeader("Content-Encoding", "gzip"));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals(TEXT, getString());
+        }
+
+        int poolSize = PooledInflaterSource.getPoolSize();
+        assertTrue(poolSize > 0 && poolSize <= 4);
+    }
+
+    private Response get() throws IOException {
+        // Own Accept-Encoding disables okhttp's transparent gzip
+        Request request = new Request.Builder().url(mServer.url("/")).header("Accept-Encoding", "gzip, deflate, br").build();
+
+        return mClient.newCall(request).execute();
+    }
+
+    private String getString() throws IOException {
+        try (Response response = get()) {
+            return response.body().string();
+        }
+    }
+
+    private static Buffer toBuffer(byte[] data) {
+        return new Buffer().write(data);
+    }
+
+    static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream out = new GZIPOutputStream(result)) {
+            out.write(data);
+        }
+
+        return result.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data, boolean nowrap) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        try (DeflaterOutputStream out = new DeflaterOutputStream(result, new Deflater(Deflater.DEFAULT_COMPRESSION, nowrap))) {
+            out.write(data);
+        }
+
+        return result.toByteArray();
+    }
+
+    private static String createText() {
+        StringBuilder builder = new StringBuilder();
+
+        for (int i = 0; i < 5_000; i++) {
+            builder.append("line ").append(i).append('\n');
+        }
+
+        return builder.toString();
+    }
+}
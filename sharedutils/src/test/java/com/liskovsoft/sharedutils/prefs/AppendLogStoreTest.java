@@ -0,0 +1,238 @@
+package com.liskovsoft.sharedutils.prefs;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class AppendLogStoreTest {
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = new File(mTempDir.newFolder(), "prefs.log");
+    }
+
+    @Test
+    public void testPutGetReopen() {
+        AppendLogStore store = new AppendLogStore(mFile);
+        assertFalse(store.contains("key"));
+
+        store.put("key", "value1");
+        store.put("key", "значение2");
+        store.put("removed", "value");
+        store.put("removed", null);
+
+        assertEquals("значение2", store.get("key"));
+
+        AppendLogStore reopened = new AppendLogStore(mFile);
+        assertEquals("значение2", reopened.get("key"));
+        assertTrue(reopened.contains("removed"));
+        assertNull(reopened.get("removed"));
+    }
+
+    @Test
+    public void testUnchangedValueNotWritten() {
+        AppendLogStore store = new AppendLogStore(mFile);
+        store.put("key", "value");
+        long size = mFile.length();
+
+        store.put("key", "value");
+
+        assertEquals(size, mFile.length());
+    }
+
+    @Test
+    public void testTornRecordDropped() throws IOException {
+        AppendLogStore store = new AppendLogStore(mFile);
+        store.put("key1", "value1");
+        store.put("key2", "value2");
+        long validSize = mFile.length();
+
+        // Crash in the middle of the write
+        try (FileOutputStream out = new FileOutputStream(mFile, true)) {
+            out.write(new byte[] {0, 0, 0, 100, 1, 0, 3, 'k'});
+        }
+
+        AppendLogStore reopened = new AppendLogStore(mFile);
+        assertEquals("value2", reopened.get("key2"));
+        assertEquals(validSize, mFile.length());
+
+        reopened.put("key3", "value3");
+        assertEquals("value3", new AppendLogStore(mFile).get("key3"));
+    }
+
+    @Test
+    public void testCorruptedRecordDropped() throws IOException {
+        AppendLogStore store = new AppendLogStore(mFile);
+        store.put("key1", "value1");
+        long validSize = mFile.length();
+        store.put("key2", "value2");
+
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.seek(mFile.length() - 6);
+            file.write('X');
+        }
+
+        AppendLogStore reopened = new AppendLogStore(mFile);
+        assertEquals("value1", reopened.get("key1"));
+        assertFalse(reopened.contains("key2"));
+        assertEquals(validSize, mFile.length());
+    }
+
+    @Test
+    public void testFailedWriteInTheMiddle() {
+        final AtomicInteger failAt = new AtomicInteger(3);
+        AppendLogStore store = new AppendLogStore(mFile) {
+            @Override
+            void writeRecord(byte[] record) throws IOException {
+                if (failAt.decrementAndGet() == 0) {
+                    // Disk is full after a half of the record
+                    super.writeRecord(Arrays.copyOf(record, record.length / 2));
+                    throw new IOException("No space left on device");
+                }
+
+                super.writeRecord(record);
+            }
+        };
+
+        assertTrue(store.put("key1", "value1"));
+        assertTrue(store.put("key2", "value2"));
+        assertFalse(store.put("key1", "changed"));
+
+        assertEquals("value1", store.get("key1")); // only saved values are visible
+
+        assertTrue(store.put("key3", "value3"));
+        assertEquals(mFile.length(), store.getFileSize());
+
+        AppendLogStore reopened = new AppendLogStore(mFile);
+        assertEquals("value1", reopened.get("key1"));
+        assertEquals("value2", reopened.get("key2"));
+        assertEquals("value3", reopened.get("key3"));
+    }
+
+    @Test
+    public void testCompaction() {
+        AppendLogStore store = new AppendLogStore(mFile);
+        String blob = createBlob(50_000);
+
+        for (int i = 0; i < 100; i++) {
+            store.put("blob", blob + i);
+            store.put("small" + (i % 3), "value" + i);
+        }
+
+        assertTrue(mFile.length() < 8 * blob.length()); // 100 blobs were written
+        assertEquals(mFile.length(), store.getFileSize());
+        assertFalse(new File(mFile.getPath() + ".tmp").exists());
+
+        AppendLogStore reopened = new AppendLogStore(mFile);
+        assertEquals(blob + 99, reopened.get("blob"));
+        assertEquals("value99", reopened.get("small0"));
+        assertEquals("value98", reopened.get("small2"));
+    }
+
+    @Test
+    public void testCompactionDropsRemovedKeys() {
+        AppendLogStore store = new AppendLogStore(mFile);
+        String blob = createBlob(50_000);
+        store.put("kept", "value");
+
+        for (int i = 0; i < 10; i++) {
+            store.put("blob" + i, blob);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            store.put("blob" + i, null);
+        }
+
+        // Compacted when a half of the blobs were removed
+        assertFalse(store.contains("blob0"));
+        assertEquals("value", store.get("kept"));
+        assertEquals(mFile.length(), store.getFileSize());
+
+        AppendLogStore reopened = new AppendLogStore(mFile);
+        assertFalse(reopened.contains("blob0"));
+        assertNull(reopened.get("blob9"));
+        assertEquals("value", reopened.get("kept"));
+    }
+
+    @Test
+    public void testConcurrentAccess() throws InterruptedException {
+        AppendLogStore store = new AppendLogStore(mFile);
+        AtomicInteger errors = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            String key = "key" + t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 200; i++) {
+                    store.put(key, "value" + i);
+
+                    if (!("value" + i).equals(store.get(key))) {
+                        errors.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(0, errors.get());
+
+        AppendLogStore reopened = new AppendLogStore(mFile);
+
+        for (int t = 0; t < 4; t++) {
+            assertEquals("value199", reopened.get("key" + t));
+        }
+    }
+
+    /**
+     * Startup path: account blob read several times
+     */
+    @Test
+    public void testBigValue() {
+        String blob = createBlob(1_000_000);
+        new AppendLogStore(mFile).put("media_service_data", blob);
+
+        AppendLogStore store = new AppendLogStore(mFile);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(blob, store.get("media_service_data"));
+        }
+    }
+
+    static String createBlob(int length) {
+        StringBuilder result = new StringBuilder(length);
+
+        while (result.length() < length) {
+            result.append("{\"token\":\"abcdef0123456789\",\"expires\":").append(result.length()).append('}');
+        }
+
+        return result.toString();
+    }
+}
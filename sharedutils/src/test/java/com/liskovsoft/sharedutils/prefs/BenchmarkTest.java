@@ -0,0 +1,58 @@
+package com.liskovsoft.sharedutils.prefs;
+
+import com.liskovsoft.sharedutils.helpers.FileHelpers;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+
+import static com.liskovsoft.sharedutils.prefs.AppendLogStoreTest.createBlob;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Timings of the prefs storage. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+
+    /**
+     * Startup path: account blob read several times.<br/>
+     * Before: file is read and decoded on every call. After: decoded once.
+     */
+    @Test
+    public void testReadCost() throws IOException {
+        String blob = createBlob(1_000_000);
+        File plainFile = mTempDir.newFile("media_service_data");
+        File logFile = mTempDir.newFile("prefs.log");
+        FileHelpers.stringToFile(blob, plainFile);
+        new AppendLogStore(logFile).put("media_service_data", blob);
+
+        int iterations = 50;
+        long startTimeNs = System.nanoTime();
+
+        for (int i = 0; i < iterations; i++) {
+            assertEquals(blob.length(), FileHelpers.getFileContents(plainFile).length());
+        }
+
+        long beforeNs = System.nanoTime() - startTimeNs;
+        startTimeNs = System.nanoTime();
+
+        AppendLogStore store = new AppendLogStore(logFile);
+
+        for (int i = 0; i < iterations; i++) {
+            assertEquals(blob.length(), store.get("media_service_data").length());
+        }
+
+        long afterNs = System.nanoTime() - startTimeNs;
+
+        System.out.printf("Read 1 MB data %s times: before %s ms, after %s ms%n", iterations, beforeNs / 1_000_000, afterNs / 1_000_000);
+    }
+}
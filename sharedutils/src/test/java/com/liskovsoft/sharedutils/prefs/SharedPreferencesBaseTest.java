@@ -0,0 +1,313 @@
+package com.liskovsoft.sharedutils.prefs;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.content.SharedPreferences;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class SharedPreferencesBaseTest {
+    private static final long DEBOUNCE_MS = 500;
+    @Rule
+    public TemporaryFolder mTempDir = new TemporaryFolder();
+    private CountingPreferences mPrefs;
+    private SharedPreferencesBase mBase;
+
+    /**
+     * In-memory prefs. Every apply/commit is a disk write in the real implementation.
+     */
+    private static class CountingPreferences implements SharedPreferences {
+        final Map<String, Object> values = new HashMap<>();
+        int commitCount;
+
+        @Override
+        public Map<String, ?> getAll() {
+            return values;
+        }
+
+        @Override
+        public String getString(String key, String defValue) {
+            return values.containsKey(key) ? (String) values.get(key) : defValue;
+        }
+
+        @Override
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return values.containsKey(key) ? (Integer) values.get(key) : defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return values.containsKey(key) ? (Long) values.get(key) : defValue;
+        }
+
+        @Override
+        public float getFloat(String key, float defValue) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return values.containsKey(key) ? (Boolean) values.get(key) : defValue;
+        }
+
+        @Override
+        public boolean contains(String key) {
+            return values.containsKey(key);
+        }
+
+        @Override
+        public Editor edit() {
+            return new CountingEditor();
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        private class CountingEditor implements Editor {
+            private final Map<String, Object> mChanges = new LinkedHashMap<>();
+            private boolean mClear;
+
+            @Override
+            public Editor putString(String key, String value) {
+                mChanges.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putStringSet(String key, Set<String> values) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public Editor putInt(String key, int value) {
+                mChanges.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putLong(String key, long value) {
+                mChanges.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putFloat(String key, float value) {
+                mChanges.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                mChanges.put(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                mChanges.put(key, null);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                mClear = true;
+                return this;
+            }
+
+            @Override
+            public boolean commit() {
+                apply();
+                return true;
+            }
+
+            @Override
+            public void apply() {
+                if (mClear) {
+                    values.clear();
+                }
+
+                for (Map.Entry<String, Object> entry : mChanges.entrySet()) {
+                    if (entry.getValue() == null) {
+                        values.remove(entry.getKey());
+                    } else {
+                        values.put(entry.getKey(), entry.getValue());
+                    }
+                }
+
+                commitCount++;
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        mPrefs = new CountingPreferences();
+        Context context = new ContextWrapper(RuntimeEnvironment.application) {
+            @Override
+            public SharedPreferences getSharedPreferences(String name, int mode) {
+                return mPrefs;
+            }
+
+            @Override
+            public Context getApplicationContext() {
+                return this;
+            }
+
+            @Override
+            public File getFilesDir() {
+                return mTempDir.getRoot();
+            }
+        };
+        mBase = new SharedPreferencesBase(context, "test_prefs") {
+            @Override
+            protected String getPrefsDir() {
+                return "test_data";
+            }
+        };
+    }
+
+    @Test
+    public void testImmediateWrites() {
+        mBase.putInt("int", 1);
+        mBase.putString("string", "val");
+
+        assertEquals(2, mPrefs.commitCount);
+        assertEquals(1, mBase.getInt("int", 0));
+    }
+
+    @Test
+    public void testBatch() {
+        mBase.edit(batch -> {
+            for (int i = 0; i < 30; i++) {
+                batch.putInt("key" + i, i);
+            }
+
+            batch.putBoolean("bool", true)
+                    .putLong("long", 5L)
+                    .putString("string", null);
+        });
+
+        assertEquals(1, mPrefs.commitCount);
+        assertEquals(29, mBase.getInt("key29", 0));
+        assertEquals(5L, mBase.getLong("long", 0));
+        assertFalse(mPrefs.contains("string"));
+    }
+
+    @Test
+    public void testDebounce() {
+        mBase.setDebounceMs(DEBOUNCE_MS);
+
+        for (int i = 0; i < 50; i++) {
+            mBase.putInt("key", i);
+            mBase.putBoolean("bool" + (i % 5), true);
+        }
+
+        mBase.edit(batch -> batch.putString("string", "val"));
+
+        assertEquals(0, mPrefs.commitCount);
+        // Pending changes are visible before the write
+        assertEquals(49, mBase.getInt("key", 0));
+        assertEquals("val", mBase.getString("string", null));
+
+        ShadowLooper.idleMainLooper(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, mPrefs.commitCount);
+        assertEquals(49, mPrefs.getInt("key", 0));
+
+        mBase.putString("string", null);
+        assertEquals("def", mBase.getString("string", "def"));
+
+        ShadowLooper.idleMainLooper(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, mPrefs.commitCount);
+        assertFalse(mPrefs.contains("string"));
+    }
+
+    @Test
+    public void testFlush() {
+        mBase.setDebounceMs(DEBOUNCE_MS);
+
+        mBase.putInt("key", 1);
+        mBase.putInt("key", 2);
+        mBase.flush(); // e.g. onPause
+
+        assertEquals(1, mPrefs.commitCount);
+        assertEquals(2, mPrefs.getInt("key", 0));
+
+        ShadowLooper.idleMainLooper(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, mPrefs.commitCount);
+
+        mBase.putInt("key", 3);
+        mBase.setDebounceMs(0);
+
+        assertEquals(2, mPrefs.commitCount);
+        assertEquals(3, mPrefs.getInt("key", 0));
+    }
+
+    @Test
+    public void testMissingDataIsNotWritten() {
+        File log = new File(mTempDir.getRoot(), "test_data.log");
+
+        assertNull(mBase.getData("missing"));
+        assertFalse(log.exists());
+
+        mPrefs.values.put("legacy", "value"); // migrated from prefs
+        assertEquals("value", mBase.getData("legacy"));
+        assertFalse(mPrefs.contains("legacy"));
+        assertEquals("value", mBase.getData("legacy"));
+    }
+
+    /**
+     * The store drops removed keys on compaction. The old copies shouldn't be migrated after that.
+     */
+    @Test
+    public void testRemovedDataClearsOldCopies() throws IOException {
+        File legacyFile = new File(mTempDir.getRoot(), "test_data/file");
+        legacyFile.getParentFile().mkdirs();
+
+        try (FileOutputStream out = new FileOutputStream(legacyFile)) {
+            out.write("value".getBytes());
+        }
+
+        mPrefs.values.put("pref", "value");
+
+        mBase.setData("file", null);
+        mBase.setData("pref", null);
+
+        assertFalse(legacyFile.exists());
+        assertFalse(mPrefs.contains("pref"));
+        assertNull(mBase.getData("file"));
+        assertNull(mBase.getData("pref"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.liskovsoft.sharedutils.querystringparser;
+
+import com.liskovsoft.sharedutils.querystringparser.CombinedQueryStringTest.TwoParserQueryString;
+import com.liskovsoft.sharedutils.querystringparser.PathQueryStringTest.RegexPathQueryString;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import static com.liskovsoft.sharedutils.querystringparser.UrlEncodedQueryStringBaseTest.createSignedQuery;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Timings of the query string parsers against the previous implementations. Kept out of the regular run: remove {@link Ignore} to use.
+ */
+@Ignore("Benchmark, run manually")
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkTest {
+    /**
+     * Regex and tokenizer versions on a 2 KB url: get, set and toString
+     */
+    @Test
+    public void testPathQueryString() {
+        StringBuilder url = new StringBuilder("https://r4---sn-4g5ednsz.googlevideo.com/videoplayback");
+
+        for (int i = 0; url.length() < 2048; i++) {
+            url.append("/param").append(i).append('/').append(Integer.toHexString(i * 7919)).append("abcdefghijklmnop");
+        }
+
+        String testUrl = url.toString();
+        int iterations = 10_000;
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                RegexPathQueryString reference = new RegexPathQueryString(testUrl);
+                reference.get("param5");
+                reference.get("param40");
+                reference.set("param10", "value");
+                reference.set("sq", "5");
+                reference.toString();
+            }
+
+            long regexMs = (System.nanoTime() - startTimeNs) / 1_000_000;
+            startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                PathQueryString queryString = PathQueryString.parse(testUrl);
+                queryString.get("param5");
+                queryString.get("param40");
+                queryString.set("param10", "value");
+                queryString.set("sq", "5");
+                queryString.toString();
+            }
+
+            long tokenizerMs = (System.nanoTime() - startTimeNs) / 1_000_000;
+
+            if (pass == 1) {
+                System.out.printf("PathQueryString %s ops on %s chars: regex %s ms, tokenizer %s ms%n", iterations, testUrl.length(), regexMs, tokenizerMs);
+            }
+        }
+    }
+
+    /**
+     * Parses 1,000 long signed urls (what is done per second in the worst case) and reads/updates a couple of params
+     */
+    @Test
+    public void testLazyParsing() {
+        String[] queries = new String[1_000];
+        Random random = new Random(1);
+
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = createSignedQuery(random);
+        }
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long eagerBytes = getAllocatedBytes();
+            long startTimeNs = System.nanoTime();
+            useQueries(queries, false);
+            long eagerMs = (System.nanoTime() - startTimeNs) / 1_000_000;
+            eagerBytes = getAllocatedBytes() - eagerBytes;
+
+            long lazyBytes = getAllocatedBytes();
+            startTimeNs = System.nanoTime();
+            useQueries(queries, true);
+            long lazyMs = (System.nanoTime() - startTimeNs) / 1_000_000;
+            lazyBytes = getAllocatedBytes() - lazyBytes;
+
+            if (pass == 1) {
+                System.out.printf("UrlEncodedQueryStringBase %s queries: eager %s KB %s ms, lazy %s KB %s ms%n",
+                        queries.length, eagerBytes / 1024, eagerMs, lazyBytes / 1024, lazyMs);
+            }
+        }
+    }
+
+    /**
+     * Typical stream url handling: parse, read a couple of params, update one, build the url
+     */
+    @Test
+    public void testCombinedQueryString() {
+        StringBuilder url = new StringBuilder("https://r4---sn-4g5ednsz.googlevideo.com/videoplayback?expire=1612345678&itag=137");
+
+        for (int i = 0; url.length() < 2048; i++) {
+            url.append("&param").append(i).append('=').append(Integer.toHexString(i * 7919)).append("abcdefghijklmnop");
+        }
+
+        String testUrl = url.toString();
+        int iterations = 10_000;
+
+        for (int pass = 0; pass < 2; pass++) { // first pass is warm-up
+            long startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                TwoParserQueryString reference = new TwoParserQueryString(testUrl);
+                reference.get("itag");
+                reference.get("param40");
+                reference.set("range", "0-1000");
+                reference.toString();
+            }
+
+            long twoParsersMs = (System.nanoTime() - startTimeNs) / 1_000_000;
+            startTimeNs = System.nanoTime();
+
+            for (int i = 0; i < iterations; i++) {
+                UrlQueryString queryString = UrlQueryStringFactory.parse(testUrl);
+                queryString.get("itag");
+                queryString.get("param40");
+                queryString.set("range", "0-1000");
+                queryString.toString();
+            }
+
+            long combinedMs = (System.nanoTime() - startTimeNs) / 1_000_000;
+
+            if (pass == 1) {
+                System.out.printf("CombinedQueryString %s ops on %s chars: two parsers %s ms, single parse %s ms%n",
+                        iterations, testUrl.length(), twoParsersMs, combinedMs);
+            }
+        }
+    }
+
+    private static void useQueries(String[] queries, boolean lazy) {
+        for (String query : queries) {
+            UrlEncodedQueryStringBase queryString = UrlEncodedQueryStringBase.parse(query, lazy);
+            assertEquals("137", queryString.get("itag"));
+            queryString.get("sig");
+            queryString.set("range", "0-100000");
+            queryString.toString();
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,161 @@
+package com.liskovsoft.sharedutils.querystringparser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class CombinedQueryStringTest {
+    private static final String[] URLS = {
+            "https://www.youtube.com/results?search_query=Hello+World",
+            "https://www.youtube.com/watch?v=JsY3_Va6uqI&t=10",
+            "https://r4---sn-4g5ednsz.googlevideo.com/videoplayback/expire/1612345678/ei/abcDEF/itag/137/dur/212.040",
+            "https://r4---sn-4g5ednsz.googlevideo.com/videoplayback/expire/1612345678/itag/137?range=0-1000&rn=1",
+            "search_query=Hello+World",
+            "https://www.youtube.com/",
+            "just text",
+    };
+    private static final String[] KEYS = {"search_query", "v", "t", "expire", "itag", "dur", "range", "rn", "missing"};
+
+    /**
+     * Previous implementation: two independent parsers, calls fan out over both.
+     */
+    static class TwoParserQueryString {
+        private final List<UrlQueryString> mQueryStrings = new ArrayList<>();
+
+        TwoParserQueryString(String url) {
+            UrlQueryString urlQueryString = UrlEncodedQueryString.parse(url);
+
+            if (urlQueryString.isValid()) {
+                mQueryStrings.add(urlQueryString);
+            }
+
+            UrlQueryString pathQueryString = PathQueryString.parse(url);
+
+            if (pathQueryString.isValid()) {
+                mQueryStrings.add(pathQueryString);
+            }
+
+            if (mQueryStrings.isEmpty()) {
+                mQueryStrings.add(NullQueryString.parse(url));
+            }
+        }
+
+        String get(String key) {
+            for (UrlQueryString queryString : mQueryStrings) {
+                String value = queryString.get(key);
+                if (value != null) {
+                    return value;
+                }
+            }
+
+            return null;
+        }
+
+        void set(String key, String value) {
+            for (UrlQueryString queryString : mQueryStrings) {
+                queryString.set(key, value);
+            }
+        }
+
+        boolean isValid() {
+            return mQueryStrings.get(0).isValid();
+        }
+
+        @Override
+        public String toString() {
+            return mQueryStrings.get(0).toString();
+        }
+    }
+
+    @Test
+    public void testSameResultsAsTwoParsers() {
+        for (String url : URLS) {
+            UrlQueryString queryString = CombinedQueryString.parse(url);
+            TwoParserQueryString reference = new TwoParserQueryString(url);
+
+            assertEquals(url, reference.isValid(), queryString.isValid());
+            assertEquals(url, reference.toString(), queryString.toString());
+
+            for (String key : KEYS) {
+                assertEquals(reference.get(key), queryString.get(key));
+            }
+
+            // New key goes to the main representation
+            queryString.set("sq", 5);
+            reference.set("sq", "5");
+            assertEquals(url, reference.toString(), queryString.toString());
+        }
+    }
+
+    @Test
+    public void testModifyPathAndQuery() {
+        UrlQueryString queryString = CombinedQueryString.parse(URLS[3]);
+
+        queryString.set("itag", 22);
+        queryString.set("range", "0-2000");
+        queryString.remove("rn");
+
+        assertEquals("https://r4---sn-4g5ednsz.googlevideo.com/videoplayback/expire/1612345678/itag/22?range=0-2000", queryString.toString());
+        assertEquals(22, queryString.getFloat("itag"), 0);
+        assertFalse(queryString.contains("rn"));
+    }
+
+    @Test
+    public void testInvalid() {
+        UrlQueryString queryString = CombinedQueryString.parse("just text");
+
+        queryString.set("key", "value");
+
+        assertFalse(queryString.isValid());
+        assertTrue(queryString.isEmpty());
+        assertNull(queryString.get("key"));
+        assertEquals("just text", queryString.toString());
+        assertNull(CombinedQueryString.parse(null).toString());
+    }
+
+    @Test
+    public void testHashInQuery() {
+        String url = "https://m.youtube.com/watch?v=JsY3_Va6uqI&feature=emb_title###&Urj7svfj=&Rkj2f3jk=&Czj1i9k6=";
+        UrlQueryString queryString = CombinedQueryString.parse(url);
+        TwoParserQueryString reference = new TwoParserQueryString(url);
+
+        assertEquals("JsY3_Va6uqI", queryString.get("v"));
+        assertEquals("emb_title", queryString.get("feature"));
+        assertTrue(queryString.contains("Urj7svfj"));
+        assertTrue(queryString.contains("Czj1i9k6"));
+        assertEquals(reference.toString(), queryString.toString());
+    }
+
+    /**
+     * Typical stream url handling: parse, read a couple of params, update one, build the url
+     */
+    @Test
+    public void testLongUrl() {
+        StringBuilder url = new StringBuilder("https://r4---sn-4g5ednsz.googlevideo.com/videoplayback?expire=1612345678&itag=137");
+
+        for (int i = 0; url.length() < 2048; i++) {
+            url.append("&param").append(i).append('=').append(Integer.toHexString(i * 7919)).append("abcdefghijklmnop");
+        }
+
+        String testUrl = url.toString();
+        TwoParserQueryString reference = new TwoParserQueryString(testUrl);
+        UrlQueryString queryString = UrlQueryStringFactory.parse(testUrl);
+
+        assertEquals(reference.get("itag"), queryString.get("itag"));
+        assertEquals(reference.get("param40"), queryString.get("param40"));
+
+        reference.set("range", "0-1000");
+        queryString.set("range", "0-1000");
+
+        assertEquals(reference.toString(), queryString.toString());
+    }
+}
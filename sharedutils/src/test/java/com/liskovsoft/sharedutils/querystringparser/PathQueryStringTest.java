@@ -0,0 +1,149 @@
+package com.liskovsoft.sharedutils.querystringparser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class PathQueryStringTest {
+    private static final String TEST_URL = "https://r4---sn-4g5ednsz.googlevideo.com/videoplayback/expire/1612345678/ei/abcDEF/ip/1.2.3.4/itag/137/" +
+            "mime/video%2Fmp4/clen/123456/dur/212.040?range=0-1000";
+    private static final String[] KEYS = {"expire", "ei", "ip", "itag", "mime", "clen", "dur", "sq", "rn", "137"};
+
+    /**
+     * Previous regex based implementation. Used as a reference.
+     */
+    static class RegexPathQueryString {
+        private String mUrl;
+
+        RegexPathQueryString(String url) {
+            mUrl = url.replaceFirst("\\?.*", "");
+        }
+
+        String get(String key) {
+            Matcher matcher = Pattern.compile(String.format("\\/%s\\/([^\\/]*)", key)).matcher(mUrl);
+            return matcher.find() ? matcher.group(1) : null;
+        }
+
+        void set(String key, String value) {
+            String originUrl = mUrl;
+            mUrl = mUrl.replaceAll(String.format("\\/%s\\/[^\\/]*", key), String.format("\\/%s\\/%s", key, value));
+
+            if (mUrl.equals(originUrl) && get(key) == null) {
+                mUrl += String.format(mUrl.endsWith("/") ? "%s/%s" : "/%s/%s", key, value);
+            }
+        }
+
+        void remove(String key) {
+            mUrl = mUrl.replaceAll(String.format("\\/%s\\/[^\\/]*", key), "");
+        }
+
+        @Override
+        public String toString() {
+            return mUrl;
+        }
+    }
+
+    @Test
+    public void testParse() {
+        PathQueryString queryString = PathQueryString.parse(TEST_URL);
+
+        assertTrue(queryString.isValid());
+        assertEquals("1612345678", queryString.get("expire"));
+        assertEquals("212.040", queryString.get("dur"));
+        assertEquals(212.04f, queryString.getFloat("dur"), 0.001);
+        assertNull(queryString.get("range"));
+        assertNull(queryString.get("https:"));
+        assertEquals(TEST_URL.substring(0, TEST_URL.indexOf('?')), queryString.toString());
+    }
+
+    @Test
+    public void testModify() {
+        PathQueryString queryString = PathQueryString.parse("http://myurl.com/key1/value1/");
+
+        queryString.set("key2", "value2");
+        assertEquals("http://myurl.com/key1/value1/key2/value2", queryString.toString());
+
+        queryString.set("key1", 10);
+        assertEquals("http://myurl.com/key1/10/key2/value2", queryString.toString());
+
+        queryString.remove("key1");
+        assertEquals("http://myurl.com/key2/value2", queryString.toString());
+        assertFalse(queryString.contains("key1"));
+    }
+
+    @Test
+    public void testInvalid() {
+        assertFalse(PathQueryString.parse("http://myurl.com/").isValid());
+        assertFalse(PathQueryString.parse("key=value").isValid());
+        assertFalse(PathQueryString.parse(null).isValid());
+        assertNull(PathQueryString.parse(null).get("key"));
+    }
+
+    @Test
+    public void testSameResultsAsRegex() {
+        Random random = new Random(1);
+
+        for (int round = 0; round < 100; round++) {
+            PathQueryString queryString = PathQueryString.parse(TEST_URL);
+            RegexPathQueryString reference = new RegexPathQueryString(TEST_URL);
+
+            for (int i = 0; i < 50; i++) {
+                String key = KEYS[random.nextInt(KEYS.length)];
+                String value = KEYS[random.nextInt(KEYS.length)]; // values may turn into keys
+
+                switch (random.nextInt(3)) {
+                    case 0:
+                        queryString.set(key, value);
+                        reference.set(key, value);
+                        break;
+                    case 1:
+                        queryString.remove(key);
+                        reference.remove(key);
+                        break;
+                }
+
+                for (String name : KEYS) {
+                    assertEquals(reference.get(name), queryString.get(name));
+                }
+
+                assertEquals(reference.toString(), queryString.toString());
+            }
+        }
+    }
+
+    /**
+     * 2 KB url: get, set and toString
+     */
+    @Test
+    public void testLongUrl() {
+        StringBuilder url = new StringBuilder("https://r4---sn-4g5ednsz.googlevideo.com/videoplayback");
+
+        for (int i = 0; url.length() < 2048; i++) {
+            url.append("/param").append(i).append('/').append(Integer.toHexString(i * 7919)).append("abcdefghijklmnop");
+        }
+
+        String testUrl = url.toString();
+        RegexPathQueryString reference = new RegexPathQueryString(testUrl);
+        PathQueryString queryString = PathQueryString.parse(testUrl);
+
+        assertEquals(reference.get("param5"), queryString.get("param5"));
+        assertEquals(reference.get("param40"), queryString.get("param40"));
+
+        reference.set("param10", "value");
+        reference.set("sq", "5");
+        queryString.set("param10", "value");
+        queryString.set("sq", "5");
+
+        assertEquals(reference.toString(), queryString.toString());
+    }
+}
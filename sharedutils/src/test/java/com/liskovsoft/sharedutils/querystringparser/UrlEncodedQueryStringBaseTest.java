@@ -0,0 +1,135 @@
+package com.liskovsoft.sharedutils.querystringparser;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class UrlEncodedQueryStringBaseTest {
+    private static final String[] QUERIES = {
+            "",
+            "a=1&b=2;c=3",
+            "a=1&&b=&c&=4",
+            "search_query=Hello+World&sp=EgIQAQ%3D%3D",
+            "sparams=expire%2Cei%2Cip&lc=%2f%7e&space=%20&tilde=~&slash=a/b",
+            "%70age=1&page=2",
+            "name%3D=value%26&n%C3%A9=%C3%A9",
+            "dup=1&other=2&dup=3",
+            "bad=%zz&ok=1",
+            "bad=%2"
+    };
+    private static final String[] NAMES = {"a", "b", "c", "", "search_query", "sp", "sparams", "lc", "space", "tilde", "slash", "page",
+            "name=", "né", "dup", "other", "ok", "new"};
+
+    @Test
+    public void testLazySameAsEager() {
+        Random random = new Random(1);
+
+        for (String query : QUERIES) {
+            for (int round = 0; round < 20; round++) {
+                UrlEncodedQueryStringBase eager = parse(query, false);
+                UrlEncodedQueryStringBase lazy = parse(query, true);
+
+                if (eager == null) {
+                    assertTrue(lazy == null);
+                    break;
+                }
+
+                assertSame(eager, lazy);
+
+                for (int i = 0; i < 10; i++) {
+                    String name = NAMES[random.nextInt(NAMES.length)];
+                    String value = random.nextBoolean() ? "v " + i + "/~" : String.valueOf(i);
+
+                    switch (random.nextInt(4)) {
+                        case 0:
+                            eager.set(name, value);
+                            lazy.set(name, value);
+                            break;
+                        case 1:
+                            eager.remove(name);
+                            lazy.remove(name);
+                            break;
+                        case 2:
+                            eager.append(name, value);
+                            lazy.append(name, value);
+                            break;
+                    }
+
+                    assertSame(eager, lazy);
+                }
+
+                assertEquals(eager.getMap(), lazy.getMap());
+            }
+        }
+    }
+
+    /**
+     * 1,000 long signed urls: read/update a couple of params
+     */
+    @Test
+    public void testLongSignedQueries() {
+        Random random = new Random(1);
+
+        for (int i = 0; i < 1_000; i++) {
+            String query = createSignedQuery(random);
+            assertEquals(useQuery(query, false), useQuery(query, true));
+        }
+    }
+
+    private static String useQuery(String query, boolean lazy) {
+        UrlEncodedQueryStringBase queryString = UrlEncodedQueryStringBase.parse(query, lazy);
+        assertEquals("137", queryString.get("itag"));
+        queryString.get("sig");
+        queryString.set("range", "0-100000");
+        return queryString.toString();
+    }
+
+    static String createSignedQuery(Random random) {
+        StringBuilder result = new StringBuilder("expire=" + (1600000000 + random.nextInt(1000000)) + "&ei=" + randomString(random, 22) +
+                "&ip=1.2.3.4&id=o-" + randomString(random, 40) + "&itag=137&aitags=133%2C134%2C135%2C136%2C137%2C160" +
+                "&source=youtube&requiressl=yes&mime=video%2Fmp4&gir=yes&clen=" + random.nextInt(100000000) + "&dur=212.040");
+
+        for (int i = 0; result.length() < 1800; i++) {
+            result.append("&p").append(i).append('=').append(randomString(random, 30));
+        }
+
+        result.append("&sparams=expire%2Cei%2Cip%2Cid%2Citag&sig=").append(randomString(random, 60)).append("%3D%3D");
+
+        return result.toString();
+    }
+
+    private static String randomString(Random random, int length) {
+        String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789-_";
+        StringBuilder result = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            result.append(chars.charAt(random.nextInt(chars.length())));
+        }
+
+        return result.toString();
+    }
+
+    private static UrlEncodedQueryStringBase parse(String query, boolean lazy) {
+        try {
+            return UrlEncodedQueryStringBase.parse(query, lazy);
+        } catch (IllegalArgumentException e) {
+            return null; // malformed escape
+        }
+    }
+
+    private static void assertSame(UrlEncodedQueryStringBase eager, UrlEncodedQueryStringBase lazy) {
+        assertEquals(eager.toString(), lazy.toString());
+        assertEquals(eager.isEmpty(), lazy.isEmpty());
+
+        for (String name : NAMES) {
+            assertEquals(eager.get(name), lazy.get(name));
+            assertEquals(eager.contains(name), lazy.contains(name));
+        }
+    }
+}